@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.eq3.plugin.hue.model.light.Xy;
+import de.eq3.plugin.hue.util.HueColorEngine;
+import de.eq3.plugin.hue.util.HueColorTable;
+import de.eq3.plugin.hue.util.LegacyColorConversion;
+
+/**
+ * Compares the {@code java.awt.Color} and {@code BigDecimal} based color
+ * conversion with {@link HueColorEngine} and {@link HueColorTable} in both
+ * directions. Each invocation
+ * converts every hue of a fixed saturation, run with {@code -prof gc} for
+ * allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorConversionBenchmark {
+	private static final int HUES = 360;
+	private static final double SATURATION = 0.8;
+
+	private final double[] xy = new double[2];
+	private Xy[] colors;
+	private HueColorTable table;
+
+	@Setup
+	public void setup() {
+		table = HueColorTable.getInstance();
+		colors = new Xy[HUES];
+		for (int hue = 0; hue < HUES; hue++) {
+			colors[hue] = LegacyColorConversion.getXYByHueSaturation(hue, SATURATION);
+		}
+	}
+
+	@Benchmark
+	public void hueSaturationToXyLegacy(Blackhole blackhole) {
+		for (int hue = 0; hue < HUES; hue++) {
+			blackhole.consume(LegacyColorConversion.getXYByHueSaturation(hue, SATURATION));
+		}
+	}
+
+	@Benchmark
+	public void hueSaturationToXyEngine(Blackhole blackhole) {
+		for (int hue = 0; hue < HUES; hue++) {
+			HueColorEngine.hueSaturationToXy(hue, SATURATION, xy);
+			blackhole.consume(xy[0]);
+			blackhole.consume(xy[1]);
+		}
+	}
+
+	@Benchmark
+	public void hueSaturationToXyTable(Blackhole blackhole) {
+		for (int hue = 0; hue < HUES; hue++) {
+			table.hueSaturationToXy(hue, SATURATION, xy);
+			blackhole.consume(xy[0]);
+			blackhole.consume(xy[1]);
+		}
+	}
+
+	@Benchmark
+	public void xyToHueSaturationLegacy(Blackhole blackhole) {
+		for (Xy color : colors) {
+			blackhole.consume(LegacyColorConversion.getHueSaturationByXY(color));
+		}
+	}
+
+	@Benchmark
+	public void xyToHueSaturationEngine(Blackhole blackhole) {
+		for (Xy color : colors) {
+			blackhole.consume(HueColorEngine.xyToHueSaturation(color.getX(), color.getY()));
+		}
+	}
+
+	@Benchmark
+	public void xyToHueSaturationTable(Blackhole blackhole) {
+		for (Xy color : colors) {
+			blackhole.consume(table.xyToHueSaturation(color.getX(), color.getY()));
+		}
+	}
+}
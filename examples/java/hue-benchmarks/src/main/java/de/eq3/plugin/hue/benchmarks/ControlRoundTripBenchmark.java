@@ -0,0 +1,182 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.domain.control.ControlRequest;
+import de.eq3.plugin.domain.discover.DiscoverRequest;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.HuePluginStarter;
+import de.eq3.plugin.hue.simulator.HueBridgeSimulator;
+import de.eq3.plugin.hue.simulator.HueBridgeSimulatorOptions;
+import de.eq3.plugin.hue.simulator.HueHcuSimulator;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+import de.eq3.plugin.serialization.PluginMessage;
+import de.eq3.plugin.serialization.PluginMessageType;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Measures the complete plugin running against the simulated bridge and HCU
+ * of the hue test jar: a control request until its response and the status
+ * event of the bridge echo, and a change on the bridge event stream until its
+ * status event, with the event stream written at once or split into chunks of
+ * up to 16 bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControlRoundTripBenchmark {
+	private static final int CONTROLLED_LIGHT = 1;
+	private static final int CHANGED_LIGHT = 2;
+	private static final long TIMEOUT = 10_000;
+
+	@Param({ "50" })
+	private int lights;
+
+	@Param({ "0", "16" })
+	private int maxChunkSize;
+
+	private Vertx simulatorVertx;
+	private Vertx pluginVertx;
+	private HueBridgeSimulator bridge;
+	private HueHcuSimulator hcu;
+	private boolean on;
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		simulatorVertx = Vertx.vertx();
+		HueBridgeSimulatorOptions options = new HueBridgeSimulatorOptions().setLights(lights)
+				.setEchoDelay(0)
+				.setMaxChunkSize(maxChunkSize);
+		bridge = new HueBridgeSimulator(options);
+		hcu = new HueHcuSimulator("127.0.0.1", 0, "benchmark");
+		await(simulatorVertx.deployVerticle(bridge));
+		await(simulatorVertx.deployVerticle(hcu));
+
+		setProperty("plugin.hue.authFolder",
+				Files.createTempDirectory("hue-round-trip").toAbsolutePath().toString());
+		setProperty("websocket.token", "benchmark");
+		setProperty("plugin.hue.ws.server.host", "127.0.0.1");
+		setProperty("plugin.hue.ws.server.port", String.valueOf(hcu.getPort()));
+		setProperty("plugin.hue.bridge.port", String.valueOf(bridge.getPort()));
+		setProperty("plugin.hue.tls.trustAll", "true");
+		setProperty("plugin.hue.mdns.enabled", "false");
+		setProperty("plugin.hue.metrics.enabled", "false");
+		setProperty("control.request.delay", "1");
+
+		Vertx setupVertx = Vertx.vertx();
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+		helper.init(setupVertx);
+		await(helper.saveAuthData(options.getBridgeId(), options.getApplicationKey(), "127.0.0.1")
+				.compose(saved -> helper.saveIncludedDevices(Set.of(HueBridgeSimulator.deviceId(CONTROLLED_LIGHT),
+						HueBridgeSimulator.deviceId(CHANGED_LIGHT)))));
+		await(setupVertx.close());
+
+		pluginVertx = HuePluginStarter.start();
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!hcu.isConnected() || bridge.getOpenEventStreams() == 0) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Plugin did not connect to the simulators");
+			}
+			Thread.sleep(20);
+		}
+		await(hcu.awaitMessage(response(send(PluginMessageType.DISCOVER_REQUEST, new DiscoverRequest())), TIMEOUT));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		HuePersistenceHelper.getInstance().close();
+		await(pluginVertx.close());
+		await(simulatorVertx.close());
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+		previousProperties.clear();
+	}
+
+	@Benchmark
+	public JsonObject controlRequest() throws Exception {
+		on = !on;
+		String deviceId = HueBridgeSimulator.deviceId(CONTROLLED_LIGHT);
+		String messageId = send(PluginMessageType.CONTROL_REQUEST,
+				new ControlRequest(deviceId, Set.of(new SwitchState(on))));
+		await(hcu.awaitMessage(response(messageId), TIMEOUT));
+		return await(hcu.awaitMessage(statusEvent(deviceId), TIMEOUT));
+	}
+
+	@Benchmark
+	public JsonObject bridgeEvent() throws Exception {
+		on = !on;
+		bridge.emitLightChange(CHANGED_LIGHT, new JsonObject().put("on", new JsonObject().put("on", on)));
+		return await(hcu.awaitMessage(statusEvent(HueBridgeSimulator.deviceId(CHANGED_LIGHT)), TIMEOUT));
+	}
+
+	private void setProperty(String key, String value) {
+		previousProperties.put(key, System.setProperty(key, value));
+	}
+
+	private String send(PluginMessageType type, Object body) {
+		String messageId = UUID.randomUUID().toString();
+		hcu.send(JsonObject.mapFrom(new PluginMessage<>(messageId, HuePluginStarter.PLUGIN_ID, type, body)));
+		return messageId;
+	}
+
+	private static Predicate<JsonObject> response(String messageId) {
+		return message -> messageId.equals(message.getString("id"));
+	}
+
+	private static Predicate<JsonObject> statusEvent(String deviceId) {
+		return message -> PluginMessageType.STATUS_EVENT.name().equals(message.getString("type"))
+				&& deviceId.equals(message.getJsonObject("body").getString("deviceId"));
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+}
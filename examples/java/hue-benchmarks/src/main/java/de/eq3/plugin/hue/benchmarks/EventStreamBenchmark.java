@@ -0,0 +1,88 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.hue.discovery.mapping.HueEventStreamParser;
+import de.eq3.plugin.hue.model.sse.Event;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Measures the server-sent event stream handling: assembling a message from
+ * its chunks and decoding its data line, and decoding the {@code Event[]} of a
+ * data line alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventStreamBenchmark {
+
+	@Param({ "1", "20" })
+	private int lights;
+
+	@Param({ "512", "16384" })
+	private int chunkSize;
+
+	private final HueEventStreamParser parser = new HueEventStreamParser();
+	private Buffer[] chunks;
+	private String data;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		String message = HueResourcePayloads.eventStream(lights);
+		Buffer buffer = Buffer.buffer(message);
+		chunks = new Buffer[(buffer.length() + chunkSize - 1) / chunkSize];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = buffer.getBuffer(i * chunkSize, Math.min((i + 1) * chunkSize, buffer.length()));
+		}
+		data = message.substring(message.indexOf('['), message.lastIndexOf(']') + 1);
+	}
+
+	@Benchmark
+	public List<Event> parseChunks() {
+		List<Event> events = null;
+		for (Buffer chunk : chunks) {
+			events = parser.parse(chunk);
+		}
+		return events;
+	}
+
+	@Benchmark
+	public List<Event> decodeEvents() {
+		return HueEventStreamParser.decodeEvents(data);
+	}
+}
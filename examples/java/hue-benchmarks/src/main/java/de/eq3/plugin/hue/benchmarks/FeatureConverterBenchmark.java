@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.domain.device.Device;
+import de.eq3.plugin.domain.features.Color;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.discovery.mapping.FeatureConverter;
+import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.serialization.DeviceType;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Measures the feature mapping of {@link FeatureConverter} for control
+ * requests sent to a light and for light updates received from the bridge.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureConverterBenchmark {
+	private Vertx vertx;
+	private HueBridge bridge;
+	private String deviceId;
+	private String lightId;
+	private Set<IFeature> features;
+	private Light light;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		vertx = Vertx.vertx();
+		deviceId = HueResourcePayloads.id(HueResourcePayloads.TYPE_DEVICE, 0);
+		lightId = HueResourcePayloads.id(HueResourcePayloads.TYPE_LIGHT, 0);
+
+		features = new HashSet<>();
+		features.add(new SwitchState(true));
+		features.add(new Dimming(0.5));
+		features.add(new Color(120, 0.8));
+
+		// the known dim level avoids requesting the light state when the light is turned on
+		Set<IFeature> deviceFeatures = new HashSet<>();
+		deviceFeatures.add(new Dimming(0.5));
+		bridge = new HueBridge();
+		bridge.getPluginDevices()
+				.put(deviceId, new Device(deviceId, "LCA001", "Light 0", "1.104.2", DeviceType.LIGHT, deviceFeatures));
+
+		light = HueResourcePayloads.light(0).mapTo(Light.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		vertx.close();
+	}
+
+	@Benchmark
+	public Light doForward() {
+		return FeatureConverter.getInstance().doForward(lightId, features);
+	}
+
+	@Benchmark
+	public Set<IFeature> mapChanges() {
+		return FeatureConverter.getInstance().mapChanges(vertx, deviceId, light, bridge);
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.benchmarks;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Generates synthetic bridge responses shaped like the responses of a Hue
+ * bridge. As on the bridge the {@code type} is the last field of each resource.
+ * Bridges with many scenes are dominated by the scene resources, which the
+ * plugin does not use.
+ */
+public final class HueResourcePayloads {
+	public static final String TYPE_DEVICE = "device";
+	public static final String TYPE_LIGHT = "light";
+	public static final String TYPE_CONNECTIVITY = "zigbee_connectivity";
+	public static final String TYPE_ROOM = "room";
+	public static final String TYPE_ZONE = "zone";
+	public static final String TYPE_SCENE = "scene";
+
+	private HueResourcePayloads() {
+	}
+
+	/**
+	 * Returns the resources of all types, as returned by
+	 * {@code /clip/v2/resource}.
+	 *
+	 * @param lights the number of lights
+	 * @param scenes the number of scenes
+	 * @return the response body
+	 */
+	public static JsonObject fullDump(int lights, int scenes) {
+		JsonArray data = new JsonArray();
+		for (String type : new String[] { TYPE_DEVICE, TYPE_LIGHT, TYPE_CONNECTIVITY, TYPE_ROOM, TYPE_ZONE }) {
+			typed(type, lights).getJsonArray("data").forEach(data::add);
+		}
+		for (int i = 0; i < scenes; i++) {
+			data.add(scene(i, lights));
+		}
+		return response(data);
+	}
+
+	/**
+	 * Returns the resources of a single type, as returned by
+	 * {@code /clip/v2/resource/<type>}.
+	 *
+	 * @param type   the resource type
+	 * @param lights the number of lights
+	 * @return the response body
+	 */
+	public static JsonObject typed(String type, int lights) {
+		JsonArray data = new JsonArray();
+		switch (type) {
+		case TYPE_DEVICE:
+			for (int i = 0; i < lights; i++) {
+				data.add(device(i));
+			}
+			break;
+		case TYPE_LIGHT:
+			for (int i = 0; i < lights; i++) {
+				data.add(light(i));
+			}
+			break;
+		case TYPE_CONNECTIVITY:
+			for (int i = 0; i < lights; i++) {
+				data.add(connectivity(i));
+			}
+			break;
+		case TYPE_ROOM:
+		case TYPE_ZONE:
+			for (int i = 0; i < Math.max(1, lights / 4); i++) {
+				data.add(group(type, i, lights));
+			}
+			break;
+		default:
+			break;
+		}
+		return response(data);
+	}
+
+	/**
+	 * Returns a message of the server-sent event stream with one update event
+	 * for each light.
+	 *
+	 * @param lights the number of updated lights
+	 * @return the message including the terminating empty line
+	 */
+	public static String eventStream(int lights) {
+		JsonArray data = new JsonArray();
+		for (int i = 0; i < lights; i++) {
+			data.add(new JsonObject().put("id", id(TYPE_LIGHT, i))
+					.put("id_v1", "/lights/" + i)
+					.put("owner", reference(TYPE_DEVICE, i))
+					.put("dimming", new JsonObject().put("brightness", (i * 7) % 100 + 0.39))
+					.put("color", new JsonObject().put("xy", xy(0.3 + (i % 10) / 50.0, 0.3)))
+					.put("type", TYPE_LIGHT));
+		}
+		JsonArray events = new JsonArray().add(new JsonObject().put("creationtime", "2025-01-01T12:00:00Z")
+				.put("data", data)
+				.put("id", id("event", lights))
+				.put("type", "update"));
+		return "id: 1735732800:0\ndata: " + events.encode() + "\n\n";
+	}
+
+	public static JsonObject light(int index) {
+		return new JsonObject().put("id", id(TYPE_LIGHT, index))
+				.put("owner", reference(TYPE_DEVICE, index))
+				.put("metadata", new JsonObject().put("name", "Light " + index).put("archetype", "sultan_bulb"))
+				.put("on", new JsonObject().put("on", index % 2 == 0))
+				.put("dimming", new JsonObject().put("brightness", (index * 7) % 100 + 0.39)
+						.put("min_dim_level", 0.2))
+				.put("color_temperature", new JsonObject().put("mirek", 153 + index % 347)
+						.put("mirek_valid", index % 3 == 0)
+						.put("mirek_schema", new JsonObject().put("mirek_minimum", 153).put("mirek_maximum", 500)))
+				.put("color", new JsonObject().put("xy", xy(0.3 + (index % 10) / 50.0, 0.3))
+						.put("gamut_type", "C")
+						.put("gamut", new JsonObject().put("red", xy(0.6915, 0.3083))
+								.put("green", xy(0.17, 0.7))
+								.put("blue", xy(0.1532, 0.0475))))
+				.put("dynamics", new JsonObject().put("status", "none").put("speed", 0.0).put("speed_valid", false))
+				.put("alert", new JsonObject().put("action_values", new JsonArray().add("breathe")))
+				.put("mode", "normal")
+				.put("type", TYPE_LIGHT);
+	}
+
+	private static JsonObject device(int index) {
+		return new JsonObject().put("id", id(TYPE_DEVICE, index))
+				.put("metadata", new JsonObject().put("name", "Light " + index).put("archetype", "sultan_bulb"))
+				.put("product_data", new JsonObject().put("model_id", "LCA001")
+						.put("manufacturer_name", "Signify Netherlands B.V.")
+						.put("product_name", "Hue color lamp")
+						.put("product_archetype", "sultan_bulb")
+						.put("software_version", "1.104.2"))
+				.put("services", new JsonArray().add(reference(TYPE_LIGHT, index))
+						.add(reference(TYPE_CONNECTIVITY, index)))
+				.put("type", TYPE_DEVICE);
+	}
+
+	private static JsonObject connectivity(int index) {
+		return new JsonObject().put("id", id(TYPE_CONNECTIVITY, index))
+				.put("owner", reference(TYPE_DEVICE, index))
+				.put("status", "connected")
+				.put("mac_address", String.format("00:17:88:01:0c:%02x:%02x:0b", index / 256, index % 256))
+				.put("type", TYPE_CONNECTIVITY);
+	}
+
+	private static JsonObject group(String type, int index, int lights) {
+		JsonArray children = new JsonArray();
+		for (int i = index; i < lights; i += Math.max(1, lights / 4)) {
+			children.add(reference(TYPE_DEVICE, i));
+		}
+		return new JsonObject().put("id", id(type, index))
+				.put("metadata", new JsonObject().put("name", type + " " + index).put("archetype", "living_room"))
+				.put("children", children)
+				.put("services", new JsonArray().add(reference("grouped_light", index)))
+				.put("type", type);
+	}
+
+	private static JsonObject scene(int index, int lights) {
+		JsonArray actions = new JsonArray();
+		for (int i = 0; i < lights; i++) {
+			actions.add(new JsonObject().put("target", reference(TYPE_LIGHT, i))
+					.put("action", new JsonObject().put("on", new JsonObject().put("on", true))
+							.put("dimming", new JsonObject().put("brightness", 100.0))
+							.put("color", new JsonObject().put("xy", xy(0.4573, 0.41)))));
+		}
+		return new JsonObject().put("id", id(TYPE_SCENE, index))
+				.put("metadata", new JsonObject().put("name", "Scene " + index)
+						.put("image", reference("public_image", index)))
+				.put("group", reference(TYPE_ROOM, index % Math.max(1, lights / 4)))
+				.put("actions", actions)
+				.put("palette", new JsonObject().put("color", new JsonArray())
+						.put("dimming", new JsonArray())
+						.put("color_temperature", new JsonArray()))
+				.put("speed", 0.6031746031746031)
+				.put("auto_dynamic", false)
+				.put("status", new JsonObject().put("active", "inactive"))
+				.put("type", TYPE_SCENE);
+	}
+
+	private static JsonObject response(JsonArray data) {
+		return new JsonObject().put("errors", new JsonArray()).put("data", data);
+	}
+
+	private static JsonObject reference(String type, int index) {
+		return new JsonObject().put("rid", id(type, index)).put("rtype", type);
+	}
+
+	private static JsonObject xy(double x, double y) {
+		return new JsonObject().put("x", x).put("y", y);
+	}
+
+	public static String id(String type, int index) {
+		return String.format("%08x-%04x-4000-8000-%012x", type.hashCode(), index, (long) index);
+	}
+}
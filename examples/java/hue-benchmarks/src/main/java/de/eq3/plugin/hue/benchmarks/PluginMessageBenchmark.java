@@ -0,0 +1,85 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import de.eq3.plugin.domain.features.Color;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.domain.status.StatusEvent;
+import de.eq3.plugin.hue.HuePluginStarter;
+import de.eq3.plugin.serialization.PluginMessage;
+import de.eq3.plugin.serialization.PluginMessageType;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+/**
+ * Measures the serialization of an outbound status event, as sent to the
+ * websocket client for every light update. Compares the conversion into a
+ * {@link JsonObject} used by the verticles with writing the message directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginMessageBenchmark {
+	private PluginMessage<StatusEvent> message;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Set<IFeature> features = new HashSet<>();
+		features.add(new SwitchState(true));
+		features.add(new Dimming(0.5));
+		features.add(new Color(120, 0.8));
+		StatusEvent statusEvent = new StatusEvent(HueResourcePayloads.id(HueResourcePayloads.TYPE_DEVICE, 0),
+				features);
+		message = new PluginMessage<>("0b6f7c9e-5d1a-4c3e-8f2a-1b2c3d4e5f60", HuePluginStarter.PLUGIN_ID,
+				PluginMessageType.STATUS_EVENT, statusEvent);
+	}
+
+	@Benchmark
+	public String mapFrom() {
+		return JsonObject.mapFrom(message).encode();
+	}
+
+	@Benchmark
+	public String writeValueAsString() throws JsonProcessingException {
+		return DatabindCodec.mapper().writeValueAsString(message);
+	}
+}
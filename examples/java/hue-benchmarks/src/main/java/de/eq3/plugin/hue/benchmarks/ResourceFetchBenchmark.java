@@ -0,0 +1,87 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.hue.discovery.mapping.HueResourceParser;
+import de.eq3.plugin.hue.model.HueResponse;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Compares the full {@code /clip/v2/resource} dump with the typed requests
+ * used by {@code HueGetResourcesFunction}. Both variants start from the
+ * received bytes, so decoding the unused scene resources is part of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceFetchBenchmark {
+
+	@Param({ "20", "50" })
+	private int lights;
+
+	@Param({ "50", "500" })
+	private int scenes;
+
+	private Buffer fullDump;
+	private List<Buffer> typedResponses;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fullDump = HueResourcePayloads.fullDump(lights, scenes).toBuffer();
+		typedResponses = new ArrayList<>();
+		for (String type : new String[] { HueResourcePayloads.TYPE_DEVICE, HueResourcePayloads.TYPE_LIGHT,
+				HueResourcePayloads.TYPE_CONNECTIVITY }) {
+			typedResponses.add(HueResourcePayloads.typed(type, lights).toBuffer());
+		}
+	}
+
+	@Benchmark
+	public HueResponse fullDump() throws IOException {
+		return HueResourceParser.parse(fullDump);
+	}
+
+	@Benchmark
+	public HueResponse typed() throws IOException {
+		HueResponse hueResponse = new HueResponse();
+		for (Buffer response : typedResponses) {
+			HueResourceParser.parseInto(hueResponse, response);
+		}
+		return hueResponse;
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.hue.discovery.mapping.HueResourceParser;
+import de.eq3.plugin.hue.model.HueResponse;
+import de.eq3.plugin.hue.model.connectivity.DeviceConnectivity;
+import de.eq3.plugin.hue.model.device.Device;
+import de.eq3.plugin.hue.model.light.Light;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares the streaming {@link HueResourceParser} with the previous parsing,
+ * which decoded the body into a {@link JsonObject} tree and converted each
+ * resource with {@code mapTo}. Run with {@code -prof gc} to compare the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceParseBenchmark {
+
+	@Param({ "50", "500" })
+	private int lights;
+
+	@Param({ "0", "500" })
+	private int scenes;
+
+	private Buffer body;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		body = HueResourcePayloads.fullDump(lights, scenes).toBuffer();
+	}
+
+	@Benchmark
+	public HueResponse tree() {
+		HueResponse hueResponse = new HueResponse();
+		JsonArray data = body.toJsonObject().getJsonArray("data");
+		data.forEach(resource -> {
+			if (resource instanceof JsonObject) {
+				String type = ((JsonObject) resource).getString("type");
+
+				switch (type) {
+				case HueResourceParser.TYPE_DEVICE:
+					hueResponse.getDevices().add(((JsonObject) resource).mapTo(Device.class));
+					break;
+				case HueResourceParser.TYPE_LIGHT:
+					hueResponse.getLights().add(((JsonObject) resource).mapTo(Light.class));
+					break;
+				case HueResourceParser.TYPE_CONNECTIVITY:
+					hueResponse.getDeviceConnectivities().add(((JsonObject) resource).mapTo(DeviceConnectivity.class));
+					break;
+				default:
+					break;
+				}
+			}
+		});
+		return hueResponse;
+	}
+
+	@Benchmark
+	public HueResponse streaming() throws IOException {
+		return HueResourceParser.parse(body);
+	}
+}
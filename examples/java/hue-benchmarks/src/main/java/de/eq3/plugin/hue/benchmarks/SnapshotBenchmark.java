@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.auth.model.HuePersistence;
+import de.eq3.plugin.hue.model.device.Device;
+import de.eq3.plugin.hue.util.HueSnapshotCodec;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares loading the persisted state from the legacy JSON file with loading
+ * it from the binary snapshot written by {@link HueSnapshotCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+	@Param({ "50", "500", "5000" })
+	private int devices;
+
+	private Path directory;
+	private Path jsonFile;
+	private Path snapshotFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Map<String, Device> deviceMap = new HashMap<>();
+		HueResourcePayloads.typed(HueResourcePayloads.TYPE_DEVICE, devices)
+				.getJsonArray("data")
+				.stream()
+				.map(device -> ((JsonObject) device).mapTo(Device.class))
+				.forEach(device -> deviceMap.put(device.getId(), device));
+
+		HueBridge bridge = new HueBridge();
+		bridge.setBridgeId("001788fffe000000");
+		bridge.setApplicationKey("benchmark");
+		bridge.setLocalAddress("192.168.0.2");
+		bridge.setDevices(deviceMap);
+		deviceMap.keySet().forEach(bridge.getIncludedDevices()::add);
+		HuePersistence persistence = new HuePersistence(bridge, 0);
+
+		directory = Files.createTempDirectory("hue-snapshot");
+		jsonFile = directory.resolve("hue.auth.json");
+		snapshotFile = directory.resolve("hue.auth");
+		Files.write(jsonFile, JsonObject.mapFrom(persistence).toBuffer().getBytes());
+		Files.write(snapshotFile, HueSnapshotCodec.encode(persistence).getBytes());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(jsonFile);
+		Files.deleteIfExists(snapshotFile);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public HuePersistence loadJson() throws IOException {
+		return Buffer.buffer(Files.readAllBytes(jsonFile)).toJsonObject().mapTo(HuePersistence.class);
+	}
+
+	@Benchmark
+	public HuePersistence loadSnapshot() throws IOException {
+		return HueSnapshotCodec.decode(Buffer.buffer(Files.readAllBytes(snapshotFile)));
+	}
+}
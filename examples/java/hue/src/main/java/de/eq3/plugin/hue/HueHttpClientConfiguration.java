@@ -24,15 +24,26 @@ public interface HueHttpClientConfiguration {
 
 	int PING_AND_RECONNECT_INTERVAL_SECONDS = 20;
 
+	/**
+	 * Returns the HTTPS port of the bridge, {@code plugin.hue.bridge.port}. Only
+	 * differs from 443 for simulated bridges.
+	 *
+	 * @return the bridge port
+	 */
+	static int getBridgePort() {
+		return Integer.parseInt(System.getProperty("plugin.hue.bridge.port", "443"));
+	}
+
 	default HttpClientOptions getHttpClientOptions() {
 		HttpClientOptions options = new HttpClientOptions();
 		options.setProtocolVersion(HttpVersion.HTTP_2);
 		options.setUseAlpn(true);
 		options.setSsl(true);
+		// the certificate is issued for the bridge ID, which is verified by the trust options
 		options.setVerifyHost(false);
-		options.setDefaultPort(443);
-		options.setTrustAll(true);
-		//options.setTrustStoreOptions(HueBridgeTLS.getJksOptions());
+		options.setDefaultPort(getBridgePort());
+		options.setTrustOptions(HueBridgeTLS.getTrustOptions());
+		options.setSslEngineOptions(HueBridgeTLS.getSslEngineOptions());
 
 		options.setConnectTimeout(5000);
 		options.setReadIdleTimeout(PING_AND_RECONNECT_INTERVAL_SECONDS + 10);
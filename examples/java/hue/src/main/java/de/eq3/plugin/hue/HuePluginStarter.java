@@ -35,9 +35,14 @@ import de.eq3.plugin.hue.control.HueControlRequestHandler;
 import de.eq3.plugin.hue.control.HueLightStateRequestHandler;
 import de.eq3.plugin.hue.discovery.HueDiscoverAndStatusRequestHandler;
 import de.eq3.plugin.hue.discovery.HueStateEventHandler;
+import de.eq3.plugin.hue.discovery.index.HueRoutingIndex;
 import de.eq3.plugin.hue.inclusion.HueDeviceExclusionHandler;
 import de.eq3.plugin.hue.inclusion.HueDeviceInclusionHandler;
+import de.eq3.plugin.hue.metrics.HueMetricsServer;
 import de.eq3.plugin.hue.plugin.HuePluginStateRequestHandler;
+import de.eq3.plugin.hue.security.HueBridgeTLS;
+import de.eq3.plugin.hue.tracing.HueTracer;
+import de.eq3.plugin.hue.util.HueColorTable;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
 import de.eq3.plugin.hue.ws.HuePluginWebsocketClient;
 
@@ -51,16 +56,41 @@ public class HuePluginStarter {
 	public static final String PLUGIN_NAME = "Philips Hue Example";
 
 	public static void main(String[] args) throws IOException {
+		start();
+	}
 
+	/**
+	 * Starts the plugin. Properties of {@code hue-plugin.properties} are applied
+	 * unless they are already set as system properties, so tests can start the
+	 * plugin against a simulated bridge and HCU.
+	 *
+	 * @return the Vert.x instance running the plugin
+	 * @throws IOException           if the plugin properties cannot be read
+	 * @throws IllegalStateException if the Hue root CA cannot be loaded
+	 */
+	public static Vertx start() throws IOException {
 		try (InputStream fis = HuePluginStarter.class.getClassLoader().getResourceAsStream("hue-plugin.properties")) {
 			Properties properties = new Properties();
 			properties.load(fis);
 			properties.forEach((key, value) -> System.getProperties().putIfAbsent(key, value));
 		}
+		// fail the start if bridge certificates cannot be verified, instead of on the first connection
+		HueBridgeTLS.getTrustOptions();
 		// disable Vertx internal DNS resolver for usage with local host names
 		System.setProperty("vertx.disableDnsResolver", "true");
 		Vertx vertx = Vertx.vertx();
 		HuePersistenceHelper.getInstance().init(vertx);
+		HueTracer.getInstance().init(vertx);
+		HuePersistenceHelper.getInstance()
+				.getHueBridge()
+				.ifPresent(bridge -> HueRoutingIndex.getInstance().rebuild(bridge.getDevices().values()));
+		// build the color tables here instead of on the event loop of the first color conversion
+		HueColorTable.getInstance();
+
+		if (HueMetricsServer.isEnabled()) {
+			// the plugin keeps running without the metrics endpoint
+			vertx.deployVerticle(HueMetricsServer.class.getName());
+		}
 
 		Future<String> wsClient = vertx.deployVerticle(HuePluginWebsocketClient.class.getName());
 
@@ -93,6 +123,6 @@ public class HuePluginStarter {
 				});
 
 		logger.info("SYSTEM: Starting Philips Hue plugin...");
-
+		return vertx;
 	}
 }
@@ -19,16 +19,20 @@ package de.eq3.plugin.hue.auth;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceInfo;
 import javax.jmdns.ServiceListener;
 
 import org.apache.logging.log4j.LogManager;
@@ -37,6 +41,7 @@ import org.apache.logging.log4j.Logger;
 import de.eq3.plugin.hue.auth.model.HueBridge;
 import de.eq3.plugin.hue.auth.model.HueLookupRequest;
 import de.eq3.plugin.hue.auth.model.HueLookupResponse;
+import de.eq3.plugin.hue.metrics.HueMetrics;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
@@ -45,17 +50,34 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
-import lombok.Getter;
 
 /**
  * Handles requests for discovering Philips Hue bridges and resolving their IP
  * addresses via mDNS.
  * <p>
- * This Vert.x verticle listens for lookup requests on the event bus and uses
- * JmDNS to find Hue bridges
- * in the local network. It provides utility methods to match local addresses to
- * discovered bridges and
- * to resolve .local hostnames to IP addresses, with caching support.
+ * This Vert.x verticle keeps a single JmDNS browser for
+ * {@code _hue._tcp.local.} running for its whole lifetime and caches every
+ * resolved bridge for {@code plugin.hue.mdns.ttl} millis. Cached bridges are
+ * re-resolved in the background before they expire and evicted when the bridge
+ * withdraws its service. Lookups are answered from the cache right away;
+ * otherwise a lookup for a single bridge completes as soon as a matching bridge
+ * resolves, and a discovery of all bridges collects the bridges resolving
+ * within {@code plugin.hue.mdns.timeout} millis.
+ * </p>
+ * <p>
+ * JmDNS does not expose the TTL of the received records. It expires the records
+ * itself and reports a service whose records expired as removed, which evicts
+ * the bridge from the cache. {@code plugin.hue.mdns.ttl} therefore only limits
+ * how long a bridge is answered from the cache without being re-resolved; it
+ * defaults to the 120 seconds recommended for mDNS host records.
+ * </p>
+ * <p>
+ * The mDNS browser is not started if {@code plugin.hue.mdns.enabled} is false,
+ * e.g. for tests against a simulated bridge; only bridges configured by IP
+ * address can be reached then.
+ * </p>
+ * <p>
+ * The cache and pending lookups are only accessed from the verticle context.
  * </p>
  */
 public class HueLookupRequestHandler extends AbstractVerticle implements Handler<Message<JsonObject>> {
@@ -64,14 +86,34 @@ public class HueLookupRequestHandler extends AbstractVerticle implements Handler
 	private static final Pattern BRIDGE_ID_PATTERN = Pattern.compile("^([a-z0-9]+)(?:-(\\d+))?\\.local");
 	private static final Pattern LOCAL_ONLY_ADDRESS_PATTERN = Pattern.compile("(.*).local");
 	public static final String GET_HUE_BRIDGE_ENDPOINT = "get.hue.bridge.endpoint";
+	private static final String HUE_SERVICE_TYPE = "_hue._tcp.local.";
 	private static final int RELEVANT_BRIDGE_ID_PART = 6;
 
+	private final Map<String, CachedBridge> bridgesByServiceName = new HashMap<>();
+	private final List<PendingLookup> pendingLookups = new ArrayList<>();
+	private JmDNS jmdns;
+	private long ttl;
+	private long lookupTimeout;
+	private long refreshTimerId = -1;
+
+	private final HueMetrics.Counter cachedLookups = HueMetrics.getInstance()
+			.counter("hue_mdns_lookups_total", "Bridge lookups by result", "result", "cached");
+	private final HueMetrics.Counter resolvedLookups = HueMetrics.getInstance()
+			.counter("hue_mdns_lookups_total", "Bridge lookups by result", "result", "resolved");
+	private final HueMetrics.Counter failedLookups = HueMetrics.getInstance()
+			.counter("hue_mdns_lookups_total", "Bridge lookups by result", "result", "failed");
+	private final HueMetrics.Counter resolutions = HueMetrics.getInstance()
+			.counter("hue_mdns_resolutions_total", "Bridge services resolved via mDNS");
+
 	/**
-	 * Starts the verticle and sets up event bus consumers for bridge lookup and IP
-	 * resolution.
+	 * Starts the verticle, sets up event bus consumers for bridge lookup and IP
+	 * resolution and starts the mDNS browser.
 	 */
 	@Override
 	public void start() {
+		this.ttl = Long.parseLong(System.getProperty("plugin.hue.mdns.ttl", "120000"));
+		this.lookupTimeout = Long.parseLong(System.getProperty("plugin.hue.mdns.timeout", "2000"));
+
 		vertx.eventBus().consumer(HueLookupRequest.ENDPOINT, this);
 		logger.info("SYSTEM: {} Verticle or Worker started", this.getClass().getSimpleName());
 		vertx.eventBus().consumer(GET_HUE_BRIDGE_ENDPOINT, (Handler<Message<String>>) event -> {
@@ -91,6 +133,40 @@ public class HueLookupRequestHandler extends AbstractVerticle implements Handler
 				event.fail(-2, "Could not get ip");
 			});
 		});
+
+		if (!Boolean.parseBoolean(System.getProperty("plugin.hue.mdns.enabled", "true"))) {
+			logger.info("Browsing for Philips Hue Bridge(s) via mDNS is disabled");
+			return;
+		}
+		vertx.<JmDNS>executeBlocking(this::startBrowser, false)
+				.onSuccess(browser -> this.jmdns = browser)
+				.onFailure(throwable -> logger.error("Error starting mDNS browser for Philips Hue Bridge(s)",
+						throwable));
+		refreshTimerId = vertx.setPeriodic(Math.max(1, ttl / 2), id -> refreshBridges());
+	}
+
+	/**
+	 * Stops the mDNS browser and fails all pending lookups.
+	 */
+	@Override
+	public void stop(Promise<Void> stopPromise) {
+		vertx.cancelTimer(refreshTimerId);
+		new ArrayList<>(pendingLookups).forEach(lookup -> lookup.fail("mDNS browser stopped"));
+
+		JmDNS browser = this.jmdns;
+		this.jmdns = null;
+		if (browser == null) {
+			stopPromise.complete();
+			return;
+		}
+		vertx.<Void>executeBlocking(promise -> {
+			try {
+				browser.close();
+				promise.complete();
+			} catch (IOException e) {
+				promise.fail(e);
+			}
+		}, false).onComplete(closed -> stopPromise.complete());
 	}
 
 	/**
@@ -101,11 +177,13 @@ public class HueLookupRequestHandler extends AbstractVerticle implements Handler
 	 * @return a Future containing the resolved HueBridge
 	 */
 	public Future<HueBridge> handleGetIpRequestForLocalAddress(String localAddress) {
-		Future<Set<HueBridge>> bridgeLookup = vertx.executeBlocking(promise -> {
-			MDNSListener mdnsListener = new MDNSListener();
-			getBridges(promise, mdnsListener);
-		});
-		return bridgeLookup.compose(bridges -> getBridgeForLocalAddress(localAddress, bridges));
+		Optional<HueBridge> cached = matchBridge(localAddress, getCachedBridges());
+		if (cached.isPresent()) {
+			logger.debug("Matched cached bridge {}", cached.get());
+			cachedLookups.increment();
+			return Future.succeededFuture(cached.get());
+		}
+		return awaitBridge(localAddress);
 	}
 
 	/**
@@ -139,62 +217,156 @@ public class HueLookupRequestHandler extends AbstractVerticle implements Handler
 	 * @return a Future containing the matched HueBridge
 	 */
 	public Future<HueBridge> getBridgeForLocalAddress(String localAddress, Set<HueBridge> bridges) {
+		return matchBridge(localAddress, bridges).map(Future::succeededFuture)
+				.orElseGet(() -> Future.failedFuture("No bridge found in network"));
+	}
+
+	/**
+	 * Handles incoming messages for bridge lookup requests. Replies with the cached
+	 * bridges, or with all bridges resolved within the lookup timeout if none is
+	 * cached.
+	 *
+	 * @param message The incoming message
+	 */
+	@Override
+	public void handle(Message<JsonObject> message) {
+		Set<HueBridge> cached = getCachedBridges();
+		if (!cached.isEmpty()) {
+			cachedLookups.increment();
+			message.reply(JsonObject.mapFrom(new HueLookupResponse(cached)));
+			return;
+		}
+		// several bridges may answer, collect them for the whole discovery window
+		vertx.setTimer(lookupTimeout, id -> {
+			Set<HueBridge> resolved = getCachedBridges();
+			if (resolved.isEmpty()) {
+				failedLookups.increment();
+			} else {
+				resolvedLookups.increment();
+			}
+			message.reply(JsonObject.mapFrom(new HueLookupResponse(resolved)));
+		});
+	}
+
+	private Optional<HueBridge> matchBridge(String localAddress, Collection<HueBridge> bridges) {
 		Matcher localDefaultMatcher = BRIDGE_ID_PATTERN.matcher(localAddress);
 		if (localDefaultMatcher.find()) {
 			String id = localDefaultMatcher.group(1);
 			if (id.length() < RELEVANT_BRIDGE_ID_PART) {
 				logger.debug("Bridge id too short");
-				return Future.failedFuture("Bridge id too short");
+				return Optional.empty();
 			}
 			id = id.substring(id.length() - RELEVANT_BRIDGE_ID_PART);
 			for (HueBridge bridge : bridges) {
 				logger.trace("Found bridge {} {}", bridge, id);
 				if (bridge.getBridgeId() != null && bridge.getBridgeId().contains(id)) {
 					logger.debug("Matched bridge {}", bridge);
-					return Future.succeededFuture(bridge);
+					return Optional.of(bridge);
 				}
 			}
 		}
 		Matcher localCustomMatcher = LOCAL_ONLY_ADDRESS_PATTERN.matcher(localAddress);
 		if (localCustomMatcher.find()) {
 			for (HueBridge bridge : bridges) {
-				if (bridge.getLocalAddress().equalsIgnoreCase(localAddress)) {
+				if (localAddress.equalsIgnoreCase(bridge.getLocalAddress())) {
 					logger.debug("Matched bridge {}", bridge);
-					return Future.succeededFuture(bridge);
+					return Optional.of(bridge);
 				}
 			}
 		}
-		return Future.failedFuture("No bridge found in network");
+		return Optional.empty();
 	}
 
 	/**
-	 * Handles incoming messages for bridge lookup requests.
+	 * Returns all cached bridges which have not expired yet.
 	 *
-	 * @param message The incoming message
+	 * @return the cached bridges
 	 */
-	@Override
-	public void handle(Message<JsonObject> message) {
-		Future<Set<HueBridge>> bridgeLookup = vertx.executeBlocking(promise -> {
-			MDNSListener mdnsListener = new MDNSListener();
-			getBridges(promise, mdnsListener);
-		});
-		bridgeLookup.onSuccess(hueBridges -> {
-			HueLookupResponse lookupResponse = new HueLookupResponse(hueBridges);
-			message.reply(JsonObject.mapFrom(lookupResponse));
-		});
-		bridgeLookup.onFailure(throwable -> {
-			HueLookupResponse lookupResponse = new HueLookupResponse(Collections.emptySet());
-			message.reply(JsonObject.mapFrom(lookupResponse));
+	private Set<HueBridge> getCachedBridges() {
+		long now = System.currentTimeMillis();
+		Set<HueBridge> bridges = new HashSet<>();
+		bridgesByServiceName.values()
+				.stream()
+				.filter(cached -> cached.expiresAt > now)
+				.forEach(cached -> bridges.add(cached.bridge));
+		return bridges;
+	}
+
+	/**
+	 * Waits for a bridge matching the local address to resolve.
+	 *
+	 * @param localAddress the local address to match
+	 * @return a Future completed with the first matching bridge, or failed after
+	 *         the lookup timeout
+	 */
+	private Future<HueBridge> awaitBridge(String localAddress) {
+		PendingLookup lookup = new PendingLookup(localAddress);
+		pendingLookups.add(lookup);
+		lookup.timerId = vertx.setTimer(lookupTimeout, id -> lookup.fail("No bridge found in network"));
+		return lookup.promise.future();
+	}
+
+	/**
+	 * Caches a resolved bridge and completes all lookups waiting for it.
+	 *
+	 * @param serviceName the mDNS service name
+	 * @param bridge      the resolved bridge
+	 */
+	private void onResolved(String serviceName, HueBridge bridge) {
+		CachedBridge previous = bridgesByServiceName.put(serviceName,
+				new CachedBridge(bridge, System.currentTimeMillis() + ttl));
+		resolutions.increment();
+		if (previous == null) {
+			logger.info(bridge);
+		}
+
+		Set<HueBridge> resolved = Set.of(bridge);
+		new ArrayList<>(pendingLookups).forEach(lookup -> {
+			if (matchBridge(lookup.localAddress, resolved).isPresent()) {
+				lookup.complete(bridge);
+			}
 		});
 	}
 
+	private void onRemoved(String serviceName) {
+		CachedBridge removed = bridgesByServiceName.remove(serviceName);
+		if (removed != null) {
+			logger.info("Bridge {} removed from network", removed.bridge.getBridgeId());
+		}
+	}
+
 	/**
-	 * Discovers Hue bridges on the local network using mDNS.
+	 * Re-resolves all cached bridges in the background, so steady state lookups
+	 * keep being answered from the cache. Bridges which could not be resolved for
+	 * two TTLs are evicted.
+	 */
+	private void refreshBridges() {
+		long now = System.currentTimeMillis();
+		bridgesByServiceName.values().removeIf(cached -> cached.expiresAt + ttl < now);
+
+		JmDNS browser = this.jmdns;
+		if (browser == null || bridgesByServiceName.isEmpty()) {
+			return;
+		}
+		List<String> serviceNames = new ArrayList<>(bridgesByServiceName.keySet());
+		vertx.<Map<String, HueBridge>>executeBlocking(promise -> {
+			Map<String, HueBridge> refreshed = new HashMap<>();
+			serviceNames.forEach(serviceName -> {
+				ServiceInfo info = browser.getServiceInfo(HUE_SERVICE_TYPE, serviceName, false, lookupTimeout);
+				if (info != null && info.hasData()) {
+					refreshed.put(serviceName, new HueBridge(info));
+				}
+			});
+			promise.complete(refreshed);
+		}, false).onSuccess(refreshed -> refreshed.forEach(this::onResolved));
+	}
+
+	/**
+	 * Creates the mDNS browser on the configured network interface.
 	 *
-	 * @param promise      the promise to complete with the discovered bridges
-	 * @param mdnsListener the mDNS listener for discovering bridges
+	 * @param promise the promise to complete with the running browser
 	 */
-	private void getBridges(Promise<Set<HueBridge>> promise, MDNSListener mdnsListener) {
+	private void startBrowser(Promise<JmDNS> promise) {
 		InetAddress address;
 		try {
 			String networkInterface = System.getProperty("plugin.hue.networkInterface");
@@ -204,39 +376,74 @@ public class HueLookupRequestHandler extends AbstractVerticle implements Handler
 			promise.fail(e);
 			return;
 		}
-		try (JmDNS jmdns = JmDNS.create(address)) {
-			jmdns.addServiceListener("_hue._tcp.local.", mdnsListener);
-			Thread.sleep(2000L);
-			mdnsListener.getHueBridges().forEach((bridgeId, hueBridge) -> logger.info(hueBridge));
-			promise.complete(new HashSet<>(mdnsListener.getHueBridges().values()));
-		} catch (InterruptedException | IOException e) {
-			promise.fail(e);
+		try {
+			JmDNS browser = JmDNS.create(address);
+			browser.addServiceListener(HUE_SERVICE_TYPE, new MDNSListener());
+			logger.info("Browsing for Philips Hue Bridge(s) via mDNS on {}", address);
+			promise.complete(browser);
+		} catch (IOException e) {
 			logger.error("Error discovering Philips Hue Bridge(s) via mDNS", e);
-			Thread.currentThread().interrupt();
+			promise.fail(e);
+		}
+	}
+
+	private static final class CachedBridge {
+		private final HueBridge bridge;
+		private final long expiresAt;
+
+		private CachedBridge(HueBridge bridge, long expiresAt) {
+			this.bridge = bridge;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final class PendingLookup {
+		private final String localAddress;
+		private final Promise<HueBridge> promise = Promise.promise();
+		private long timerId = -1;
+
+		private PendingLookup(String localAddress) {
+			this.localAddress = localAddress;
+		}
+
+		private void complete(HueBridge bridge) {
+			pendingLookups.remove(this);
+			vertx.cancelTimer(timerId);
+			if (promise.tryComplete(bridge)) {
+				resolvedLookups.increment();
+			}
+		}
+
+		private void fail(String reason) {
+			pendingLookups.remove(this);
+			vertx.cancelTimer(timerId);
+			if (promise.tryFail(reason)) {
+				failedLookups.increment();
+			}
 		}
 	}
 
 	/**
-	 * Listener for mDNS service events related to Hue bridges.
+	 * Listener for mDNS service events related to Hue bridges. Events are handed
+	 * to the verticle context.
 	 */
 	private class MDNSListener implements ServiceListener {
-		@Getter
-		private final Map<String, HueBridge> hueBridges = new HashMap<>();
-
 		@Override
 		public void serviceAdded(ServiceEvent event) {
-			// Not used
+			// resolution is requested by JmDNS for registered listeners
 		}
 
 		@Override
 		public void serviceRemoved(ServiceEvent event) {
-			// Not used
+			String serviceName = event.getName();
+			context.runOnContext(v -> onRemoved(serviceName));
 		}
 
 		@Override
 		public void serviceResolved(ServiceEvent event) {
+			String serviceName = event.getName();
 			HueBridge hueBridge = new HueBridge(event.getInfo());
-			hueBridges.put(hueBridge.getBridgeId(), hueBridge);
+			context.runOnContext(v -> onResolved(serviceName, hueBridge));
 		}
 	}
 }
@@ -23,12 +23,12 @@ import org.apache.logging.log4j.Logger;
 
 import de.eq3.plugin.domain.discover.DiscoverRequest;
 import de.eq3.plugin.domain.plugin.PluginReadinessStatus;
-import de.eq3.plugin.hue.HueHttpClientConfiguration;
 import de.eq3.plugin.hue.HuePluginStarter;
 import de.eq3.plugin.hue.auth.function.HueConfirmLinkButtonFunction;
 import de.eq3.plugin.hue.auth.model.HueBridge;
 import de.eq3.plugin.hue.auth.model.HuePairingRequest;
 import de.eq3.plugin.hue.auth.model.HuePairingStatus;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
 import de.eq3.plugin.hue.discovery.model.EventstreamStartRequest;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
 import de.eq3.plugin.hue.util.TranslationIdentifier;
@@ -43,10 +43,8 @@ import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
 
-public class HuePairingRequestHandler extends AbstractVerticle
-		implements Handler<Message<JsonObject>>, HueHttpClientConfiguration {
+public class HuePairingRequestHandler extends AbstractVerticle implements Handler<Message<JsonObject>> {
 
 	private final Logger logger = LogManager.getLogger(this.getClass());
 
@@ -58,8 +56,7 @@ public class HuePairingRequestHandler extends AbstractVerticle
 	public void start() {
 		vertx.eventBus().consumer(HuePairingRequest.ENDPOINT, this);
 
-		WebClientOptions clientOptions = new WebClientOptions(getHttpClientOptions().setIdleTimeout(5));
-		this.webClient = WebClient.create(this.vertx, clientOptions);
+		this.webClient = HueHttpClientRegistry.getInstance().createWebClient(this.vertx);
 
 		logger.info("SYSTEM: {} Verticle or Worker started", this.getClass().getSimpleName());
 	}
@@ -20,6 +20,7 @@ import java.util.function.Function;
 
 import de.eq3.plugin.hue.auth.model.HueConfirmLinkButtonRequest;
 import de.eq3.plugin.hue.auth.model.HueConfirmLinkButtonResponse;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Future;
@@ -39,8 +40,10 @@ public class HueConfirmLinkButtonFunction implements Function<String, Future<Str
 		return Future.future(promise -> {
 			HueConfirmLinkButtonRequest confirmLinkButtonRequest = new HueConfirmLinkButtonRequest("homematic_ip");
 
-			this.webClient.post(hostname, "/api")
-					.sendJsonObject(JsonObject.mapFrom(confirmLinkButtonRequest), confirmResponse -> {
+			HueHttpClientRegistry.getInstance()
+					.send(this.webClient.post(hostname, "/api"),
+							post -> post.sendJsonObject(JsonObject.mapFrom(confirmLinkButtonRequest)))
+					.onComplete(confirmResponse -> {
 
 						if (confirmResponse.result() != null) {
 							if (confirmResponse.result().statusCode() == HttpResponseStatus.OK.code()) {
@@ -54,8 +54,7 @@ public class HueBridge {
 	@JsonIgnore
 	private final Map<String, de.eq3.plugin.domain.device.Device> pluginDevices = new HashMap<>();
 	private Set<String> includedDevices = new HashSet<>();
-	@JsonIgnore
-	private Map<String, HueScheduledTestTimer> onTimeTaskQueue = new HashMap<>();
+	private Map<String, HueOnTimeOffCommand> onTimeOffCommands = new HashMap<>();
 
 	public HueBridge(ServiceInfo service) {
 		this.bridgeId = service.getPropertyString("bridgeid");
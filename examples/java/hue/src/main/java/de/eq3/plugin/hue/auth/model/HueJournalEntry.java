@@ -0,0 +1,60 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.auth.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import de.eq3.plugin.hue.model.device.Device;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single state mutation recorded in the persistence journal. Only the fields
+ * needed by the operation are set.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HueJournalEntry {
+	public static final String OPERATION_AUTH = "auth";
+	public static final String OPERATION_DELETE_BRIDGE = "deleteBridge";
+	public static final String OPERATION_DEVICE_UPSERT = "deviceUpsert";
+	public static final String OPERATION_DEVICE_REMOVE = "deviceRemove";
+	public static final String OPERATION_INCLUDE = "include";
+	public static final String OPERATION_EXCLUDE = "exclude";
+	public static final String OPERATION_ONTIME_PUT = "onTimePut";
+	public static final String OPERATION_ONTIME_REMOVE = "onTimeRemove";
+
+	private long sequence;
+	private String operation;
+	private String bridgeId;
+	private String applicationKey;
+	private String localAddress;
+	private String deviceId;
+	private Device device;
+	private HueOnTimeOffCommand command;
+
+	public HueJournalEntry(String operation, String deviceId) {
+		this.operation = operation;
+		this.deviceId = deviceId;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.auth.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact representation of a scheduled onTime auto-off. Only the data needed to
+ * switch the device off again is kept, the original control request is not
+ * retained.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class HueOnTimeOffCommand {
+	private String deviceId;
+	private String requestId;
+	/**
+	 * Wall clock time (epoch millis) at which the device has to be switched off.
+	 */
+	private long deadline;
+	/**
+	 * Wall clock time (epoch millis) at which the command was scheduled.
+	 */
+	private long scheduledAt;
+}
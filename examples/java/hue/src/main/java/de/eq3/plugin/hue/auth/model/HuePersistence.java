@@ -25,4 +25,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class HuePersistence {
 	private HueBridge bridgeData;
+	/**
+	 * Sequence of the last journal entry contained in this snapshot.
+	 */
+	private long journalSequence;
 }
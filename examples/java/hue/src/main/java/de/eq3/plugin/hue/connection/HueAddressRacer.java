@@ -0,0 +1,282 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.connection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.HueHttpClientConfiguration;
+import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+
+/**
+ * Selects the address used to connect to a single Hue bridge.
+ * <p>
+ * As long as a preferred address is known it is used right away. Otherwise all
+ * known addresses of the bridge (last successful address, IPv6, IPv4, the
+ * address resolved via mDNS and the .local name) are raced in the style of
+ * RFC 8305: a TCP connection attempt is started for the first address and,
+ * staggered by {@code plugin.hue.race.stagger} millis or as soon as the previous
+ * attempt fails, for the next one. The first address accepting a connection
+ * becomes the preferred address. Addresses whose connection or call failed are
+ * demoted and tried last in the next race.
+ * </p>
+ * <p>
+ * Concurrent requests share a running race. Each request gets its own future,
+ * completed on the context of the caller.
+ * </p>
+ */
+public final class HueAddressRacer {
+	private static final Logger logger = LogManager.getLogger(HueAddressRacer.class);
+	private static final Map<String, HueAddressRacer> racers = new ConcurrentHashMap<>();
+
+	private final String bridgeId;
+	private final int bridgePort;
+	private final long stagger;
+	private final int connectTimeout;
+
+	private String preferredAddress;
+	private final Map<String, Long> demotedAddresses = new LinkedHashMap<>();
+	private Future<String> runningRace;
+	private NetClient netClient;
+
+	private HueAddressRacer(String bridgeId) {
+		this.bridgeId = bridgeId;
+		this.bridgePort = HueHttpClientConfiguration.getBridgePort();
+		this.stagger = Long.parseLong(System.getProperty("plugin.hue.race.stagger", "250"));
+		this.connectTimeout = Integer.parseInt(System.getProperty("plugin.hue.race.connectTimeout", "3000"));
+	}
+
+	/**
+	 * Returns the address racer of the given bridge.
+	 *
+	 * @param bridge the Hue bridge
+	 * @return the shared racer instance
+	 */
+	public static HueAddressRacer forBridge(HueBridge bridge) {
+		String key = bridge.getBridgeId() != null ? bridge.getBridgeId() : bridge.getLocalAddress();
+		return racers.computeIfAbsent(key, HueAddressRacer::new);
+	}
+
+	/**
+	 * Returns the preferred address of the bridge, racing the known addresses if
+	 * none is preferred yet.
+	 *
+	 * @param bridge the Hue bridge
+	 * @param vertx  the Vert.x instance
+	 * @return a Future containing the address to connect to, completed on the
+	 *         context of the caller
+	 */
+	public synchronized Future<String> resolve(HueBridge bridge, Vertx vertx) {
+		if (preferredAddress != null) {
+			return Future.succeededFuture(preferredAddress);
+		}
+		Context context = vertx.getOrCreateContext();
+		if (runningRace == null) {
+			if (netClient == null) {
+				netClient = vertx.createNetClient(new NetClientOptions().setConnectTimeout(connectTimeout));
+			}
+			Race race = new Race(vertx, bridge);
+			runningRace = race.winner.future();
+			runningRace.onComplete(asyncResult -> {
+				synchronized (this) {
+					runningRace = null;
+				}
+			});
+			context.runOnContext(v -> race.start());
+		}
+		// the race completes on the context which started it
+		Promise<String> result = Promise.promise();
+		runningRace.onComplete(asyncResult -> context.runOnContext(v -> result.handle(asyncResult)));
+		return result.future();
+	}
+
+	/**
+	 * Demotes an address after a failed connection or call, so the next request
+	 * races the known addresses again.
+	 *
+	 * @param bridge  the Hue bridge
+	 * @param address the failed address
+	 */
+	public synchronized void demote(HueBridge bridge, String address) {
+		if (address == null) {
+			return;
+		}
+		demotedAddresses.put(address, System.currentTimeMillis());
+		if (address.equals(preferredAddress)) {
+			logger.info("Bridge {}: Demoted preferred address {}", bridgeId, address);
+			preferredAddress = null;
+		}
+		if (address.equals(bridge.getLastSuccessfullAddress())) {
+			bridge.setLastSuccessfullAddress(null);
+		}
+	}
+
+	public synchronized String getPreferredAddress() {
+		return preferredAddress;
+	}
+
+	private synchronized void onWinner(HueBridge bridge, String address) {
+		logger.info("Bridge {}: Preferring address {}", bridgeId, address);
+		preferredAddress = address;
+		demotedAddresses.remove(address);
+		bridge.setLastSuccessfullAddress(address);
+	}
+
+	/**
+	 * Orders the given addresses for a race, demoted addresses go last, the most
+	 * recently demoted one at the end.
+	 */
+	private synchronized List<String> order(Set<String> addresses) {
+		List<String> ordered = new ArrayList<>();
+		List<String> demoted = new ArrayList<>();
+		addresses.forEach(address -> (demotedAddresses.containsKey(address) ? demoted : ordered).add(address));
+		demoted.sort(Comparator.comparing(demotedAddresses::get));
+		ordered.addAll(demoted);
+		return ordered;
+	}
+
+	/**
+	 * A single race over the addresses of the bridge. The race state is accessed
+	 * from the context which started the race only.
+	 */
+	private final class Race {
+		private final Promise<String> winner = Promise.promise();
+		private final Vertx vertx;
+		private final HueBridge bridge;
+		private final Deque<String> queue = new ArrayDeque<>();
+		private final Set<String> attempted = new HashSet<>();
+		private int running;
+		private boolean lookupPending = true;
+		private long staggerTimerId = -1;
+
+		private Race(Vertx vertx, HueBridge bridge) {
+			this.vertx = vertx;
+			this.bridge = bridge;
+		}
+
+		private void start() {
+			Set<String> known = new LinkedHashSet<>();
+			if (bridge.getLastSuccessfullAddress() != null) {
+				known.add(bridge.getLastSuccessfullAddress());
+			}
+			if (bridge.getIpv6() != null) {
+				known.add(bridge.getIpv6().getHostAddress());
+			}
+			if (bridge.getIpv4() != null) {
+				known.add(bridge.getIpv4().getHostAddress());
+			}
+			order(known).forEach(this::add);
+
+			if (bridge.getLocalAddress() == null) {
+				lookupPending = false;
+				failIfExhausted(null);
+				return;
+			}
+			// the address resolved via mDNS joins the race once known, the name goes last
+			HueLookupRequestHandler.getHueBridgeIp(bridge, bridge.getLocalAddress(), vertx).onComplete(lookup -> {
+				if (lookup.succeeded()) {
+					add(lookup.result());
+				}
+				add(bridge.getLocalAddress());
+				lookupPending = false;
+				failIfExhausted(null);
+			});
+		}
+
+		private void add(String address) {
+			if (address == null || attempted.contains(address) || queue.contains(address)) {
+				return;
+			}
+			queue.add(address);
+			if (running == 0 && staggerTimerId == -1) {
+				startNext();
+			}
+		}
+
+		private void startNext() {
+			cancelStagger();
+			String address = queue.poll();
+			if (address == null || winner.future().isComplete()) {
+				return;
+			}
+			attempted.add(address);
+			running++;
+			logger.trace("Bridge {}: Connecting to {}", bridgeId, address);
+			staggerTimerId = vertx.setTimer(stagger, timerId -> {
+				staggerTimerId = -1;
+				startNext();
+			});
+
+			netClient.connect(bridgePort, address).onComplete(connect -> {
+				running--;
+				if (connect.succeeded()) {
+					connect.result().close();
+					if (!winner.future().isComplete()) {
+						cancelStagger();
+						queue.clear();
+						onWinner(bridge, address);
+						winner.complete(address);
+					}
+					return;
+				}
+				logger.debug("Bridge {}: Could not connect to {}, {}", bridgeId, address,
+						connect.cause().getMessage());
+				demote(bridge, address);
+				startNext();
+				failIfExhausted(connect.cause());
+			});
+		}
+
+		private void cancelStagger() {
+			if (staggerTimerId != -1) {
+				vertx.cancelTimer(staggerTimerId);
+				staggerTimerId = -1;
+			}
+		}
+
+		private void failIfExhausted(Throwable cause) {
+			if (running == 0 && queue.isEmpty() && !lookupPending) {
+				if (cause != null) {
+					winner.tryFail(cause);
+				} else {
+					winner.tryFail("Bridge " + bridgeId + " not reachable on any address");
+				}
+			}
+		}
+	}
+}
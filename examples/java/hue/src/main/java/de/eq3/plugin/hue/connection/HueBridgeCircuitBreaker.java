@@ -0,0 +1,245 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+/**
+ * Circuit breaker guarding all HTTP calls to a single Hue bridge.
+ * <p>
+ * After {@code plugin.hue.breaker.failureThreshold} consecutive transport
+ * failures the circuit opens and every call fails immediately for
+ * {@code plugin.hue.breaker.resetTimeout} millis. Afterwards a single probe
+ * call is let through (half-open); its result closes or re-opens the circuit.
+ * </p>
+ * <p>
+ * If {@code plugin.hue.hedge.delay} is set to a positive value, a call that has
+ * not completed after that many millis is additionally started against the next
+ * known address of the bridge (IPv4, IPv6, .local name). The first successful
+ * response wins. Only idempotent requests must be executed with hedging enabled.
+ * </p>
+ * <p>
+ * Only transport failures are counted. Calls must therefore succeed for any HTTP
+ * response and evaluate the status code afterwards.
+ * </p>
+ */
+public final class HueBridgeCircuitBreaker {
+	private static final Logger logger = LogManager.getLogger(HueBridgeCircuitBreaker.class);
+	private static final Map<String, HueBridgeCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String bridgeId;
+	private final int failureThreshold;
+	private final long resetTimeout;
+	private final long hedgeDelay;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long openUntil;
+	private boolean probeInFlight;
+
+	private final AtomicInteger rejectedCalls = new AtomicInteger();
+
+	private HueBridgeCircuitBreaker(String bridgeId) {
+		this.bridgeId = bridgeId;
+		this.failureThreshold = Integer.parseInt(System.getProperty("plugin.hue.breaker.failureThreshold", "3"));
+		this.resetTimeout = Long.parseLong(System.getProperty("plugin.hue.breaker.resetTimeout", "10000"));
+		this.hedgeDelay = Long.parseLong(System.getProperty("plugin.hue.hedge.delay", "0"));
+	}
+
+	/**
+	 * Returns the circuit breaker of the given bridge.
+	 *
+	 * @param bridge the Hue bridge
+	 * @return the shared circuit breaker instance
+	 */
+	public static HueBridgeCircuitBreaker forBridge(HueBridge bridge) {
+		String key = bridge.getBridgeId() != null ? bridge.getBridgeId() : bridge.getLocalAddress();
+		return breakers.computeIfAbsent(key, HueBridgeCircuitBreaker::new);
+	}
+
+	/**
+	 * Executes a call against the bridge. The bridge address is selected by the
+	 * {@link HueAddressRacer} of the bridge first and passed to the call, with
+	 * hedging enabled the call may be executed for several addresses.
+	 *
+	 * @param bridge the bridge to call
+	 * @param vertx  the Vert.x instance
+	 * @param call   the call receiving the bridge address
+	 * @param <T>    the result type
+	 * @return the result of the first successful call
+	 */
+	public <T> Future<T> execute(HueBridge bridge, Vertx vertx, Function<String, Future<T>> call) {
+		return execute(bridge, vertx, resolved -> {
+		}, call);
+	}
+
+	/**
+	 * Executes a call against the bridge like
+	 * {@link #execute(HueBridge, Vertx, Function)} and additionally reports the
+	 * address selection. The resolve handler is called once, before the call is
+	 * executed for the first address, or with the failure if the circuit is open
+	 * or no address could be resolved.
+	 *
+	 * @param bridge         the bridge to call
+	 * @param vertx          the Vert.x instance
+	 * @param resolveHandler the handler receiving the selected address
+	 * @param call           the call receiving the bridge address
+	 * @param <T>            the result type
+	 * @return the result of the first successful call
+	 */
+	public <T> Future<T> execute(HueBridge bridge, Vertx vertx, Handler<AsyncResult<String>> resolveHandler,
+			Function<String, Future<T>> call) {
+		if (!tryAcquire()) {
+			rejectedCalls.incrementAndGet();
+			Future<String> rejected = Future.failedFuture("Bridge " + bridgeId + " unreachable, circuit open");
+			resolveHandler.handle(rejected);
+			return rejected.mapEmpty();
+		}
+		HueAddressRacer racer = HueAddressRacer.forBridge(bridge);
+		return racer.resolve(bridge, vertx)
+				.onComplete(resolveHandler)
+				.compose(address -> hedge(vertx, getCandidates(bridge, address), call)
+						.onFailure(throwable -> racer.demote(bridge, address)))
+				.onSuccess(result -> onSuccess())
+				.onFailure(this::onFailure);
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public int getRejectedCalls() {
+		return rejectedCalls.get();
+	}
+
+	private synchronized boolean tryAcquire() {
+		if (state == State.CLOSED) {
+			return true;
+		}
+		if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+			logger.info("Bridge {}: Circuit half-open, probing bridge", bridgeId);
+			state = State.HALF_OPEN;
+			probeInFlight = false;
+		}
+		if (state == State.HALF_OPEN && !probeInFlight) {
+			probeInFlight = true;
+			return true;
+		}
+		return false;
+	}
+
+	private synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			logger.info("Bridge {}: Circuit closed", bridgeId);
+		}
+		state = State.CLOSED;
+		failures = 0;
+		probeInFlight = false;
+	}
+
+	private synchronized void onFailure(Throwable throwable) {
+		failures++;
+		probeInFlight = false;
+		if (state == State.HALF_OPEN || failures >= failureThreshold) {
+			if (state != State.OPEN) {
+				logger.warn("Bridge {}: Circuit opened after {} failure(s), last cause {}", bridgeId, failures,
+						throwable.getMessage());
+			}
+			state = State.OPEN;
+			openUntil = System.currentTimeMillis() + resetTimeout;
+		}
+	}
+
+	private List<String> getCandidates(HueBridge bridge, String resolvedAddress) {
+		List<String> candidates = new ArrayList<>();
+		candidates.add(resolvedAddress);
+		if (hedgeDelay > 0) {
+			if (bridge.getIpv4() != null) {
+				addCandidate(candidates, bridge.getIpv4().getHostAddress());
+			}
+			if (bridge.getIpv6() != null) {
+				addCandidate(candidates, bridge.getIpv6().getHostAddress());
+			}
+			addCandidate(candidates, bridge.getLocalAddress());
+		}
+		return candidates;
+	}
+
+	private static void addCandidate(List<String> candidates, String address) {
+		if (address != null && !candidates.contains(address)) {
+			candidates.add(address);
+		}
+	}
+
+	private <T> Future<T> hedge(Vertx vertx, List<String> addresses, Function<String, Future<T>> call) {
+		if (addresses.size() == 1) {
+			return call.apply(addresses.get(0));
+		}
+		Promise<T> promise = Promise.promise();
+		AtomicInteger nextIndex = new AtomicInteger();
+		AtomicInteger running = new AtomicInteger();
+		Runnable[] startNext = new Runnable[1];
+
+		startNext[0] = () -> {
+			int index = nextIndex.getAndIncrement();
+			if (index >= addresses.size() || promise.future().isComplete()) {
+				return;
+			}
+			String address = addresses.get(index);
+			logger.trace("Bridge {}: Calling bridge on {}", bridgeId, address);
+			running.incrementAndGet();
+			// start the next address if this one does not answer in time
+			long hedgeTimerId = vertx.setTimer(hedgeDelay, timerId -> startNext[0].run());
+
+			call.apply(address).onComplete(asyncResult -> {
+				vertx.cancelTimer(hedgeTimerId);
+				running.decrementAndGet();
+				if (asyncResult.succeeded()) {
+					promise.tryComplete(asyncResult.result());
+					return;
+				}
+				logger.debug("Bridge {}: Call on {} failed, {}", bridgeId, address, asyncResult.cause().getMessage());
+				startNext[0].run();
+				if (running.get() == 0 && nextIndex.get() >= addresses.size()) {
+					promise.tryFail(asyncResult.cause());
+				}
+			});
+		};
+		startNext[0].run();
+		return promise.future();
+	}
+}
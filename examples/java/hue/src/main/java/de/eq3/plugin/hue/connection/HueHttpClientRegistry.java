@@ -0,0 +1,209 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.connection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.HueHttpClientConfiguration;
+import de.eq3.plugin.hue.metrics.HueMetrics;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+/**
+ * Creates the HTTP clients used for all bridge traffic.
+ * <p>
+ * All clients share a single named connection pool, so every verticle uses the
+ * same multiplexed HTTP/2 connection per bridge address instead of opening its
+ * own TLS connections. Up to {@code plugin.hue.http2.maxStreams} requests are
+ * multiplexed on that connection. Connections are not closed when idle but kept
+ * warm with HTTP/2 pings every {@code plugin.hue.http2.pingInterval} millis, so
+ * control requests do not pay the TLS handshake after idle periods.
+ * </p>
+ * <p>
+ * The number of handshakes, i.e. opened connections, per bridge address and the
+ * number of requests are recorded, the difference is the number of requests
+ * which reused an existing connection. The latency of web client requests sent
+ * with {@link #send(HttpRequest, Function)} is recorded by method and endpoint,
+ * where resource ids in the path are replaced by {@code {id}}.
+ * </p>
+ */
+public final class HueHttpClientRegistry implements HueHttpClientConfiguration {
+	private static final Logger logger = LogManager.getLogger(HueHttpClientRegistry.class);
+	private static final String CLIENT_NAME = "hue-bridge";
+	private static final Pattern RESOURCE_ID = Pattern
+			.compile("/[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}(?=/|$)");
+	private static final HueHttpClientRegistry INSTANCE = new HueHttpClientRegistry();
+
+	private final int maxStreams;
+	private final long pingInterval;
+
+	private final AtomicLong handshakes = new AtomicLong();
+	private final LongAdder requests = new LongAdder();
+	private final Map<String, AtomicLong> handshakesByAddress = new ConcurrentHashMap<>();
+
+	private HueHttpClientRegistry() {
+		this.maxStreams = Integer.parseInt(System.getProperty("plugin.hue.http2.maxStreams", "10"));
+		this.pingInterval = Long.parseLong(System.getProperty("plugin.hue.http2.pingInterval", "20000"));
+	}
+
+	public static HueHttpClientRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates an HTTP client using the shared bridge connection pool. The client
+	 * runs its callbacks on the context of the caller.
+	 *
+	 * @param vertx the Vert.x instance
+	 * @return the HTTP client
+	 */
+	public HttpClient createHttpClient(Vertx vertx) {
+		HttpClient client = vertx.createHttpClient(getSharedClientOptions());
+		client.connectionHandler(connection -> onConnection(vertx, connection));
+		return client;
+	}
+
+	/**
+	 * Creates a web client using the shared bridge connection pool.
+	 *
+	 * @param vertx the Vert.x instance
+	 * @return the web client
+	 */
+	public WebClient createWebClient(Vertx vertx) {
+		return WebClient.wrap(createHttpClient(vertx));
+	}
+
+	/**
+	 * Sends a web client request to the bridge and records it in the request
+	 * metrics.
+	 *
+	 * @param request the request to send
+	 * @param sender  sends the request, e.g. {@code HttpRequest::send}
+	 * @param <T>     the response body type
+	 * @return the response of the bridge
+	 */
+	public <T> Future<HttpResponse<T>> send(HttpRequest<T> request,
+			Function<HttpRequest<T>, Future<HttpResponse<T>>> sender) {
+		requests.increment();
+		long start = System.nanoTime();
+		return sender.apply(request).onComplete(response -> {
+			if (response.succeeded()) {
+				recordLatency(request, start, "hue_bridge_request_seconds", "Latency of bridge requests");
+			} else {
+				recordLatency(request, start, "hue_bridge_request_failures_seconds",
+						"Latency of failed bridge requests");
+			}
+		});
+	}
+
+	public long getHandshakes() {
+		return handshakes.get();
+	}
+
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of requests which were sent on an already established
+	 * connection.
+	 *
+	 * @return the number of reused connections
+	 */
+	public long getConnectionReuses() {
+		return Math.max(0, getRequests() - getHandshakes());
+	}
+
+	/**
+	 * Returns the number of handshakes by bridge address.
+	 *
+	 * @return a snapshot of the handshakes by address
+	 */
+	public Map<String, Long> getHandshakesByAddress() {
+		Map<String, Long> result = new HashMap<>();
+		handshakesByAddress.forEach((address, count) -> result.put(address, count.get()));
+		return result;
+	}
+
+	private HttpClientOptions getSharedClientOptions() {
+		HttpClientOptions options = getHttpClientOptions();
+		options.setShared(true);
+		options.setName(CLIENT_NAME);
+		// a single multiplexed connection per bridge address
+		options.setHttp2MaxPoolSize(1);
+		options.setHttp2MultiplexingLimit(maxStreams);
+		// HTTP/1.1 fallback if the bridge does not negotiate HTTP/2
+		options.setMaxPoolSize(maxStreams);
+		options.setKeepAlive(true);
+		options.setIdleTimeout(0);
+		options.setHttp2KeepAliveTimeout(0);
+		return options;
+	}
+
+	private void onConnection(Vertx vertx, HttpConnection connection) {
+		String address = connection.remoteAddress() != null ? connection.remoteAddress().host() : "unknown";
+		handshakes.incrementAndGet();
+		handshakesByAddress.computeIfAbsent(address, key -> new AtomicLong()).incrementAndGet();
+		logger.debug("Opened connection to bridge {}, {} handshakes in total", address, handshakes.get());
+
+		if (pingInterval > 0) {
+			vertx.setPeriodic(pingInterval, timerId -> ping(vertx, connection, address, timerId));
+		}
+	}
+
+	private void ping(Vertx vertx, HttpConnection connection, String address, long timerId) {
+		try {
+			connection.ping(Buffer.buffer(new byte[8])).onFailure(throwable -> {
+				logger.debug("Stopped keeping connection to bridge {} warm, {}", address, throwable.getMessage());
+				vertx.cancelTimer(timerId);
+			});
+		} catch (UnsupportedOperationException e) {
+			// HTTP/1.1 connections do not support pings
+			vertx.cancelTimer(timerId);
+		}
+	}
+
+	private static void recordLatency(HttpRequest<?> request, long start, String name, String help) {
+		HueMetrics.getInstance()
+				.timer(name, help, "method", request.method().name(), "endpoint", endpoint(request.uri()))
+				.recordSince(start);
+	}
+
+	static String endpoint(String uri) {
+		int query = uri.indexOf('?');
+		String path = query < 0 ? uri : uri.substring(0, query);
+		return RESOURCE_ID.matcher(path).replaceAll("/{id}");
+	}
+}
@@ -17,9 +17,12 @@
 package de.eq3.plugin.hue.control;
 
 import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.UUID;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -27,17 +30,28 @@ import org.apache.logging.log4j.Logger;
 import de.eq3.plugin.domain.control.ControlRequest;
 import de.eq3.plugin.domain.control.ControlResponse;
 import de.eq3.plugin.domain.error.Error;
+import de.eq3.plugin.domain.features.IFeature;
 import de.eq3.plugin.domain.features.OnTime;
 import de.eq3.plugin.domain.features.SwitchState;
-import de.eq3.plugin.hue.HueHttpClientConfiguration;
+import de.eq3.plugin.domain.status.StatusEvent;
 import de.eq3.plugin.hue.HuePluginStarter;
 import de.eq3.plugin.hue.auth.model.HueBridge;
-import de.eq3.plugin.hue.auth.model.HueScheduledTestTimer;
+import de.eq3.plugin.hue.auth.model.HueOnTimeOffCommand;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
 import de.eq3.plugin.hue.control.function.HueControlLightServiceFunction;
+import de.eq3.plugin.hue.control.messages.HueLightStateRequest;
+import de.eq3.plugin.hue.control.messages.HueOnTimeCancelRequest;
+import de.eq3.plugin.hue.control.ontime.HueOnTimeScheduler;
+import de.eq3.plugin.hue.control.optimistic.HueOptimisticStateTracker;
+import de.eq3.plugin.hue.control.ramp.HueRampCoalescer;
+import de.eq3.plugin.hue.discovery.index.HueRoutingIndex;
 import de.eq3.plugin.hue.discovery.mapping.FeatureConverter;
-import de.eq3.plugin.hue.model.device.Device;
-import de.eq3.plugin.hue.model.device.Service;
+import de.eq3.plugin.hue.metrics.HueMetrics;
+import de.eq3.plugin.hue.model.light.Dynamics;
 import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
 import de.eq3.plugin.hue.ws.HuePluginWebsocketClient;
 import de.eq3.plugin.serialization.Feature;
@@ -50,28 +64,48 @@ import io.vertx.core.Handler;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
 
-public class HueControlRequestHandler extends AbstractVerticle
-		implements Handler<Message<JsonObject>>, HueHttpClientConfiguration {
+public class HueControlRequestHandler extends AbstractVerticle implements Handler<Message<JsonObject>> {
 
 	public static final String CONTROL_REQUEST_FAILED = "CONTROL_REQUEST_FAILED";
+	private static final long HUE_ONTIME_EVENT_IGNORE_TIME = 2000;
 
 	private final Logger logger = LogManager.getLogger(this.getClass());
 
 	private WebClient webClient;
 
 	private Queue<PluginMessage<ControlRequest>> controlRequests = new ArrayDeque<PluginMessage<ControlRequest>>();
+	// enqueue times of the control requests, polled together with the requests
+	private final Queue<Long> enqueuedAt = new ArrayDeque<>();
+
+	private final HueMetrics.Gauge queueDepth = HueMetrics.getInstance()
+			.gauge("hue_control_queue_depth", "Control requests waiting for execution");
+	// trace contexts of the traced requests until they are executed or superseded
+	private final Map<String, HueTraceContext> traceContexts = new HashMap<>();
+
+	private final HueMetrics.Timer queueWait = HueMetrics.getInstance()
+			.timer("hue_control_queue_wait_seconds", "Time control requests waited in the queue");
 
 	private long delay = 150;
 
+	private HueOnTimeScheduler onTimeScheduler;
+
+	private HueRampCoalescer rampCoalescer;
+
+	private long optimisticTimeout = 3000;
+
 	@Override
 	public void start() {
 		vertx.eventBus().consumer(ControlRequest.class.getName(), this);
+		vertx.eventBus().consumer(HueOnTimeCancelRequest.ENDPOINT, this::handleOnTimeCancelRequest);
 		delay = Integer.parseInt(System.getProperty("control.request.delay", "150"));
+		optimisticTimeout = Long.parseLong(System.getProperty("control.optimistic.timeout", "3000"));
+
+		this.onTimeScheduler = new HueOnTimeScheduler(vertx, this::enqueueOnTimeOffRequest);
+		HuePersistenceHelper.getInstance().getHueBridge().ifPresent(onTimeScheduler::restore);
+		this.rampCoalescer = new HueRampCoalescer(vertx, this::enqueueControlRequest);
 
-		WebClientOptions clientOptions = new WebClientOptions(getHttpClientOptions().setIdleTimeout(5));
-		this.webClient = WebClient.create(this.vertx, clientOptions);
+		this.webClient = HueHttpClientRegistry.getInstance().createWebClient(this.vertx);
 
 		logger.info("SYSTEM: {} Verticle or Worker started", this.getClass().getSimpleName());
 	}
@@ -82,18 +116,55 @@ public class HueControlRequestHandler extends AbstractVerticle
 			return;
 		}
 		PluginMessage<ControlRequest> request = message.body().mapTo(PluginMessage.class);
+		HueTraceContext traceContext = HueTraceContext.fromHeaders(message.headers());
+		if (traceContext != null) {
+			traceContexts.put(request.getId(), traceContext);
+		}
+
+		submitControlRequest(request);
+	}
 
+	private void submitControlRequest(PluginMessage<ControlRequest> request) {
+		if (!rampCoalescer.offer(request)) {
+			enqueueControlRequest(request);
+		}
+	}
+
+	private void enqueueControlRequest(PluginMessage<ControlRequest> request) {
 		boolean isEmpty = controlRequests.isEmpty();
 		controlRequests.add(request);
+		enqueuedAt.add(System.nanoTime());
+		queueDepth.set(controlRequests.size());
 		if (isEmpty) {
 			executeNextControlRequest();
 		}
 	}
 
+	private void enqueueOnTimeOffRequest(HueOnTimeOffCommand command) {
+		logger.debug("Executing onTime off request for device {}", command.getDeviceId());
+		ControlRequest controlRequest = new ControlRequest(command.getDeviceId(), Set.of(new SwitchState(false)));
+		submitControlRequest(new PluginMessage<>(command.getRequestId() + "_OnTimeOff", HuePluginStarter.PLUGIN_ID,
+				PluginMessageType.CONTROL_REQUEST, controlRequest));
+	}
+
+	private void handleOnTimeCancelRequest(Message<JsonObject> message) {
+		if (message == null || message.body() == null) {
+			return;
+		}
+		HueOnTimeCancelRequest request = message.body().mapTo(HueOnTimeCancelRequest.class);
+		// cleanup onTime timers if light gets controlled from another source
+		if (onTimeScheduler.cancelIfOlderThan(request.getDeviceId(), HUE_ONTIME_EVENT_IGNORE_TIME)) {
+			logger.info("Replacing old onTime timer for device as it got changed otherwise {}",
+					request.getDeviceId());
+		}
+	}
+
 	private void checkNextControlRequest() {
 		logger.info("Executing next request in {} if present", delay);
 		vertx.setTimer(delay, event -> {
 			controlRequests.poll();
+			enqueuedAt.poll();
+			queueDepth.set(controlRequests.size());
 			if (!controlRequests.isEmpty()) {
 				logger.info("Still control requests in group, executing next request");
 				executeNextControlRequest();
@@ -106,11 +177,22 @@ public class HueControlRequestHandler extends AbstractVerticle
 		if (request == null) {
 			return;
 		}
+		long enqueued = enqueuedAt.peek();
+		queueWait.recordSince(enqueued);
+		// the queue span includes the pacing delay between the requests
+		HueTraceContext traceContext = traceContexts.remove(request.getId());
+		Integer transitionDuration = rampCoalescer.takeTransitionDuration(request.getId());
+		HueTracer.getInstance().startSpan("control.queue", traceContext, enqueued).end();
+		HueSpan span = HueTracer.getInstance()
+				.startSpan("control.execute", traceContext)
+				.setAttribute("device.id", request.getBody().getDeviceId());
+
 		Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 
 		if (optionalHueBridge.isEmpty()) {
+			span.end("No configured Hue Bridge available");
 			sendControlRequestResponse(request, false,
-					new Error(CONTROL_REQUEST_FAILED, "No configured Hue Bridge available"));
+					new Error(CONTROL_REQUEST_FAILED, "No configured Hue Bridge available"), span.getContext());
 			checkNextControlRequest();
 			return;
 		}
@@ -119,24 +201,24 @@ public class HueControlRequestHandler extends AbstractVerticle
 		this.logger.debug("Bridge {}: Got request to control Philips Hue light service", hueBridge.getBridgeId());
 		this.logger.trace("Bridge {}: Incoming control request data: {}", hueBridge.getBridgeId(), request);
 
-		Device device = hueBridge.getDevices().get(request.getBody().getDeviceId());
+		HueRoutingIndex routingIndex = HueRoutingIndex.getInstance();
 
-		if (device == null) {
-			sendControlRequestResponse(request, false, new Error(CONTROL_REQUEST_FAILED, "Device not found"));
+		if (!routingIndex.containsDevice(request.getBody().getDeviceId())) {
+			span.end("Device not found");
+			sendControlRequestResponse(request, false, new Error(CONTROL_REQUEST_FAILED, "Device not found"),
+					span.getContext());
 			checkNextControlRequest();
 			return;
 		}
-		Optional<Service> lightService = device.getServices()
-				.stream()
-				.filter(service -> "light".equalsIgnoreCase(service.getRtype()))
-				.findFirst();
+		String serviceId = routingIndex.getLightServiceId(request.getBody().getDeviceId());
 
-		if (lightService.isEmpty()) {
-			sendControlRequestResponse(request, false, new Error(CONTROL_REQUEST_FAILED, "Light service not found"));
+		if (serviceId == null) {
+			span.end("Light service not found");
+			sendControlRequestResponse(request, false, new Error(CONTROL_REQUEST_FAILED, "Light service not found"),
+					span.getContext());
 			checkNextControlRequest();
 			return;
 		}
-		String serviceId = lightService.get().getRid();
 
 		Optional<OnTime> onTime = request.getBody()
 				.getFeatures()
@@ -148,63 +230,116 @@ public class HueControlRequestHandler extends AbstractVerticle
 				.filter(ontime -> ontime.getOnTime().longValue() > 0)
 				.findFirst();
 		// cleanup old onTime requests currently scheduled
-		HueScheduledTestTimer oldTimerId = hueBridge.getOnTimeTaskQueue().get(request.getBody().getDeviceId());
-		if (oldTimerId != null) {
+		if (onTimeScheduler.cancel(request.getBody().getDeviceId())) {
 			logger.info("Replacing old onTime timer as it got another request{}", request.getBody().getDeviceId());
-			hueBridge.getOnTimeTaskQueue().remove(request.getBody().getDeviceId());
-			vertx.cancelTimer(oldTimerId.getTimerId());
 		}
 
 		// start new onTime timer
 		if (onTime.isPresent()) {
-			@SuppressWarnings("unchecked")
-			PluginMessage<ControlRequest> onTimeOffRequest = JsonObject.mapFrom(request).mapTo(PluginMessage.class);
-
-			onTimeOffRequest.getBody().setFeatures(Set.of(new SwitchState(false)));
-			onTimeOffRequest.setId(onTimeOffRequest.getId() + "_OnTimeOff");
-			long newTimerId = vertx.setTimer(onTime.get().getOnTime().longValue() * 1000, timer -> {
-				logger.debug("Executing onTime off request");
-				hueBridge.getOnTimeTaskQueue().remove(request.getBody().getDeviceId());
-				boolean isEmpty = controlRequests.isEmpty();
-				controlRequests.add(onTimeOffRequest);
-				if (isEmpty) {
-					executeNextControlRequest();
-				}
-			});
 			logger.info("Queueing task for light {}", request.getBody().getDeviceId());
-			hueBridge.getOnTimeTaskQueue()
-					.put(request.getBody().getDeviceId(),
-							new HueScheduledTestTimer(newTimerId, System.currentTimeMillis()));
+			onTimeScheduler.schedule(request.getBody().getDeviceId(), request.getId(), onTime.get().getOnTime());
+		}
+		Light light = FeatureConverter.getInstance().doForward(serviceId, request.getBody().getFeatures());
+		if (transitionDuration != null) {
+			Dynamics dynamics = new Dynamics();
+			dynamics.setDuration(transitionDuration);
+			light.setDynamics(dynamics);
 		}
-		Light light = FeatureConverter.getInstance().doForward(request.getBody().getFeatures());
 		logger.info("ligth {} request {}", light, request);
+
+		if (HueOptimisticStateTracker.isEnabled()) {
+			echoOptimisticState(hueBridge, request);
+		}
 		Future.succeededFuture(hueBridge)
-				.compose(new HueControlLightServiceFunction(this.webClient, serviceId, light, vertx))
+				.compose(new HueControlLightServiceFunction(this.webClient, serviceId, light, vertx,
+						span.getContext()))
 				.onComplete(asyncResult -> {
 
 					if (asyncResult.succeeded()) {
 						logger.trace("Bridge {} - Successfully called Philips Hue light service",
 								hueBridge.getBridgeId());
 
-						sendControlRequestResponse(request, true, null);
+						span.end();
+						HueTracer.getInstance().awaitEcho(serviceId, span.getContext());
+						sendControlRequestResponse(request, true, null, span.getContext());
+						if (HueOptimisticStateTracker.isEnabled()) {
+							scheduleOptimisticStateExpiry(request, serviceId);
+						}
 					} else {
 						Error error = new Error(CONTROL_REQUEST_FAILED, asyncResult.cause().toString());
 						logger.info(
 								"Bridge {} - Error calling Philips Hue light service, light {}, request {} cause {}",
 								hueBridge.getBridgeId(), light, request, asyncResult.cause());
 
-						sendControlRequestResponse(request, false, error);
+						span.end(asyncResult.cause().toString());
+						sendControlRequestResponse(request, false, error, span.getContext());
+						if (HueOptimisticStateTracker.isEnabled()) {
+							rollbackOptimisticState(hueBridge, request);
+						}
 					}
 				});
 		checkNextControlRequest();
 	}
 
-	private void sendControlRequestResponse(PluginMessage<ControlRequest> request, boolean success, Error error) {
+	private void echoOptimisticState(HueBridge hueBridge, PluginMessage<ControlRequest> request) {
+		String deviceId = request.getBody().getDeviceId();
+		Set<IFeature> expected = FeatureConverter.getInstance().getExpectedFeatures(request.getBody().getFeatures());
+		if (expected.isEmpty()) {
+			return;
+		}
+		HueOptimisticStateTracker.getInstance().apply(hueBridge, deviceId, request.getId(), expected);
+		logger.debug("Device {}: Sending optimistic light status {}", deviceId, expected);
+		sendStatusEvent(deviceId, expected);
+	}
+
+	private void rollbackOptimisticState(HueBridge hueBridge, PluginMessage<ControlRequest> request) {
+		String deviceId = request.getBody().getDeviceId();
+		Set<IFeature> restored = HueOptimisticStateTracker.getInstance()
+				.rollback(hueBridge, deviceId, request.getId());
+		if (!restored.isEmpty()) {
+			logger.debug("Device {}: Sending restored light status {}", deviceId, restored);
+			sendStatusEvent(deviceId, restored);
+		}
+	}
+
+	private void scheduleOptimisticStateExpiry(PluginMessage<ControlRequest> request, String serviceId) {
+		String deviceId = request.getBody().getDeviceId();
+		vertx.setTimer(optimisticTimeout, timerId -> {
+			// the bridge did not confirm all values in time, request the actual state instead
+			if (HueOptimisticStateTracker.getInstance().expire(deviceId, request.getId())) {
+				logger.debug("Device {}: Optimistic state not confirmed, requesting light state", deviceId);
+				HueLightStateRequest lightStateRequest = new HueLightStateRequest(serviceId);
+				vertx.eventBus().send(HueLightStateRequest.ENDPOINT, JsonObject.mapFrom(lightStateRequest));
+			}
+		});
+	}
+
+	private void sendStatusEvent(String deviceId, Set<IFeature> features) {
+		StatusEvent statusEvent = new StatusEvent(deviceId, features);
+		PluginMessage<StatusEvent> message = new PluginMessage<>(UUID.randomUUID().toString(),
+				HuePluginStarter.PLUGIN_ID, PluginMessageType.STATUS_EVENT, statusEvent);
+
+		vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+	}
+
+	private void sendControlRequestResponse(PluginMessage<ControlRequest> request, boolean success, Error error,
+			HueTraceContext traceContext) {
 		ControlResponse controlResponse = new ControlResponse(request.getBody().getDeviceId(), success, error);
 
 		PluginMessage<ControlResponse> response = new PluginMessage<>(request.getId(), HuePluginStarter.PLUGIN_ID,
 				PluginMessageType.CONTROL_RESPONSE, controlResponse);
 
-		vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(response).encode());
+		vertx.eventBus()
+				.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(response).encode(),
+						HueTraceContext.deliveryOptions(traceContext));
+
+		// answer the ramp steps replaced by this request with its result
+		rampCoalescer.takeSupersededRequests(request.getId()).forEach(supersededId -> {
+			traceContexts.remove(supersededId);
+			PluginMessage<ControlResponse> supersededResponse = new PluginMessage<>(supersededId,
+					HuePluginStarter.PLUGIN_ID, PluginMessageType.CONTROL_RESPONSE, controlResponse);
+			vertx.eventBus()
+					.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(supersededResponse).encode());
+		});
 	}
 }
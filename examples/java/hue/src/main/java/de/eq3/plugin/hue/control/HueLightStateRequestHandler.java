@@ -25,11 +25,12 @@ import org.apache.logging.log4j.Logger;
 
 import de.eq3.plugin.domain.features.IFeature;
 import de.eq3.plugin.domain.status.StatusEvent;
-import de.eq3.plugin.hue.HueHttpClientConfiguration;
 import de.eq3.plugin.hue.HuePluginStarter;
-import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
 import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueBridgeCircuitBreaker;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
 import de.eq3.plugin.hue.control.messages.HueLightStateRequest;
+import de.eq3.plugin.hue.discovery.index.HueRoutingIndex;
 import de.eq3.plugin.hue.discovery.mapping.FeatureConverter;
 import de.eq3.plugin.hue.model.light.Light;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
@@ -42,18 +43,17 @@ import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
 
-public class HueLightStateRequestHandler extends AbstractVerticle implements HueHttpClientConfiguration {
+public class HueLightStateRequestHandler extends AbstractVerticle {
 	private final Logger logger = LogManager.getLogger(this.getClass());
 	private static final String ENDPOINT = "/clip/v2/resource/light/";
 	private WebClient webClient;
 
 	@Override
 	public void start() {
-		WebClientOptions clientOptions = new WebClientOptions(getHttpClientOptions().setIdleTimeout(5));
-		this.webClient = WebClient.create(this.vertx, clientOptions);
+		this.webClient = HueHttpClientRegistry.getInstance().createWebClient(this.vertx);
 		vertx.eventBus().consumer(HueLightStateRequest.ENDPOINT, this::handleLightStateRequest);
 	}
 
@@ -68,35 +68,34 @@ public class HueLightStateRequestHandler extends AbstractVerticle implements Hue
 			return;
 		}
 		HueBridge hueBridge = optionalHueBridge.get();
-		String host = hueBridge.getLocalAddress();
 		String route = ENDPOINT + request.getLightId();
-		HueLookupRequestHandler.getHueBridgeIp(hueBridge, host, vertx).onSuccess(ip -> {
-			this.webClient.get(host, route)
-					.putHeader("hue-application-key", hueBridge.getApplicationKey())
-					.send(result -> {
-						if (result.succeeded()) {
-							try {
-								JsonArray data = result.result().bodyAsJsonObject().getJsonArray("data");
-								data.forEach(resource -> {
-									if (resource instanceof JsonObject) {
-										Light light = ((JsonObject) resource).mapTo(Light.class);
-										sendLightStatusEvent(light);
-									}
-								});
-							} catch (DecodeException e) {
-								logger.error("Failed to decode message {} {}", result.result().bodyAsString(),
-										e.getMessage());
+		HueBridgeCircuitBreaker.forBridge(hueBridge)
+				.execute(hueBridge, vertx, url -> HueHttpClientRegistry.getInstance()
+						.send(this.webClient.get(url, route).putHeader("hue-application-key",
+								hueBridge.getApplicationKey()), HttpRequest::send))
+				.onSuccess(response -> {
+					try {
+						JsonArray data = response.bodyAsJsonObject().getJsonArray("data");
+						data.forEach(resource -> {
+							if (resource instanceof JsonObject) {
+								Light light = ((JsonObject) resource).mapTo(Light.class);
+								sendLightStatusEvent(light);
 							}
-						}
-					});
-		});
-
+						});
+					} catch (DecodeException e) {
+						logger.error("Failed to decode message {} {}", response.bodyAsString(), e.getMessage());
+					}
+				})
+				.onFailure(throwable -> logger.debug("Bridge {}: Could not request light state {}",
+						hueBridge.getBridgeId(), throwable.getMessage()));
 	}
 
 	private void sendLightStatusEvent(Light light) {
 		Set<IFeature> features = FeatureConverter.getInstance().doBackward(light);
 		logger.debug("Sending current light status: {}", features);
-		StatusEvent statusEvent = new StatusEvent(light.getOwner().getRid(), features);
+		String deviceId = HueRoutingIndex.getInstance()
+				.getDeviceId(light.getId(), light.getOwner() != null ? light.getOwner().getRid() : null);
+		StatusEvent statusEvent = new StatusEvent(deviceId, features);
 		PluginMessage<StatusEvent> message = new PluginMessage<>(UUID.randomUUID().toString(),
 				HuePluginStarter.PLUGIN_ID, PluginMessageType.STATUS_EVENT, statusEvent);
 
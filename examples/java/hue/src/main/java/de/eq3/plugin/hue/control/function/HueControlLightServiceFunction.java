@@ -21,14 +21,20 @@ import java.util.function.Function;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
 import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueBridgeCircuitBreaker;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
 import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.WebClient;
 
 public class HueControlLightServiceFunction implements Function<HueBridge, Future<Void>> {
@@ -39,44 +45,61 @@ public class HueControlLightServiceFunction implements Function<HueBridge, Futur
 	private final String lightId;
 	private final Light light;
 	private final Vertx vertx;
+	private final HueTraceContext traceContext;
 
 	public HueControlLightServiceFunction(WebClient webClient, String lightId, Light light, Vertx vertx) {
+		this(webClient, lightId, light, vertx, null);
+	}
+
+	/**
+	 * Creates the function for a traced control request. The address resolution,
+	 * including the mDNS lookup of the bridge, and the bridge call are recorded as
+	 * child spans of the given context.
+	 *
+	 * @param webClient    the web client
+	 * @param lightId      the id of the light service
+	 * @param light        the light state to set
+	 * @param vertx        the Vert.x instance
+	 * @param traceContext the context of the control request or null
+	 */
+	public HueControlLightServiceFunction(WebClient webClient, String lightId, Light light, Vertx vertx,
+			HueTraceContext traceContext) {
 		this.webClient = webClient;
 		this.lightId = lightId;
 		this.light = light;
 		this.vertx = vertx;
+		this.traceContext = traceContext;
 	}
 
 	@Override
 	public Future<Void> apply(HueBridge bridge) {
-		return Future.future(promise -> {
-
-			String host = bridge.getLocalAddress();
-			Future<String> address;
-			String endpoint = "/clip/v2/resource/light/" + this.lightId;
-			JsonObject body = JsonObject.mapFrom(this.light);
-			logger.trace(body.toString());
-			// Just ip or other DNS name
-			address = HueLookupRequestHandler.getHueBridgeIp(bridge, host, vertx);
-
-			address.onSuccess(url -> {
-				this.webClient.put(url, endpoint)
-						.putHeader("hue-application-key", bridge.getApplicationKey())
-						.sendJsonObject(body, controlResponse -> {
-							if (controlResponse.succeeded()) {
-								if (controlResponse.result().statusCode() == HttpResponseStatus.OK.code()) {
-									promise.complete();
-								} else {
-									promise.fail("Unexpected response: Status=" + controlResponse.result().statusCode()
-											+ " - Body=" + controlResponse.result().bodyAsString());
-								}
-							} else {
-								bridge.setLastSuccessfullAddress(null);
-								promise.fail(controlResponse.cause());
-							}
-						});
-			});
+		String endpoint = "/clip/v2/resource/light/" + this.lightId;
+		JsonObject body = JsonObject.mapFrom(this.light);
+		logger.trace(body.toString());
 
+		HueTracer tracer = HueTracer.getInstance();
+		HueSpan resolveSpan = tracer.startSpan("bridge.resolve", traceContext);
+		return HueBridgeCircuitBreaker.forBridge(bridge).execute(bridge, vertx, resolved -> {
+			if (resolved.succeeded()) {
+				resolveSpan.setAttribute("bridge.address", resolved.result()).end();
+			} else {
+				resolveSpan.end(resolved.cause().toString());
+			}
+		}, url -> {
+			HueSpan requestSpan = tracer.startSpan("bridge.PUT", traceContext)
+					.setAttribute("http.url", url + endpoint);
+			HttpRequest<Buffer> request = this.webClient.put(url, endpoint)
+					.putHeader("hue-application-key", bridge.getApplicationKey());
+			return HueHttpClientRegistry.getInstance()
+					.send(request, put -> put.sendJsonObject(body))
+					.onSuccess(response -> requestSpan.setAttribute("http.status", response.statusCode()).end())
+					.onFailure(throwable -> requestSpan.end(throwable.toString()));
+		}).compose(controlResponse -> {
+			if (controlResponse.statusCode() == HttpResponseStatus.OK.code()) {
+				return Future.succeededFuture();
+			}
+			return Future.failedFuture("Unexpected response: Status=" + controlResponse.statusCode() + " - Body="
+					+ controlResponse.bodyAsString());
 		});
 	}
 }
@@ -14,12 +14,17 @@
  * limitations under the License.
  */
 
-package de.eq3.plugin.hue.auth.model;
+package de.eq3.plugin.hue.control.messages;
 
-import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
 
-@Data
-public class HueScheduledTestTimer {
-    private final long timerId;
-    private final long startTime;
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class HueOnTimeCancelRequest {
+    public static final String ENDPOINT = "/internal/ontime/cancel/request";
+
+    private String deviceId;
 }
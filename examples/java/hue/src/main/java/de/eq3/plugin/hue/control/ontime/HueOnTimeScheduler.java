@@ -0,0 +1,208 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.control.ontime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.auth.model.HueOnTimeOffCommand;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+import de.eq3.plugin.hue.util.TimerWheel;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Schedules onTime auto-off commands on a single {@link TimerWheel} driven by one
+ * periodic Vert.x timer.
+ * <p>
+ * Ticks are derived from the monotonic clock, so wall clock adjustments do not
+ * shift running deadlines. The wall clock deadline stored with each command is
+ * computed from the monotonic base and persisted with the bridge, which allows
+ * pending commands to be restored after a restart. Commands that expired while
+ * the plugin was not running are executed right after the restore.
+ * </p>
+ * <p>
+ * The scheduler keeps its own copy of the commands and hands a copy to the
+ * persistence at most once per tick, so commands replaced or cancelled within
+ * a tick are not journaled at all.
+ * </p>
+ * <p>
+ * Must only be used from the context of the owning verticle. Only
+ * {@link #isScheduled(String)} may be called from other threads.
+ * </p>
+ */
+public class HueOnTimeScheduler {
+	private static final Logger logger = LogManager.getLogger(HueOnTimeScheduler.class);
+	private static final Set<String> scheduledDevices = ConcurrentHashMap.newKeySet();
+
+	private final Vertx vertx;
+	private final Consumer<HueOnTimeOffCommand> offHandler;
+	private final long tickMillis;
+	private final long baseNanos;
+	private final long baseEpochMillis;
+	private final TimerWheel<HueOnTimeOffCommand> wheel;
+	private final Map<String, HueOnTimeOffCommand> commands = new HashMap<>();
+
+	private long periodicTimerId = -1;
+	private boolean dirty;
+
+	public HueOnTimeScheduler(Vertx vertx, Consumer<HueOnTimeOffCommand> offHandler) {
+		this.vertx = vertx;
+		this.offHandler = offHandler;
+		this.tickMillis = Math.max(10, Long.parseLong(System.getProperty("control.ontime.tick", "100")));
+		this.baseNanos = System.nanoTime();
+		this.baseEpochMillis = System.currentTimeMillis();
+		this.wheel = new TimerWheel<>(0);
+		scheduledDevices.clear();
+	}
+
+	/**
+	 * Restores the persisted commands of the given bridge.
+	 *
+	 * @param bridge the bridge holding the persisted commands
+	 */
+	public void restore(HueBridge bridge) {
+		Map<String, HueOnTimeOffCommand> persisted = bridge.getOnTimeOffCommands();
+		if (persisted == null || persisted.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		persisted.values().forEach(command -> {
+			long remaining = Math.max(0, command.getDeadline() - now);
+			wheel.schedule(command.getDeviceId(), currentTick() + toTicks(remaining), command);
+			commands.put(command.getDeviceId(), command);
+			scheduledDevices.add(command.getDeviceId());
+		});
+		logger.info("Bridge {}: Restored {} onTime commands", bridge.getBridgeId(), persisted.size());
+		ensureTicking();
+	}
+
+	/**
+	 * Schedules an auto-off for the given device, replacing any previous one.
+	 *
+	 * @param deviceId  the device to switch off
+	 * @param requestId the ID of the control request that carried the onTime
+	 * @param onTime    the onTime in seconds
+	 */
+	public void schedule(String deviceId, String requestId, double onTime) {
+		long deadlineTick = currentTick() + toTicks((long) (onTime * 1000));
+		HueOnTimeOffCommand command = new HueOnTimeOffCommand(deviceId, requestId,
+				baseEpochMillis + deadlineTick * tickMillis, nowMillis());
+
+		wheel.schedule(deviceId, deadlineTick, command);
+		commands.put(deviceId, command);
+		scheduledDevices.add(deviceId);
+		dirty = true;
+		ensureTicking();
+	}
+
+	/**
+	 * Cancels the auto-off of the given device.
+	 *
+	 * @param deviceId the device ID
+	 * @return true if a command has been cancelled
+	 */
+	public boolean cancel(String deviceId) {
+		if (wheel.cancel(deviceId) == null) {
+			return false;
+		}
+		commands.remove(deviceId);
+		scheduledDevices.remove(deviceId);
+		dirty = true;
+		return true;
+	}
+
+	/**
+	 * Cancels the auto-off of the given device if it has been scheduled at least
+	 * the given time ago. Used to ignore the state echo of the request that started
+	 * the onTime.
+	 *
+	 * @param deviceId the device ID
+	 * @param minAge   the minimal age in millis
+	 * @return true if a command has been cancelled
+	 */
+	public boolean cancelIfOlderThan(String deviceId, long minAge) {
+		HueOnTimeOffCommand command = wheel.get(deviceId);
+		if (command == null || nowMillis() - command.getScheduledAt() <= minAge) {
+			return false;
+		}
+		return cancel(deviceId);
+	}
+
+	public int size() {
+		return wheel.size();
+	}
+
+	/**
+	 * Returns whether an auto-off is scheduled for the given device. May be called
+	 * from any thread.
+	 *
+	 * @param deviceId the device ID
+	 * @return true if an auto-off is scheduled
+	 */
+	public static boolean isScheduled(String deviceId) {
+		return scheduledDevices.contains(deviceId);
+	}
+
+	private void tick() {
+		Map<String, HueOnTimeOffCommand> fired = new HashMap<>();
+		wheel.advance(currentTick(), fired::put);
+
+		if (!fired.isEmpty()) {
+			fired.keySet().forEach(deviceId -> {
+				commands.remove(deviceId);
+				scheduledDevices.remove(deviceId);
+			});
+			dirty = true;
+		}
+		if (dirty) {
+			dirty = false;
+			HuePersistenceHelper.getInstance().saveOnTimeOffCommands(new HashMap<>(commands));
+		}
+		fired.values().forEach(offHandler);
+		if (wheel.isEmpty() && periodicTimerId != -1) {
+			vertx.cancelTimer(periodicTimerId);
+			periodicTimerId = -1;
+		}
+	}
+
+	private void ensureTicking() {
+		if (periodicTimerId == -1 && (dirty || !wheel.isEmpty())) {
+			periodicTimerId = vertx.setPeriodic(tickMillis, id -> tick());
+		}
+	}
+
+	private long nowMillis() {
+		return baseEpochMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baseNanos);
+	}
+
+	private long currentTick() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baseNanos) / tickMillis;
+	}
+
+	private long toTicks(long millis) {
+		return (millis + tickMillis - 1) / tickMillis;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.control.optimistic;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.domain.device.Device;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.serialization.Feature;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Tracks features which have been reported to the HCU before the bridge
+ * confirmed them.
+ * <p>
+ * With {@code control.optimistic.enabled} set, the requested features of a
+ * control request are echoed as status event right away and written to the
+ * plugin device cache as provisional values. The confirming event of the bridge
+ * reconciles them, a rejected command restores the values they replaced.
+ * </p>
+ */
+public class HueOptimisticStateTracker {
+	private static HueOptimisticStateTracker instance;
+	private final Logger logger = LogManager.getLogger(this.getClass());
+
+	private final Map<String, Map<Feature, ProvisionalFeature>> provisionalFeatures = new ConcurrentHashMap<>();
+
+	private HueOptimisticStateTracker() {
+	}
+
+	public static HueOptimisticStateTracker getInstance() {
+		if (instance == null) {
+			instance = setInstance();
+		}
+		return instance;
+	}
+
+	private static synchronized HueOptimisticStateTracker setInstance() {
+		if (instance == null) {
+			instance = new HueOptimisticStateTracker();
+		}
+		return instance;
+	}
+
+	public static boolean isEnabled() {
+		return Boolean.parseBoolean(System.getProperty("control.optimistic.enabled", "false"));
+	}
+
+	/**
+	 * Writes the requested features to the device cache and marks them provisional.
+	 * If a feature is already provisional, the value confirmed before is kept for
+	 * the rollback.
+	 *
+	 * @param bridge    the bridge holding the device cache
+	 * @param deviceId  the device ID
+	 * @param requestId the ID of the control request
+	 * @param features  the requested features
+	 */
+	public synchronized void apply(HueBridge bridge, String deviceId, String requestId, Set<IFeature> features) {
+		Device device = bridge.getPluginDevices().get(deviceId);
+		Map<Feature, ProvisionalFeature> provisional = provisionalFeatures.computeIfAbsent(deviceId,
+				id -> new EnumMap<>(Feature.class));
+
+		features.forEach(feature -> {
+			IFeature previous = replaceFeature(device, feature);
+			ProvisionalFeature existing = provisional.get(feature.getType());
+			if (existing != null) {
+				previous = existing.getPrevious();
+			}
+			provisional.put(feature.getType(), new ProvisionalFeature(requestId, feature, previous));
+		});
+		logger.debug("Device {}: Marked {} provisional for request {}", deviceId, features, requestId);
+	}
+
+	/**
+	 * Restores the values replaced by the given request. Features which have been
+	 * overwritten by a later request in the meantime are left untouched.
+	 *
+	 * @param bridge    the bridge holding the device cache
+	 * @param deviceId  the device ID
+	 * @param requestId the ID of the rejected control request
+	 * @return the restored features to be reported to the HCU
+	 */
+	public synchronized Set<IFeature> rollback(HueBridge bridge, String deviceId, String requestId) {
+		Set<IFeature> restored = new HashSet<>();
+		Map<Feature, ProvisionalFeature> provisional = provisionalFeatures.get(deviceId);
+		if (provisional == null) {
+			return restored;
+		}
+		Device device = bridge.getPluginDevices().get(deviceId);
+		provisional.values().removeIf(entry -> {
+			if (!requestId.equals(entry.getRequestId())) {
+				return false;
+			}
+			if (entry.getPrevious() != null) {
+				replaceFeature(device, entry.getPrevious());
+				restored.add(entry.getPrevious());
+			}
+			return true;
+		});
+		removeIfEmpty(deviceId, provisional);
+		logger.debug("Device {}: Rolled back request {} to {}", deviceId, requestId, restored);
+		return restored;
+	}
+
+	/**
+	 * Reconciles the provisional features of a device with a state change reported
+	 * by the bridge. The reported values win over the provisional ones.
+	 *
+	 * @param deviceId  the device ID
+	 * @param confirmed the features reported by the bridge
+	 */
+	public synchronized void reconcile(String deviceId, Set<IFeature> confirmed) {
+		Map<Feature, ProvisionalFeature> provisional = provisionalFeatures.get(deviceId);
+		if (provisional == null) {
+			return;
+		}
+		confirmed.forEach(feature -> {
+			ProvisionalFeature entry = provisional.remove(feature.getType());
+			if (entry != null && !entry.getRequested().equals(feature)) {
+				logger.debug("Device {}: Bridge reported {} instead of provisional {}", deviceId, feature,
+						entry.getRequested());
+			}
+		});
+		removeIfEmpty(deviceId, provisional);
+	}
+
+	/**
+	 * Drops the provisional marks of the given request which have not been
+	 * confirmed yet.
+	 *
+	 * @param deviceId  the device ID
+	 * @param requestId the ID of the control request
+	 * @return true if at least one feature of the request was still provisional
+	 */
+	public synchronized boolean expire(String deviceId, String requestId) {
+		Map<Feature, ProvisionalFeature> provisional = provisionalFeatures.get(deviceId);
+		if (provisional == null) {
+			return false;
+		}
+		boolean expired = provisional.values().removeIf(entry -> requestId.equals(entry.getRequestId()));
+		removeIfEmpty(deviceId, provisional);
+		return expired;
+	}
+
+	public synchronized boolean isProvisional(String deviceId) {
+		return provisionalFeatures.containsKey(deviceId);
+	}
+
+	private void removeIfEmpty(String deviceId, Map<Feature, ProvisionalFeature> provisional) {
+		if (provisional.isEmpty()) {
+			provisionalFeatures.remove(deviceId);
+		}
+	}
+
+	private static IFeature replaceFeature(Device device, IFeature feature) {
+		if (device == null) {
+			return null;
+		}
+		IFeature matchFeature = device.getFeatures()
+				.stream()
+				.filter(f -> f.getType() == feature.getType())
+				.findFirst()
+				.orElse(null);
+		if (matchFeature != null && !matchFeature.equals(feature)) {
+			device.getFeatures().remove(matchFeature);
+			device.getFeatures().add(feature);
+		}
+		return matchFeature;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	private static final class ProvisionalFeature {
+		private final String requestId;
+		private final IFeature requested;
+		private final IFeature previous;
+	}
+}
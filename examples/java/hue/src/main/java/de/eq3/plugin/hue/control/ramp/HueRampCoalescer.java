@@ -0,0 +1,203 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.control.ramp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.domain.control.ControlRequest;
+import de.eq3.plugin.domain.features.Color;
+import de.eq3.plugin.domain.features.ColorTemperature;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.OnTime;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.serialization.PluginMessage;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Collapses ramps of control requests into native Hue transitions.
+ * <p>
+ * Dim or color ramps arrive as a series of control requests for the same
+ * device. Two dim or color requests for a device that arrive within
+ * {@code control.ramp.window} millis are treated as ramp. During a ramp at most
+ * one request per {@code control.ramp.interval} millis is forwarded to the
+ * bridge, carrying the latest target and a transition duration covering the
+ * time until the next one. The requests in between are superseded and answered
+ * with the result of the request replacing them.
+ * </p>
+ * <p>
+ * Coalescing is disabled unless {@code control.ramp.interval} is set to a
+ * positive value.
+ * </p>
+ * <p>
+ * Must only be used from the context of the owning verticle.
+ * </p>
+ */
+public class HueRampCoalescer {
+	private static final Logger logger = LogManager.getLogger(HueRampCoalescer.class);
+
+	private final Vertx vertx;
+	private final Consumer<PluginMessage<ControlRequest>> dispatcher;
+	private final long window;
+	private final long interval;
+
+	private final Map<String, RampState> ramps = new HashMap<>();
+	private final Map<String, Integer> transitionDurations = new HashMap<>();
+	private final Map<String, List<String>> supersededRequests = new HashMap<>();
+
+	public HueRampCoalescer(Vertx vertx, Consumer<PluginMessage<ControlRequest>> dispatcher) {
+		this.vertx = vertx;
+		this.dispatcher = dispatcher;
+		this.window = Long.parseLong(System.getProperty("control.ramp.window", "500"));
+		this.interval = Long.parseLong(System.getProperty("control.ramp.interval", "0"));
+	}
+
+	/**
+	 * Offers an incoming control request. Ramp steps may be held back and
+	 * dispatched later, all other requests supersede a held step of the same
+	 * device.
+	 *
+	 * @param request the incoming control request
+	 * @return true if the request has been held back, false if it must be
+	 *         executed right away
+	 */
+	public boolean offer(PluginMessage<ControlRequest> request) {
+		if (interval <= 0) {
+			return false;
+		}
+		String deviceId = request.getBody().getDeviceId();
+		long now = System.currentTimeMillis();
+		RampState ramp = ramps.get(deviceId);
+
+		if (!isRampStep(request)) {
+			if (ramp != null) {
+				ramps.remove(deviceId);
+				supersedePending(ramp, request.getId());
+			}
+			return false;
+		}
+		if (ramp == null || now - ramp.lastArrival > window) {
+			// first step, nothing to coalesce yet
+			if (ramp != null) {
+				supersedePending(ramp, request.getId());
+			}
+			ramps.put(deviceId, new RampState(now, now));
+			return false;
+		}
+		long gap = now - ramp.lastArrival;
+		ramp.lastArrival = now;
+		supersedePending(ramp, request.getId());
+
+		if (now - ramp.lastDispatch >= interval) {
+			ramp.lastDispatch = now;
+			transitionDurations.put(request.getId(), (int) Math.min(gap, interval));
+			return false;
+		}
+		ramp.pending = request;
+		ramp.timerId = vertx.setTimer(ramp.lastDispatch + interval - now, timerId -> flush(deviceId));
+		logger.debug("Device {}: Holding back ramp step {}", deviceId, request.getId());
+		return true;
+	}
+
+	/**
+	 * Returns and removes the native transition duration of the given request.
+	 *
+	 * @param requestId the ID of the control request
+	 * @return the duration in millis or null if the request is no ramp step
+	 */
+	public Integer takeTransitionDuration(String requestId) {
+		return transitionDurations.remove(requestId);
+	}
+
+	/**
+	 * Returns and removes the IDs of the requests superseded by the given request.
+	 *
+	 * @param requestId the ID of the control request
+	 * @return the IDs of the superseded requests
+	 */
+	public List<String> takeSupersededRequests(String requestId) {
+		List<String> superseded = supersededRequests.remove(requestId);
+		return superseded != null ? superseded : Collections.emptyList();
+	}
+
+	private void flush(String deviceId) {
+		RampState ramp = ramps.get(deviceId);
+		if (ramp == null || ramp.pending == null) {
+			return;
+		}
+		PluginMessage<ControlRequest> request = ramp.pending;
+		ramp.pending = null;
+		ramp.timerId = -1;
+		ramp.lastDispatch = System.currentTimeMillis();
+		transitionDurations.put(request.getId(), (int) interval);
+
+		logger.debug("Device {}: Dispatching ramp step {} with transition of {} ms, superseding {}", deviceId,
+				request.getId(), interval, supersededRequests.get(request.getId()));
+		dispatcher.accept(request);
+	}
+
+	private void supersedePending(RampState ramp, String requestId) {
+		if (ramp.pending == null) {
+			return;
+		}
+		vertx.cancelTimer(ramp.timerId);
+		String pendingId = ramp.pending.getId();
+		List<String> superseded = supersededRequests.computeIfAbsent(requestId, id -> new ArrayList<>());
+		superseded.add(pendingId);
+		superseded.addAll(takeSupersededRequests(pendingId));
+		transitionDurations.remove(pendingId);
+		ramp.pending = null;
+		ramp.timerId = -1;
+	}
+
+	private static boolean isRampStep(PluginMessage<ControlRequest> request) {
+		boolean hasTarget = false;
+		for (IFeature feature : request.getBody().getFeatures()) {
+			if (feature instanceof OnTime && ((OnTime) feature).getOnTime() != null) {
+				return false;
+			}
+			if (feature instanceof SwitchState && Boolean.FALSE.equals(((SwitchState) feature).getOn())) {
+				return false;
+			}
+			if (feature instanceof Dimming || feature instanceof Color || feature instanceof ColorTemperature) {
+				hasTarget = true;
+			}
+		}
+		return hasTarget;
+	}
+
+	private static final class RampState {
+		private long lastArrival;
+		private long lastDispatch;
+		private PluginMessage<ControlRequest> pending;
+		private long timerId = -1;
+
+		private RampState(long lastArrival, long lastDispatch) {
+			this.lastArrival = lastArrival;
+			this.lastDispatch = lastDispatch;
+		}
+	}
+}
@@ -31,13 +31,20 @@ import de.eq3.plugin.domain.error.Error;
 import de.eq3.plugin.domain.features.OnTime;
 import de.eq3.plugin.domain.status.StatusRequest;
 import de.eq3.plugin.domain.status.StatusResponse;
-import de.eq3.plugin.hue.HueHttpClientConfiguration;
 import de.eq3.plugin.hue.HuePluginStarter;
 import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
+import de.eq3.plugin.hue.discovery.cache.HueResourceCache;
 import de.eq3.plugin.hue.discovery.function.HueConvertDevicesFunction;
 import de.eq3.plugin.hue.discovery.function.HueGetResourcesFunction;
+import de.eq3.plugin.hue.discovery.index.HueRoutingIndex;
+import de.eq3.plugin.hue.metrics.HueMetrics;
 import de.eq3.plugin.hue.model.HueResponse;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
+import de.eq3.plugin.hue.util.SingleFlight;
 import de.eq3.plugin.hue.ws.HuePluginWebsocketClient;
 import de.eq3.plugin.serialization.PluginMessage;
 import de.eq3.plugin.serialization.PluginMessageType;
@@ -48,21 +55,26 @@ import io.vertx.core.Handler;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
 
-public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle
-		implements HueHttpClientConfiguration, Handler<Message<JsonObject>> {
+public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle implements Handler<Message<JsonObject>> {
 	private final Logger logger = LogManager.getLogger(this.getClass());
 
 	private WebClient webClient;
 
+	private final SingleFlight<String, Set<Device>> deviceRefresh = new SingleFlight<>();
+
 	@Override
 	public void start() {
 		vertx.eventBus().consumer(DiscoverRequest.class.getName(), this);
 		vertx.eventBus().consumer(StatusRequest.class.getName(), this);
 
-		WebClientOptions clientOptions = new WebClientOptions(getHttpClientOptions().setIdleTimeout(5));
-		this.webClient = WebClient.create(this.vertx, clientOptions);
+		this.webClient = HueHttpClientRegistry.getInstance().createWebClient(this.vertx);
+
+		HueMetrics metrics = HueMetrics.getInstance();
+		metrics.registerCounter("hue_device_refreshes_total", "Device refreshes requested by discover and status",
+				deviceRefresh::getExecutions, "result", "executed");
+		metrics.registerCounter("hue_device_refreshes_total", "Device refreshes requested by discover and status",
+				deviceRefresh::getSharedCalls, "result", "shared");
 
 		logger.info("SYSTEM: {} Verticle or Worker started", this.getClass().getSimpleName());
 	}
@@ -73,52 +85,75 @@ public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle
 			return;
 		}
 		PluginMessage<?> request = event.body().mapTo(PluginMessage.class);
+		HueSpan span = HueTracer.getInstance()
+				.startSpan("devices.refresh", HueTraceContext.fromHeaders(event.headers()))
+				.setAttribute("message.type", request.getType());
 		Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 
 		if (optionalHueBridge.isEmpty()) {
-			sendErrorResponse("No configured Hue Bridge available", request);
+			span.end("No configured Hue Bridge available");
+			sendErrorResponse("No configured Hue Bridge available", request, span.getContext());
 			return;
 		}
 		HueBridge hueBridge = optionalHueBridge.get();
 
-		Future.succeededFuture(hueBridge)
-				.compose(new HueGetResourcesFunction(this.webClient, vertx))
-				.onComplete(hueResponse -> {
-					if (hueResponse.succeeded()) {
-						HueResponse result = hueResponse.result();
-						HuePersistenceHelper.getInstance().saveDeviceData(result.getDevices());
-
-						Future.succeededFuture(result)
-								.compose(new HueConvertDevicesFunction())
-								.onComplete(convertDevices -> {
-									if (convertDevices.succeeded()) {
-										Set<Device> devices = convertDevices.result();
-										hueBridge.getPluginDevices().clear();
-										Map<String, Device> deviceMap = devices.stream()
-												.collect(Collectors.toMap(Device::getDeviceId, device -> device));
-										hueBridge.getPluginDevices().putAll(deviceMap);
-										// onTime is supported by all devices
-										devices.forEach(device -> device.getFeatures().add(new OnTime()));
-										sendSuccessResponse(hueBridge, devices, request);
-									} else {
-										String errorMessage = "Bridge %s: Error converting Philips Hue Devices";
-
-										logger.error(String.format(errorMessage, hueBridge.getBridgeId()),
-												convertDevices.cause());
-
-										sendErrorResponse(convertDevices.cause().toString(), request);
-									}
-								});
+		// concurrent discover and status requests share one fetch, each response applies its own filter
+		span.setAttribute("shared", deviceRefresh.isInFlight(hueBridge.getBridgeId()));
+		deviceRefresh.execute(hueBridge.getBridgeId(), () -> refreshDevices(hueBridge, span.getContext()))
+				.onComplete(asyncResult -> {
+					if (asyncResult.succeeded()) {
+						span.end();
+						sendSuccessResponse(hueBridge, asyncResult.result(), request, span.getContext());
 					} else {
-						logger.info("Bridge {}: Error calling Philips Hue resource, cause {}", hueBridge.getBridgeId(),
-								hueResponse.cause());
-
-						sendErrorResponse(hueResponse.cause().toString(), request);
+						span.end(asyncResult.cause().toString());
+						sendErrorResponse(asyncResult.cause().toString(), request, span.getContext());
 					}
 				});
 	}
 
-	private void sendSuccessResponse(HueBridge bridge, Set<Device> devices, PluginMessage<?> request) {
+	private Future<Set<Device>> refreshDevices(HueBridge hueBridge, HueTraceContext traceContext) {
+		HueResourceCache cache = HueResourceCache.getInstance();
+		// without the event stream the cached resources cannot be kept up to date
+		Optional<HueResponse> cached = HueStateEventHandler.isEventstreamConnected()
+				? cache.get(hueBridge.getBridgeId())
+				: Optional.empty();
+		if (cached.isPresent()) {
+			return convertDevices(hueBridge, cached.get());
+		}
+		return Future.succeededFuture(hueBridge)
+				.compose(new HueGetResourcesFunction(this.webClient, vertx, traceContext))
+				.onFailure(throwable -> logger.info("Bridge {}: Error calling Philips Hue resource, cause {}",
+						hueBridge.getBridgeId(), throwable))
+				.compose(result -> {
+					cache.put(hueBridge.getBridgeId(), result);
+					HuePersistenceHelper.getInstance().saveDeviceData(result.getDevices());
+					HueRoutingIndex.getInstance().rebuild(result.getDevices());
+
+					return convertDevices(hueBridge, result);
+				});
+	}
+
+	private Future<Set<Device>> convertDevices(HueBridge hueBridge, HueResponse result) {
+		return Future.succeededFuture(result)
+				.compose(new HueConvertDevicesFunction())
+				.onFailure(throwable -> {
+					String errorMessage = "Bridge %s: Error converting Philips Hue Devices";
+
+					logger.error(String.format(errorMessage, hueBridge.getBridgeId()), throwable);
+				})
+				.map(devices -> {
+					hueBridge.getPluginDevices().clear();
+					Map<String, Device> deviceMap = devices.stream()
+							.collect(Collectors.toMap(Device::getDeviceId, device -> device));
+					hueBridge.getPluginDevices().putAll(deviceMap);
+					// onTime is supported by all devices
+					devices.forEach(device -> device.getFeatures().add(new OnTime()));
+					return devices;
+				});
+	}
+
+	private void sendSuccessResponse(HueBridge bridge, Set<Device> devices, PluginMessage<?> request,
+			HueTraceContext traceContext) {
 
 		if (request.getType() == PluginMessageType.DISCOVER_REQUEST) {
 			logger.info("Bridge {}: Successfully discovered and converted {} Philips Hue device(s)",
@@ -127,7 +162,9 @@ public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle
 			PluginMessage<DiscoverResponse> message = new PluginMessage<>(request.getId(), HuePluginStarter.PLUGIN_ID,
 					PluginMessageType.DISCOVER_RESPONSE, new DiscoverResponse(true, devices, null));
 
-			vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+			vertx.eventBus()
+					.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode(),
+							HueTraceContext.deliveryOptions(traceContext));
 		} else {
 			StatusRequest statusRequest = (StatusRequest) request.getBody();
 			if (statusRequest != null) {
@@ -149,19 +186,23 @@ public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle
 			PluginMessage<StatusResponse> message = new PluginMessage<>(request.getId(), HuePluginStarter.PLUGIN_ID,
 					PluginMessageType.STATUS_RESPONSE, new StatusResponse(true, devices, null));
 
-			vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+			vertx.eventBus()
+					.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode(),
+							HueTraceContext.deliveryOptions(traceContext));
 
 		}
 	}
 
-	private void sendErrorResponse(String errorMessage, PluginMessage<?> request) {
+	private void sendErrorResponse(String errorMessage, PluginMessage<?> request, HueTraceContext traceContext) {
 		if (request.getType() == PluginMessageType.DISCOVER_REQUEST) {
 			Error error = new Error("DISCOVER_REQUEST_FAILED", errorMessage);
 
 			PluginMessage<DiscoverResponse> message = new PluginMessage<>(request.getId(), HuePluginStarter.PLUGIN_ID,
 					PluginMessageType.DISCOVER_RESPONSE, new DiscoverResponse(false, null, error));
 
-			vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+			vertx.eventBus()
+					.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode(),
+							HueTraceContext.deliveryOptions(traceContext));
 
 		} else {
 			Error error = new Error("STATUS_REQUEST_FAILED", errorMessage);
@@ -169,7 +210,9 @@ public class HueDiscoverAndStatusRequestHandler extends AbstractVerticle
 			PluginMessage<StatusResponse> message = new PluginMessage<>(request.getId(), HuePluginStarter.PLUGIN_ID,
 					PluginMessageType.STATUS_RESPONSE, new StatusResponse(false, null, error));
 
-			vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+			vertx.eventBus()
+					.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode(),
+							HueTraceContext.deliveryOptions(traceContext));
 		}
 	}
 }
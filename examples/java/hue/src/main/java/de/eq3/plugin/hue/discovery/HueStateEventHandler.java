@@ -17,8 +17,6 @@
 package de.eq3.plugin.hue.discovery;
 
 import java.security.SecureRandom;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -31,8 +29,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-
 import de.eq3.plugin.domain.device.Device;
 import de.eq3.plugin.domain.features.IFeature;
 import de.eq3.plugin.domain.features.Maintenance;
@@ -40,15 +36,26 @@ import de.eq3.plugin.domain.plugin.PluginReadinessStatus;
 import de.eq3.plugin.domain.status.StatusEvent;
 import de.eq3.plugin.hue.HueHttpClientConfiguration;
 import de.eq3.plugin.hue.HuePluginStarter;
-import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
 import de.eq3.plugin.hue.auth.model.HueBridge;
-import de.eq3.plugin.hue.auth.model.HueScheduledTestTimer;
+import de.eq3.plugin.hue.connection.HueAddressRacer;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
+import de.eq3.plugin.hue.control.messages.HueOnTimeCancelRequest;
+import de.eq3.plugin.hue.control.ontime.HueOnTimeScheduler;
+import de.eq3.plugin.hue.control.optimistic.HueOptimisticStateTracker;
+import de.eq3.plugin.hue.discovery.cache.HueResourceCache;
+import de.eq3.plugin.hue.discovery.index.HueRoutingIndex;
 import de.eq3.plugin.hue.discovery.mapping.FeatureConverter;
 import de.eq3.plugin.hue.discovery.mapping.HueDeviceConverter;
+import de.eq3.plugin.hue.discovery.mapping.HueEventStreamParser;
+import de.eq3.plugin.hue.discovery.mapping.HueLightGamutRegistry;
 import de.eq3.plugin.hue.discovery.model.EventstreamStartRequest;
 import de.eq3.plugin.hue.discovery.model.EventstreamStopRequest;
+import de.eq3.plugin.hue.metrics.HueMetrics;
 import de.eq3.plugin.hue.model.light.Light;
 import de.eq3.plugin.hue.model.sse.Event;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
 import de.eq3.plugin.hue.ws.HuePluginWebsocketClient;
 import de.eq3.plugin.serialization.PluginMessage;
@@ -65,27 +72,26 @@ import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpConnection;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
-import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.json.jackson.DatabindCodec;
 
 public class HueStateEventHandler extends AbstractVerticle implements HueHttpClientConfiguration {
 	private final Logger logger = LogManager.getLogger(this.getClass());
 	private HttpClient client;
-	/**
-	 * All Hue events end on two line breaks (ASCII 10). Used to detect non complete frames
-	 */
-	private static final byte[] HUE_MESSAGE_ENDING = { 10, 10 };
-	private static final long HUE_ONTIME_EVENT_IGNORE_TIME = 2000;
 	private static final Map<String, HttpConnection> bridgeConnections = new HashMap<>();
 
 	private final SecureRandom secureRandom = new SecureRandom();
-	private Buffer messageBuffer = Buffer.buffer();
+	private final HueEventStreamParser eventStreamParser = new HueEventStreamParser();
+
+	private final HueMetrics.Counter receivedEvents = HueMetrics.getInstance()
+			.counter("hue_sse_events_total", "Events received on the bridge event stream");
+	private final HueMetrics.Timer eventParsing = HueMetrics.getInstance()
+			.timer("hue_sse_parse_seconds", "Duration of parsing event stream chunks");
+	private final HueMetrics.Counter reconnects = HueMetrics.getInstance()
+			.counter("hue_reconnects_total", "Scheduled reconnects", "connection", "eventstream");
 
 	@Override
 	public void start() {
-		this.client = vertx.createHttpClient(getHttpClientOptions());
+		this.client = HueHttpClientRegistry.getInstance().createHttpClient(vertx);
 
 		vertx.eventBus().consumer(EventstreamStartRequest.ENDPOINT, this::handleStartEventListener);
 		vertx.eventBus().consumer(EventstreamStopRequest.ENDPOINT, this::handleStopEventListener);
@@ -123,8 +129,13 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 		}
 		logger.info("Bridge {}: Starting server-sent events (SSE) stream", hueBridge.getBridgeId());
 
-		String url = hueBridge.getLocalAddress();
-		Future<String> urlFuture = HueLookupRequestHandler.getHueBridgeIp(hueBridge, url, vertx);
+		HueAddressRacer racer = HueAddressRacer.forBridge(hueBridge);
+		Future<String> urlFuture = racer.resolve(hueBridge, vertx);
+		urlFuture.onFailure(throwable -> {
+			logger.error("Bridge {}: No address reachable [message={}], trying to reconnect in {} seconds",
+					hueBridge.getBridgeId(), throwable.getMessage(), PING_AND_RECONNECT_INTERVAL_SECONDS);
+			reconnectLater(hueBridge);
+		});
 		urlFuture.onSuccess(requestUrl -> {
 
 			logger.debug("Starting stream on {}", requestUrl);
@@ -134,7 +145,6 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 					HttpClientRequest request = asyncResult.result();
 					request.putHeader("hue-application-key", hueBridge.getApplicationKey());
 					request.putHeader(HttpHeaders.ACCEPT, "text/event-stream");
-					request.putHeader(HttpHeaders.CONNECTION, "keep-alive");
 
 					Future<HttpClientResponse> eventStream = request.send();
 
@@ -145,7 +155,8 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 
 						response.endHandler(event -> {
 							logger.debug("Ending bridge connection");
-							hueBridge.setLastSuccessfullAddress(null);
+							HueResourceCache.getInstance().invalidate();
+							racer.demote(hueBridge, requestUrl);
 						});
 						response.exceptionHandler(
 								throwable -> logger.error("Bridge {}: Error reading response data [message={}]",
@@ -157,16 +168,16 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 
 				} else {
 					bridgeConnections.remove(hueBridge.getBridgeId());
+					HueResourceCache.getInstance().invalidate();
 					Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 
 					optionalHueBridge.ifPresent(bridge -> {
-						hueBridge.setLastSuccessfullAddress(null);
+						racer.demote(hueBridge, requestUrl);
 						logger.error(
 								"Bridge {}: Error during connection establishment [message={}], trying to reconnect in {} seconds",
 								bridge.getBridgeId(), asyncResult.cause(), PING_AND_RECONNECT_INTERVAL_SECONDS);
 
-						vertx.setTimer(PING_AND_RECONNECT_INTERVAL_SECONDS * 1000L,
-								timerId -> startEventStream(bridge));
+						reconnectLater(bridge);
 					});
 				}
 			});
@@ -175,52 +186,23 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 
 	private Handler<Buffer> getReadStreamHandler() {
 		return incomingBuffer -> {
-			int bufferLength = incomingBuffer.length();
-			if (bufferLength < 2) {
+			long start = System.nanoTime();
+			List<Event> events = eventStreamParser.parse(incomingBuffer);
+			eventParsing.recordSince(start);
+			if (events.isEmpty()) {
 				return;
 			}
-			byte[] lastTwoChars = incomingBuffer.getBytes(bufferLength - 2, bufferLength);
-			messageBuffer.appendBuffer(incomingBuffer);
-			if (!Arrays.equals(lastTwoChars, HUE_MESSAGE_ENDING)) {
-				logger.trace("Received non ended frame of message");
-				return;
-			} else {
-				logger.trace("Received last frame of message");
-			}
-
-			String response = messageBuffer.toString();
-			String[] result = response.split("\\R");
-			messageBuffer = Buffer.buffer();
-			for (String val : result) {
-				if (!val.startsWith("data: ")) {
-					logger.trace("Received non data body: {}", val);
-					continue;
-				}
-
-				val = val.substring(val.indexOf("["));
-				try {
-					logger.trace("Received data body: {}", new JsonArray(val));
-				} catch (DecodeException e) {
-					logger.error("Could not parse incoming data to JSON {}", val);
-				}
-
-				List<Event> events = new ArrayList<>();
-				try {
-					events = Arrays.asList(DatabindCodec.mapper().readValue(val, Event[].class));
-				} catch (JsonProcessingException e) {
-					logger.error("SYSTEM: Error mapping JSON", e);
-				}
-				logger.debug("Received Hue Events for {} endpoints", events.size());
-				logger.debug("Events: {}", events);
-				events.forEach(this::handleEvent);
-			}
+			receivedEvents.add(events.size());
+			logger.debug("Received Hue Events for {} endpoints", events.size());
+			logger.debug("Events: {}", events);
+			events.forEach(this::handleEvent);
 		};
 	}
 
 	private long startPeriodicPing(HttpClientRequest request) {
 		byte[] pingBytes = new byte[8];
 		secureRandom.nextBytes(pingBytes);
-		return vertx.setPeriodic(PING_AND_RECONNECT_INTERVAL_SECONDS,
+		return vertx.setPeriodic(PING_AND_RECONNECT_INTERVAL_SECONDS * 1000L,
 				id -> request.connection().ping(Buffer.buffer(pingBytes)));
 	}
 
@@ -228,17 +210,24 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 		return aVoid -> {
 			vertx.cancelTimer(pingTimerId);
 			bridgeConnections.remove(hueBridge.getBridgeId());
+			// updates are missed while disconnected
+			HueResourceCache.getInstance().invalidate();
 
 			Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 			optionalHueBridge.ifPresent(bridge -> {
 				logger.info("Bridge {}: Connection closed, trying to reconnect in {} seconds", hueBridge.getBridgeId(),
 						PING_AND_RECONNECT_INTERVAL_SECONDS);
 
-				vertx.setTimer(PING_AND_RECONNECT_INTERVAL_SECONDS * 1000L, timerId -> startEventStream(hueBridge));
+				reconnectLater(hueBridge);
 			});
 		};
 	}
 
+	private void reconnectLater(HueBridge hueBridge) {
+		reconnects.increment();
+		vertx.setTimer(PING_AND_RECONNECT_INTERVAL_SECONDS * 1000L, timerId -> startEventStream(hueBridge));
+	}
+
 	private void stopEventStream(String bridgeId) {
 		HttpConnection connection = bridgeConnections.remove(bridgeId);
 		connection.close();
@@ -247,11 +236,18 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 	}
 
 	private void handleEvent(Event event) {
+		if (Event.EVENT_TYPE_ADD.equals(event.getType()) || Event.EVENT_TYPE_DELETE.equals(event.getType())) {
+			event.getData().forEach(resource -> updateRoutingIndex(event.getType(), resource));
+			return;
+		}
 		if (Event.EVENT_TYPE_UPDATE.equals(event.getType())) {
+			event.getData().forEach(HueResourceCache.getInstance()::patch);
 			event.getData().forEach(light -> {
 				logger.debug("Handling event for light {} with type {}", light.getId(), light.getType());
+				String deviceId = HueRoutingIndex.getInstance()
+						.getDeviceId(light.getId(), light.getOwner() != null ? light.getOwner().getRid() : null);
 				// Ignore state updates for non included devices
-				if (light.getOwner() == null) {
+				if (deviceId == null) {
 					return;
 				}
 				Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
@@ -261,29 +257,28 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 				}
 				HueBridge bridge = optionalHueBridge.get();
 
-				if (!bridge.getIncludedDevices().contains(light.getOwner().getRid())) {
+				if (!bridge.getIncludedDevices().contains(deviceId)) {
 					logger.trace("Included devices do not contain owner rid of light {}", light.getId());
 					return;
 				}
 
 				if (Event.DATA_TYPE_LIGHT.equals(light.getType())) {
 					logger.debug("[LIGHT-{}] Trying to map changes", light.getId());
-					Set<IFeature> changes = FeatureConverter.getInstance().mapChanges(vertx, light, bridge);
+					// continues the trace of a control request from the bridge response to its state change
+					HueSpan echoSpan = HueTracer.getInstance()
+							.takeEcho(light.getId(), "sse.echo")
+							.setAttribute("device.id", deviceId);
+					Set<IFeature> changes = FeatureConverter.getInstance().mapChanges(vertx, deviceId, light, bridge);
 					logger.debug("Sending changes: {}", changes);
 
 					// cleanup onTime timers if light gets controlled from another source
-					if (bridge.getOnTimeTaskQueue().containsKey(light.getOwner().getRid())) {
-						HueScheduledTestTimer timer = bridge.getOnTimeTaskQueue().get(light.getOwner().getRid());
-						long elapsed = System.currentTimeMillis() - timer.getStartTime();
-						logger.trace("Event for light with existing onTimer request, elapsed {}", elapsed);
-						if (elapsed > HUE_ONTIME_EVENT_IGNORE_TIME) {
-							logger.info("Replacing old onTime timer for device as it got changed otherwise {}",
-									light.getOwner().getRid());
-							bridge.getOnTimeTaskQueue().remove(light.getOwner().getRid());
-							vertx.cancelTimer(timer.getTimerId());
-						}
+					if (HueOnTimeScheduler.isScheduled(deviceId)) {
+						HueOnTimeCancelRequest cancelRequest = new HueOnTimeCancelRequest(deviceId);
+						vertx.eventBus().send(HueOnTimeCancelRequest.ENDPOINT, JsonObject.mapFrom(cancelRequest));
 					}
-					sendChanges(light, changes, bridge);
+
+					sendChanges(deviceId, changes, bridge, echoSpan.getContext());
+					echoSpan.end();
 
 				} else if (Event.DATA_TYPE_CONNECTIVITY.equals(light.getType())) {
 					String connectivityStatus = light.getStatus();
@@ -294,16 +289,38 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 					maintenance.setUnreach(isUnreach);
 					Set<IFeature> changes = Collections.singleton(maintenance);
 
-					sendChanges(light, changes, bridge);
+					sendChanges(deviceId, changes, bridge, null);
 
 				}
 			});
 		}
 	}
 
-	private void sendChanges(Light light, Set<IFeature> changes, HueBridge bridge) {
-		StatusEvent statusEvent = new StatusEvent(light.getOwner().getRid(), changes);
-		Device matchDevice = bridge.getPluginDevices().get(light.getOwner().getRid());
+	private void updateRoutingIndex(String eventType, Light resource) {
+		HueRoutingIndex index = HueRoutingIndex.getInstance();
+
+		if (Event.EVENT_TYPE_DELETE.equals(eventType)) {
+			HueResourceCache.getInstance().remove(resource.getId());
+			if (HueRoutingIndex.RTYPE_DEVICE.equals(resource.getType())) {
+				index.removeDevice(resource.getId());
+			} else {
+				index.removeService(resource.getId());
+				HueLightGamutRegistry.getInstance().remove(resource.getId());
+			}
+		} else {
+			// added resources are only partially known from the event, fetch them with the next request
+			HueResourceCache.getInstance().invalidate();
+			if (resource.getOwner() != null) {
+				index.putService(resource.getId(), resource.getType(), resource.getOwner().getRid());
+			}
+		}
+		logger.debug("Updated routing index for {} {} of type {}", eventType, resource.getId(), resource.getType());
+	}
+
+	private void sendChanges(String deviceId, Set<IFeature> changes, HueBridge bridge,
+			HueTraceContext traceContext) {
+		StatusEvent statusEvent = new StatusEvent(deviceId, changes);
+		Device matchDevice = bridge.getPluginDevices().get(deviceId);
 		AtomicBoolean dirty = new AtomicBoolean(false);
 		if (matchDevice != null) {
 			changes.stream().forEach(feature -> {
@@ -321,10 +338,13 @@ public class HueStateEventHandler extends AbstractVerticle implements HueHttpCli
 			});
 		}
 		logger.debug("Sending current light status: {} dirty:{}", changes, dirty.get());
+		HueOptimisticStateTracker.getInstance().reconcile(deviceId, changes);
 
 		PluginMessage<StatusEvent> message = new PluginMessage<>(UUID.randomUUID().toString(),
 				HuePluginStarter.PLUGIN_ID, PluginMessageType.STATUS_EVENT, statusEvent);
 
-		vertx.eventBus().send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode());
+		vertx.eventBus()
+				.send(HuePluginWebsocketClient.getWsHandlerId(), JsonObject.mapFrom(message).encode(),
+						HueTraceContext.deliveryOptions(traceContext));
 	}
 }
@@ -0,0 +1,293 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.discovery.cache;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.discovery.mapping.HueResourceParser;
+import de.eq3.plugin.hue.model.HueResponse;
+import de.eq3.plugin.hue.model.connectivity.DeviceConnectivity;
+import de.eq3.plugin.hue.model.light.Color;
+import de.eq3.plugin.hue.model.light.ColorTemperature;
+import de.eq3.plugin.hue.model.light.Dimming;
+import de.eq3.plugin.hue.model.light.Dynamics;
+import de.eq3.plugin.hue.model.light.Effects;
+import de.eq3.plugin.hue.model.light.Light;
+
+/**
+ * Caches the last resources fetched from the Hue bridge.
+ * <p>
+ * Entries are valid for {@code plugin.hue.resources.cacheTtl} millis, read
+ * whenever resources are stored. A TTL of zero disables the cache. While cached,
+ * light and connectivity updates from the event stream are patched into the
+ * cached resources and deleted resources are removed. Changes which cannot be
+ * patched, as well as a lost event stream, invalidate the whole cache.
+ * </p>
+ * <p>
+ * Cached responses are never modified. Patching replaces the response, so a
+ * response handed out to a reader stays consistent. A patched light is a copy
+ * of the cached light with the attributes set in the update, nested attributes
+ * like the color or the color temperature are patched the same way.
+ * </p>
+ */
+public class HueResourceCache {
+	private static HueResourceCache instance;
+	private final Logger logger = LogManager.getLogger(this.getClass());
+
+	private long ttl;
+
+	private String bridgeId;
+	private HueResponse response;
+	private long fetchedAt;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final AtomicLong ageAtReadSum = new AtomicLong();
+	private final AtomicLong lastAgeAtRead = new AtomicLong();
+
+	private HueResourceCache() {
+	}
+
+	public static HueResourceCache getInstance() {
+		if (instance == null) {
+			instance = setInstance();
+		}
+		return instance;
+	}
+
+	private static synchronized HueResourceCache setInstance() {
+		if (instance == null) {
+			instance = new HueResourceCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the cached resources of the given bridge if they are still valid.
+	 *
+	 * @param bridgeId the bridge ID
+	 * @return the cached resources or empty on a cache miss
+	 */
+	public synchronized Optional<HueResponse> get(String bridgeId) {
+		long age = System.currentTimeMillis() - fetchedAt;
+		if (response == null || ttl <= 0 || age > ttl || !isSameBridge(bridgeId)) {
+			misses.incrementAndGet();
+			logger.debug("Bridge {}: Resource cache miss, hit ratio {}", bridgeId, getHitRatio());
+			return Optional.empty();
+		}
+		hits.incrementAndGet();
+		ageAtReadSum.addAndGet(age);
+		lastAgeAtRead.set(age);
+		logger.debug("Bridge {}: Serving resources from cache, age {} ms, hit ratio {}", bridgeId, age,
+				getHitRatio());
+		return Optional.of(response);
+	}
+
+	/**
+	 * Stores freshly fetched resources.
+	 *
+	 * @param bridgeId the bridge ID
+	 * @param fetched  the resources fetched from the bridge
+	 */
+	public synchronized void put(String bridgeId, HueResponse fetched) {
+		ttl = Long.parseLong(System.getProperty("plugin.hue.resources.cacheTtl", "30000"));
+		if (ttl <= 0) {
+			return;
+		}
+		this.bridgeId = bridgeId;
+		this.response = fetched;
+		this.fetchedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Invalidates the whole cache.
+	 */
+	public synchronized void invalidate() {
+		if (response != null) {
+			invalidations.incrementAndGet();
+			logger.debug("Invalidated resource cache");
+		}
+		response = null;
+	}
+
+	/**
+	 * Patches an update event of the event stream into the cached resources.
+	 * Updates of cached resource types which are not patchable invalidate the
+	 * cache, updates of other resource types are ignored.
+	 *
+	 * @param update the updated resource, only changed attributes are set
+	 */
+	public synchronized void patch(Light update) {
+		if (response == null) {
+			return;
+		}
+		if (HueResourceParser.TYPE_LIGHT.equals(update.getType())) {
+			Set<Light> lights = new HashSet<>();
+			boolean patched = false;
+			for (Light light : response.getLights()) {
+				if (update.getId().equals(light.getId())) {
+					light = patch(light, update);
+					patched = true;
+				}
+				lights.add(light);
+			}
+			replace(patched, copy -> copy.setLights(lights));
+		} else if (HueResourceParser.TYPE_CONNECTIVITY.equals(update.getType())) {
+			Set<DeviceConnectivity> connectivities = new HashSet<>();
+			boolean patched = false;
+			for (DeviceConnectivity connectivity : response.getDeviceConnectivities()) {
+				if (update.getId().equals(connectivity.getId()) && update.getStatus() != null) {
+					connectivity = new DeviceConnectivity(connectivity.getId(), connectivity.getMacAddress(),
+							connectivity.getOwner(), update.getStatus(), connectivity.getType());
+					patched = true;
+				}
+				connectivities.add(connectivity);
+			}
+			replace(patched, copy -> copy.setDeviceConnectivities(connectivities));
+		} else if (HueResourceParser.TYPE_DEVICE.equals(update.getType())) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Removes a deleted resource from the cached resources.
+	 *
+	 * @param resourceId the ID of the deleted resource
+	 */
+	public synchronized void remove(String resourceId) {
+		if (response == null) {
+			return;
+		}
+		HueResponse copy = copy(response);
+		copy.getDevices().removeIf(device -> resourceId.equals(device.getId()));
+		copy.getLights().removeIf(light -> resourceId.equals(light.getId()));
+		copy.getDeviceConnectivities().removeIf(connectivity -> resourceId.equals(connectivity.getId()));
+		response = copy;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public double getHitRatio() {
+		long total = hits.get() + misses.get();
+		return total == 0 ? 0 : (double) hits.get() / total;
+	}
+
+	public long getLastAgeAtRead() {
+		return lastAgeAtRead.get();
+	}
+
+	public double getAverageAgeAtRead() {
+		long count = hits.get();
+		return count == 0 ? 0 : (double) ageAtReadSum.get() / count;
+	}
+
+	private boolean isSameBridge(String requestedBridgeId) {
+		return requestedBridgeId == null ? bridgeId == null : requestedBridgeId.equals(bridgeId);
+	}
+
+	private void replace(boolean patched, Consumer<HueResponse> change) {
+		if (!patched) {
+			return;
+		}
+		HueResponse copy = copy(response);
+		change.accept(copy);
+		response = copy;
+	}
+
+	private static Light patch(Light light, Light update) {
+		return new Light(latest(light.getAlert(), update.getAlert()),
+				patch(light.getDynamics(), update.getDynamics()), light.getId(),
+				latest(light.getMetadata(), update.getMetadata()), latest(light.getMode(), update.getMode()),
+				latest(light.getOn(), update.getOn()), latest(light.getOwner(), update.getOwner()),
+				latest(light.getType(), update.getType()), patch(light.getColor(), update.getColor()),
+				patch(light.getColorTemperature(), update.getColorTemperature()),
+				patch(light.getDimming(), update.getDimming()), patch(light.getEffects(), update.getEffects()),
+				latest(light.getStatus(), update.getStatus()));
+	}
+
+	private static Color patch(Color color, Color update) {
+		if (color == null || update == null) {
+			return latest(color, update);
+		}
+		return new Color(latest(color.getGamut(), update.getGamut()),
+				latest(color.getGamutType(), update.getGamutType()), latest(color.getXy(), update.getXy()));
+	}
+
+	private static ColorTemperature patch(ColorTemperature colorTemperature, ColorTemperature update) {
+		if (colorTemperature == null || update == null) {
+			return latest(colorTemperature, update);
+		}
+		return new ColorTemperature(latest(colorTemperature.getMirek(), update.getMirek()),
+				latest(colorTemperature.getMirekSchema(), update.getMirekSchema()),
+				latest(colorTemperature.getMirekValid(), update.getMirekValid()));
+	}
+
+	private static Dimming patch(Dimming dimming, Dimming update) {
+		if (dimming == null || update == null) {
+			return latest(dimming, update);
+		}
+		return new Dimming(latest(dimming.getBrightness(), update.getBrightness()),
+				latest(dimming.getMinDimLevel(), update.getMinDimLevel()));
+	}
+
+	private static Dynamics patch(Dynamics dynamics, Dynamics update) {
+		if (dynamics == null || update == null) {
+			return latest(dynamics, update);
+		}
+		return new Dynamics(latest(dynamics.getDuration(), update.getDuration()),
+				latest(dynamics.getSpeed(), update.getSpeed()),
+				latest(dynamics.getSpeedValid(), update.getSpeedValid()),
+				latest(dynamics.getStatus(), update.getStatus()),
+				latest(dynamics.getStatusValues(), update.getStatusValues()));
+	}
+
+	private static Effects patch(Effects effects, Effects update) {
+		if (effects == null || update == null) {
+			return latest(effects, update);
+		}
+		return new Effects(latest(effects.getEffectValues(), update.getEffectValues()),
+				latest(effects.getStatus(), update.getStatus()),
+				latest(effects.getStatusValues(), update.getStatusValues()));
+	}
+
+	private static <T> T latest(T cached, T update) {
+		return update != null ? update : cached;
+	}
+
+	private static HueResponse copy(HueResponse source) {
+		return new HueResponse(new HashSet<>(source.getDevices()), new HashSet<>(source.getLights()),
+				new HashSet<>(source.getDeviceConnectivities()), new HashSet<>(source.getErrors()));
+	}
+}
@@ -16,37 +16,69 @@
 
 package de.eq3.plugin.hue.discovery.function;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
 import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueBridgeCircuitBreaker;
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
+import de.eq3.plugin.hue.discovery.mapping.HueResourceParser;
 import de.eq3.plugin.hue.model.HueResponse;
-import de.eq3.plugin.hue.model.connectivity.DeviceConnectivity;
-import de.eq3.plugin.hue.model.device.Device;
-import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 
 /**
  * Function to retrieve resources from a Hue bridge.
+ * <p>
+ * By default only the resource types used by the plugin are requested, each
+ * with its own request. The requests are multiplexed over the HTTP/2 connection
+ * to the bridge and guarded by a single circuit breaker call, so an unreachable
+ * bridge counts as one failure per fetch. Setting
+ * {@code plugin.hue.resources.fetch} to {@code full} requests the complete
+ * resource dump instead, which includes scenes, behaviors and sensors.
+ * </p>
+ * <p>
+ * For traced requests each bridge call and the parsing of its response are
+ * recorded as child spans of the trace context.
+ * </p>
  */
 public class HueGetResourcesFunction implements Function<HueBridge, Future<HueResponse>> {
+	public static final String FETCH_MODE_FULL = "full";
+	public static final String FETCH_MODE_TYPED = "typed";
+
+	private static final String RESOURCE_ENDPOINT = "/clip/v2/resource";
+	private static final List<String> RESOURCE_TYPES = List.of(HueResourceParser.TYPE_DEVICE,
+			HueResourceParser.TYPE_LIGHT, HueResourceParser.TYPE_CONNECTIVITY);
 
 	private final WebClient webClient;
 	private final Logger logger = LogManager.getLogger(this.getClass());
 	private final Vertx vertx;
+	private final String fetchMode;
+	private final HueTraceContext traceContext;
 
 	public HueGetResourcesFunction(WebClient webClient, Vertx vertx) {
+		this(webClient, vertx, null);
+	}
+
+	public HueGetResourcesFunction(WebClient webClient, Vertx vertx, HueTraceContext traceContext) {
 		this.webClient = webClient;
 		this.vertx = vertx;
+		this.fetchMode = System.getProperty("plugin.hue.resources.fetch", FETCH_MODE_TYPED);
+		this.traceContext = traceContext;
 	}
 
 	/**
@@ -57,74 +89,62 @@ public class HueGetResourcesFunction implements Function<HueBridge, Future<HueRe
 	 */
 	@Override
 	public Future<HueResponse> apply(HueBridge bridge) {
-		return Future.future(promise -> {
-
-			String host = bridge.getLocalAddress(); // lookup bridge ip
-			String endpoint = "/clip/v2/resource";
-			Future<String> address = HueLookupRequestHandler.getHueBridgeIp(bridge, host, vertx);
-
-			address.onSuccess(url -> {
-				this.webClient.get(url, endpoint)
-						.putHeader("hue-application-key", bridge.getApplicationKey())
-						.send(getResponse -> {
-
-							if (getResponse.succeeded()) {
-
-								if (getResponse.result().statusCode() == HttpResponseStatus.OK.code()) {
-
-									JsonObject jsonResponse = getResponse.result().bodyAsJsonObject();
-									HueResponse hueResponse = parseResponse(jsonResponse);
-
-									promise.complete(hueResponse);
-								} else {
-									promise.fail("Unexpected response: Status=" + getResponse.result().statusCode()
-											+ " - Body=" + getResponse.result().bodyAsString());
-								}
-							} else {
-								promise.fail("No response data received");
-							}
-						});
-			});
-
-		});
+		List<String> endpoints = new ArrayList<>();
+		if (FETCH_MODE_FULL.equals(fetchMode)) {
+			endpoints.add(RESOURCE_ENDPOINT);
+		} else {
+			RESOURCE_TYPES.forEach(type -> endpoints.add(RESOURCE_ENDPOINT + "/" + type));
+		}
+		// one breaker call per fetch, a bridge that is down counts as a single failure
+		return HueBridgeCircuitBreaker.forBridge(bridge)
+				.execute(bridge, vertx, url -> getResources(bridge, url, endpoints))
+				.compose(responses -> {
+					HueResponse hueResponse = new HueResponse();
+					for (HttpResponse<Buffer> response : responses) {
+						Future<HueResponse> parsed = parseInto(hueResponse, response);
+						if (parsed.failed()) {
+							return parsed;
+						}
+					}
+					return Future.succeededFuture(hueResponse);
+				})
+				.onSuccess(hueResponse -> logger.debug("Bridge {}: Received {} devices, {} lights and {} connectivities",
+						bridge.getBridgeId(), hueResponse.getDevices().size(), hueResponse.getLights().size(),
+						hueResponse.getDeviceConnectivities().size()));
 	}
 
-	/**
-	 * Parses the response from the Hue bridge into a HueResponse object.
-	 *
-	 * @param  response The JSON response from the Hue bridge.
-	 * @return          The parsed HueResponse object.
-	 */
-	private HueResponse parseResponse(JsonObject response) {
-		HueResponse hueResponse = new HueResponse();
-
-		JsonArray errors = response.getJsonArray("errors");
-		errors.forEach(error -> {
-			if (error instanceof JsonObject) {
-				hueResponse.getErrors().add(((JsonObject) error).mapTo(Error.class));
-			}
-		});
-
-		JsonArray data = response.getJsonArray("data");
-		data.forEach(resource -> {
-			if (resource instanceof JsonObject) {
-				String type = ((JsonObject) resource).getString("type");
+	private Future<HueResponse> parseInto(HueResponse hueResponse, HttpResponse<Buffer> response) {
+		if (response.statusCode() != HttpResponseStatus.OK.code()) {
+			return Future.failedFuture("Unexpected response: Status=" + response.statusCode() + " - Body="
+					+ response.bodyAsString());
+		}
+		Buffer body = response.body();
+		HueSpan span = HueTracer.getInstance()
+				.startSpan("resources.parse", traceContext)
+				.setAttribute("response.bytes", body.length());
+		try {
+			HueResourceParser.parseInto(hueResponse, body);
+			span.end();
+			return Future.succeededFuture(hueResponse);
+		} catch (IOException e) {
+			span.end(e.getMessage());
+			return Future.failedFuture("Invalid resource response: " + e.getMessage());
+		}
+	}
 
-				switch (type) {
-				case "device":
-					hueResponse.getDevices().add(((JsonObject) resource).mapTo(Device.class));
-					break;
-				case "light":
-					hueResponse.getLights().add(((JsonObject) resource).mapTo(Light.class));
-					break;
-				case "zigbee_connectivity":
-					hueResponse.getDeviceConnectivities().add(((JsonObject) resource).mapTo(DeviceConnectivity.class));
-					break;
-				default:
-					break;
-				}
-			}
-		});
-		return hueResponse;
+	private Future<List<HttpResponse<Buffer>>> getResources(HueBridge bridge, String url, List<String> endpoints) {
+		List<Future<HttpResponse<Buffer>>> requests = new ArrayList<>();
+		for (String endpoint : endpoints) {
+			HueSpan span = HueTracer.getInstance()
+					.startSpan("bridge.GET", traceContext)
+					.setAttribute("http.path", endpoint);
+			HttpRequest<Buffer> request = this.webClient.get(url, endpoint)
+					.putHeader("hue-application-key", bridge.getApplicationKey());
+			requests.add(HueHttpClientRegistry.getInstance()
+					.send(request, HttpRequest::send)
+					.onSuccess(getResponse -> span.setAttribute("http.status", getResponse.statusCode()).end())
+					.onFailure(throwable -> span.end(throwable.toString())));
+		}
+		return Future.all(requests).map(joined -> joined.list());
 	}
 }
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.discovery.index;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.model.device.Device;
+import de.eq3.plugin.hue.model.device.Service;
+
+/**
+ * Bidirectional routing index between the domain device ID (the Hue device ID)
+ * and the Hue services of the device.
+ * <p>
+ * The index is rebuilt on every discovery and updated incrementally from the
+ * server-sent events of the bridge. All lookups are plain hash map reads and do
+ * not allocate, so they can be used on the control and event hot paths.
+ * </p>
+ * <p>
+ * This class is a thread safe singleton, as it is shared by all verticles.
+ * </p>
+ */
+public final class HueRoutingIndex {
+	public static final String RTYPE_DEVICE = "device";
+	public static final String RTYPE_LIGHT = "light";
+	public static final String RTYPE_CONNECTIVITY = "zigbee_connectivity";
+
+	private static final Logger logger = LogManager.getLogger(HueRoutingIndex.class);
+	private static final HueRoutingIndex instance = new HueRoutingIndex();
+
+	private volatile Tables tables = new Tables();
+
+	private HueRoutingIndex() {
+	}
+
+	public static HueRoutingIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Replaces the index with the services of the given devices.
+	 *
+	 * @param devices the Hue devices
+	 */
+	public void rebuild(Collection<Device> devices) {
+		Tables newTables = new Tables();
+		devices.forEach(device -> addDevice(newTables, device));
+		this.tables = newTables;
+
+		logger.debug("Rebuilt routing index with {} devices", newTables.deviceToLight.size());
+	}
+
+	/**
+	 * Removes all entries from the index.
+	 */
+	public void clear() {
+		this.tables = new Tables();
+	}
+
+	/**
+	 * Adds or replaces the services of a single device.
+	 *
+	 * @param device the Hue device
+	 */
+	public void upsertDevice(Device device) {
+		Tables current = this.tables;
+		removeDevice(current, device.getId());
+		addDevice(current, device);
+	}
+
+	/**
+	 * Removes a device and all of its services.
+	 *
+	 * @param deviceId the device ID
+	 */
+	public void removeDevice(String deviceId) {
+		removeDevice(this.tables, deviceId);
+	}
+
+	/**
+	 * Adds a single service owned by the given device, e.g. from an SSE add event.
+	 *
+	 * @param serviceId the rid of the service
+	 * @param rtype     the type of the service
+	 * @param deviceId  the owning device
+	 */
+	public void putService(String serviceId, String rtype, String deviceId) {
+		addService(this.tables, deviceId, serviceId, rtype);
+	}
+
+	/**
+	 * Removes a single service, e.g. from an SSE delete event.
+	 *
+	 * @param serviceId the rid of the service
+	 */
+	public void removeService(String serviceId) {
+		Tables current = this.tables;
+		String deviceId = current.serviceToDevice.remove(serviceId);
+		if (deviceId != null) {
+			current.deviceToLight.remove(deviceId, serviceId);
+			current.deviceToConnectivity.remove(deviceId, serviceId);
+		}
+	}
+
+	public boolean containsDevice(String deviceId) {
+		Tables current = this.tables;
+		return current.deviceToLight.containsKey(deviceId) || current.deviceToConnectivity.containsKey(deviceId);
+	}
+
+	/**
+	 * @param deviceId the device ID
+	 * @return the rid of the light service or null
+	 */
+	public String getLightServiceId(String deviceId) {
+		return this.tables.deviceToLight.get(deviceId);
+	}
+
+	/**
+	 * @param serviceId the rid of a light or zigbee_connectivity service
+	 * @return the ID of the owning device or null
+	 */
+	public String getDeviceId(String serviceId) {
+		return this.tables.serviceToDevice.get(serviceId);
+	}
+
+	/**
+	 * Resolves the owning device of a service, falling back to the given owner rid
+	 * if the service is not (yet) indexed.
+	 *
+	 * @param serviceId the rid of the service
+	 * @param ownerRid  the owner rid reported with the service, may be null
+	 * @return the device ID or null if unknown
+	 */
+	public String getDeviceId(String serviceId, String ownerRid) {
+		String deviceId = this.tables.serviceToDevice.get(serviceId);
+		return deviceId != null ? deviceId : ownerRid;
+	}
+
+	private static void addDevice(Tables tables, Device device) {
+		List<Service> services = device.getServices();
+		if (device.getId() == null || services == null) {
+			return;
+		}
+		services.forEach(service -> addService(tables, device.getId(), service.getRid(), service.getRtype()));
+	}
+
+	private static void addService(Tables tables, String deviceId, String serviceId, String rtype) {
+		if (deviceId == null || serviceId == null) {
+			return;
+		}
+		if (RTYPE_LIGHT.equalsIgnoreCase(rtype)) {
+			tables.deviceToLight.putIfAbsent(deviceId, serviceId);
+			tables.serviceToDevice.put(serviceId, deviceId);
+		} else if (RTYPE_CONNECTIVITY.equalsIgnoreCase(rtype)) {
+			tables.deviceToConnectivity.putIfAbsent(deviceId, serviceId);
+			tables.serviceToDevice.put(serviceId, deviceId);
+		}
+	}
+
+	private static void removeDevice(Tables tables, String deviceId) {
+		String lightId = tables.deviceToLight.remove(deviceId);
+		if (lightId != null) {
+			tables.serviceToDevice.remove(lightId);
+		}
+		String connectivityId = tables.deviceToConnectivity.remove(deviceId);
+		if (connectivityId != null) {
+			tables.serviceToDevice.remove(connectivityId);
+		}
+	}
+
+	private static final class Tables {
+		private final Map<String, String> deviceToLight = new ConcurrentHashMap<>();
+		private final Map<String, String> deviceToConnectivity = new ConcurrentHashMap<>();
+		private final Map<String, String> serviceToDevice = new ConcurrentHashMap<>();
+	}
+}
@@ -17,7 +17,10 @@
 package de.eq3.plugin.hue.discovery.mapping;
 
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,17 +37,43 @@ import de.eq3.plugin.hue.model.light.Dimming;
 import de.eq3.plugin.hue.model.light.Light;
 import de.eq3.plugin.hue.model.light.On;
 import de.eq3.plugin.hue.model.light.Xy;
+import de.eq3.plugin.hue.util.HueColorEngine;
 import de.eq3.plugin.hue.util.HueColorHelper;
+import de.eq3.plugin.hue.util.HueColorTable;
 import de.eq3.plugin.serialization.Feature;
 
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 
+/**
+ * Maps the features of Homematic IP to Hue light updates and back.
+ * <p>
+ * Requested features are dispatched by their {@link Feature} type to a table of
+ * mappers, each feature is derived once. Expected features are collected by
+ * type, so a later value of the same type replaces an earlier one.
+ * Common values like on/off and dim levels of 0% and 100% are shared
+ * instances, which must not be modified.
+ * </p>
+ */
 public class FeatureConverter {
+	private static final SwitchState SWITCH_ON = new SwitchState(true);
+	private static final SwitchState SWITCH_OFF = new SwitchState(false);
+	private static final de.eq3.plugin.domain.features.Dimming DIM_LEVEL_OFF = new de.eq3.plugin.domain.features.Dimming(
+			0.0);
+	private static final de.eq3.plugin.domain.features.Dimming DIM_LEVEL_FULL = new de.eq3.plugin.domain.features.Dimming(
+			1.0);
+	private static final On LIGHT_ON = new On(true);
+	private static final On LIGHT_OFF = new On(false);
+
 	private static FeatureConverter instance;
 	private final Logger logger = LogManager.getLogger(this.getClass());
+	private final Map<Feature, FeatureMapper> mappers = new EnumMap<>(Feature.class);
 
 	private FeatureConverter() {
+		mappers.put(Feature.SWITCH_STATE, new SwitchStateMapper());
+		mappers.put(Feature.DIMMING, new DimmingMapper());
+		mappers.put(Feature.COLOR_TEMPERATURE, new ColorTemperatureMapper());
+		mappers.put(Feature.COLOR, new ColorMapper());
 	}
 
 	public static FeatureConverter getInstance() {
@@ -61,141 +90,104 @@ public class FeatureConverter {
 		return instance;
 	}
 
-	public Light doForward(Set<IFeature> features) {
+	/**
+	 * Converts the requested features into a light update. Colors are clipped to
+	 * the gamut of the light.
+	 *
+	 * @param lightId  the rid of the light service
+	 * @param features the requested features
+	 * @return the light update
+	 */
+	public Light doForward(String lightId, Set<IFeature> features) {
 		Light light = new Light();
 
-		features.forEach(feature -> {
+		for (IFeature feature : features) {
 			logger.debug(feature);
 
-			if (feature instanceof SwitchState) {
-				boolean switchState = ((SwitchState) feature).getOn();
-
-				On on = new On();
-				on.setOn(switchState);
-				light.setOn(on);
-			}
-
-			if (feature instanceof de.eq3.plugin.domain.features.Dimming
-					&& deriveDimLevel((de.eq3.plugin.domain.features.Dimming) feature) != null) {
-				Dimming dimming = deriveDimLevel((de.eq3.plugin.domain.features.Dimming) feature);
-				light.setDimming(dimming);
-				light.setOn(new On(dimming.getBrightness() > 0));
+			FeatureMapper mapper = mappers.get(feature.getType());
+			if (mapper != null) {
+				mapper.forward(feature, lightId, light);
 			}
-
-			if (feature instanceof de.eq3.plugin.domain.features.ColorTemperature
-					&& deriveColorTemperature((de.eq3.plugin.domain.features.ColorTemperature) feature) != null) {
-				light.setColorTemperature(
-						deriveColorTemperature((de.eq3.plugin.domain.features.ColorTemperature) feature));
-			}
-
-			if (feature instanceof de.eq3.plugin.domain.features.Color
-					&& deriveColor((de.eq3.plugin.domain.features.Color) feature) != null) {
-				light.setColor(deriveColor((de.eq3.plugin.domain.features.Color) feature));
-			}
-		});
-
-		return light;
-	}
-
-	private Dimming deriveDimLevel(de.eq3.plugin.domain.features.Dimming feature) {
-		Double dimLevel = feature.getDimLevel();
-		if (dimLevel >= 0.0 && dimLevel <= 1.0) {
-			Dimming dimming = new Dimming();
-			dimming.setBrightness(dimLevel * 100.0);
-			return dimming;
-		}
-		return null;
-	}
-
-	private ColorTemperature deriveColorTemperature(de.eq3.plugin.domain.features.ColorTemperature feature) {
-		Integer colorTemperatureValue = feature.getColorTemperature();
-
-		if (colorTemperatureValue != de.eq3.plugin.domain.features.ColorTemperature.IGNORE_VALUE
-				&& colorTemperatureValue != de.eq3.plugin.domain.features.ColorTemperature.LAST_VALUE) {
-			Integer mirek = HueColorHelper.getColorTemperatureMirek(colorTemperatureValue, 153, 500);
-			ColorTemperature colorTemperature = new ColorTemperature();
-			colorTemperature.setMirek(mirek);
-			return colorTemperature;
 		}
-		return null;
+		return light;
 	}
 
-	private Color deriveColor(de.eq3.plugin.domain.features.Color feature) {
-		if (feature.getHue() != de.eq3.plugin.domain.features.Color.HUE_IGNORE_VALUE
-				&& feature.getHue() != de.eq3.plugin.domain.features.Color.HUE_LAST_VALUE
-				&& feature.getSaturationLevel() != de.eq3.plugin.domain.features.Color.SATURATION_IGNORE_VALUE
-				&& feature.getSaturationLevel() != de.eq3.plugin.domain.features.Color.SATURATION_LAST_VALUE) {
-			Xy xy = HueColorHelper.getXYByHueSaturation(feature.getHue(), feature.getSaturationLevel());
-
-			Color colorXY = new Color();
-			colorXY.setXy(xy);
-			return colorXY;
+	/**
+	 * Returns the features the light is expected to report once the given
+	 * requested features have been applied. Features which are not forwarded to
+	 * the bridge are omitted.
+	 *
+	 * @param features the requested features
+	 * @return the expected features
+	 */
+	public Set<IFeature> getExpectedFeatures(Set<IFeature> features) {
+		Set<IFeature> expected = new HashSet<>();
+
+		for (IFeature feature : features) {
+			FeatureMapper mapper = mappers.get(feature.getType());
+			if (mapper != null) {
+				mapper.expect(feature, expected);
+			}
 		}
-		return null;
+		return expected;
 	}
 
 	public Set<IFeature> getSupportedFeatures(Light light) {
-		// switching must be supported, otherwise the light is not valid
-		if (light.getOn() == null) {
-			return Collections.emptySet();
-		}
-		Boolean isOn = light.getOn().getOn();
-
-		Set<IFeature> features = new HashSet<>();
-		features.add(new SwitchState(isOn));
-		features.addAll(mapRelevantFeatures(light, true));
-
-		return features;
+		return mapLight(light, true);
 	}
 
 	public Set<IFeature> doBackward(Light light) {
+		return mapLight(light, false);
+	}
+
+	private Set<IFeature> mapLight(Light light, boolean isInitial) {
 		// switching must be supported, otherwise the light is not valid
 		if (light.getOn() == null) {
 			return Collections.emptySet();
 		}
-		Boolean isOn = light.getOn().getOn();
-
 		Set<IFeature> features = new HashSet<>();
-		features.add(new SwitchState(isOn));
-		features.addAll(mapRelevantFeatures(light, false));
+		features.add(switchState(light.getOn().getOn()));
+		mapRelevantFeatures(light, isInitial, features);
 
 		return features;
 	}
 
-	public Set<IFeature> mapChanges(Vertx vertx, Light light, HueBridge bridge) {
+	/**
+	 * Maps a light update reported by the bridge to the changed features. A
+	 * reported brightness is added as a dim level of its own, next to the last
+	 * known dim level of a light which has been turned on and next to the dim
+	 * level of 0% of a light which has been turned off.
+	 *
+	 * @param vertx    the vertx instance used to request the light state
+	 * @param deviceId the id of the device
+	 * @param light    the reported light update
+	 * @param bridge   the bridge of the light
+	 * @return the changed features
+	 */
+	public Set<IFeature> mapChanges(Vertx vertx, String deviceId, Light light, HueBridge bridge) {
 		Set<IFeature> changes = new HashSet<>();
+
 		if (light.getOn() != null) {
-			changes.add(new SwitchState(light.getOn().getOn()));
+			changes.add(switchState(light.getOn().getOn()));
 
 			// When the light has been turned on, the current light status should be requested to set the correct dim
 			// level
 			// Otherwise the dim level should be set to zero
 			if (Boolean.TRUE.equals(light.getOn().getOn())) {
-				changes.add(new SwitchState(light.getOn().getOn()));
-				Device matchDevice = bridge.getPluginDevices().get(light.getOwner().getRid());
-				if (matchDevice != null
-						&& matchDevice.getFeatures().stream().anyMatch(f -> f.getType() == Feature.DIMMING)) {
-					changes.add(matchDevice.getFeatures()
-							.stream()
-							.filter((f -> f.getType() == Feature.DIMMING))
-							.findFirst()
-							.orElseThrow());
+				IFeature dimming = findDimming(bridge.getPluginDevices().get(deviceId));
+				if (dimming != null) {
+					changes.add(dimming);
 				} else {
 					HueLightStateRequest request = new HueLightStateRequest(light.getId());
 					vertx.eventBus().send(HueLightStateRequest.ENDPOINT, JsonObject.mapFrom(request));
 				}
-
 			} else {
-				de.eq3.plugin.domain.features.Dimming dimming = new de.eq3.plugin.domain.features.Dimming();
-				dimming.setDimLevel(0.0);
-				changes.add(dimming);
+				changes.add(DIM_LEVEL_OFF);
 			}
 		}
 
 		if (light.getDimming() != null) {
-			de.eq3.plugin.domain.features.Dimming dimming = new de.eq3.plugin.domain.features.Dimming();
-			dimming.setDimLevel(light.getDimming().getBrightness() / 100.0);
-			changes.add(dimming);
+			changes.add(dimLevel(light.getDimming().getBrightness() / 100.0));
 		}
 
 		if (light.getColorTemperature() != null && Boolean.TRUE.equals(light.getColorTemperature().getMirekValid())
@@ -211,9 +203,11 @@ public class FeatureConverter {
 			Xy xy = light.getColor().getXy();
 
 			if (xy != null && xy.getY() != null && xy.getY() > 0) {
-				double[] hsvByXy = HueColorHelper.getHueSaturationByXY(xy);
+				long hueSaturation = HueLightGamutRegistry.getInstance()
+						.xyToHueSaturation(light.getId(), xy.getX(), xy.getY());
 
-				changes.add(new de.eq3.plugin.domain.features.Color((int) hsvByXy[0], hsvByXy[1]));
+				changes.add(new de.eq3.plugin.domain.features.Color(HueColorEngine.hue(hueSaturation),
+						HueColorEngine.saturation(hueSaturation)));
 			}
 		}
 		return changes;
@@ -221,9 +215,13 @@ public class FeatureConverter {
 
 	public Set<IFeature> mapRelevantFeatures(Light light, boolean isInitial) {
 		Set<IFeature> features = new HashSet<>();
+		mapRelevantFeatures(light, isInitial, features);
+		return features;
+	}
 
+	private void mapRelevantFeatures(Light light, boolean isInitial, Set<IFeature> features) {
 		if (light.getDimming() != null) {
-			features.add(new de.eq3.plugin.domain.features.Dimming(light.getDimming().getBrightness() / 100.0));
+			features.add(dimLevel(light.getDimming().getBrightness() / 100.0));
 		}
 
 		if (light.getColorTemperature() != null && (isInitial || light.getColorTemperature().getMirek() != null)) {
@@ -246,12 +244,195 @@ public class FeatureConverter {
 
 			de.eq3.plugin.domain.features.Color color = new de.eq3.plugin.domain.features.Color();
 			if (xy != null && xy.getY() != null && xy.getY() > 0) {
-				double[] hsvByXy = HueColorHelper.getHueSaturationByXY(xy);
-				color.setHue((int) hsvByXy[0]);
-				color.setSaturationLevel(hsvByXy[1]);
+				long hueSaturation = HueLightGamutRegistry.getInstance()
+						.xyToHueSaturation(light.getId(), xy.getX(), xy.getY());
+				color.setHue(HueColorEngine.hue(hueSaturation));
+				color.setSaturationLevel(HueColorEngine.saturation(hueSaturation));
 			}
 			features.add(color);
 		}
-		return features;
+	}
+
+	/**
+	 * Adds the feature, replacing a feature of the same type.
+	 */
+	private static void putFeature(Set<IFeature> features, IFeature feature) {
+		removeFeature(features, feature.getType());
+		features.add(feature);
+	}
+
+	/**
+	 * Adds the feature, unless there is a feature of the same type.
+	 */
+	private static void putFeatureIfAbsent(Set<IFeature> features, IFeature feature) {
+		for (IFeature existing : features) {
+			if (existing.getType() == feature.getType()) {
+				return;
+			}
+		}
+		features.add(feature);
+	}
+
+	private static void removeFeature(Set<IFeature> features, Feature type) {
+		Iterator<IFeature> iterator = features.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getType() == type) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static IFeature findDimming(Device device) {
+		if (device == null) {
+			return null;
+		}
+		for (IFeature feature : device.getFeatures()) {
+			if (feature.getType() == Feature.DIMMING) {
+				return feature;
+			}
+		}
+		return null;
+	}
+
+	private static SwitchState switchState(Boolean on) {
+		if (on == null) {
+			return new SwitchState(on);
+		}
+		return on ? SWITCH_ON : SWITCH_OFF;
+	}
+
+	private static de.eq3.plugin.domain.features.Dimming dimLevel(double dimLevel) {
+		if (dimLevel == 0.0) {
+			return DIM_LEVEL_OFF;
+		} else if (dimLevel == 1.0) {
+			return DIM_LEVEL_FULL;
+		}
+		return new de.eq3.plugin.domain.features.Dimming(dimLevel);
+	}
+
+	/**
+	 * Maps a requested feature of a single type.
+	 */
+	private interface FeatureMapper {
+		/**
+		 * Applies the feature to the light update, features with ignored or invalid
+		 * values are skipped.
+		 *
+		 * @param feature the requested feature
+		 * @param lightId the rid of the light service, may be null
+		 * @param light   the light update
+		 */
+		void forward(IFeature feature, String lightId, Light light);
+
+		/**
+		 * Adds the features the light is expected to report after the feature has
+		 * been applied.
+		 *
+		 * @param feature  the requested feature
+		 * @param expected the expected features, at most one of each type
+		 */
+		void expect(IFeature feature, Set<IFeature> expected);
+	}
+
+	private static final class SwitchStateMapper implements FeatureMapper {
+		@Override
+		public void forward(IFeature feature, String lightId, Light light) {
+			light.setOn(((SwitchState) feature).getOn() ? LIGHT_ON : LIGHT_OFF);
+		}
+
+		@Override
+		public void expect(IFeature feature, Set<IFeature> expected) {
+			// a requested dim level determines the switch state
+			putFeatureIfAbsent(expected, feature);
+			if (Boolean.FALSE.equals(((SwitchState) feature).getOn())) {
+				putFeatureIfAbsent(expected, DIM_LEVEL_OFF);
+			}
+		}
+	}
+
+	private static final class DimmingMapper implements FeatureMapper {
+		@Override
+		public void forward(IFeature feature, String lightId, Light light) {
+			Double dimLevel = ((de.eq3.plugin.domain.features.Dimming) feature).getDimLevel();
+			if (isValid(dimLevel)) {
+				Dimming dimming = new Dimming();
+				dimming.setBrightness(dimLevel * 100.0);
+				light.setDimming(dimming);
+				light.setOn(dimming.getBrightness() > 0 ? LIGHT_ON : LIGHT_OFF);
+			}
+		}
+
+		@Override
+		public void expect(IFeature feature, Set<IFeature> expected) {
+			Double dimLevel = ((de.eq3.plugin.domain.features.Dimming) feature).getDimLevel();
+			if (isValid(dimLevel)) {
+				putFeature(expected, feature);
+				putFeature(expected, switchState(dimLevel > 0));
+			}
+		}
+
+		private static boolean isValid(Double dimLevel) {
+			return dimLevel >= 0.0 && dimLevel <= 1.0;
+		}
+	}
+
+	private static final class ColorTemperatureMapper implements FeatureMapper {
+		@Override
+		public void forward(IFeature feature, String lightId, Light light) {
+			Integer colorTemperatureValue = ((de.eq3.plugin.domain.features.ColorTemperature) feature)
+					.getColorTemperature();
+			if (isValid(colorTemperatureValue)) {
+				Integer mirek = HueColorHelper.getColorTemperatureMirek(colorTemperatureValue, 153, 500);
+				ColorTemperature colorTemperature = new ColorTemperature();
+				colorTemperature.setMirek(mirek);
+				light.setColorTemperature(colorTemperature);
+			}
+		}
+
+		@Override
+		public void expect(IFeature feature, Set<IFeature> expected) {
+			if (isValid(((de.eq3.plugin.domain.features.ColorTemperature) feature).getColorTemperature())) {
+				putFeature(expected, feature);
+			}
+		}
+
+		private static boolean isValid(Integer colorTemperatureValue) {
+			return colorTemperatureValue != de.eq3.plugin.domain.features.ColorTemperature.IGNORE_VALUE
+					&& colorTemperatureValue != de.eq3.plugin.domain.features.ColorTemperature.LAST_VALUE;
+		}
+	}
+
+	private static final class ColorMapper implements FeatureMapper {
+		// the coordinates are copied into the update, so the array is reused by each thread
+		private final ThreadLocal<double[]> scratch = ThreadLocal.withInitial(() -> new double[2]);
+
+		@Override
+		public void forward(IFeature feature, String lightId, Light light) {
+			de.eq3.plugin.domain.features.Color color = (de.eq3.plugin.domain.features.Color) feature;
+			if (isValid(color)) {
+				double[] xy = scratch.get();
+				HueColorTable.getInstance().hueSaturationToXy(color.getHue(), color.getSaturationLevel(), xy);
+				HueLightGamutRegistry.getInstance()
+						.applyCommand(lightId, color.getHue(), color.getSaturationLevel(), xy);
+
+				Color colorXY = new Color();
+				colorXY.setXy(new Xy(xy[0], xy[1]));
+				light.setColor(colorXY);
+			}
+		}
+
+		@Override
+		public void expect(IFeature feature, Set<IFeature> expected) {
+			if (isValid((de.eq3.plugin.domain.features.Color) feature)) {
+				putFeature(expected, feature);
+			}
+		}
+
+		private static boolean isValid(de.eq3.plugin.domain.features.Color color) {
+			return color.getHue() != de.eq3.plugin.domain.features.Color.HUE_IGNORE_VALUE
+					&& color.getHue() != de.eq3.plugin.domain.features.Color.HUE_LAST_VALUE
+					&& color.getSaturationLevel() != de.eq3.plugin.domain.features.Color.SATURATION_IGNORE_VALUE
+					&& color.getSaturationLevel() != de.eq3.plugin.domain.features.Color.SATURATION_LAST_VALUE;
+		}
 	}
 }
@@ -68,6 +68,7 @@ public final class HueDeviceConverter extends Converter<HueDeviceData, de.eq3.pl
 		features.add(maintenance);
 
 		Light light = hueDeviceData.getLight();
+		HueLightGamutRegistry.getInstance().register(light);
 		features.addAll(FeatureConverter.getInstance().getSupportedFeatures(light));
 
 		return features;
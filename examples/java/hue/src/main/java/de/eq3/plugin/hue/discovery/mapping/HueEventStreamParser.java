@@ -0,0 +1,128 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.discovery.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import de.eq3.plugin.hue.model.sse.Event;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+/**
+ * Assembles the chunks of the server-sent event stream of the Hue bridge into
+ * messages and decodes the events of their data lines.
+ * <p>
+ * An instance keeps the chunks of the current incomplete message and must only
+ * be used by a single event stream.
+ * </p>
+ */
+public final class HueEventStreamParser {
+	private static final Logger logger = LogManager.getLogger(HueEventStreamParser.class);
+
+	/**
+	 * All Hue events end on two line breaks (ASCII 10). Used to detect non complete frames
+	 */
+	private static final byte[] HUE_MESSAGE_ENDING = { 10, 10 };
+	private static final String DATA_PREFIX = "data: ";
+
+	private Buffer messageBuffer = Buffer.buffer();
+
+	/**
+	 * Adds a chunk of the event stream. Chunks may end at any byte, including
+	 * within a multi-byte character or between the line breaks ending a
+	 * message, and may contain several messages.
+	 *
+	 * @param chunk the received chunk
+	 * @return the events of the messages completed by the chunk, empty if no
+	 *         message is complete yet
+	 */
+	public List<Event> parse(Buffer chunk) {
+		int previousLength = messageBuffer.length();
+		messageBuffer.appendBuffer(chunk);
+		int messageEnd = lastMessageEnd(previousLength);
+		if (messageEnd < 0) {
+			logger.trace("Received non ended frame of message");
+			return Collections.emptyList();
+		} else {
+			logger.trace("Received last frame of message");
+		}
+
+		String response = messageBuffer.getString(0, messageEnd, "UTF-8");
+		String[] result = response.split("\\R");
+		messageBuffer = messageBuffer.getBuffer(messageEnd, messageBuffer.length());
+
+		List<Event> events = new ArrayList<>();
+		for (String val : result) {
+			if (!val.startsWith(DATA_PREFIX)) {
+				logger.trace("Received non data body: {}", val);
+				continue;
+			}
+			events.addAll(decodeEvents(val.substring(val.indexOf("["))));
+		}
+		return events;
+	}
+
+	/**
+	 * Returns the end of the last complete message in the buffer, only searching
+	 * the bytes added since the previous chunk.
+	 */
+	private int lastMessageEnd(int previousLength) {
+		int messageEnd = -1;
+		for (int i = Math.max(1, previousLength); i < messageBuffer.length(); i++) {
+			if (messageBuffer.getByte(i) == HUE_MESSAGE_ENDING[1]
+					&& messageBuffer.getByte(i - 1) == HUE_MESSAGE_ENDING[0]) {
+				messageEnd = i + 1;
+			}
+		}
+		return messageEnd;
+	}
+
+	/**
+	 * Decodes the JSON array of a data line.
+	 *
+	 * @param data the JSON array of events
+	 * @return the events, empty if the data could not be decoded
+	 */
+	public static List<Event> decodeEvents(String data) {
+		if (logger.isTraceEnabled()) {
+			try {
+				logger.trace("Received data body: {}", new JsonArray(data));
+			} catch (DecodeException e) {
+				logger.error("Could not parse incoming data to JSON {}", data);
+			}
+		}
+
+		try {
+			return Arrays.asList(DatabindCodec.mapper().readValue(data, Event[].class));
+		} catch (JsonProcessingException e) {
+			logger.error("SYSTEM: Error mapping JSON", e);
+			return Collections.emptyList();
+		}
+	}
+}
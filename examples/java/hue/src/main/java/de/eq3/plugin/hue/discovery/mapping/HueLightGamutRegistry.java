@@ -0,0 +1,152 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.discovery.mapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.util.HueColorEngine;
+import de.eq3.plugin.hue.util.HueColorTable;
+import de.eq3.plugin.hue.util.HueGamut;
+
+/**
+ * Color gamuts of the lights, keyed by the rid of the light service, and the
+ * last color sent to each light.
+ * <p>
+ * The gamuts are registered during discovery, as the server-sent events of the
+ * bridge do not contain them. Colors sent to a light are clipped to its gamut,
+ * so the bridge does not correct them. When the bridge reports the clipped
+ * color of the last command, it is mapped back to the requested hue and
+ * saturation instead of the hue and saturation of the clipped color, so the
+ * state reported to the HCU matches the command.
+ * </p>
+ * <p>
+ * This class is a thread safe singleton, as it is shared by all verticles.
+ * </p>
+ */
+public final class HueLightGamutRegistry {
+	/**
+	 * Tolerance for matching reported coordinates with the last command, the
+	 * bridge may round the coordinates it reports. The margin keeps differences
+	 * of exactly 0.0002 within the tolerance despite floating point errors.
+	 */
+	private static final double XY_TOLERANCE = 0.0002 + 1e-9;
+
+	private static final HueLightGamutRegistry instance = new HueLightGamutRegistry();
+
+	private final Map<String, HueGamut> gamuts = new ConcurrentHashMap<>();
+	private final Map<String, ColorCommand> lastCommands = new ConcurrentHashMap<>();
+
+	private HueLightGamutRegistry() {
+	}
+
+	public static HueLightGamutRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers the gamut reported by a light resource. Lights without color
+	 * support or without a known gamut are removed.
+	 *
+	 * @param light the light resource
+	 */
+	public void register(Light light) {
+		if (light.getId() == null) {
+			return;
+		}
+		HueGamut gamut = light.getColor() != null
+				? HueGamut.of(light.getColor().getGamut(), light.getColor().getGamutType())
+				: null;
+		if (gamut != null) {
+			gamuts.put(light.getId(), gamut);
+		} else {
+			gamuts.remove(light.getId());
+		}
+	}
+
+	/**
+	 * @param lightId the rid of the light service
+	 * @return the gamut of the light or null if unknown
+	 */
+	public HueGamut getGamut(String lightId) {
+		return lightId != null ? gamuts.get(lightId) : null;
+	}
+
+	/**
+	 * Clips the coordinates of a color sent to a light to its gamut and remembers
+	 * the command for {@link #xyToHueSaturation(String, double, double)}.
+	 *
+	 * @param lightId    the rid of the light service, may be null
+	 * @param hue        the requested hue
+	 * @param saturation the requested saturation
+	 * @param xy         the coordinates of the requested color, clipped in place
+	 */
+	public void applyCommand(String lightId, int hue, double saturation, double[] xy) {
+		if (lightId == null) {
+			return;
+		}
+		HueGamut gamut = gamuts.get(lightId);
+		if (gamut != null) {
+			gamut.clip(xy);
+		}
+		lastCommands.put(lightId, new ColorCommand(hue, saturation, xy[0], xy[1]));
+	}
+
+	/**
+	 * Converts the coordinates reported by a light to hue and saturation. If the
+	 * coordinates are those of the last command sent to the light, the requested
+	 * hue and saturation are returned.
+	 *
+	 * @param lightId the rid of the light service, may be null
+	 * @param x       the reported x coordinate
+	 * @param y       the reported y coordinate
+	 * @return hue and saturation packed into a long, see
+	 *         {@link HueColorEngine#hue(long)} and
+	 *         {@link HueColorEngine#saturation(long)}
+	 */
+	public long xyToHueSaturation(String lightId, double x, double y) {
+		ColorCommand command = lightId != null ? lastCommands.get(lightId) : null;
+		if (command != null && Math.abs(command.x - x) <= XY_TOLERANCE && Math.abs(command.y - y) <= XY_TOLERANCE) {
+			return command.hueSaturation;
+		}
+		return HueColorTable.getInstance().xyToHueSaturation(x, y);
+	}
+
+	/**
+	 * Removes the gamut and the last command of a light.
+	 *
+	 * @param lightId the rid of the light service
+	 */
+	public void remove(String lightId) {
+		gamuts.remove(lightId);
+		lastCommands.remove(lightId);
+	}
+
+	private static final class ColorCommand {
+		private final long hueSaturation;
+		private final double x;
+		private final double y;
+
+		private ColorCommand(int hue, double saturation, double x, double y) {
+			this.hueSaturation = HueColorEngine.pack(hue, saturation);
+			this.x = x;
+			this.y = y;
+		}
+	}
+}
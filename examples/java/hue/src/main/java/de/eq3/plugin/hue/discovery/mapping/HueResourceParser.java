@@ -0,0 +1,151 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.discovery.mapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.eq3.plugin.hue.model.HueResponse;
+import de.eq3.plugin.hue.model.connectivity.DeviceConnectivity;
+import de.eq3.plugin.hue.model.device.Device;
+import de.eq3.plugin.hue.model.light.Light;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+/**
+ * Maps the resource responses of the Hue bridge into a {@link HueResponse}.
+ * <p>
+ * The response body is read with a streaming parser. The fields of each
+ * resource are skipped until the end of the resource, since the bridge writes
+ * the type as last field. Resources of a type used by the plugin are then bound
+ * directly from their bytes into the model class of that type. All other
+ * resources are neither buffered nor bound, no JSON tree of the response is
+ * built.
+ * </p>
+ */
+public final class HueResourceParser {
+	public static final String TYPE_DEVICE = "device";
+	public static final String TYPE_LIGHT = "light";
+	public static final String TYPE_CONNECTIVITY = "zigbee_connectivity";
+
+	private static final String FIELD_ERRORS = "errors";
+	private static final String FIELD_DATA = "data";
+	private static final String FIELD_TYPE = "type";
+
+	private HueResourceParser() {
+	}
+
+	/**
+	 * Parses a single resource response of the Hue bridge.
+	 *
+	 * @param body the response body from the Hue bridge
+	 * @return the parsed HueResponse object
+	 * @throws IOException if the body is no valid resource response
+	 */
+	public static HueResponse parse(Buffer body) throws IOException {
+		HueResponse hueResponse = new HueResponse();
+		parseInto(hueResponse, body);
+		return hueResponse;
+	}
+
+	/**
+	 * Adds the resources of a response of the Hue bridge to an existing
+	 * HueResponse. Used to join the responses of several typed requests.
+	 *
+	 * @param hueResponse the HueResponse to add the resources to
+	 * @param body        the response body from the Hue bridge
+	 * @throws IOException if the body is no valid resource response
+	 */
+	public static void parseInto(HueResponse hueResponse, Buffer body) throws IOException {
+		ObjectMapper mapper = DatabindCodec.mapper();
+		ByteBuf bytes = body.getByteBuf();
+		InputStream input = new ByteBufInputStream(bytes.duplicate());
+		try (JsonParser parser = mapper.createParser(input)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(parser, "Expected resource response object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+
+				if (FIELD_ERRORS.equals(field) && value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						hueResponse.getErrors().add(mapper.readValue(parser, Error.class));
+					}
+				} else if (FIELD_DATA.equals(field) && value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						parseResource(hueResponse, parser, bytes, mapper);
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+	}
+
+	private static void parseResource(HueResponse hueResponse, JsonParser parser, ByteBuf bytes, ObjectMapper mapper)
+			throws IOException {
+		long start = parser.getTokenLocation().getByteOffset();
+		String type = null;
+
+		// the bridge writes the type as last field, so the resource is only scanned here
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			if (parser.nextToken() == JsonToken.VALUE_STRING && FIELD_TYPE.equals(field)) {
+				type = parser.getText();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (type == null || !isRelevantType(type)) {
+			return;
+		}
+		int length = (int) (parser.getTokenLocation().getByteOffset() + 1 - start);
+		try (InputStream resource = new ByteBufInputStream(bytes.slice(bytes.readerIndex() + (int) start, length))) {
+			switch (type) {
+			case TYPE_DEVICE:
+				hueResponse.getDevices().add(mapper.readValue(resource, Device.class));
+				break;
+			case TYPE_LIGHT:
+				hueResponse.getLights().add(mapper.readValue(resource, Light.class));
+				break;
+			default:
+				hueResponse.getDeviceConnectivities().add(mapper.readValue(resource, DeviceConnectivity.class));
+				break;
+			}
+		}
+	}
+
+	private static boolean isRelevantType(String type) {
+		switch (type) {
+		case TYPE_DEVICE:
+		case TYPE_LIGHT:
+		case TYPE_CONNECTIVITY:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
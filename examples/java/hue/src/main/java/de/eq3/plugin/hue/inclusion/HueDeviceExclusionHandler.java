@@ -51,8 +51,7 @@ public class HueDeviceExclusionHandler extends AbstractVerticle implements Handl
 		Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 
 		optionalHueBridge.ifPresentOrElse(hueBridge -> {
-					hueBridge.getIncludedDevices().removeAll(exclusionEvent.getBody().getDeviceIds());
-					HuePersistenceHelper.getInstance().saveIncludedDevices(hueBridge.getIncludedDevices());
+					HuePersistenceHelper.getInstance().excludeDevices(exclusionEvent.getBody().getDeviceIds());
 
 					logger.info("Bridge {}: Excluded devices [deviceIds={}]", hueBridge.getBridgeId(),
 							exclusionEvent.getBody().getDeviceIds());
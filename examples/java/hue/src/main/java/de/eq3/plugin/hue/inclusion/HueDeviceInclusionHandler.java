@@ -52,8 +52,7 @@ public class HueDeviceInclusionHandler extends AbstractVerticle implements Handl
 		Optional<HueBridge> optionalHueBridge = HuePersistenceHelper.getInstance().getHueBridge();
 
 		optionalHueBridge.ifPresentOrElse(hueBridge -> {
-					hueBridge.getIncludedDevices().addAll(inclusionEvent.getBody().getDeviceIds());
-					HuePersistenceHelper.getInstance().saveIncludedDevices(hueBridge.getIncludedDevices());
+					HuePersistenceHelper.getInstance().includeDevices(inclusionEvent.getBody().getDeviceIds());
 
 					logger.info("Bridge {}: Updated included devices [deviceIds={}]", hueBridge.getBridgeId(),
 							inclusionEvent.getBody().getDeviceIds());
@@ -0,0 +1,309 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry for the runtime metrics of the plugin.
+ * <p>
+ * Metrics are identified by their name and an optional list of label name and
+ * value pairs. Counters, gauges and timers are created on first use and
+ * returned on every further call with the same name and labels, so callers
+ * without labels should keep the returned instance in a field. Existing
+ * counters of other classes are bound with
+ * {@link #registerCounter(String, String, LongSupplier)} and only read while
+ * scraping.
+ * </p>
+ * <p>
+ * All metrics are thread safe. {@link #scrape()} renders the Prometheus text
+ * exposition format.
+ * </p>
+ */
+public final class HueMetrics {
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final HueMetrics INSTANCE = new HueMetrics();
+
+	private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+	private HueMetrics() {
+	}
+
+	public static HueMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the counter with the given name and labels.
+	 *
+	 * @param name   the metric name
+	 * @param help   the description of the metric
+	 * @param labels label names and values in turns
+	 * @return the counter
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) family(name, help, Type.COUNTER).children.computeIfAbsent(labels(labels),
+				key -> new Counter());
+	}
+
+	/**
+	 * Returns the gauge with the given name and labels.
+	 *
+	 * @param name   the metric name
+	 * @param help   the description of the metric
+	 * @param labels label names and values in turns
+	 * @return the gauge
+	 */
+	public Gauge gauge(String name, String help, String... labels) {
+		return (Gauge) family(name, help, Type.GAUGE).children.computeIfAbsent(labels(labels), key -> new Gauge());
+	}
+
+	/**
+	 * Returns the timer with the given name and labels. Timers are rendered as
+	 * summary of the recorded durations in seconds.
+	 *
+	 * @param name   the metric name
+	 * @param help   the description of the metric
+	 * @param labels label names and values in turns
+	 * @return the timer
+	 */
+	public Timer timer(String name, String help, String... labels) {
+		return (Timer) family(name, help, Type.SUMMARY).children.computeIfAbsent(labels(labels), key -> new Timer());
+	}
+
+	/**
+	 * Binds a counter maintained by another class. A counter registered again
+	 * under the same name and labels replaces the previous one.
+	 *
+	 * @param name     the metric name
+	 * @param help     the description of the metric
+	 * @param supplier supplier of the current count
+	 * @param labels   label names and values in turns
+	 */
+	public void registerCounter(String name, String help, LongSupplier supplier, String... labels) {
+		family(name, help, Type.COUNTER).children.put(labels(labels), new FunctionMetric(supplier));
+	}
+
+	/**
+	 * Binds a gauge maintained by another class. A gauge registered again under
+	 * the same name and labels replaces the previous one.
+	 *
+	 * @param name     the metric name
+	 * @param help     the description of the metric
+	 * @param supplier supplier of the current value
+	 * @param labels   label names and values in turns
+	 */
+	public void registerGauge(String name, String help, LongSupplier supplier, String... labels) {
+		family(name, help, Type.GAUGE).children.put(labels(labels), new FunctionMetric(supplier));
+	}
+
+	/**
+	 * Renders all metrics in the Prometheus text exposition format.
+	 *
+	 * @return the rendered metrics
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		families.values().forEach(family -> family.write(out));
+		return out.toString();
+	}
+
+	private Family family(String name, String help, Type type) {
+		Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+		if (family.type != type) {
+			throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+		}
+		return family;
+	}
+
+	private static String labels(String... labels) {
+		if (labels.length == 0) {
+			return "";
+		}
+		if (labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must be given as name and value pairs");
+		}
+		StringBuilder out = new StringBuilder("{");
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append(labels[i]).append("=\"");
+			String value = labels[i + 1] != null ? labels[i + 1] : "";
+			for (int c = 0; c < value.length(); c++) {
+				char character = value.charAt(c);
+				if (character == '\\' || character == '"') {
+					out.append('\\').append(character);
+				} else if (character == '\n') {
+					out.append("\\n");
+				} else {
+					out.append(character);
+				}
+			}
+			out.append('"');
+		}
+		return out.append('}').toString();
+	}
+
+	private enum Type {
+		COUNTER, GAUGE, SUMMARY;
+
+		private String exposition() {
+			return name().toLowerCase();
+		}
+	}
+
+	private interface Metric {
+		void write(StringBuilder out, String name, String labels);
+	}
+
+	private static final class Family {
+		private final String name;
+		private final String help;
+		private final Type type;
+		private final ConcurrentMap<String, Metric> children = new ConcurrentHashMap<>();
+
+		private Family(String name, String help, Type type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+
+		private void write(StringBuilder out) {
+			if (children.isEmpty()) {
+				return;
+			}
+			out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(type.exposition()).append('\n');
+			children.forEach((labels, metric) -> metric.write(out, name, labels));
+		}
+	}
+
+	public static final class Counter implements Metric {
+		private final LongAdder count = new LongAdder();
+
+		private Counter() {
+		}
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(long amount) {
+			count.add(amount);
+		}
+
+		public long get() {
+			return count.sum();
+		}
+
+		@Override
+		public void write(StringBuilder out, String name, String labels) {
+			out.append(name).append(labels).append(' ').append(get()).append('\n');
+		}
+	}
+
+	public static final class Gauge implements Metric {
+		private final AtomicLong value = new AtomicLong();
+
+		private Gauge() {
+		}
+
+		public void set(long newValue) {
+			value.set(newValue);
+		}
+
+		public void increment() {
+			value.incrementAndGet();
+		}
+
+		public void decrement() {
+			value.decrementAndGet();
+		}
+
+		public long get() {
+			return value.get();
+		}
+
+		@Override
+		public void write(StringBuilder out, String name, String labels) {
+			out.append(name).append(labels).append(' ').append(get()).append('\n');
+		}
+	}
+
+	public static final class Timer implements Metric {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+
+		private Timer() {
+		}
+
+		/**
+		 * Records a duration.
+		 *
+		 * @param nanos the duration in nanoseconds
+		 */
+		public void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+		}
+
+		/**
+		 * Records the duration since the given start.
+		 *
+		 * @param startNanos the start as returned by {@link System#nanoTime()}
+		 */
+		public void recordSince(long startNanos) {
+			record(System.nanoTime() - startNanos);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		@Override
+		public void write(StringBuilder out, String name, String labels) {
+			double seconds = (double) getTotalNanos() / TimeUnit.SECONDS.toNanos(1);
+			out.append(name).append("_count").append(labels).append(' ').append(getCount()).append('\n');
+			out.append(name).append("_sum").append(labels).append(' ').append(seconds).append('\n');
+		}
+	}
+
+	private static final class FunctionMetric implements Metric {
+		private final LongSupplier supplier;
+
+		private FunctionMetric(LongSupplier supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		public void write(StringBuilder out, String name, String labels) {
+			out.append(name).append(labels).append(' ').append(supplier.getAsLong()).append('\n');
+		}
+	}
+}
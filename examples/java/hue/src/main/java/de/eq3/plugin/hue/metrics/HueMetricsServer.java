@@ -0,0 +1,103 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.connection.HueHttpClientRegistry;
+import de.eq3.plugin.hue.discovery.cache.HueResourceCache;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Serves the metrics of {@link HueMetrics} in the Prometheus text format on
+ * {@code GET /metrics}.
+ * <p>
+ * The server listens on {@code plugin.hue.metrics.host}, by default only on the
+ * loopback interface, and {@code plugin.hue.metrics.port}. It is not deployed
+ * if {@code plugin.hue.metrics.enabled} is false.
+ * </p>
+ */
+public class HueMetricsServer extends AbstractVerticle {
+	public static final String METRICS_PATH = "/metrics";
+	private static final Logger logger = LogManager.getLogger(HueMetricsServer.class);
+
+	public static boolean isEnabled() {
+		return Boolean.parseBoolean(System.getProperty("plugin.hue.metrics.enabled", "true"));
+	}
+
+	@Override
+	public void start(Promise<Void> startPromise) {
+		String host = System.getProperty("plugin.hue.metrics.host", "127.0.0.1");
+		int port = Integer.parseInt(System.getProperty("plugin.hue.metrics.port", "9464"));
+
+		bindPluginMetrics();
+
+		Router router = Router.router(vertx);
+		router.get(METRICS_PATH).handler(this::handleScrape);
+
+		vertx.createHttpServer().requestHandler(router).listen(port, host).onSuccess(server -> {
+			logger.info("SYSTEM: {} Verticle or Worker started, serving metrics on {}:{}",
+					this.getClass().getSimpleName(), host, server.actualPort());
+			startPromise.complete();
+		}).onFailure(throwable -> {
+			logger.error("SYSTEM: Could not serve metrics on {}:{}", host, port, throwable);
+			startPromise.fail(throwable);
+		});
+	}
+
+	private void handleScrape(RoutingContext context) {
+		context.response()
+				.putHeader(HttpHeaders.CONTENT_TYPE, HueMetrics.CONTENT_TYPE)
+				.end(HueMetrics.getInstance().scrape());
+	}
+
+	/**
+	 * Binds the counters which are already maintained by the plugin components.
+	 */
+	private void bindPluginMetrics() {
+		HueMetrics metrics = HueMetrics.getInstance();
+
+		HuePersistenceHelper persistence = HuePersistenceHelper.getInstance();
+		metrics.registerCounter("hue_persistence_writes_total", "Persistence files written",
+				persistence::getWritesPerformed);
+		metrics.registerCounter("hue_persistence_writes_avoided_total",
+				"Persistence writes skipped because nothing changed", persistence::getWritesAvoided);
+		metrics.registerCounter("hue_persistence_snapshots_total", "Persistence snapshots written",
+				persistence::getSnapshotsWritten);
+
+		HueResourceCache cache = HueResourceCache.getInstance();
+		metrics.registerCounter("hue_resource_cache_requests_total", "Bridge resource cache lookups", cache::getHits,
+				"result", "hit");
+		metrics.registerCounter("hue_resource_cache_requests_total", "Bridge resource cache lookups",
+				cache::getMisses, "result", "miss");
+		metrics.registerCounter("hue_resource_cache_invalidations_total", "Bridge resource cache invalidations",
+				cache::getInvalidations);
+
+		HueHttpClientRegistry clients = HueHttpClientRegistry.getInstance();
+		metrics.registerCounter("hue_bridge_handshakes_total", "Connections opened to the bridge",
+				clients::getHandshakes);
+		metrics.registerCounter("hue_bridge_connection_reuses_total",
+				"Bridge requests sent on an established connection", clients::getConnectionReuses);
+	}
+}
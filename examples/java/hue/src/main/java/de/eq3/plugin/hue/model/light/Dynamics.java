@@ -32,6 +32,8 @@ import lombok.NoArgsConstructor;
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Dynamics {
+	@JsonProperty("duration")
+	private Integer duration;
 	@JsonProperty("speed")
 	private Double speed;
 	@JsonProperty("speed_valid")
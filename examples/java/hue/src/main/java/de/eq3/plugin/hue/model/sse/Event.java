@@ -32,6 +32,8 @@ import lombok.NoArgsConstructor;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Event {
 	public static final String EVENT_TYPE_UPDATE = "update";
+	public static final String EVENT_TYPE_ADD = "add";
+	public static final String EVENT_TYPE_DELETE = "delete";
 	public static final String DATA_TYPE_LIGHT = "light";
 	public static final String DATA_TYPE_CONNECTIVITY = "zigbee_connectivity";
 
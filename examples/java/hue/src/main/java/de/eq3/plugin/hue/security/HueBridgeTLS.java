@@ -18,20 +18,49 @@ package de.eq3.plugin.hue.security;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.JdkSSLEngineOptions;
 import io.vertx.core.net.JksOptions;
+import io.vertx.core.net.OpenSSLEngineOptions;
+import io.vertx.core.net.SSLEngineOptions;
+import io.vertx.core.net.TrustOptions;
 
+/**
+ * TLS configuration for connections to the Hue bridge.
+ * <p>
+ * Trust options and engine options are created once and shared by all
+ * clients, so all connections use the same SSL context and its session cache.
+ * Reconnects to a bridge can therefore resume the previous TLS session
+ * instead of performing a full handshake. The OpenSSL engine is used if
+ * netty-tcnative is available on the class path, otherwise the JDK engine.
+ * </p>
+ */
 public final class HueBridgeTLS {
 	private static final Logger logger = LogManager.getLogger(HueBridgeTLS.class);
+	private static final Pattern BRIDGE_ID_PATTERN = Pattern
+			.compile("^([0-9a-fA-F]{6,16})(?:-\\d+)?(?:\\.local)?$");
 
 	private HueBridgeTLS() {
 	}
 
 	private static JksOptions jksOptions;
+	private static TrustOptions trustOptions;
+	private static SSLEngineOptions sslEngineOptions;
 
 	public static synchronized JksOptions getJksOptions() {
 		if (jksOptions == null) {
@@ -44,6 +73,64 @@ public final class HueBridgeTLS {
 		return jksOptions;
 	}
 
+	/**
+	 * Returns the trust options verifying the bridge certificate against the Hue
+	 * root CA and the ID of the paired bridge, see {@link HueBridgeTrustManager}.
+	 *
+	 * @return the shared trust options
+	 * @throws IllegalStateException if the Hue root CA cannot be loaded
+	 */
+	public static synchronized TrustOptions getTrustOptions() {
+		if (trustOptions == null) {
+			boolean trustAll = Boolean.parseBoolean(System.getProperty("plugin.hue.tls.trustAll", "false"));
+			if (trustAll) {
+				logger.warn("Trusting all bridge certificates");
+			}
+			try {
+				trustOptions = TrustOptions.wrap(new HueBridgeTrustManager(createCaTrustManager(),
+						HueBridgeTLS::getPairedBridgeId, trustAll));
+			} catch (IOException | GeneralSecurityException e) {
+				// without the root CA no bridge certificate could be verified
+				throw new IllegalStateException("Error initializing TLS trust options", e);
+			}
+		}
+		return trustOptions;
+	}
+
+	/**
+	 * Returns the engine options, using OpenSSL with session cache if available.
+	 *
+	 * @return the shared engine options
+	 */
+	public static synchronized SSLEngineOptions getSslEngineOptions() {
+		if (sslEngineOptions == null) {
+			if (OpenSSLEngineOptions.isAvailable() && OpenSSLEngineOptions.isAlpnAvailable()) {
+				logger.info("Using OpenSSL engine for bridge connections");
+				sslEngineOptions = new OpenSSLEngineOptions().setSessionCacheEnabled(true);
+			} else {
+				logger.info("Using JDK engine for bridge connections");
+				sslEngineOptions = new JdkSSLEngineOptions();
+			}
+		}
+		return sslEngineOptions;
+	}
+
+	/**
+	 * Returns the ID of the paired bridge as far as it can be derived from the
+	 * address used for pairing, e.g. {@code ecb5fafffe0a1b2c.local}.
+	 *
+	 * @return the (partial) bridge ID or null if unknown
+	 */
+	static String getPairedBridgeId() {
+		return HuePersistenceHelper.getInstance()
+				.getHueBridge()
+				.map(HueBridge::getBridgeId)
+				.map(BRIDGE_ID_PATTERN::matcher)
+				.filter(Matcher::matches)
+				.map(matcher -> matcher.group(1))
+				.orElse(null);
+	}
+
 	private static JksOptions createJksOptions() throws IOException {
 
 		ClassLoader loader = HueBridgeTLS.class.getClassLoader();
@@ -55,4 +142,21 @@ public final class HueBridgeTLS {
 
 		return jksOptions;
 	}
+
+	private static X509TrustManager createCaTrustManager() throws IOException, GeneralSecurityException {
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		try (InputStream certInputStream = HueBridgeTLS.class.getClassLoader().getResourceAsStream("keystore.jks")) {
+			// the keystore only contains the trusted root certificate, no password required
+			keyStore.load(certInputStream, null);
+		}
+		TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		factory.init(keyStore);
+
+		for (TrustManager trustManager : factory.getTrustManagers()) {
+			if (trustManager instanceof X509TrustManager) {
+				return (X509TrustManager) trustManager;
+			}
+		}
+		throw new GeneralSecurityException("No X509 trust manager available");
+	}
 }
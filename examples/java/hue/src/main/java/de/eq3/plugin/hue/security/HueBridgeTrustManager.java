@@ -0,0 +1,133 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.security;
+
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Trust manager for Hue bridge certificates.
+ * <p>
+ * The certificate chain must be issued by the Hue root CA. As the bridge is
+ * usually addressed by IP address, the host name is not verified; instead the
+ * common name of the bridge certificate, which is the bridge ID, must end with
+ * the ID of the paired bridge as far as it is known. While no bridge is paired
+ * or its ID is not known only the chain is verified.
+ * </p>
+ * <p>
+ * With {@code plugin.hue.tls.trustAll} set to true any certificate is
+ * accepted, which is required for bridges still using a self-signed
+ * certificate.
+ * </p>
+ */
+final class HueBridgeTrustManager extends X509ExtendedTrustManager {
+	private static final Logger logger = LogManager.getLogger(HueBridgeTrustManager.class);
+
+	private final X509TrustManager caTrustManager;
+	private final Supplier<String> expectedBridgeId;
+	private final boolean trustAll;
+
+	HueBridgeTrustManager(X509TrustManager caTrustManager, Supplier<String> expectedBridgeId, boolean trustAll) {
+		this.caTrustManager = caTrustManager;
+		this.expectedBridgeId = expectedBridgeId;
+		this.trustAll = trustAll;
+	}
+
+	@Override
+	public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+		if (trustAll) {
+			return;
+		}
+		caTrustManager.checkServerTrusted(chain, authType);
+		verifyBridgeId(chain[0]);
+	}
+
+	@Override
+	public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+			throws CertificateException {
+		checkServerTrusted(chain, authType);
+	}
+
+	@Override
+	public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+			throws CertificateException {
+		checkServerTrusted(chain, authType);
+	}
+
+	@Override
+	public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+		throw new CertificateException("Client certificates are not supported");
+	}
+
+	@Override
+	public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+			throws CertificateException {
+		checkClientTrusted(chain, authType);
+	}
+
+	@Override
+	public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+			throws CertificateException {
+		checkClientTrusted(chain, authType);
+	}
+
+	@Override
+	public X509Certificate[] getAcceptedIssuers() {
+		return caTrustManager.getAcceptedIssuers();
+	}
+
+	private void verifyBridgeId(X509Certificate certificate) throws CertificateException {
+		String bridgeId = expectedBridgeId.get();
+		if (bridgeId == null) {
+			return;
+		}
+		String commonName = getCommonName(certificate);
+		if (commonName == null
+				|| !commonName.toLowerCase(Locale.ROOT).endsWith(bridgeId.toLowerCase(Locale.ROOT))) {
+			logger.error("Rejected certificate issued for {}, expected bridge {}", commonName, bridgeId);
+			throw new CertificateException("Certificate issued for " + commonName + ", expected bridge " + bridgeId);
+		}
+	}
+
+	private static String getCommonName(X509Certificate certificate) throws CertificateException {
+		try {
+			LdapName name = new LdapName(certificate.getSubjectX500Principal().getName());
+			for (Rdn rdn : name.getRdns()) {
+				if ("CN".equalsIgnoreCase(rdn.getType())) {
+					return rdn.getValue().toString();
+				}
+			}
+		} catch (InvalidNameException e) {
+			throw new CertificateException("Invalid certificate subject", e);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Timed operation of a trace. Spans of unsampled traces are no-ops without
+ * context, so callers do not need to check whether a trace is sampled.
+ * <p>
+ * A span is ended once; further calls of {@link #end()} and attributes set
+ * afterwards are ignored. Spans are not thread safe and must be ended on the
+ * context which started them.
+ * </p>
+ */
+@Getter
+public final class HueSpan {
+	static final HueSpan NOOP = new HueSpan(null, null, null, 0);
+
+	private final HueTraceContext context;
+	private final String parentSpanId;
+	private final String name;
+	private final long startEpochNanos;
+	private final Map<String, String> attributes = new LinkedHashMap<>();
+	private long endEpochNanos;
+	private String error;
+
+	HueSpan(HueTraceContext context, String parentSpanId, String name, long startEpochNanos) {
+		this.context = context;
+		this.parentSpanId = parentSpanId;
+		this.name = name;
+		this.startEpochNanos = startEpochNanos;
+	}
+
+	public boolean isSampled() {
+		return context != null;
+	}
+
+	public HueSpan setAttribute(String key, Object value) {
+		if (isSampled() && endEpochNanos == 0 && value != null) {
+			attributes.put(key, value.toString());
+		}
+		return this;
+	}
+
+	/**
+	 * Ends the span successfully.
+	 */
+	public void end() {
+		end(null);
+	}
+
+	/**
+	 * Ends the span.
+	 *
+	 * @param error the error description or null if the operation succeeded
+	 */
+	public void end(String error) {
+		if (!isSampled() || endEpochNanos != 0) {
+			return;
+		}
+		this.error = error;
+		this.endEpochNanos = HueTracer.getInstance().now();
+		HueTracer.getInstance().export(this);
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.tracing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.eq3.plugin.hue.HuePluginStarter;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Appends spans to a local file. The file is moved to a single backup with
+ * suffix {@code .1} once it exceeds the maximum size. All methods block and
+ * must not be called from an event loop thread.
+ */
+final class HueSpanExporter {
+	static final String FORMAT_JSON_LINES = "jsonl";
+	static final String FORMAT_OTLP = "otlp";
+
+	// OTLP span kind and status codes
+	private static final int SPAN_KIND_INTERNAL = 1;
+	private static final int STATUS_CODE_OK = 1;
+	private static final int STATUS_CODE_ERROR = 2;
+
+	private final Path file;
+	private final boolean otlp;
+	private final long maxFileSize;
+
+	HueSpanExporter(Path file, String format, long maxFileSize) {
+		this.file = file;
+		this.otlp = FORMAT_OTLP.equalsIgnoreCase(format);
+		this.maxFileSize = maxFileSize;
+	}
+
+	void write(List<HueSpan> spans) throws IOException {
+		Buffer content = otlp ? encodeOtlp(spans) : encodeJsonLines(spans);
+		if (Files.exists(file) && Files.size(file) + content.length() > maxFileSize) {
+			Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.write(file, content.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Encodes each span as one JSON line. Times are given in microseconds since
+	 * the epoch.
+	 *
+	 * @param spans the spans
+	 * @return the encoded lines
+	 */
+	static Buffer encodeJsonLines(List<HueSpan> spans) {
+		Buffer content = Buffer.buffer();
+		for (HueSpan span : spans) {
+			JsonObject line = new JsonObject().put("traceId", span.getContext().getTraceId())
+					.put("spanId", span.getContext().getSpanId());
+			if (span.getParentSpanId() != null) {
+				line.put("parentSpanId", span.getParentSpanId());
+			}
+			line.put("name", span.getName())
+					.put("start", TimeUnit.NANOSECONDS.toMicros(span.getStartEpochNanos()))
+					.put("durationMicros",
+							TimeUnit.NANOSECONDS.toMicros(span.getEndEpochNanos() - span.getStartEpochNanos()))
+					.put("attributes", new JsonObject(new LinkedHashMap<>(span.getAttributes())));
+			if (span.getError() != null) {
+				line.put("error", span.getError());
+			}
+			content.appendBuffer(line.toBuffer()).appendByte((byte) '\n');
+		}
+		return content;
+	}
+
+	/**
+	 * Encodes the spans as a single line containing an OTLP JSON export request,
+	 * the format of the OpenTelemetry collector file exporter.
+	 *
+	 * @param spans the spans
+	 * @return the encoded line
+	 */
+	static Buffer encodeOtlp(List<HueSpan> spans) {
+		JsonArray otlpSpans = new JsonArray();
+		for (HueSpan span : spans) {
+			JsonArray attributes = new JsonArray();
+			span.getAttributes().forEach((key, value) -> attributes.add(attribute(key, value)));
+
+			JsonObject otlpSpan = new JsonObject().put("traceId", span.getContext().getTraceId())
+					.put("spanId", span.getContext().getSpanId());
+			if (span.getParentSpanId() != null) {
+				otlpSpan.put("parentSpanId", span.getParentSpanId());
+			}
+			JsonObject status = new JsonObject().put("code",
+					span.getError() == null ? STATUS_CODE_OK : STATUS_CODE_ERROR);
+			if (span.getError() != null) {
+				status.put("message", span.getError());
+			}
+			otlpSpans.add(otlpSpan.put("name", span.getName())
+					.put("kind", SPAN_KIND_INTERNAL)
+					.put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()))
+					.put("endTimeUnixNano", Long.toString(span.getEndEpochNanos()))
+					.put("attributes", attributes)
+					.put("status", status));
+		}
+		JsonObject resource = new JsonObject().put("attributes",
+				new JsonArray().add(attribute("service.name", HuePluginStarter.PLUGIN_ID)));
+		JsonObject scopeSpans = new JsonObject().put("scope", new JsonObject().put("name", "de.eq3.plugin.hue"))
+				.put("spans", otlpSpans);
+		JsonObject request = new JsonObject().put("resourceSpans", new JsonArray()
+				.add(new JsonObject().put("resource", resource).put("scopeSpans", new JsonArray().add(scopeSpans))));
+		return request.toBuffer().appendByte((byte) '\n');
+	}
+
+	private static JsonObject attribute(String key, String value) {
+		return new JsonObject().put("key", key).put("value", new JsonObject().put("stringValue", value));
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.tracing;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.eventbus.DeliveryOptions;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Identifies a sampled span across verticles. The context is propagated in the
+ * {@value #HEADER} event bus header using the W3C trace context format. Only
+ * sampled spans have a context, a missing header means the message is not
+ * traced.
+ */
+@Getter
+@AllArgsConstructor
+public final class HueTraceContext {
+	public static final String HEADER = "traceparent";
+
+	private final String traceId;
+	private final String spanId;
+
+	/**
+	 * Returns the context propagated in the given event bus headers.
+	 *
+	 * @param headers the message headers
+	 * @return the context or null if the message is not traced
+	 */
+	public static HueTraceContext fromHeaders(MultiMap headers) {
+		return headers != null ? fromTraceparent(headers.get(HEADER)) : null;
+	}
+
+	/**
+	 * Returns delivery options propagating the given context.
+	 *
+	 * @param context the context or null
+	 * @return the delivery options, without header if the context is null
+	 */
+	public static DeliveryOptions deliveryOptions(HueTraceContext context) {
+		DeliveryOptions options = new DeliveryOptions();
+		if (context != null) {
+			options.addHeader(HEADER, context.toTraceparent());
+		}
+		return options;
+	}
+
+	static HueTraceContext fromTraceparent(String traceparent) {
+		// version-traceId-spanId-flags
+		if (traceparent == null || traceparent.length() != 55 || traceparent.charAt(2) != '-'
+				|| traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+			return null;
+		}
+		String traceId = traceparent.substring(3, 35);
+		String spanId = traceparent.substring(36, 52);
+		if (!isHex(traceId) || !isHex(spanId)) {
+			return null;
+		}
+		return new HueTraceContext(traceId, spanId);
+	}
+
+	public String toTraceparent() {
+		return "00-" + traceId + "-" + spanId + "-01";
+	}
+
+	static boolean isHex(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			if ((character < '0' || character > '9') && (character < 'a' || character > 'f')) {
+				return false;
+			}
+		}
+		return !value.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return toTraceparent();
+	}
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.tracing;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.metrics.HueMetrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+
+/**
+ * Records spans of plugin messages from the HCU request to the bridge call and
+ * back.
+ * <p>
+ * A trace is started for every inbound plugin message, using the message id as
+ * trace id, and sampled with the probability {@code plugin.hue.tracing.sampleRate}.
+ * The decision is derived from the trace id, so all spans of a trace are
+ * either sampled or not. Tracing is disabled with the default rate of 0, all
+ * spans are no-ops then.
+ * </p>
+ * <p>
+ * Ended spans are buffered and written every
+ * {@code plugin.hue.tracing.flushInterval} millis on a worker thread to
+ * {@code plugin.hue.tracing.file}, either as one JSON object per span or, with
+ * {@code plugin.hue.tracing.format=otlp}, as OTLP JSON export requests. At most
+ * {@code plugin.hue.tracing.maxPendingSpans} spans are buffered, further spans
+ * are dropped.
+ * </p>
+ * <p>
+ * The state of a light set by a traced control request is echoed by the event
+ * stream of the bridge. The control request registers the light with
+ * {@link #awaitEcho(String, HueTraceContext)}, the event stream handler
+ * continues the trace with {@link #takeEcho(String, String)}.
+ * </p>
+ */
+public final class HueTracer {
+	private static final Logger logger = LogManager.getLogger(HueTracer.class);
+	private static final HueTracer INSTANCE = new HueTracer();
+	private static final long ECHO_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+	private final double sampleRate;
+	private final int maxPendingSpans;
+	// wall clock time of the monotonic clock origin, spans are timed with the monotonic clock
+	private final long originEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+	private final long originNanoTime = System.nanoTime();
+
+	private final Queue<HueSpan> endedSpans = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingSpans = new AtomicInteger();
+	private final Map<String, Echo> echoes = new ConcurrentHashMap<>();
+
+	private final HueMetrics.Counter exportedSpans = HueMetrics.getInstance()
+			.counter("hue_tracing_spans_total", "Spans written by the tracer");
+	private final HueMetrics.Counter droppedSpans = HueMetrics.getInstance()
+			.counter("hue_tracing_dropped_spans_total", "Spans dropped because the export buffer was full");
+
+	private HueSpanExporter exporter;
+	private WorkerExecutor exportExecutor;
+
+	private HueTracer() {
+		this.sampleRate = Double.parseDouble(System.getProperty("plugin.hue.tracing.sampleRate", "0"));
+		this.maxPendingSpans = Integer.parseInt(System.getProperty("plugin.hue.tracing.maxPendingSpans", "10000"));
+	}
+
+	public static HueTracer getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts the export of spans if tracing is enabled.
+	 *
+	 * @param vertx the Vert.x instance
+	 */
+	public void init(Vertx vertx) {
+		if (sampleRate <= 0 || exporter != null) {
+			return;
+		}
+		String file = System.getProperty("plugin.hue.tracing.file",
+				System.getProperty("plugin.hue.authFolder", "/data") + "/hue-traces.jsonl");
+		String format = System.getProperty("plugin.hue.tracing.format", HueSpanExporter.FORMAT_JSON_LINES);
+		long maxFileSize = Long.parseLong(System.getProperty("plugin.hue.tracing.maxFileSize", "10485760"));
+		long flushInterval = Long.parseLong(System.getProperty("plugin.hue.tracing.flushInterval", "1000"));
+
+		this.exportExecutor = vertx.createSharedWorkerExecutor("hue-tracing", 1);
+		this.exporter = new HueSpanExporter(Paths.get(file), format, maxFileSize);
+		vertx.setPeriodic(flushInterval, timerId -> flush());
+		logger.info("Tracing {} of all plugin messages to {} as {}", sampleRate, file, format);
+	}
+
+	public boolean isEnabled() {
+		return exporter != null;
+	}
+
+	/**
+	 * Starts the trace of an inbound plugin message.
+	 *
+	 * @param name          the span name
+	 * @param messageId     the id of the plugin message
+	 * @param startNanoTime the start as returned by {@link System#nanoTime()}
+	 * @return the root span, a no-op span if the trace is not sampled
+	 */
+	public HueSpan startTrace(String name, String messageId, long startNanoTime) {
+		if (!isEnabled()) {
+			return HueSpan.NOOP;
+		}
+		String traceId = traceId(messageId);
+		if (!isSampled(traceId)) {
+			return HueSpan.NOOP;
+		}
+		return new HueSpan(new HueTraceContext(traceId, newSpanId()), null, name, toEpochNanos(startNanoTime));
+	}
+
+	/**
+	 * Starts a span now.
+	 *
+	 * @param name   the span name
+	 * @param parent the context of the parent span or null
+	 * @return the span, a no-op span without parent
+	 */
+	public HueSpan startSpan(String name, HueTraceContext parent) {
+		return startSpan(name, parent, System.nanoTime());
+	}
+
+	/**
+	 * Starts a span at the given time.
+	 *
+	 * @param name          the span name
+	 * @param parent        the context of the parent span or null
+	 * @param startNanoTime the start as returned by {@link System#nanoTime()}
+	 * @return the span, a no-op span without parent
+	 */
+	public HueSpan startSpan(String name, HueTraceContext parent, long startNanoTime) {
+		if (parent == null || !isEnabled()) {
+			return HueSpan.NOOP;
+		}
+		return new HueSpan(new HueTraceContext(parent.getTraceId(), newSpanId()), parent.getSpanId(), name,
+				toEpochNanos(startNanoTime));
+	}
+
+	/**
+	 * Registers a resource whose state was changed by a traced request, so the
+	 * state change reported by the event stream continues the trace.
+	 *
+	 * @param resourceId the id of the changed bridge resource
+	 * @param context    the context of the request or null
+	 */
+	public void awaitEcho(String resourceId, HueTraceContext context) {
+		if (context != null && isEnabled()) {
+			echoes.put(resourceId, new Echo(context, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * Starts the span from the traced request to the state change of the resource
+	 * reported by the event stream.
+	 *
+	 * @param resourceId the id of the changed bridge resource
+	 * @param name       the span name
+	 * @return the span, a no-op span if no traced request is awaiting the change
+	 */
+	public HueSpan takeEcho(String resourceId, String name) {
+		if (echoes.isEmpty()) {
+			return HueSpan.NOOP;
+		}
+		Echo echo = echoes.remove(resourceId);
+		if (echo == null || System.nanoTime() - echo.since > ECHO_TIMEOUT) {
+			return HueSpan.NOOP;
+		}
+		return startSpan(name, echo.context, echo.since);
+	}
+
+	long now() {
+		return toEpochNanos(System.nanoTime());
+	}
+
+	void export(HueSpan span) {
+		if (pendingSpans.incrementAndGet() > maxPendingSpans) {
+			pendingSpans.decrementAndGet();
+			droppedSpans.increment();
+			return;
+		}
+		endedSpans.add(span);
+	}
+
+	private void flush() {
+		long now = System.nanoTime();
+		echoes.values().removeIf(echo -> now - echo.since > ECHO_TIMEOUT);
+
+		List<HueSpan> spans = new ArrayList<>();
+		HueSpan span;
+		while ((span = endedSpans.poll()) != null) {
+			spans.add(span);
+		}
+		if (spans.isEmpty()) {
+			return;
+		}
+		pendingSpans.addAndGet(-spans.size());
+		exportExecutor.<Void>executeBlocking(promise -> {
+			try {
+				exporter.write(spans);
+				promise.complete();
+			} catch (IOException e) {
+				promise.fail(e);
+			}
+		}, true)
+				.onSuccess(written -> exportedSpans.add(spans.size()))
+				.onFailure(throwable -> logger.warn("Could not write {} spans {}", spans.size(),
+						throwable.getMessage()));
+	}
+
+	private long toEpochNanos(long nanoTime) {
+		return originEpochNanos + (nanoTime - originNanoTime);
+	}
+
+	private boolean isSampled(String traceId) {
+		if (sampleRate >= 1) {
+			return true;
+		}
+		// the lower 53 bits of the trace id as uniformly distributed fraction
+		long bits = Long.parseUnsignedLong(traceId.substring(16), 16) & ((1L << 53) - 1);
+		return bits < sampleRate * (1L << 53);
+	}
+
+	private static String traceId(String messageId) {
+		if (messageId != null) {
+			String hex = messageId.replace("-", "").toLowerCase();
+			if (hex.length() == 32 && HueTraceContext.isHex(hex)) {
+				return hex;
+			}
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return String.format("%016x%016x", random.nextLong(), random.nextLong());
+	}
+
+	private static String newSpanId() {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		return String.format("%016x", id);
+	}
+
+	private static final class Echo {
+		private final HueTraceContext context;
+		private final long since;
+
+		private Echo(HueTraceContext context, long since) {
+			this.context = context;
+			this.since = since;
+		}
+	}
+}
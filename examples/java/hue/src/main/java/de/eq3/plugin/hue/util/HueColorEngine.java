@@ -0,0 +1,249 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.util;
+
+/**
+ * Allocation free conversion between hue/saturation and CIE 1931 xy
+ * coordinates.
+ * <p>
+ * All calculations use primitive doubles. Conversions to xy write into a
+ * caller provided array, conversions to hue and saturation return both values
+ * packed into a single long, see {@link #hue(long)} and
+ * {@link #saturation(long)}.
+ * </p>
+ * <p>
+ * The results match the previous {@code java.awt.Color} and
+ * {@code BigDecimal} based implementation: colors are converted with full
+ * brightness and quantized to 8 bit RGB, intermediate values are rounded to
+ * four decimals and the saturation to steps of 0.005.
+ * </p>
+ * <p>
+ * This class is not instantiable.
+ * </p>
+ */
+public final class HueColorEngine {
+	private static final double SATURATION_STEPS = 200.0;
+	private static final long SATURATION_MASK = 0xFFFF_FFFFL;
+
+	private HueColorEngine() {
+		// Utility class
+	}
+
+	/**
+	 * Converts hue and saturation to CIE 1931 xy coordinates.
+	 *
+	 * @param hue        the hue value (0-360)
+	 * @param saturation the saturation value (0.0-1.0)
+	 * @param xy         array receiving x at index 0 and y at index 1
+	 */
+	public static void hueSaturationToXy(int hue, double saturation, double[] xy) {
+		float r;
+		float g;
+		float b;
+
+		// HSB to RGB with full brightness, using the float arithmetic of java.awt.Color
+		float s = (float) saturation;
+		if (s == 0) {
+			r = 1.0f;
+			g = 1.0f;
+			b = 1.0f;
+		} else {
+			float h = hue / 360.0f;
+			h = (h - (float) Math.floor(h)) * 6.0f;
+			float f = h - (float) Math.floor(h);
+			float p = 1.0f - s;
+			float q = 1.0f - s * f;
+			float t = 1.0f - s * (1.0f - f);
+
+			switch ((int) h) {
+			case 0:
+				r = 1.0f;
+				g = t;
+				b = p;
+				break;
+			case 1:
+				r = q;
+				g = 1.0f;
+				b = p;
+				break;
+			case 2:
+				r = p;
+				g = 1.0f;
+				b = t;
+				break;
+			case 3:
+				r = p;
+				g = q;
+				b = 1.0f;
+				break;
+			case 4:
+				r = t;
+				g = p;
+				b = 1.0f;
+				break;
+			default:
+				r = 1.0f;
+				g = p;
+				b = q;
+				break;
+			}
+		}
+
+		double red = applyGammaCorrection(quantize(r));
+		double green = applyGammaCorrection(quantize(g));
+		double blue = applyGammaCorrection(quantize(b));
+
+		// Wide RGB D65 conversion
+		double x = red * 0.4124 + green * 0.3576 + blue * 0.1805;
+		double y = red * 0.2126 + green * 0.7152 + blue * 0.0722;
+		double z = red * 0.0193 + green * 0.1192 + blue * 0.9505;
+		double sum = x + y + z;
+
+		xy[0] = round4(x / sum);
+		xy[1] = round4(y / sum);
+	}
+
+	/**
+	 * Converts CIE 1931 xy coordinates to hue and saturation.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate, must be greater than 0
+	 * @return hue (0-359) and saturation packed into a long
+	 */
+	public static long xyToHueSaturation(double x, double y) {
+		double luminance = round4(1.0 / y);
+		double bigX = round4(luminance * x);
+		double bigZ = round4(luminance * (1.0 - x - y));
+
+		double r = bigX * 3.2406 - 1.5372 - bigZ * 0.4986;
+		double g = bigX * -0.9689 + 1.8758 + bigZ * 0.0415;
+		double b = bigX * 0.0557 - 0.2040 + bigZ * 1.0570;
+
+		double divisor = getOutOfScaleDivisor(r, g, b);
+		r = applyReverseGammaCorrection(scale(r, divisor));
+		g = applyReverseGammaCorrection(scale(g, divisor));
+		b = applyReverseGammaCorrection(scale(b, divisor));
+
+		divisor = getOutOfScaleDivisor(r, g, b);
+		int red = Math.max(Math.round((float) (scale(r, divisor) * 255.0)), 0);
+		int green = Math.max(Math.round((float) (scale(g, divisor) * 255.0)), 0);
+		int blue = Math.max(Math.round((float) (scale(b, divisor) * 255.0)), 0);
+
+		// RGB to HSB, using the float arithmetic of java.awt.Color
+		int max = Math.max(red, Math.max(green, blue));
+		int min = Math.min(red, Math.min(green, blue));
+		float saturation = max != 0 ? ((float) (max - min)) / ((float) max) : 0;
+		float hue = 0;
+
+		if (saturation != 0) {
+			float range = max - min;
+			float redc = (max - red) / range;
+			float greenc = (max - green) / range;
+			float bluec = (max - blue) / range;
+			if (red == max) {
+				hue = bluec - greenc;
+			} else if (green == max) {
+				hue = 2.0f + redc - bluec;
+			} else {
+				hue = 4.0f + greenc - redc;
+			}
+			hue = hue / 6.0f;
+			if (hue < 0) {
+				hue = hue + 1.0f;
+			}
+		}
+		return pack((int) Math.min(Math.round(hue * 360.0), 359), Math.round(saturation * (float) SATURATION_STEPS));
+	}
+
+	/**
+	 * Returns the hue of a packed hue and saturation value.
+	 *
+	 * @param hueSaturation the packed value
+	 * @return the hue (0-359)
+	 */
+	public static int hue(long hueSaturation) {
+		return (int) (hueSaturation >>> 32);
+	}
+
+	/**
+	 * Returns the saturation of a packed hue and saturation value.
+	 *
+	 * @param hueSaturation the packed value
+	 * @return the saturation (0.0-1.0)
+	 */
+	public static double saturation(long hueSaturation) {
+		return (hueSaturation & SATURATION_MASK) / SATURATION_STEPS;
+	}
+
+	/**
+	 * Packs hue and saturation into a long, the saturation is rounded to steps of
+	 * 0.005.
+	 *
+	 * @param hue        the hue (0-359)
+	 * @param saturation the saturation (0.0-1.0)
+	 * @return the packed value
+	 */
+	public static long pack(int hue, double saturation) {
+		return pack(hue, (int) Math.round(saturation * SATURATION_STEPS));
+	}
+
+	static long pack(int hue, int saturationSteps) {
+		return ((long) hue << 32) | (saturationSteps & SATURATION_MASK);
+	}
+
+	/**
+	 * Returns the divisor scaling the largest component to 1 if it exceeds the
+	 * [0,1] range, otherwise 1.
+	 */
+	private static double getOutOfScaleDivisor(double r, double g, double b) {
+		if (r > b && r > g && r > 1.0) {
+			return r;
+		} else if (g > b && g > r && g > 1.0) {
+			return g;
+		} else if (b > r && b > g && b > 1.0) {
+			return b;
+		}
+		return 1.0;
+	}
+
+	private static double scale(double color, double divisor) {
+		return divisor == 1.0 ? color : round4(color / divisor);
+	}
+
+	private static double quantize(float color) {
+		return round4((int) (color * 255.0f + 0.5f) / 255.0);
+	}
+
+	private static double applyGammaCorrection(double color) {
+		if (color > 0.04045) {
+			return round4(Math.pow((color + 0.055) / (1.0 + 0.055), 2.4));
+		}
+		return round4(color / 12.92);
+	}
+
+	private static double applyReverseGammaCorrection(double color) {
+		if (color <= 0.0031308) {
+			return round4(12.92 * color);
+		}
+		return round4((1.0 + 0.055) * Math.pow(color, 1.0 / 2.4) - 0.055);
+	}
+
+	private static double round4(double value) {
+		return Math.round(value * 10_000.0) / 10_000.0;
+	}
+}
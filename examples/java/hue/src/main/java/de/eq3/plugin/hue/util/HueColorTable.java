@@ -0,0 +1,149 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.util;
+
+/**
+ * Precomputed color conversion tables for the color values used by Homematic
+ * IP, integer hues from 0 to 359 and saturations in steps of 0.005.
+ * <p>
+ * The forward table holds the xy coordinates of all 360 x 201 hue and
+ * saturation combinations calculated by {@link HueColorEngine}. The reverse
+ * direction quantizes xy coordinates to a grid with a spacing of
+ * {@value #GRID_STEP}. A grid cell holds the hue and saturation of its corners
+ * if all four corners convert to the same value. Cells on the border between
+ * two values are refined by converting the exact coordinates. Apart from
+ * rare rounding ties inside a cell, both directions return the same values as
+ * {@link HueColorEngine}.
+ * </p>
+ * <p>
+ * The tables are built on first use, values outside the tables are converted
+ * by {@link HueColorEngine}.
+ * </p>
+ */
+public final class HueColorTable {
+	private static final int HUES = 360;
+	private static final int SATURATIONS = 201;
+	private static final double SATURATION_STEPS = SATURATIONS - 1.0;
+	private static final double XY_SCALE = 10_000.0;
+
+	private static final double GRID_STEP = 0.002;
+	private static final double GRID_MAX_X = 0.8;
+	private static final double GRID_MAX_Y = 0.9;
+	private static final int GRID_WIDTH = (int) Math.round(GRID_MAX_X / GRID_STEP);
+	private static final int GRID_HEIGHT = (int) Math.round(GRID_MAX_Y / GRID_STEP);
+	private static final double GRID_MIN_Y = 0.0001;
+	private static final int BORDER_CELL = -1;
+
+	private static HueColorTable instance;
+
+	/**
+	 * xy coordinates per hue and saturation step, x and y scaled by 10000 and
+	 * packed into the high and low 16 bits.
+	 */
+	private final int[] forward = new int[HUES * SATURATIONS];
+
+	/**
+	 * Hue and saturation step per grid cell, packed as
+	 * {@code hue * SATURATIONS + saturation step}, or {@link #BORDER_CELL}.
+	 */
+	private final int[] reverse = new int[GRID_WIDTH * GRID_HEIGHT];
+
+	private HueColorTable() {
+		double[] xy = new double[2];
+		for (int hue = 0; hue < HUES; hue++) {
+			for (int step = 0; step < SATURATIONS; step++) {
+				HueColorEngine.hueSaturationToXy(hue, step / SATURATION_STEPS, xy);
+				forward[hue * SATURATIONS + step] = (int) Math.round(xy[0] * XY_SCALE) << 16
+						| (int) Math.round(xy[1] * XY_SCALE);
+			}
+		}
+
+		int[] nodes = new int[(GRID_WIDTH + 1) * (GRID_HEIGHT + 1)];
+		for (int column = 0; column <= GRID_WIDTH; column++) {
+			for (int row = 0; row <= GRID_HEIGHT; row++) {
+				long hueSaturation = HueColorEngine.xyToHueSaturation(column * GRID_STEP,
+						Math.max(row * GRID_STEP, GRID_MIN_Y));
+				nodes[column * (GRID_HEIGHT + 1) + row] = HueColorEngine.hue(hueSaturation) * SATURATIONS
+						+ (int) Math.round(HueColorEngine.saturation(hueSaturation) * SATURATION_STEPS);
+			}
+		}
+
+		for (int column = 0; column < GRID_WIDTH; column++) {
+			for (int row = 0; row < GRID_HEIGHT; row++) {
+				int node = column * (GRID_HEIGHT + 1) + row;
+				int value = nodes[node];
+				boolean uniform = value == nodes[node + 1] && value == nodes[node + GRID_HEIGHT + 1]
+						&& value == nodes[node + GRID_HEIGHT + 2];
+				reverse[column * GRID_HEIGHT + row] = uniform ? value : BORDER_CELL;
+			}
+		}
+	}
+
+	public static HueColorTable getInstance() {
+		if (instance == null) {
+			instance = setInstance();
+		}
+		return instance;
+	}
+
+	private static synchronized HueColorTable setInstance() {
+		if (instance == null) {
+			instance = new HueColorTable();
+		}
+		return instance;
+	}
+
+	/**
+	 * Converts hue and saturation to CIE 1931 xy coordinates.
+	 *
+	 * @param hue        the hue value (0-360)
+	 * @param saturation the saturation value (0.0-1.0)
+	 * @param xy         array receiving x at index 0 and y at index 1
+	 * @see HueColorEngine#hueSaturationToXy(int, double, double[])
+	 */
+	public void hueSaturationToXy(int hue, double saturation, double[] xy) {
+		int step = (int) Math.round(saturation * SATURATION_STEPS);
+		if (hue < 0 || hue > HUES || step < 0 || step >= SATURATIONS || step / SATURATION_STEPS != saturation) {
+			HueColorEngine.hueSaturationToXy(hue, saturation, xy);
+			return;
+		}
+		int packed = forward[(hue % HUES) * SATURATIONS + step];
+		xy[0] = (packed >>> 16) / XY_SCALE;
+		xy[1] = (packed & 0xFFFF) / XY_SCALE;
+	}
+
+	/**
+	 * Converts CIE 1931 xy coordinates to hue and saturation.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate, must be greater than 0
+	 * @return hue (0-359) and saturation packed into a long, see
+	 *         {@link HueColorEngine#hue(long)} and
+	 *         {@link HueColorEngine#saturation(long)}
+	 */
+	public long xyToHueSaturation(double x, double y) {
+		if (x < 0 || x >= GRID_MAX_X || y <= 0 || y >= GRID_MAX_Y) {
+			return HueColorEngine.xyToHueSaturation(x, y);
+		}
+		int cell = reverse[(int) (x / GRID_STEP) * GRID_HEIGHT + (int) (y / GRID_STEP)];
+		if (cell == BORDER_CELL) {
+			return HueColorEngine.xyToHueSaturation(x, y);
+		}
+		return HueColorEngine.pack(cell / SATURATIONS, cell % SATURATIONS);
+	}
+}
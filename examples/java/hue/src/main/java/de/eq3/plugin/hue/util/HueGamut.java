@@ -0,0 +1,156 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.util;
+
+import de.eq3.plugin.hue.model.light.Gamut;
+import de.eq3.plugin.hue.model.light.Xy;
+
+/**
+ * Color gamut triangle of a light in CIE 1931 xy coordinates.
+ * <p>
+ * Colors outside the triangle cannot be displayed by the light. The bridge
+ * clips them to the closest displayable color, which is done by
+ * {@link #clip(double[])} before sending a color to the bridge.
+ * </p>
+ */
+public final class HueGamut {
+	/**
+	 * Gamut of older LivingColors and Bloom lights.
+	 */
+	public static final HueGamut GAMUT_A = new HueGamut(0.704, 0.296, 0.2151, 0.7106, 0.138, 0.08);
+
+	/**
+	 * Gamut of older Hue bulbs.
+	 */
+	public static final HueGamut GAMUT_B = new HueGamut(0.675, 0.322, 0.409, 0.518, 0.167, 0.04);
+
+	/**
+	 * Gamut of current Hue bulbs.
+	 */
+	public static final HueGamut GAMUT_C = new HueGamut(0.6915, 0.3083, 0.17, 0.7, 0.1532, 0.0475);
+
+	private final double redX;
+	private final double redY;
+	private final double greenX;
+	private final double greenY;
+	private final double blueX;
+	private final double blueY;
+
+	public HueGamut(double redX, double redY, double greenX, double greenY, double blueX, double blueY) {
+		this.redX = redX;
+		this.redY = redY;
+		this.greenX = greenX;
+		this.greenY = greenY;
+		this.blueX = blueX;
+		this.blueY = blueY;
+	}
+
+	/**
+	 * Returns the gamut reported for a light. The reported triangle is preferred,
+	 * otherwise the gamut is derived from the gamut type.
+	 *
+	 * @param gamut     the reported gamut or null
+	 * @param gamutType the reported gamut type, "A", "B", "C" or "other"
+	 * @return the gamut or null if the light did not report a known gamut
+	 */
+	public static HueGamut of(Gamut gamut, String gamutType) {
+		if (gamut != null && isValid(gamut.getRed()) && isValid(gamut.getGreen()) && isValid(gamut.getBlue())) {
+			return new HueGamut(gamut.getRed().getX(), gamut.getRed().getY(), gamut.getGreen().getX(),
+					gamut.getGreen().getY(), gamut.getBlue().getX(), gamut.getBlue().getY());
+		}
+		if ("A".equals(gamutType)) {
+			return GAMUT_A;
+		} else if ("B".equals(gamutType)) {
+			return GAMUT_B;
+		} else if ("C".equals(gamutType)) {
+			return GAMUT_C;
+		}
+		return null;
+	}
+
+	private static boolean isValid(Xy xy) {
+		return xy != null && xy.getX() != null && xy.getY() != null;
+	}
+
+	/**
+	 * Checks if the given coordinates are inside the triangle.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return true if the color can be displayed
+	 */
+	public boolean contains(double x, double y) {
+		double redGreen = cross(redX, redY, greenX, greenY, x, y);
+		double greenBlue = cross(greenX, greenY, blueX, blueY, x, y);
+		double blueRed = cross(blueX, blueY, redX, redY, x, y);
+		boolean negative = redGreen < 0 || greenBlue < 0 || blueRed < 0;
+		boolean positive = redGreen > 0 || greenBlue > 0 || blueRed > 0;
+		return !(negative && positive);
+	}
+
+	/**
+	 * Moves coordinates outside the triangle to the closest point on its border.
+	 * Coordinates inside the triangle are not changed, clipped coordinates are
+	 * rounded to four decimals.
+	 *
+	 * @param xy array with x at index 0 and y at index 1, updated in place
+	 * @return true if the coordinates have been clipped
+	 */
+	public boolean clip(double[] xy) {
+		double x = xy[0];
+		double y = xy[1];
+		if (contains(x, y)) {
+			return false;
+		}
+		double closestX = redX;
+		double closestY = redY;
+		double closestDistance = Double.MAX_VALUE;
+
+		for (int vertex = 0; vertex < 3; vertex++) {
+			double startX = vertexX(vertex);
+			double startY = vertexY(vertex);
+			double edgeX = vertexX((vertex + 1) % 3) - startX;
+			double edgeY = vertexY((vertex + 1) % 3) - startY;
+			double t = ((x - startX) * edgeX + (y - startY) * edgeY) / (edgeX * edgeX + edgeY * edgeY);
+			t = Math.max(0.0, Math.min(1.0, t));
+			double pointX = startX + t * edgeX;
+			double pointY = startY + t * edgeY;
+			double distance = (x - pointX) * (x - pointX) + (y - pointY) * (y - pointY);
+			if (distance < closestDistance) {
+				closestDistance = distance;
+				closestX = pointX;
+				closestY = pointY;
+			}
+		}
+		xy[0] = Math.round(closestX * 10_000.0) / 10_000.0;
+		xy[1] = Math.round(closestY * 10_000.0) / 10_000.0;
+		return true;
+	}
+
+	private double vertexX(int vertex) {
+		return vertex == 0 ? redX : vertex == 1 ? greenX : blueX;
+	}
+
+	private double vertexY(int vertex) {
+		return vertex == 0 ? redY : vertex == 1 ? greenY : blueY;
+	}
+
+	private static double cross(double ax, double ay, double bx, double by, double x, double y) {
+		return (bx - ax) * (y - ay) - (by - ay) * (x - ax);
+	}
+}
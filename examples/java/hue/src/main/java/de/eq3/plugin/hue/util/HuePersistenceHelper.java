@@ -20,22 +20,37 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.auth.model.HueJournalEntry;
+import de.eq3.plugin.hue.auth.model.HueOnTimeOffCommand;
 import de.eq3.plugin.hue.auth.model.HuePersistence;
+import de.eq3.plugin.hue.metrics.HueMetrics;
 import de.eq3.plugin.hue.model.device.Device;
 
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.FileSystemException;
-import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonObject;
 
 /**
  * Utility class for managing persistence of Philips Hue bridge authentication
@@ -46,6 +61,37 @@ import io.vertx.core.json.JsonObject;
  * Uses Vert.x for file operations and JSON serialization.
  * </p>
  * <p>
+ * Disk I/O after the initial load runs on a dedicated single threaded worker
+ * executor. All writes go through one queue, so they are executed in the order
+ * they were submitted, regardless of the calling context, and never on an event
+ * loop thread.
+ * Any attempt to access the disk from an event loop thread fails, as does a
+ * write task not running on a worker thread.
+ * </p>
+ * <p>
+ * State is stored as binary snapshot, see {@link HueSnapshotCodec}, plus
+ * append-only journal. Every change is
+ * recorded as {@link HueJournalEntry} describing only what changed, so the cost
+ * of a write does not depend on the number of devices. Journal entries are
+ * written behind: they are coalesced and appended after
+ * {@code plugin.hue.persist.delay} millis, authentication data is appended right
+ * away. The journal is compacted into a new snapshot once it exceeds
+ * {@code plugin.hue.journal.maxEntries} entries or
+ * {@code plugin.hue.journal.maxBytes} bytes, and every
+ * {@code plugin.hue.journal.compactInterval} millis. Compaction only removes the
+ * journal entries contained in the previous snapshot, which is kept as backup,
+ * so either snapshot can be completed from the journal. On startup the snapshot
+ * is loaded and all journal entries newer than the snapshot are replayed. A
+ * snapshot written as JSON by a previous version is migrated to the binary
+ * format on startup. Pending changes are written as snapshot on shutdown.
+ * </p>
+ * <p>
+ * Collections handed to the save methods are copied, and the persisted state
+ * only holds unmodifiable collections which are replaced on change. A snapshot
+ * therefore copies the state under the monitor of the helper without copying
+ * the collections, and is encoded on the worker executor.
+ * </p>
+ * <p>
  * This class is a singleton and not intended to be instantiated directly.
  * </p>
  */
@@ -54,6 +100,7 @@ public final class HuePersistenceHelper {
 	private static final String OLD_FILE_ENDING = ".OLD";
 	private static final String NEW_FILE_ENDING = ".NEW";
 	private static final String FILE_NAME = "/hue.auth";
+	private static final String JOURNAL_FILE_NAME = "/hue.journal";
 	private static final String TOKEN_PROPERTY = "websocket.token";
 
 	private static final HuePersistenceHelper HUE_PERSISTENCE_HELPER = new HuePersistenceHelper();
@@ -61,6 +108,35 @@ public final class HuePersistenceHelper {
 	private Vertx vertx;
 	private HuePersistence persistence;
 
+	private WorkerExecutor diskExecutor;
+	// disk tasks in submission order, drained by a single task on the executor
+	private final Deque<DiskWrite> diskQueue = new ArrayDeque<>();
+	private boolean draining;
+	private Thread shutdownHook;
+	private HuePersistenceJournal journal;
+	private String token;
+
+	private long flushDelay;
+	private long flushTimerId = -1;
+	private long compactTimerId = -1;
+	private Promise<Void> pendingFlush;
+	private final List<Buffer> pendingEntries = new ArrayList<>();
+	private long writeSequence;
+	private int entriesSinceSnapshot;
+	private int maxJournalEntries;
+	private long maxJournalBytes;
+
+	private final Object diskLock = new Object();
+	private long lastSnapshotSequence;
+	private long lastDurableSequence;
+	private long retainedJournalBytes;
+
+	private final AtomicLong writesPerformed = new AtomicLong();
+	private final AtomicLong writesAvoided = new AtomicLong();
+	private final AtomicLong snapshotsWritten = new AtomicLong();
+	private final HueMetrics.Timer diskWrites = HueMetrics.getInstance()
+			.timer("hue_persistence_write_seconds", "Duration of persistence writes including fsync");
+
 	private HuePersistenceHelper() {
 	}
 
@@ -75,31 +151,72 @@ public final class HuePersistenceHelper {
 
 	/**
 	 * Initializes the persistence helper with the given Vert.x instance and loads
+	 * persisted data and the websocket token. Must be called before any verticle
+	 * is deployed and not from an event loop thread. Calling it again reloads the
 	 * persisted data.
 	 *
 	 * @param vertx the Vert.x instance to use for file operations
 	 */
 	public void init(Vertx vertx) {
+		assertNotOnEventLoop();
 		final String storagePath = System.getProperty("plugin.hue.authFolder", "/data");
+		stopDiskWrites();
+		if (this.diskExecutor != null) {
+			this.diskExecutor.close();
+		}
 		this.vertx = vertx;
+		this.diskExecutor = vertx.createSharedWorkerExecutor("hue-persistence", 1);
+		this.journal = new HuePersistenceJournal(Paths.get(storagePath + JOURNAL_FILE_NAME));
+		this.flushDelay = Long.parseLong(System.getProperty("plugin.hue.persist.delay", "2000"));
+		this.maxJournalEntries = Integer.parseInt(System.getProperty("plugin.hue.journal.maxEntries", "500"));
+		this.maxJournalBytes = Long.parseLong(System.getProperty("plugin.hue.journal.maxBytes", "262144"));
+		long compactInterval = Long.parseLong(System.getProperty("plugin.hue.journal.compactInterval", "3600000"));
 
 		if (!vertx.fileSystem().existsBlocking(storagePath)) {
 			vertx.fileSystem().mkdirsBlocking(storagePath);
 		}
 		load();
+		this.token = loadToken();
+
+		synchronized (this) {
+			if (compactInterval > 0) {
+				compactTimerId = vertx.setPeriodic(compactInterval, id -> compactPeriodically());
+			}
+			if (shutdownHook == null) {
+				shutdownHook = new Thread(this::flushBlocking, "hue-persistence-flush");
+				Runtime.getRuntime().addShutdownHook(shutdownHook);
+			}
+		}
 	}
 
 	/**
-	 * Reads the websocket token from system properties or from the /TOKEN file.
+	 * Writes pending changes as snapshot, stops the timers and releases the disk
+	 * executor. Must not be called from an event loop thread.
+	 */
+	public void close() {
+		assertNotOnEventLoop();
+		stopDiskWrites();
+		flushBlocking();
+		synchronized (this) {
+			if (shutdownHook != null) {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+				shutdownHook = null;
+			}
+			if (diskExecutor != null) {
+				diskExecutor.close();
+				diskExecutor = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the websocket token read from system properties or from the /TOKEN
+	 * file during initialization.
 	 *
 	 * @return the websocket token as a String
 	 */
 	public String readToken() {
-		String propertyToken = System.getProperty(TOKEN_PROPERTY, null);
-		if (propertyToken != null) {
-			return propertyToken;
-		}
-		return this.vertx.fileSystem().readFileBlocking("/TOKEN").toString().trim();
+		return this.token;
 	}
 
 	/**
@@ -114,9 +231,10 @@ public final class HuePersistenceHelper {
 	/**
 	 * Deletes the persisted HueBridge data.
 	 */
-	public void deleteHueBridge() {
+	public synchronized Future<Void> deleteHueBridge() {
 		this.persistence.setBridgeData(null);
-		persist();
+		record(List.of(new HueJournalEntry(HueJournalEntry.OPERATION_DELETE_BRIDGE, null)));
+		return flush();
 	}
 
 	/**
@@ -125,8 +243,9 @@ public final class HuePersistenceHelper {
 	 * @param bridgeId       the bridge ID
 	 * @param applicationKey the application key
 	 * @param localAddress   the local IP address
+	 * @return a future completed once the data has been written
 	 */
-	public void saveAuthData(String bridgeId, String applicationKey, String localAddress) {
+	public synchronized Future<Void> saveAuthData(String bridgeId, String applicationKey, String localAddress) {
 		HueBridge bridge = this.persistence.getBridgeData();
 		if (bridge == null) {
 			bridge = new HueBridge();
@@ -137,55 +256,502 @@ public final class HuePersistenceHelper {
 		bridge.setApplicationKey(applicationKey);
 
 		this.persistence.setBridgeData(bridge);
-		this.persist();
+
+		HueJournalEntry entry = new HueJournalEntry(HueJournalEntry.OPERATION_AUTH, null);
+		entry.setBridgeId(bridgeId);
+		entry.setApplicationKey(applicationKey);
+		entry.setLocalAddress(localAddress);
+		record(List.of(entry));
 		logger.debug("Saved hue auth data");
+		return this.flush();
 	}
 
 	/**
-	 * Saves the set of devices associated with the Hue bridge.
+	 * Saves the set of devices associated with the Hue bridge. Only added, changed
+	 * and removed devices are written.
 	 *
 	 * @param devices the set of devices to persist
+	 * @return a future completed once the data has been written
 	 */
-	public void saveDeviceData(Set<Device> devices) {
+	public synchronized Future<Void> saveDeviceData(Set<Device> devices) {
 		HueBridge bridge = this.persistence.getBridgeData();
 
 		if (bridge == null) {
-			return;
+			return Future.succeededFuture();
+		}
+		Map<String, Device> deviceMap = devices.stream()
+				.collect(Collectors.collectingAndThen(Collectors.toMap(Device::getId, device -> device),
+						Collections::unmodifiableMap));
+		Map<String, Device> previous = bridge.getDevices() != null ? bridge.getDevices() : Map.of();
+
+		List<HueJournalEntry> changes = new ArrayList<>();
+		deviceMap.forEach((id, device) -> {
+			if (!device.equals(previous.get(id))) {
+				HueJournalEntry entry = new HueJournalEntry(HueJournalEntry.OPERATION_DEVICE_UPSERT, id);
+				entry.setDevice(device);
+				changes.add(entry);
+			}
+		});
+		previous.keySet()
+				.stream()
+				.filter(id -> !deviceMap.containsKey(id))
+				.forEach(id -> changes.add(new HueJournalEntry(HueJournalEntry.OPERATION_DEVICE_REMOVE, id)));
+
+		if (changes.isEmpty()) {
+			writesAvoided.incrementAndGet();
+			logger.trace("Bridge {}: Device data unchanged", bridge.getBridgeId());
+			return Future.succeededFuture();
 		}
-		bridge.setDevices(devices.stream().collect(Collectors.toMap(Device::getId, device -> device)));
+		bridge.setDevices(deviceMap);
+		record(changes);
 
-		this.persist();
-		logger.debug("Bridge {}: Saved device data", bridge.getBridgeId());
+		logger.debug("Bridge {}: Saved device data, {} changes", bridge.getBridgeId(), changes.size());
+		return this.schedulePersist();
 	}
 
 	/**
 	 * Saves the set of included device IDs for the Hue bridge.
 	 *
 	 * @param deviceIds the set of included device IDs
+	 * @return a future completed once the data has been written
 	 */
-	public void saveIncludedDevices(Set<String> deviceIds) {
+	public synchronized Future<Void> saveIncludedDevices(Set<String> deviceIds) {
 		HueBridge bridge = this.persistence.getBridgeData();
 
 		if (bridge == null) {
-			return;
+			return Future.succeededFuture();
+		}
+		Set<String> previous = bridge.getIncludedDevices() != null ? bridge.getIncludedDevices() : Set.of();
+		List<HueJournalEntry> changes = new ArrayList<>();
+		deviceIds.stream()
+				.filter(id -> !previous.contains(id))
+				.forEach(id -> changes.add(new HueJournalEntry(HueJournalEntry.OPERATION_INCLUDE, id)));
+		previous.stream()
+				.filter(id -> !deviceIds.contains(id))
+				.forEach(id -> changes.add(new HueJournalEntry(HueJournalEntry.OPERATION_EXCLUDE, id)));
+
+		bridge.setIncludedDevices(Collections.unmodifiableSet(new HashSet<>(deviceIds)));
+
+		if (changes.isEmpty()) {
+			writesAvoided.incrementAndGet();
+			return Future.succeededFuture();
 		}
-		bridge.setIncludedDevices(deviceIds);
+		record(changes);
 
-		this.persist();
 		logger.debug("Bridge {}: Saved included devices", bridge.getBridgeId());
+		return this.schedulePersist();
 	}
 
 	/**
-	 * Persists the current state to disk, creating backups of previous versions.
+	 * Adds the given device IDs to the included devices of the Hue bridge.
+	 *
+	 * @param deviceIds the device IDs to include
+	 * @return a future completed once the data has been written
 	 */
-	private void persist() {
-		final String storagePath = System.getProperty("plugin.hue.authFolder", "/data") + FILE_NAME;
-		JsonObject updateMetaDataJson = JsonObject.mapFrom(this.persistence);
-		Buffer metaDataBuffer = updateMetaDataJson.toBuffer();
+	public synchronized Future<Void> includeDevices(Set<String> deviceIds) {
+		HueBridge bridge = this.persistence.getBridgeData();
+
+		if (bridge == null) {
+			return Future.succeededFuture();
+		}
+		Set<String> included = new HashSet<>(deviceIds);
+		if (bridge.getIncludedDevices() != null) {
+			included.addAll(bridge.getIncludedDevices());
+		}
+		return saveIncludedDevices(included);
+	}
+
+	/**
+	 * Removes the given device IDs from the included devices of the Hue bridge.
+	 *
+	 * @param deviceIds the device IDs to exclude
+	 * @return a future completed once the data has been written
+	 */
+	public synchronized Future<Void> excludeDevices(Set<String> deviceIds) {
+		HueBridge bridge = this.persistence.getBridgeData();
+
+		if (bridge == null || bridge.getIncludedDevices() == null) {
+			return Future.succeededFuture();
+		}
+		Set<String> included = new HashSet<>(bridge.getIncludedDevices());
+		included.removeAll(deviceIds);
+		return saveIncludedDevices(included);
+	}
+
+	/**
+	 * Saves the scheduled onTime auto-off commands of the Hue bridge, so they can be
+	 * restored after a restart.
+	 *
+	 * @param commands the scheduled commands by device ID
+	 * @return a future completed once the data has been written
+	 */
+	public synchronized Future<Void> saveOnTimeOffCommands(Map<String, HueOnTimeOffCommand> commands) {
+		HueBridge bridge = this.persistence.getBridgeData();
+
+		if (bridge == null) {
+			return Future.succeededFuture();
+		}
+		Map<String, HueOnTimeOffCommand> previous = bridge.getOnTimeOffCommands() != null
+				? bridge.getOnTimeOffCommands()
+				: Map.of();
+		List<HueJournalEntry> changes = new ArrayList<>();
+		commands.forEach((deviceId, command) -> {
+			if (!Objects.equals(command, previous.get(deviceId))) {
+				HueJournalEntry entry = new HueJournalEntry(HueJournalEntry.OPERATION_ONTIME_PUT, deviceId);
+				entry.setCommand(command);
+				changes.add(entry);
+			}
+		});
+		previous.keySet()
+				.stream()
+				.filter(deviceId -> !commands.containsKey(deviceId))
+				.forEach(deviceId -> changes
+						.add(new HueJournalEntry(HueJournalEntry.OPERATION_ONTIME_REMOVE, deviceId)));
+
+		bridge.setOnTimeOffCommands(Collections.unmodifiableMap(new HashMap<>(commands)));
+
+		if (changes.isEmpty()) {
+			writesAvoided.incrementAndGet();
+			return Future.succeededFuture();
+		}
+		record(changes);
+
+		logger.debug("Bridge {}: Saved {} onTime commands", bridge.getBridgeId(), commands.size());
+		return this.schedulePersist();
+	}
+
+	/**
+	 * Appends pending journal entries to disk immediately and compacts the journal
+	 * if it grew too large. Does nothing if there are no pending entries.
+	 *
+	 * @return a future completed once the entries have been written
+	 */
+	public synchronized Future<Void> flush() {
+		Promise<Void> waiting = pendingFlush;
+		pendingFlush = null;
+		cancelFlushTimer();
+
+		Future<Void> result;
+		if (pendingEntries.isEmpty()) {
+			result = Future.succeededFuture();
+		} else {
+			List<Buffer> lines = new ArrayList<>(pendingEntries);
+			long sequence = writeSequence;
+			pendingEntries.clear();
+			entriesSinceSnapshot += lines.size();
+
+			result = runOnDisk(() -> appendJournal(sequence, lines))
+					.onFailure(throwable -> logger.error("Could not save hue auth data {}", throwable.getMessage()));
+			if (entriesSinceSnapshot >= maxJournalEntries) {
+				compact();
+			}
+		}
+		if (waiting != null) {
+			result.onComplete(waiting);
+		}
+		return result;
+	}
+
+	public long getWritesPerformed() {
+		return writesPerformed.get();
+	}
+
+	public long getWritesAvoided() {
+		return writesAvoided.get();
+	}
+
+	public long getSnapshotsWritten() {
+		return snapshotsWritten.get();
+	}
+
+	/**
+	 * Assigns sequence numbers to the given entries and queues them for the next
+	 * flush.
+	 *
+	 * @param entries the entries to record
+	 */
+	private synchronized void record(List<HueJournalEntry> entries) {
+		entries.forEach(entry -> {
+			entry.setSequence(++writeSequence);
+			pendingEntries.add(HuePersistenceJournal.encode(entry));
+		});
+	}
+
+	/**
+	 * Schedules a flush of the pending entries, changes until then are written
+	 * together.
+	 *
+	 * @return a future completed once the scheduled flush has been written
+	 */
+	private synchronized Future<Void> schedulePersist() {
+		if (flushDelay <= 0) {
+			return flush();
+		}
+		if (flushTimerId != -1) {
+			writesAvoided.incrementAndGet();
+			return pendingFlush.future();
+		}
+		pendingFlush = Promise.promise();
+		Future<Void> scheduled = pendingFlush.future();
+		flushTimerId = vertx.setTimer(flushDelay, timerId -> {
+			synchronized (this) {
+				if (flushTimerId == timerId) {
+					flushTimerId = -1;
+					flush();
+				}
+			}
+		});
+		return scheduled;
+	}
+
+	/**
+	 * Writes a snapshot of the current state and shortens the journal. The state
+	 * is copied on the calling thread, so it matches the current sequence, and
+	 * serialized on the worker executor.
+	 *
+	 * @return a future completed once the snapshot has been written
+	 */
+	private synchronized Future<Void> compact() {
+		long sequence = writeSequence;
+		HuePersistence state = copyState(sequence);
+		entriesSinceSnapshot = 0;
+
+		return runOnDisk(() -> writeSnapshot(sequence, HueSnapshotCodec.encode(state)))
+				.onFailure(throwable -> logger.error("Could not compact hue journal {}", throwable.getMessage()));
+	}
+
+	private synchronized void compactPeriodically() {
+		if (entriesSinceSnapshot > 0) {
+			compact();
+		}
+	}
+
+	/**
+	 * Writes the current state as snapshot on the calling thread. Used on shutdown,
+	 * when the worker executor may not accept tasks anymore.
+	 */
+	private void flushBlocking() {
+		HuePersistence state;
+		long sequence;
+		synchronized (this) {
+			cancelFlushTimer();
+			pendingEntries.clear();
+			sequence = writeSequence;
+			synchronized (diskLock) {
+				if (sequence <= lastDurableSequence) {
+					return;
+				}
+			}
+			state = copyState(sequence);
+		}
+		try {
+			writeSnapshot(sequence, HueSnapshotCodec.encode(state));
+		} catch (IOException e) {
+			logger.error("Could not save hue auth data on shutdown {}", e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Copies the current state for a snapshot. The collections are not copied, as
+	 * they are never modified once stored.
+	 *
+	 * @param sequence the journal sequence contained in the snapshot
+	 * @return the copied state
+	 */
+	private synchronized HuePersistence copyState(long sequence) {
+		HueBridge bridge = this.persistence.getBridgeData();
+		if (bridge == null) {
+			return new HuePersistence(null, sequence);
+		}
+		HueBridge copy = HueBridge.builder()
+				.bridgeId(bridge.getBridgeId())
+				.localAddress(bridge.getLocalAddress())
+				.applicationKey(bridge.getApplicationKey())
+				.lastSuccessfullAddress(bridge.getLastSuccessfullAddress())
+				.devices(bridge.getDevices())
+				.includedDevices(bridge.getIncludedDevices())
+				.onTimeOffCommands(bridge.getOnTimeOffCommands())
+				.build();
+		return new HuePersistence(copy, sequence);
+	}
+
+	/**
+	 * Replaces the collections of the loaded state by unmodifiable copies.
+	 */
+	private void freezeState() {
+		HueBridge bridge = this.persistence.getBridgeData();
+		if (bridge == null) {
+			return;
+		}
+		bridge.setDevices(Collections.unmodifiableMap(
+				bridge.getDevices() != null ? new HashMap<>(bridge.getDevices()) : new HashMap<>()));
+		bridge.setIncludedDevices(Collections.unmodifiableSet(
+				bridge.getIncludedDevices() != null ? new HashSet<>(bridge.getIncludedDevices()) : new HashSet<>()));
+		bridge.setOnTimeOffCommands(Collections.unmodifiableMap(bridge.getOnTimeOffCommands() != null
+				? new HashMap<>(bridge.getOnTimeOffCommands())
+				: new HashMap<>()));
+	}
+
+	/**
+	 * Stops the timers and waits until the queued disk tasks have been executed.
+	 */
+	private void stopDiskWrites() {
+		synchronized (this) {
+			if (compactTimerId != -1) {
+				vertx.cancelTimer(compactTimerId);
+				compactTimerId = -1;
+			}
+			cancelFlushTimer();
+		}
+		synchronized (diskQueue) {
+			while (draining) {
+				try {
+					diskQueue.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues a disk task. The returned future is completed on the context of the
+	 * caller, if any.
+	 *
+	 * @param task the task to execute
+	 * @return a future completed once the task has been executed
+	 */
+	private Future<Void> runOnDisk(DiskTask task) {
+		DiskWrite write = new DiskWrite(task, Vertx.currentContext());
+		synchronized (diskQueue) {
+			diskQueue.add(write);
+			if (draining) {
+				return write.promise.future();
+			}
+			draining = true;
+		}
+		diskExecutor.executeBlocking(this::drainDiskQueue, false);
+		return write.promise.future();
+	}
 
+	private void drainDiskQueue(Promise<Void> drained) {
+		while (true) {
+			DiskWrite write;
+			synchronized (diskQueue) {
+				write = diskQueue.poll();
+				if (write == null) {
+					draining = false;
+					diskQueue.notifyAll();
+					break;
+				}
+			}
+			write.complete(executeOnDisk(write.task));
+		}
+		drained.complete();
+	}
+
+	private Throwable executeOnDisk(DiskTask task) {
+		if (!Context.isOnWorkerThread()) {
+			return new IllegalStateException("Disk access outside of worker thread " + Thread.currentThread().getName());
+		}
+		long start = System.nanoTime();
 		try {
+			task.run();
+			diskWrites.recordSince(start);
+			return null;
+		} catch (IOException | RuntimeException e) {
+			return e;
+		}
+	}
+
+	private void cancelFlushTimer() {
+		if (flushTimerId != -1) {
+			vertx.cancelTimer(flushTimerId);
+			flushTimerId = -1;
+		}
+	}
+
+	private static void assertNotOnEventLoop() {
+		if (Context.isOnEventLoopThread()) {
+			throw new IllegalStateException(
+					"Disk access on event loop thread " + Thread.currentThread().getName());
+		}
+	}
+
+	/**
+	 * Appends the given entries to the journal. Entries already contained in a
+	 * snapshot are skipped. Compacts the journal if it exceeds the size limit.
+	 *
+	 * @param sequence the highest sequence number of the entries
+	 * @param lines    the encoded entries
+	 * @throws IOException if the entries could not be written
+	 */
+	private void appendJournal(long sequence, List<Buffer> lines) throws IOException {
+		assertNotOnEventLoop();
+		long journalSize;
+
+		synchronized (diskLock) {
+			if (sequence <= lastSnapshotSequence) {
+				return;
+			}
+			journal.append(lines);
+			lastDurableSequence = Math.max(lastDurableSequence, sequence);
+			journalSize = journal.size() - retainedJournalBytes;
+		}
+		writesPerformed.incrementAndGet();
+		logger.debug("Appended {} hue journal entries, {} writes performed, {} avoided", lines.size(),
+				writesPerformed.get(), writesAvoided.get());
+
+		if (journalSize > maxJournalBytes) {
+			// queued behind this task on the same worker
+			compact();
+		}
+	}
+
+	/**
+	 * Persists the given snapshot to disk, creating backups of previous versions,
+	 * and removes the entries contained in the previous snapshot from the journal.
+	 * Snapshots older than the last written one are skipped.
+	 *
+	 * @param sequence the journal sequence contained in the snapshot
+	 * @param snapshot the serialized state
+	 * @throws IOException if the snapshot could not be written
+	 */
+	private void writeSnapshot(long sequence, Buffer snapshot) throws IOException {
+		assertNotOnEventLoop();
+
+		synchronized (diskLock) {
+			if (sequence <= lastSnapshotSequence) {
+				return;
+			}
+			replaceSnapshot(snapshot);
+
+			// the previous snapshot is the backup now, keep the entries it misses
+			journal.retainAfter(lastSnapshotSequence);
+			retainedJournalBytes = journal.size();
+			lastSnapshotSequence = sequence;
+			lastDurableSequence = Math.max(lastDurableSequence, sequence);
+		}
+		writesPerformed.incrementAndGet();
+		snapshotsWritten.incrementAndGet();
+		logger.debug("Persisted hue snapshot at sequence {}, {} snapshots written", sequence,
+				snapshotsWritten.get());
+	}
+
+	/**
+	 * Replaces the snapshot file, keeping the previous version as backup.
+	 *
+	 * @param snapshot the serialized state
+	 * @throws IOException if the snapshot could not be written
+	 */
+	private void replaceSnapshot(Buffer snapshot) throws IOException {
+		final String storagePath = System.getProperty("plugin.hue.authFolder", "/data") + FILE_NAME;
+
+		synchronized (diskLock) {
 			// Create new file
-			this.vertx.fileSystem().writeFileBlocking(storagePath + NEW_FILE_ENDING, metaDataBuffer);
+			this.vertx.fileSystem().writeFileBlocking(storagePath + NEW_FILE_ENDING, snapshot);
 
 			// if current version exists, make it old
 			if (this.vertx.fileSystem().existsBlocking(storagePath)) {
@@ -196,35 +762,202 @@ public final class HuePersistenceHelper {
 			// make new file to current file
 			Files.move(Paths.get(storagePath + NEW_FILE_ENDING), Paths.get(storagePath),
 					StandardCopyOption.ATOMIC_MOVE);
-		} catch (IOException e) {
-			logger.error("Could not save hue auth data {}", e.getMessage());
 		}
 	}
 
 	/**
-	 * Loads persisted data from disk, handling migration and error cases.
+	 * Reads the websocket token from system properties or from the /TOKEN file.
+	 *
+	 * @return the websocket token or null if none is available
+	 */
+	private String loadToken() {
+		String propertyToken = System.getProperty(TOKEN_PROPERTY, null);
+		if (propertyToken != null) {
+			return propertyToken;
+		}
+		try {
+			return this.vertx.fileSystem().readFileBlocking("/TOKEN").toString().trim();
+		} catch (FileSystemException e) {
+			logger.error("Could not read websocket token {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Loads the persisted snapshot from disk, handling migration and error cases,
+	 * and replays the journal entries written after it.
 	 */
 	private void load() {
-		Buffer fileBuffer;
+		assertNotOnEventLoop();
+		final String storagePath = System.getProperty("plugin.hue.authFolder", "/data") + FILE_NAME;
+		boolean legacy = false;
+		this.persistence = null;
+
+		// fall back to the backup if the current snapshot is missing or corrupted
+		for (String path : new String[] { storagePath, storagePath + OLD_FILE_ENDING }) {
+			try {
+				logger.debug("Loading data from {}", path);
+				Buffer fileBuffer = this.vertx.fileSystem().readFileBlocking(path);
+				this.persistence = HueSnapshotCodec.decode(fileBuffer);
+				legacy = HueSnapshotCodec.isLegacy(fileBuffer);
+				break;
+			} catch (FileSystemException e) {
+				logger.info("Could not read auth data from {}", path);
+			} catch (IOException e) {
+				logger.warn("Could not parse auth data from {} {}", path, e.getMessage());
+			}
+		}
+		if (this.persistence == null) {
+			logger.info("No auth data available, creating new map");
+			this.persistence = new HuePersistence();
+		}
+		long snapshotSequence = this.persistence.getJournalSequence();
+		long sequence = snapshotSequence;
+		int replayed = 0;
 
 		try {
-			final String storagePath = System.getProperty("plugin.hue.authFolder", "/data") + FILE_NAME;
-			logger.debug("Loading data from {}", storagePath);
-			if (this.vertx.fileSystem().existsBlocking(storagePath)) {
-				fileBuffer = this.vertx.fileSystem().readFileBlocking(storagePath);
-			} else {
-				fileBuffer = this.vertx.fileSystem().readFileBlocking(storagePath + OLD_FILE_ENDING);
+			for (HueJournalEntry entry : journal.read()) {
+				if (entry.getSequence() > snapshotSequence) {
+					replay(entry);
+					sequence = Math.max(sequence, entry.getSequence());
+					replayed++;
+				}
 			}
+		} catch (IOException e) {
+			logger.error("Could not read hue journal {}", e.getMessage());
+		}
 
-			this.persistence = fileBuffer.toJsonObject().mapTo(HuePersistence.class);
-		} catch (FileSystemException e) {
-			logger.info("Could not read auth data, creating new map");
-			this.persistence = new HuePersistence();
-		} catch (IllegalArgumentException | DecodeException e) {
-			logger.info("Could not parse auth data, creating new map");
-			this.persistence = new HuePersistence();
+		synchronized (this) {
+			writeSequence = sequence;
+			entriesSinceSnapshot = replayed;
+			pendingEntries.clear();
+			freezeState();
+		}
+		synchronized (diskLock) {
+			lastSnapshotSequence = snapshotSequence;
+			lastDurableSequence = sequence;
+			retainedJournalBytes = 0;
+		}
+		logger.info("Hue auth data successfully read from file, {} journal entries replayed", replayed);
+
+		if (legacy) {
+			migrate(sequence);
 		}
-		logger.info("Hue auth data successfully read from file");
 	}
 
+	/**
+	 * Rewrites a snapshot written as JSON by a previous version in the binary
+	 * format, including the replayed journal entries.
+	 *
+	 * @param sequence the journal sequence of the loaded state
+	 */
+	private void migrate(long sequence) {
+		try {
+			Buffer snapshot;
+			synchronized (this) {
+				snapshot = HueSnapshotCodec.encode(copyState(sequence));
+				entriesSinceSnapshot = 0;
+			}
+			synchronized (diskLock) {
+				replaceSnapshot(snapshot);
+				journal.retainAfter(lastSnapshotSequence);
+				retainedJournalBytes = journal.size();
+				lastSnapshotSequence = sequence;
+			}
+			logger.info("Migrated hue auth data to snapshot format {}", HueSnapshotCodec.FORMAT_VERSION);
+		} catch (IOException e) {
+			logger.error("Could not migrate hue auth data {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Applies a journal entry to the loaded state.
+	 *
+	 * @param entry the journal entry
+	 */
+	private void replay(HueJournalEntry entry) {
+		HueBridge bridge = this.persistence.getBridgeData();
+
+		if (HueJournalEntry.OPERATION_AUTH.equals(entry.getOperation())) {
+			if (bridge == null) {
+				bridge = new HueBridge();
+				this.persistence.setBridgeData(bridge);
+			}
+			bridge.setBridgeId(entry.getBridgeId());
+			bridge.setApplicationKey(entry.getApplicationKey());
+			bridge.setLocalAddress(entry.getLocalAddress());
+			return;
+		}
+		if (HueJournalEntry.OPERATION_DELETE_BRIDGE.equals(entry.getOperation())) {
+			this.persistence.setBridgeData(null);
+			return;
+		}
+		if (bridge == null) {
+			logger.debug("Skipping journal entry {} without bridge", entry.getSequence());
+			return;
+		}
+
+		switch (entry.getOperation()) {
+		case HueJournalEntry.OPERATION_DEVICE_UPSERT:
+			if (bridge.getDevices() == null) {
+				bridge.setDevices(new HashMap<>());
+			}
+			bridge.getDevices().put(entry.getDeviceId(), entry.getDevice());
+			break;
+		case HueJournalEntry.OPERATION_DEVICE_REMOVE:
+			if (bridge.getDevices() != null) {
+				bridge.getDevices().remove(entry.getDeviceId());
+			}
+			break;
+		case HueJournalEntry.OPERATION_INCLUDE:
+			if (bridge.getIncludedDevices() == null) {
+				bridge.setIncludedDevices(new HashSet<>());
+			}
+			bridge.getIncludedDevices().add(entry.getDeviceId());
+			break;
+		case HueJournalEntry.OPERATION_EXCLUDE:
+			if (bridge.getIncludedDevices() != null) {
+				bridge.getIncludedDevices().remove(entry.getDeviceId());
+			}
+			break;
+		case HueJournalEntry.OPERATION_ONTIME_PUT:
+			if (bridge.getOnTimeOffCommands() == null) {
+				bridge.setOnTimeOffCommands(new HashMap<>());
+			}
+			bridge.getOnTimeOffCommands().put(entry.getDeviceId(), entry.getCommand());
+			break;
+		case HueJournalEntry.OPERATION_ONTIME_REMOVE:
+			if (bridge.getOnTimeOffCommands() != null) {
+				bridge.getOnTimeOffCommands().remove(entry.getDeviceId());
+			}
+			break;
+		default:
+			logger.warn("Skipping unknown journal operation {}", entry.getOperation());
+		}
+	}
+
+	@FunctionalInterface
+	private interface DiskTask {
+		void run() throws IOException;
+	}
+
+	private static final class DiskWrite {
+		private final DiskTask task;
+		private final Context context;
+		private final Promise<Void> promise = Promise.promise();
+
+		private DiskWrite(DiskTask task, Context context) {
+			this.task = task;
+			this.context = context;
+		}
+
+		private void complete(Throwable failure) {
+			Future<Void> result = failure == null ? Future.succeededFuture() : Future.failedFuture(failure);
+			if (context == null) {
+				promise.handle(result);
+			} else {
+				context.runOnContext(v -> promise.handle(result));
+			}
+		}
+	}
 }
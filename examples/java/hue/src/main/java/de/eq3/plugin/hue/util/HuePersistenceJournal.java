@@ -0,0 +1,152 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.eq3.plugin.hue.auth.model.HueJournalEntry;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Append-only journal file of {@link HueJournalEntry} lines. Each append is
+ * forced to the storage device before it returns. All methods block and must
+ * not be called from an event loop thread.
+ */
+final class HuePersistenceJournal {
+	private static final Logger logger = LogManager.getLogger(HuePersistenceJournal.class);
+	private static final String FIELD_SEQUENCE = "sequence";
+	private static final String NEW_FILE_ENDING = ".NEW";
+
+	private final Path file;
+
+	HuePersistenceJournal(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Encodes an entry as journal line.
+	 *
+	 * @param entry the entry
+	 * @return the encoded line including the line break
+	 */
+	static Buffer encode(HueJournalEntry entry) {
+		return JsonObject.mapFrom(entry).toBuffer().appendByte((byte) '\n');
+	}
+
+	/**
+	 * Appends the given lines to the journal.
+	 *
+	 * @param lines the encoded entries
+	 * @throws IOException if the lines could not be written
+	 */
+	void append(List<Buffer> lines) throws IOException {
+		Buffer content = Buffer.buffer();
+		lines.forEach(content::appendBuffer);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			ByteBuffer bytes = ByteBuffer.wrap(content.getBytes());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Reads all entries of the journal ordered by their sequence. Lines which
+	 * cannot be decoded, usually a partially written last line after a crash, are
+	 * skipped.
+	 *
+	 * @return the journal entries
+	 * @throws IOException if the journal could not be read
+	 */
+	List<HueJournalEntry> read() throws IOException {
+		List<HueJournalEntry> entries = new ArrayList<>();
+		if (!Files.exists(file)) {
+			return entries;
+		}
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.isBlank()) {
+				continue;
+			}
+			try {
+				entries.add(new JsonObject(line).mapTo(HueJournalEntry.class));
+			} catch (DecodeException | IllegalArgumentException e) {
+				logger.warn("Skipping unreadable journal entry {}", e.getMessage());
+			}
+		}
+		entries.sort(Comparator.comparingLong(HueJournalEntry::getSequence));
+		return entries;
+	}
+
+	/**
+	 * Removes the entries up to the given sequence from the journal. The remaining
+	 * lines are written to a new file, which then replaces the journal.
+	 *
+	 * @param sequence the highest sequence number to remove
+	 * @throws IOException if the journal could not be rewritten
+	 */
+	void retainAfter(long sequence) throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+		Buffer content = Buffer.buffer();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.isBlank()) {
+				continue;
+			}
+			try {
+				if (new JsonObject(line).getLong(FIELD_SEQUENCE, 0L) > sequence) {
+					content.appendString(line).appendByte((byte) '\n');
+				}
+			} catch (DecodeException | ClassCastException e) {
+				logger.warn("Dropping unreadable journal entry {}", e.getMessage());
+			}
+		}
+		Path rotated = file.resolveSibling(file.getFileName() + NEW_FILE_ENDING);
+		try (FileChannel channel = FileChannel.open(rotated, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer bytes = ByteBuffer.wrap(content.getBytes());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+		}
+		Files.move(rotated, file, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	long size() throws IOException {
+		return Files.exists(file) ? Files.size(file) : 0;
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.util;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import de.eq3.plugin.hue.auth.model.HuePersistence;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+
+/**
+ * Encodes and decodes the persisted state snapshot.
+ * <p>
+ * A snapshot consists of a 16 byte header followed by the state encoded as
+ * Jackson Smile. The header contains the magic bytes {@code HUES}, the format
+ * version, the payload length and the CRC32 checksum of the payload, all as big
+ * endian integers. Snapshots written as plain JSON by previous versions are
+ * still decoded.
+ * </p>
+ */
+public final class HueSnapshotCodec {
+	public static final int FORMAT_VERSION = 1;
+
+	private static final byte[] MAGIC = { 'H', 'U', 'E', 'S' };
+	private static final int HEADER_LENGTH = 16;
+	private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory())
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private HueSnapshotCodec() {
+	}
+
+	/**
+	 * Encodes the state as binary snapshot.
+	 *
+	 * @param persistence the state
+	 * @return the snapshot including the header
+	 * @throws IOException if the state could not be encoded
+	 */
+	public static Buffer encode(HuePersistence persistence) throws IOException {
+		byte[] payload = MAPPER.writeValueAsBytes(persistence);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		return Buffer.buffer(HEADER_LENGTH + payload.length)
+				.appendBytes(MAGIC)
+				.appendInt(FORMAT_VERSION)
+				.appendInt(payload.length)
+				.appendInt((int) crc.getValue())
+				.appendBytes(payload);
+	}
+
+	/**
+	 * Decodes a binary snapshot or a legacy JSON snapshot.
+	 *
+	 * @param content the file content
+	 * @return the state
+	 * @throws IOException if the content is truncated, corrupted or of an
+	 *                     unsupported version
+	 */
+	public static HuePersistence decode(Buffer content) throws IOException {
+		if (isLegacy(content)) {
+			try {
+				return content.toJsonObject().mapTo(HuePersistence.class);
+			} catch (DecodeException | IllegalArgumentException e) {
+				throw new IOException("Invalid legacy snapshot: " + e.getMessage(), e);
+			}
+		}
+		if (content.length() < HEADER_LENGTH) {
+			throw new IOException("Truncated snapshot header");
+		}
+		int version = content.getInt(4);
+		if (version > FORMAT_VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		int length = content.getInt(8);
+		if (length < 0 || content.length() - HEADER_LENGTH != length) {
+			throw new IOException("Snapshot length mismatch, expected " + length + " bytes");
+		}
+		byte[] payload = content.getBytes(HEADER_LENGTH, HEADER_LENGTH + length);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if ((int) crc.getValue() != content.getInt(12)) {
+			throw new IOException("Snapshot checksum mismatch");
+		}
+		return MAPPER.readValue(payload, HuePersistence.class);
+	}
+
+	/**
+	 * Returns whether the content is a snapshot written as plain JSON by a previous
+	 * version.
+	 *
+	 * @param content the file content
+	 * @return true if the content does not start with the snapshot magic bytes
+	 */
+	public static boolean isLegacy(Buffer content) {
+		if (content.length() < MAGIC.length) {
+			return true;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (content.getByte(i) != MAGIC[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
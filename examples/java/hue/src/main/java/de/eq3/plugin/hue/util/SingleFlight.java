@@ -0,0 +1,81 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.vertx.core.Future;
+
+/**
+ * Deduplicates concurrent executions of the same operation.
+ * <p>
+ * While an operation for a key is in flight, further callers for that key
+ * receive the same future instead of starting the operation again. Once the
+ * future completes the key is released and the next call starts a new
+ * execution.
+ * </p>
+ * <p>
+ * This class is not thread safe and is intended to be used from a single Vert.x
+ * context. Only the execution counters may be read from other threads.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public final class SingleFlight<K, V> {
+	private final Map<K, Future<V>> inFlight = new HashMap<>();
+	private final AtomicLong executions = new AtomicLong();
+	private final AtomicLong sharedCalls = new AtomicLong();
+
+	/**
+	 * Returns the in-flight future for the key or starts the operation.
+	 *
+	 * @param key       the key identifying the operation
+	 * @param operation supplier starting the operation
+	 * @return the shared future of the operation
+	 */
+	public Future<V> execute(K key, Supplier<Future<V>> operation) {
+		Future<V> running = inFlight.get(key);
+		if (running != null) {
+			sharedCalls.incrementAndGet();
+			return running;
+		}
+		executions.incrementAndGet();
+		Future<V> future = operation.get();
+		if (future.isComplete()) {
+			return future;
+		}
+		inFlight.put(key, future);
+		future.onComplete(result -> inFlight.remove(key, future));
+		return future;
+	}
+
+	public boolean isInFlight(K key) {
+		return inFlight.containsKey(key);
+	}
+
+	public long getExecutions() {
+		return executions.get();
+	}
+
+	public long getSharedCalls() {
+		return sharedCalls.get();
+	}
+}
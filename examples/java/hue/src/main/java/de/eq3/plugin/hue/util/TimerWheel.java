@@ -0,0 +1,248 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Hierarchical timing wheel keyed by a unique string.
+ * <p>
+ * Deadlines are expressed in abstract ticks. Scheduling and cancelling are O(1).
+ * Advancing the wheel only visits the ticks at which entries expire or cascade
+ * from the coarser levels into the finer ones, found via one occupancy bitmap
+ * per level, so catching up after an idle period does not iterate over every
+ * tick. Each key can only be scheduled once; scheduling an existing key
+ * replaces the previous entry.
+ * </p>
+ * <p>
+ * Deadlines further away than the range of the wheel are parked in the
+ * coarsest level and cascaded again until they are in range, they never expire
+ * early.
+ * </p>
+ * <p>
+ * This class is not thread safe and is intended to be used from a single Vert.x
+ * context.
+ * </p>
+ *
+ * @param <T> the payload type stored with each deadline
+ */
+public final class TimerWheel<T> {
+	private static final int BITS = 6;
+	private static final int SIZE = 1 << BITS;
+	private static final int MASK = SIZE - 1;
+	private static final int LEVELS = 5;
+	private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+	private final Entry<T>[][] slots;
+	// bit i of a level is set if slot i of the level holds entries
+	private final long[] occupied = new long[LEVELS];
+	private final Map<String, Entry<T>> entries = new HashMap<>();
+	private long currentTick;
+
+	/**
+	 * Creates a new wheel starting at the given tick.
+	 *
+	 * @param startTick the first tick to be processed
+	 */
+	public TimerWheel(long startTick) {
+		this.currentTick = startTick;
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Entry<T>[][] table = new Entry[LEVELS][SIZE];
+		this.slots = table;
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SIZE; slot++) {
+				Entry<T> head = new Entry<>(null, 0, null);
+				head.prev = head;
+				head.next = head;
+				this.slots[level][slot] = head;
+			}
+		}
+	}
+
+	/**
+	 * Schedules the payload for the given key. A deadline in the past expires on the
+	 * next call to {@link #advance(long, BiConsumer)}.
+	 *
+	 * @param key          the unique key of the entry
+	 * @param deadlineTick the tick at which the entry expires
+	 * @param payload      the payload handed to the expiry consumer
+	 */
+	public void schedule(String key, long deadlineTick, T payload) {
+		cancel(key);
+		Entry<T> entry = new Entry<>(key, deadlineTick, payload);
+		entries.put(key, entry);
+		insert(entry);
+	}
+
+	/**
+	 * Cancels the entry for the given key.
+	 *
+	 * @param key the key of the entry
+	 * @return the payload of the cancelled entry or null if none was scheduled
+	 */
+	public T cancel(String key) {
+		Entry<T> entry = entries.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		unlink(entry);
+		return entry.payload;
+	}
+
+	/**
+	 * Returns the payload scheduled for the given key.
+	 *
+	 * @param key the key of the entry
+	 * @return the payload or null if none was scheduled
+	 */
+	public T get(String key) {
+		Entry<T> entry = entries.get(key);
+		return entry == null ? null : entry.payload;
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Processes all ticks up to and including the given tick and hands every expired
+	 * entry to the consumer. Entries are removed before the consumer is called, so
+	 * the consumer may schedule the same key again.
+	 *
+	 * @param nowTick the current tick
+	 * @param expired consumer receiving key and payload of each expired entry
+	 */
+	public void advance(long nowTick, BiConsumer<String, T> expired) {
+		while (currentTick <= nowTick) {
+			if (entries.isEmpty()) {
+				// nothing to expire or cascade until the given tick
+				currentTick = nowTick + 1;
+				return;
+			}
+			int index = (int) (currentTick & MASK);
+			if (index == 0) {
+				cascade(1);
+			}
+			Entry<T> head = slots[0][index];
+			currentTick++;
+
+			while (head.next != head) {
+				Entry<T> entry = head.next;
+				unlink(entry);
+				entries.remove(entry.key);
+				expired.accept(entry.key, entry.payload);
+			}
+			currentTick = Math.min(nextTick(), nowTick + 1);
+		}
+	}
+
+	/**
+	 * Returns the next tick, starting at the current one, at which a slot of the
+	 * finest level expires or a slot of a coarser level is cascaded.
+	 */
+	private long nextTick() {
+		long next = Long.MAX_VALUE;
+		for (int level = 0; level < LEVELS; level++) {
+			if (occupied[level] == 0) {
+				continue;
+			}
+			int shift = BITS * level;
+			// the first slot of the level processed at or after the current tick
+			long slot = (currentTick + (1L << shift) - 1) >>> shift;
+			long distance = Long.numberOfTrailingZeros(Long.rotateRight(occupied[level], (int) (slot & MASK)));
+			next = Math.min(next, (slot + distance) << shift);
+		}
+		return next;
+	}
+
+	private void cascade(int level) {
+		if (level >= LEVELS) {
+			return;
+		}
+		int index = (int) ((currentTick >>> (BITS * level)) & MASK);
+		Entry<T> head = slots[level][index];
+		Entry<T> entry = head.next;
+		head.next = head;
+		head.prev = head;
+		occupied[level] &= ~(1L << index);
+
+		while (entry != head) {
+			Entry<T> next = entry.next;
+			insert(entry);
+			entry = next;
+		}
+		if (index == 0) {
+			cascade(level + 1);
+		}
+	}
+
+	private void insert(Entry<T> entry) {
+		long deadline = Math.max(entry.deadline, currentTick);
+		// out of range deadlines are parked in the last slot of the coarsest level,
+		// the cascade inserts them again with their actual deadline
+		long delta = Math.min(deadline - currentTick, MAX_DELTA);
+		deadline = currentTick + delta;
+
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+			level++;
+		}
+		int index = (int) ((deadline >>> (BITS * level)) & MASK);
+		Entry<T> head = slots[level][index];
+
+		entry.prev = head.prev;
+		entry.next = head;
+		entry.level = level;
+		entry.index = index;
+		head.prev.next = entry;
+		head.prev = entry;
+		occupied[level] |= 1L << index;
+	}
+
+	private void unlink(Entry<T> entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		Entry<T> head = slots[entry.level][entry.index];
+		if (head.next == head) {
+			occupied[entry.level] &= ~(1L << entry.index);
+		}
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	private static final class Entry<T> {
+		private final String key;
+		private final long deadline;
+		private final T payload;
+		private Entry<T> prev;
+		private Entry<T> next;
+		private int level;
+		private int index;
+
+		private Entry(String key, long deadline, T payload) {
+			this.key = key;
+			this.deadline = deadline;
+			this.payload = payload;
+		}
+	}
+}
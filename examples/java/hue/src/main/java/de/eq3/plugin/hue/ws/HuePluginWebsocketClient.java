@@ -22,10 +22,16 @@ import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.google.common.base.Utf8;
+
 import de.eq3.plugin.Headers;
 import de.eq3.plugin.domain.plugin.PluginReadinessStatus;
 import de.eq3.plugin.domain.plugin.PluginStateResponse;
 import de.eq3.plugin.hue.HuePluginStarter;
+import de.eq3.plugin.hue.metrics.HueMetrics;
+import de.eq3.plugin.hue.tracing.HueSpan;
+import de.eq3.plugin.hue.tracing.HueTraceContext;
+import de.eq3.plugin.hue.tracing.HueTracer;
 import de.eq3.plugin.hue.util.HuePersistenceHelper;
 import de.eq3.plugin.serialization.PluginMessage;
 import de.eq3.plugin.serialization.PluginMessageType;
@@ -34,6 +40,7 @@ import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryContext;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.WebSocket;
 import io.vertx.core.http.WebSocketConnectOptions;
@@ -45,8 +52,21 @@ public class HuePluginWebsocketClient extends AbstractVerticle {
 
 	private static String wsHandlerId;
 
+	private final HueMetrics.Counter framesIn = HueMetrics.getInstance()
+			.counter("hue_ws_frames_total", "WebSocket frames exchanged with the HCU", "direction", "in");
+	private final HueMetrics.Counter framesOut = HueMetrics.getInstance()
+			.counter("hue_ws_frames_total", "WebSocket frames exchanged with the HCU", "direction", "out");
+	private final HueMetrics.Counter bytesIn = HueMetrics.getInstance()
+			.counter("hue_ws_bytes_total", "WebSocket payload bytes exchanged with the HCU", "direction", "in");
+	private final HueMetrics.Counter bytesOut = HueMetrics.getInstance()
+			.counter("hue_ws_bytes_total", "WebSocket payload bytes exchanged with the HCU", "direction", "out");
+	private final HueMetrics.Counter reconnects = HueMetrics.getInstance()
+			.counter("hue_reconnects_total", "Scheduled reconnects", "connection", "websocket");
+
 	@Override
 	public void start(Promise<Void> startPromise) {
+		// all plugin messages are sent to the text handler of the websocket, traced ones with the trace header
+		vertx.eventBus().addOutboundInterceptor(this::countOutgoingMessage);
 		connect().onSuccess(startHandler -> {
 			startPromise.complete();
 			logger.info("SYSTEM: {} Verticle or Worker started", this.getClass().getSimpleName());
@@ -78,6 +98,7 @@ public class HuePluginWebsocketClient extends AbstractVerticle {
 				logger.info("Closed WebSocket - wsHandlerId: {}", webSocket.textHandlerID());
 
 				setWsHandlerId(null);
+				reconnects.increment();
 				vertx.setTimer(RECONNECT_DELAY, timerId -> connect());
 			});
 
@@ -89,11 +110,21 @@ public class HuePluginWebsocketClient extends AbstractVerticle {
 			});
 
 			webSocket.handler(buffer -> {
+				framesIn.increment();
+				bytesIn.add(buffer.length());
+				long receivedAt = System.nanoTime();
 				PluginMessage<?> message;
 				try {
 					message = buffer.toJsonObject().mapTo(PluginMessage.class);
 					logger.debug("Received WS message {}", message);
-					vertx.eventBus().send(message.getType().getMappingClazz().getName(), JsonObject.mapFrom(message));
+					HueSpan span = HueTracer.getInstance()
+							.startTrace("ws.receive", message.getId(), receivedAt)
+							.setAttribute("message.type", message.getType())
+							.setAttribute("message.bytes", buffer.length());
+					vertx.eventBus()
+							.send(message.getType().getMappingClazz().getName(), JsonObject.mapFrom(message),
+									HueTraceContext.deliveryOptions(span.getContext()));
+					span.end();
 				} catch (IllegalArgumentException e) {
 					logger.error("Failed to read Plugin Message {}, {}", buffer.toString(), e.getMessage());
 				}
@@ -107,11 +138,25 @@ public class HuePluginWebsocketClient extends AbstractVerticle {
 		wsConnection.onFailure(throwable -> {
 			setWsHandlerId(null);
 			logger.error("Error opening websocket connection", throwable.fillInStackTrace());
+			reconnects.increment();
 			vertx.setTimer(RECONNECT_DELAY, timerId -> connect().onSuccess(handler -> success.complete()));
 		});
 		return success.future();
 	}
 
+	private void countOutgoingMessage(DeliveryContext<Object> context) {
+		String handlerId = getWsHandlerId();
+		if (handlerId != null && handlerId.equals(context.message().address())
+				&& context.message().body() instanceof String) {
+			int bytes = Utf8.encodedLength((String) context.message().body());
+			framesOut.increment();
+			bytesOut.add(bytes);
+			HueTraceContext traceContext = HueTraceContext.fromHeaders(context.message().headers());
+			HueTracer.getInstance().startSpan("ws.send", traceContext).setAttribute("message.bytes", bytes).end();
+		}
+		context.next();
+	}
+
 	public static String getWsHandlerId() {
 		return wsHandlerId;
 	}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.eq3.plugin.domain.control.ControlRequest;
+import de.eq3.plugin.domain.discover.DiscoverRequest;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.HuePluginStarter;
+import de.eq3.plugin.hue.control.optimistic.HueOptimisticStateTracker;
+import de.eq3.plugin.hue.discovery.HueStateEventHandler;
+import de.eq3.plugin.hue.discovery.cache.HueResourceCache;
+import de.eq3.plugin.hue.simulator.HueBridgeSimulator;
+import de.eq3.plugin.hue.simulator.HueBridgeSimulatorOptions;
+import de.eq3.plugin.hue.simulator.HueHcuSimulator;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+import de.eq3.plugin.serialization.PluginMessage;
+import de.eq3.plugin.serialization.PluginMessageType;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+/**
+ * Test class running the complete plugin against a simulated Hue bridge and a
+ * simulated HCU, without network or hardware.
+ */
+@ExtendWith(VertxExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class TestBridgeSimulator {
+	private static final int LIGHTS = 20;
+	private static final long TIMEOUT = 10_000;
+	private static final int RAMP_INTERVAL = 200;
+	private static final int RAMP_STEPS = 5;
+
+	@TempDir
+	static Path storage;
+
+	private static Vertx simulatorVertx;
+	private static Vertx pluginVertx;
+	private static HueBridgeSimulator bridge;
+	private static HueHcuSimulator hcu;
+	private static final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		simulatorVertx = Vertx.vertx();
+		HueBridgeSimulatorOptions options = new HueBridgeSimulatorOptions().setLights(LIGHTS).setEchoDelay(20);
+		bridge = new HueBridgeSimulator(options);
+		hcu = new HueHcuSimulator("127.0.0.1", 0, "test-token");
+		simulatorVertx.deployVerticle(bridge).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+		simulatorVertx.deployVerticle(hcu).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+		setProperty("plugin.hue.authFolder", storage.toString());
+		setProperty("websocket.token", "test-token");
+		setProperty("plugin.hue.ws.server.host", "127.0.0.1");
+		setProperty("plugin.hue.ws.server.port", String.valueOf(hcu.getPort()));
+		setProperty("plugin.hue.bridge.port", String.valueOf(bridge.getPort()));
+		setProperty("plugin.hue.tls.trustAll", "true");
+		setProperty("plugin.hue.mdns.enabled", "false");
+		setProperty("plugin.hue.metrics.enabled", "false");
+		setProperty("control.request.delay", "1");
+		setProperty("control.ramp.interval", String.valueOf(RAMP_INTERVAL));
+		setProperty("control.optimistic.timeout", "500");
+
+		// pair the plugin with the simulated bridge before it starts
+		Vertx setupVertx = Vertx.vertx();
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+		helper.init(setupVertx);
+		helper.saveAuthData(options.getBridgeId(), options.getApplicationKey(), "127.0.0.1")
+				.compose(saved -> helper.saveIncludedDevices(
+						Set.of(HueBridgeSimulator.deviceId(1), HueBridgeSimulator.deviceId(3))))
+				.toCompletionStage()
+				.toCompletableFuture()
+				.get(10, TimeUnit.SECONDS);
+		setupVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+		pluginVertx = HuePluginStarter.start();
+		awaitCondition(() -> hcu.isConnected() && bridge.getOpenEventStreams() > 0);
+		// the devices are known once the first discovery is answered
+		discover();
+	}
+
+	@AfterAll
+	static void tearDown() throws Exception {
+		HuePersistenceHelper.getInstance().close();
+		pluginVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+		simulatorVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+		previousProperties.clear();
+	}
+
+	/**
+	 * Tests that all simulated lights are discovered.
+	 */
+	@Test
+	void discoversSimulatedLights(VertxTestContext testContext) {
+		String messageId = send(PluginMessageType.DISCOVER_REQUEST, new DiscoverRequest());
+
+		hcu.awaitMessage(response(messageId), TIMEOUT)
+				.onComplete(testContext.succeeding(message -> testContext.verify(() -> {
+					assertEquals(PluginMessageType.DISCOVER_RESPONSE.name(), message.getString("type"));
+					assertTrue(message.getJsonObject("body").getBoolean("success"));
+					assertEquals(LIGHTS, message.getJsonObject("body").getJsonArray("devices").size());
+					testContext.completeNow();
+				})));
+	}
+
+	/**
+	 * Tests that a control request switches the simulated light and that the echo
+	 * of the bridge is reported as status event.
+	 */
+	@Test
+	void controlsSimulatedLight(VertxTestContext testContext) {
+		String deviceId = HueBridgeSimulator.deviceId(1);
+		String messageId = send(PluginMessageType.CONTROL_REQUEST,
+				new ControlRequest(deviceId, Set.of(new SwitchState(true))));
+
+		hcu.awaitMessage(response(messageId), TIMEOUT).compose(message -> {
+			testContext.verify(() -> {
+				assertTrue(message.getJsonObject("body").getBoolean("success"));
+				assertTrue(bridge.getLight(1).getJsonObject("on").getBoolean("on"));
+			});
+			return hcu.awaitMessage(statusEvent(deviceId), TIMEOUT);
+		}).onComplete(testContext.succeedingThenComplete());
+	}
+
+	/**
+	 * Tests that changes on an event stream split at random byte boundaries are
+	 * reported as status events.
+	 */
+	@Test
+	void reportsChangesFromSplitEventStream(VertxTestContext testContext) {
+		bridge.getOptions().setMaxChunkSize(3);
+		bridge.emitLightChange(3, new JsonObject().put("on", new JsonObject().put("on", true)));
+
+		hcu.awaitMessage(statusEvent(HueBridgeSimulator.deviceId(3)), TIMEOUT)
+				.onComplete(result -> bridge.getOptions().setMaxChunkSize(0))
+				.onComplete(testContext.succeedingThenComplete());
+	}
+
+	/**
+	 * Tests that a control request rejected by the bridge with 429 is answered as
+	 * failed.
+	 */
+	@Test
+	void reportsRateLimitedControlRequest(VertxTestContext testContext) {
+		long rejectedPuts = bridge.getRejectedPuts();
+		bridge.getOptions().setTooManyRequestsEvery(1);
+		String messageId = send(PluginMessageType.CONTROL_REQUEST,
+				new ControlRequest(HueBridgeSimulator.deviceId(5), Set.of(new SwitchState(true))));
+
+		hcu.awaitMessage(response(messageId), TIMEOUT)
+				.onComplete(result -> bridge.getOptions().setTooManyRequestsEvery(0))
+				.onComplete(testContext.succeeding(message -> testContext.verify(() -> {
+					assertFalse(message.getJsonObject("body").getBoolean("success"));
+					assertTrue(bridge.getRejectedPuts() > rejectedPuts, "bridge did not answer with 429");
+					testContext.completeNow();
+				})));
+	}
+
+	/**
+	 * Tests that a dim ramp is collapsed into a native transition of the bridge
+	 * and that all steps are answered.
+	 */
+	@Test
+	void coalescesDimRamp() throws Exception {
+		long lightPuts = bridge.getLightPuts();
+
+		for (JsonObject response : sendRamp(HueBridgeSimulator.deviceId(7))) {
+			assertTrue(response.getJsonObject("body").getBoolean("success"));
+		}
+
+		assertTrue(bridge.getLightPuts() - lightPuts < RAMP_STEPS, "ramp steps were not coalesced");
+		JsonObject lastPut = bridge.getLastPut(7);
+		assertEquals(RAMP_INTERVAL, lastPut.getJsonObject("dynamics").getInteger("duration"));
+		assertEquals(RAMP_STEPS * 10.0, lastPut.getJsonObject("dimming").getDouble("brightness"), 0.001);
+	}
+
+	/**
+	 * Tests that steps superseded by a failed ramp step are answered as failed.
+	 */
+	@Test
+	void reportsFailedRampSteps() throws Exception {
+		bridge.getOptions().setTooManyRequestsEvery(1);
+		try {
+			for (JsonObject response : sendRamp(HueBridgeSimulator.deviceId(9))) {
+				assertFalse(response.getJsonObject("body").getBoolean("success"));
+			}
+		} finally {
+			bridge.getOptions().setTooManyRequestsEvery(0);
+		}
+	}
+
+	/**
+	 * Tests that the optimistic state of a control request is reconciled by the
+	 * echo of the bridge, rolled back if the bridge rejects the request and
+	 * expires if the bridge does not confirm it.
+	 */
+	@Test
+	void tracksOptimisticState() throws Exception {
+		String deviceId = HueBridgeSimulator.deviceId(1);
+		HueOptimisticStateTracker tracker = HueOptimisticStateTracker.getInstance();
+		String previous = System.setProperty("control.optimistic.enabled", "true");
+		try {
+			JsonObject confirmed = control(deviceId, 0.3);
+			assertTrue(confirmed.getJsonObject("body").getBoolean("success"));
+			awaitCondition(() -> !tracker.isProvisional(deviceId), "Optimistic state was not reconciled");
+
+			bridge.getOptions().setTooManyRequestsEvery(1);
+			JsonObject rejected = control(deviceId, 0.6);
+			bridge.getOptions().setTooManyRequestsEvery(0);
+			assertFalse(rejected.getJsonObject("body").getBoolean("success"));
+			awaitCondition(() -> !tracker.isProvisional(deviceId), "Optimistic state was not rolled back");
+
+			bridge.getOptions().setEchoDelay(-1);
+			JsonObject unconfirmed = control(deviceId, 0.9);
+			bridge.getOptions().setEchoDelay(20);
+			assertTrue(unconfirmed.getJsonObject("body").getBoolean("success"));
+			assertTrue(tracker.isProvisional(deviceId));
+			awaitCondition(() -> !tracker.isProvisional(deviceId), "Optimistic state did not expire");
+		} finally {
+			bridge.getOptions().setTooManyRequestsEvery(0).setEchoDelay(20);
+			if (previous != null) {
+				System.setProperty("control.optimistic.enabled", previous);
+			} else {
+				System.clearProperty("control.optimistic.enabled");
+			}
+		}
+	}
+
+	/**
+	 * Tests that the cached resources are served while the event stream is
+	 * connected and invalidated once it is lost. The plugin reconnects only after
+	 * a while, so this test runs last.
+	 */
+	@Test
+	@Order(Integer.MAX_VALUE)
+	void invalidatesResourceCacheOnDisconnect() throws Exception {
+		long resourceRequests = bridge.getResourceRequests();
+		discover();
+		assertEquals(resourceRequests, bridge.getResourceRequests(), "resources were not served from the cache");
+
+		long invalidations = HueResourceCache.getInstance().getInvalidations();
+		bridge.closeEventStreams();
+		awaitCondition(() -> !HueStateEventHandler.isEventstreamConnected()
+				&& HueResourceCache.getInstance().getInvalidations() > invalidations,
+				"Resource cache was not invalidated");
+
+		discover();
+		assertTrue(bridge.getResourceRequests() > resourceRequests, "resources were not fetched again");
+	}
+
+	private static JsonObject control(String deviceId, double dimLevel) throws Exception {
+		String messageId = send(PluginMessageType.CONTROL_REQUEST,
+				new ControlRequest(deviceId, Set.of(new SwitchState(true), new Dimming(dimLevel))));
+		return hcu.awaitMessage(response(messageId), TIMEOUT).toCompletionStage().toCompletableFuture().get(10,
+				TimeUnit.SECONDS);
+	}
+
+	private static List<JsonObject> sendRamp(String deviceId) throws Exception {
+		List<String> messageIds = new ArrayList<>();
+		for (int step = 1; step <= RAMP_STEPS; step++) {
+			messageIds.add(send(PluginMessageType.CONTROL_REQUEST,
+					new ControlRequest(deviceId, Set.of(new SwitchState(true), new Dimming(step / 10.0)))));
+		}
+		List<JsonObject> responses = new ArrayList<>();
+		for (String messageId : messageIds) {
+			responses.add(hcu.awaitMessage(response(messageId), TIMEOUT)
+					.toCompletionStage()
+					.toCompletableFuture()
+					.get(10, TimeUnit.SECONDS));
+		}
+		return responses;
+	}
+
+	private static void discover() throws Exception {
+		hcu.awaitMessage(response(send(PluginMessageType.DISCOVER_REQUEST, new DiscoverRequest())), TIMEOUT)
+				.toCompletionStage()
+				.toCompletableFuture()
+				.get(10, TimeUnit.SECONDS);
+	}
+
+	private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		awaitCondition(condition, "Plugin did not connect to the simulators");
+	}
+
+	private static void awaitCondition(BooleanSupplier condition, String message) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, message);
+			Thread.sleep(20);
+		}
+	}
+
+	private static void setProperty(String key, String value) {
+		previousProperties.put(key, System.setProperty(key, value));
+	}
+
+	private static String send(PluginMessageType type, Object body) {
+		String messageId = UUID.randomUUID().toString();
+		hcu.send(JsonObject.mapFrom(new PluginMessage<>(messageId, HuePluginStarter.PLUGIN_ID, type, body)));
+		return messageId;
+	}
+
+	private static Predicate<JsonObject> response(String messageId) {
+		return message -> messageId.equals(message.getString("id"));
+	}
+
+	private static Predicate<JsonObject> statusEvent(String deviceId) {
+		return message -> PluginMessageType.STATUS_EVENT.name().equals(message.getString("type"))
+				&& deviceId.equals(message.getJsonObject("body").getString("deviceId"));
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.domain.device.Device;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.control.messages.HueLightStateRequest;
+import de.eq3.plugin.hue.discovery.mapping.FeatureConverter;
+import de.eq3.plugin.hue.model.light.Dimming;
+import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.model.light.On;
+import de.eq3.plugin.serialization.DeviceType;
+import de.eq3.plugin.serialization.Feature;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Test class for the mapping of reported light changes on switching and
+ * dimming.
+ */
+public class TestFeatureConverter {
+	private static final String DEVICE_ID = "device-1";
+	private static final String LIGHT_ID = "light-1";
+	private static final String MARKER = "marker";
+
+	private Vertx vertx;
+	private HueBridge bridge;
+	private final List<String> stateRequests = new ArrayList<>();
+	private final CompletableFuture<Void> marker = new CompletableFuture<>();
+
+	@BeforeEach
+	void setUp() {
+		vertx = Vertx.vertx();
+		vertx.eventBus()
+				.<JsonObject> localConsumer(HueLightStateRequest.ENDPOINT,
+						message -> {
+							String lightId = message.body().getString("lightId");
+							if (MARKER.equals(lightId)) {
+								marker.complete(null);
+							} else {
+								stateRequests.add(lightId);
+							}
+						});
+		bridge = new HueBridge();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * A light turned on reports the last known dim level, the light state is not
+	 * requested.
+	 */
+	@Test
+	void turnedOnWithKnownDimLevel() throws Exception {
+		de.eq3.plugin.domain.features.Dimming known = storeDimLevel(0.4);
+
+		Set<IFeature> changes = mapChanges(light(true, null));
+
+		assertEquals(2, changes.size());
+		assertEquals(Boolean.TRUE, switchState(changes));
+		assertTrue(changes.contains(known));
+		assertEquals(List.of(), requestedStates());
+	}
+
+	/**
+	 * A brightness reported with the light turned on is added next to the last
+	 * known dim level.
+	 */
+	@Test
+	void turnedOnWithReportedBrightness() {
+		de.eq3.plugin.domain.features.Dimming known = storeDimLevel(0.4);
+
+		Set<IFeature> changes = mapChanges(light(true, 80.0));
+
+		assertEquals(3, changes.size());
+		assertEquals(Boolean.TRUE, switchState(changes));
+		assertTrue(changes.contains(known));
+		assertEquals(List.of(0.4, 0.8), dimLevels(changes));
+	}
+
+	/**
+	 * Without a known dim level the light state is requested from the bridge.
+	 */
+	@Test
+	void turnedOnWithoutKnownDimLevel() throws Exception {
+		Set<IFeature> changes = mapChanges(light(true, null));
+
+		assertEquals(1, changes.size());
+		assertEquals(Boolean.TRUE, switchState(changes));
+		assertEquals(List.of(LIGHT_ID), requestedStates());
+	}
+
+	/**
+	 * A light turned off reports a dim level of 0%.
+	 */
+	@Test
+	void turnedOff() throws Exception {
+		storeDimLevel(0.4);
+
+		Set<IFeature> changes = mapChanges(light(false, null));
+
+		assertEquals(2, changes.size());
+		assertEquals(Boolean.FALSE, switchState(changes));
+		assertEquals(List.of(0.0), dimLevels(changes));
+		assertEquals(List.of(), requestedStates());
+	}
+
+	/**
+	 * A brightness reported with the light turned off is added next to the dim
+	 * level of 0%.
+	 */
+	@Test
+	void turnedOffWithReportedBrightness() {
+		Set<IFeature> changes = mapChanges(light(false, 30.0));
+
+		assertEquals(Boolean.FALSE, switchState(changes));
+		assertEquals(List.of(0.0, 0.3), dimLevels(changes));
+	}
+
+	/**
+	 * A light dimmed without switching only reports the new dim level.
+	 */
+	@Test
+	void dimmed() throws Exception {
+		storeDimLevel(0.4);
+
+		Set<IFeature> changes = mapChanges(light(null, 55.0));
+
+		assertEquals(1, changes.size());
+		assertEquals(List.of(0.55), dimLevels(changes));
+		assertEquals(List.of(), requestedStates());
+	}
+
+	/**
+	 * A requested dim level determines the expected switch state, regardless of
+	 * the order of the requested features.
+	 */
+	@Test
+	void expectedFeatures() {
+		SwitchState off = new SwitchState(false);
+		de.eq3.plugin.domain.features.Dimming dimming = new de.eq3.plugin.domain.features.Dimming(0.5);
+
+		for (List<IFeature> requested : List.of(List.of(off, dimming), List.of(dimming, off))) {
+			Set<IFeature> expected = FeatureConverter.getInstance()
+					.getExpectedFeatures(new LinkedHashSet<>(requested));
+
+			assertEquals(2, expected.size(), requested.toString());
+			assertEquals(Boolean.TRUE, switchState(expected));
+			assertEquals(List.of(0.5), dimLevels(expected));
+		}
+
+		Set<IFeature> expected = FeatureConverter.getInstance().getExpectedFeatures(Set.of(off));
+		assertEquals(Boolean.FALSE, switchState(expected));
+		assertEquals(List.of(0.0), dimLevels(expected));
+	}
+
+	private Set<IFeature> mapChanges(Light light) {
+		return FeatureConverter.getInstance().mapChanges(vertx, DEVICE_ID, light, bridge);
+	}
+
+	private de.eq3.plugin.domain.features.Dimming storeDimLevel(double dimLevel) {
+		de.eq3.plugin.domain.features.Dimming dimming = new de.eq3.plugin.domain.features.Dimming(dimLevel);
+		Device device = new Device(DEVICE_ID, "LCA001", "Light", "1.0", DeviceType.LIGHT,
+				Set.of(new SwitchState(true), dimming));
+		bridge.getPluginDevices().put(DEVICE_ID, device);
+		return dimming;
+	}
+
+	private List<String> requestedStates() throws Exception {
+		// messages are delivered in order, so all requests have arrived with the marker
+		vertx.eventBus().send(HueLightStateRequest.ENDPOINT, JsonObject.mapFrom(new HueLightStateRequest(MARKER)));
+		marker.get(5, TimeUnit.SECONDS);
+		return stateRequests;
+	}
+
+	private static Light light(Boolean on, Double brightness) {
+		Light light = new Light();
+		light.setId(LIGHT_ID);
+		if (on != null) {
+			light.setOn(new On(on));
+		}
+		if (brightness != null) {
+			Dimming dimming = new Dimming();
+			dimming.setBrightness(brightness);
+			light.setDimming(dimming);
+		}
+		return light;
+	}
+
+	private static Boolean switchState(Set<IFeature> features) {
+		return features.stream()
+				.filter(feature -> feature.getType() == Feature.SWITCH_STATE)
+				.map(feature -> ((SwitchState) feature).getOn())
+				.findFirst()
+				.orElse(null);
+	}
+
+	private static List<Double> dimLevels(Set<IFeature> features) {
+		return features.stream()
+				.filter(feature -> feature.getType() == Feature.DIMMING)
+				.map(feature -> ((de.eq3.plugin.domain.features.Dimming) feature).getDimLevel())
+				.sorted()
+				.collect(Collectors.toList());
+	}
+}
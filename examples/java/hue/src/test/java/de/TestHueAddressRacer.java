@@ -0,0 +1,179 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.auth.HueLookupRequestHandler;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueAddressRacer;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.net.NetServer;
+
+/**
+ * Test class for racing the addresses of a Hue bridge.
+ */
+public class TestHueAddressRacer {
+	private static final String PRIMARY = "127.0.0.1";
+	private static final String SECONDARY = "127.0.0.2";
+	private static final String UNREACHABLE = "127.0.0.3";
+
+	private Vertx vertx;
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		vertx = Vertx.vertx();
+		NetServer primary = await(vertx.createNetServer().connectHandler(socket -> socket.close()).listen(0, PRIMARY));
+		await(vertx.createNetServer().connectHandler(socket -> socket.close()).listen(primary.actualPort(), SECONDARY));
+
+		setProperty("plugin.hue.bridge.port", String.valueOf(primary.actualPort()));
+		// a reachable address only loses against the addresses started before it
+		setProperty("plugin.hue.race.stagger", "2000");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		await(vertx.close());
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+	}
+
+	/**
+	 * Tests that an address refusing the connection is skipped without waiting
+	 * for the stagger delay.
+	 */
+	@Test
+	void racesKnownAddresses() throws Exception {
+		HueBridge bridge = bridge(PRIMARY);
+		bridge.setLastSuccessfullAddress(UNREACHABLE);
+		HueAddressRacer racer = HueAddressRacer.forBridge(bridge);
+
+		long start = System.currentTimeMillis();
+		assertEquals(PRIMARY, await(racer.resolve(bridge, vertx)));
+		assertEquals(PRIMARY, racer.getPreferredAddress());
+		assertEquals(PRIMARY, bridge.getLastSuccessfullAddress());
+		assertTrue(System.currentTimeMillis() - start < 2000);
+	}
+
+	/**
+	 * Tests that a demoted address is raced again, but after the other known
+	 * addresses.
+	 */
+	@Test
+	void demotesFailedAddress() throws Exception {
+		HueBridge bridge = bridge(PRIMARY);
+		bridge.setLastSuccessfullAddress(SECONDARY);
+		HueAddressRacer racer = HueAddressRacer.forBridge(bridge);
+
+		assertEquals(SECONDARY, await(racer.resolve(bridge, vertx)));
+
+		racer.demote(bridge, SECONDARY);
+		assertNull(racer.getPreferredAddress());
+		assertNull(bridge.getLastSuccessfullAddress());
+
+		bridge.setLastSuccessfullAddress(SECONDARY);
+		assertEquals(PRIMARY, await(racer.resolve(bridge, vertx)));
+	}
+
+	/**
+	 * Tests that requests joining a running race are completed on their own
+	 * context.
+	 */
+	@Test
+	void joinsRunningRace() throws Exception {
+		HueBridge bridge = bridge(null);
+		bridge.setLocalAddress("ecb5fafffe000000.local");
+		HueAddressRacer racer = HueAddressRacer.forBridge(bridge);
+
+		// the race waits for the mDNS lookup until it is answered
+		Promise<Message<String>> lookup = Promise.promise();
+		vertx.eventBus().<String>consumer(HueLookupRequestHandler.GET_HUE_BRIDGE_ENDPOINT, lookup::tryComplete);
+
+		Context first = newContext();
+		Context second = newContext();
+		Future<String> firstResult = resolveOn(first, racer, bridge);
+		Future<String> secondResult = resolveOn(second, racer, bridge);
+
+		await(lookup.future()).reply(PRIMARY);
+		assertEquals(PRIMARY, await(firstResult));
+		assertEquals(PRIMARY, await(secondResult));
+	}
+
+	private Future<String> resolveOn(Context context, HueAddressRacer racer, HueBridge bridge) throws Exception {
+		Promise<Future<String>> resolved = Promise.promise();
+		context.runOnContext(v -> resolved.complete(racer.resolve(bridge, vertx).map(address -> {
+			assertSame(context, Vertx.currentContext());
+			return address;
+		})));
+		return await(resolved.future());
+	}
+
+	private Context newContext() throws Exception {
+		Promise<Context> started = Promise.promise();
+		await(vertx.deployVerticle(new AbstractVerticle() {
+			@Override
+			public void start() {
+				started.complete(context);
+			}
+		}));
+		return await(started.future());
+	}
+
+	private static HueBridge bridge(String ipv4) throws Exception {
+		HueBridge bridge = new HueBridge();
+		bridge.setBridgeId(UUID.randomUUID().toString());
+		if (ipv4 != null) {
+			bridge.setIpv4((Inet4Address) InetAddress.getByName(ipv4));
+		}
+		return bridge;
+	}
+
+	private void setProperty(String key, String value) {
+		previousProperties.put(key, System.setProperty(key, value));
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+}
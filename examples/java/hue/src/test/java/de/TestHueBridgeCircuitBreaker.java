@@ -0,0 +1,239 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.connection.HueBridgeCircuitBreaker;
+import de.eq3.plugin.hue.connection.HueBridgeCircuitBreaker.State;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetServer;
+
+/**
+ * Test class for the circuit breaker and the hedged calls to a Hue bridge.
+ */
+public class TestHueBridgeCircuitBreaker {
+	private static final String PRIMARY = "127.0.0.1";
+	private static final String SECONDARY = "127.0.0.2";
+	private static final long RESET_TIMEOUT = 300;
+
+	private Vertx vertx;
+	private HueBridge bridge;
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		vertx = Vertx.vertx();
+		// the address racer only needs the bridge port to accept connections
+		NetServer server = await(vertx.createNetServer().connectHandler(socket -> socket.close()).listen(0, PRIMARY));
+
+		setProperty("plugin.hue.bridge.port", String.valueOf(server.actualPort()));
+		setProperty("plugin.hue.breaker.failureThreshold", "2");
+		setProperty("plugin.hue.breaker.resetTimeout", String.valueOf(RESET_TIMEOUT));
+		setProperty("plugin.hue.hedge.delay", "0");
+
+		// breakers are shared per bridge, each test uses a new one
+		bridge = new HueBridge();
+		bridge.setBridgeId(UUID.randomUUID().toString());
+		bridge.setIpv4((Inet4Address) InetAddress.getByName(PRIMARY));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		await(vertx.close());
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+	}
+
+	/**
+	 * Tests that the circuit opens after the configured number of consecutive
+	 * failures and rejects calls without executing them.
+	 */
+	@Test
+	void opensAfterConsecutiveFailures() throws Exception {
+		HueBridgeCircuitBreaker breaker = HueBridgeCircuitBreaker.forBridge(bridge);
+		List<String> calls = new CopyOnWriteArrayList<>();
+
+		assertFails(execute(breaker, calls, address -> Future.failedFuture("refused")));
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals("ok", await(execute(breaker, calls, address -> Future.succeededFuture("ok"))));
+
+		// a success resets the consecutive failures
+		assertFails(execute(breaker, calls, address -> Future.failedFuture("refused")));
+		assertEquals(State.CLOSED, breaker.getState());
+		assertFails(execute(breaker, calls, address -> Future.failedFuture("refused")));
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(4, calls.size());
+
+		List<AsyncResult<String>> resolved = new CopyOnWriteArrayList<>();
+		assertFails(breaker.execute(bridge, vertx, resolved::add, address -> {
+			calls.add(address);
+			return Future.succeededFuture("ok");
+		}));
+		assertEquals(4, calls.size());
+		assertEquals(1, breaker.getRejectedCalls());
+		assertEquals(1, resolved.size());
+		assertTrue(resolved.get(0).failed());
+	}
+
+	/**
+	 * Tests that after the reset timeout a single probe is let through and closes
+	 * or re-opens the circuit depending on its result.
+	 */
+	@Test
+	void probesHalfOpenCircuit() throws Exception {
+		HueBridgeCircuitBreaker breaker = HueBridgeCircuitBreaker.forBridge(bridge);
+		List<String> calls = new CopyOnWriteArrayList<>();
+		assertFails(execute(breaker, calls, address -> Future.failedFuture("refused")));
+		assertFails(execute(breaker, calls, address -> Future.failedFuture("refused")));
+		assertEquals(State.OPEN, breaker.getState());
+
+		// a failed probe opens the circuit again right away
+		Thread.sleep(RESET_TIMEOUT + 50);
+		Promise<String> probe = Promise.promise();
+		Future<String> probeResult = execute(breaker, calls, address -> probe.future());
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertFails(execute(breaker, calls, address -> Future.succeededFuture("ok")));
+		assertEquals(1, breaker.getRejectedCalls());
+		awaitCalls(calls, 3);
+		probe.fail("refused");
+		assertFails(probeResult);
+		assertEquals(State.OPEN, breaker.getState());
+		assertFails(execute(breaker, calls, address -> Future.succeededFuture("ok")));
+		assertEquals(2, breaker.getRejectedCalls());
+
+		// a successful probe closes the circuit
+		Thread.sleep(RESET_TIMEOUT + 50);
+		assertEquals("ok", await(execute(breaker, calls, address -> Future.succeededFuture("ok"))));
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals("ok", await(execute(breaker, calls, address -> Future.succeededFuture("ok"))));
+		assertEquals(5, calls.size());
+	}
+
+	/**
+	 * Tests that a call not answering within the hedge delay is additionally
+	 * started against the next address and the first success wins.
+	 */
+	@Test
+	void hedgesSlowCall() throws Exception {
+		setProperty("plugin.hue.hedge.delay", "100");
+		bridge.setLocalAddress(SECONDARY);
+		HueBridgeCircuitBreaker breaker = HueBridgeCircuitBreaker.forBridge(bridge);
+		List<String> calls = new CopyOnWriteArrayList<>();
+		List<AsyncResult<String>> resolved = new CopyOnWriteArrayList<>();
+
+		Future<String> result = breaker.execute(bridge, vertx, resolved::add, address -> {
+			calls.add(address);
+			// the primary address never answers
+			return PRIMARY.equals(address) ? Promise.<String>promise().future() : Future.succeededFuture(address);
+		});
+
+		assertEquals(SECONDARY, await(result));
+		assertEquals(List.of(PRIMARY, SECONDARY), calls);
+		assertEquals(1, resolved.size());
+		assertEquals(PRIMARY, resolved.get(0).result());
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	/**
+	 * Tests that a failed call is retried on the next address without waiting for
+	 * the hedge delay, and that the breaker counts one failure if all addresses
+	 * fail.
+	 */
+	@Test
+	void hedgesFailedCall() throws Exception {
+		setProperty("plugin.hue.hedge.delay", "2000");
+		bridge.setLocalAddress(SECONDARY);
+		HueBridgeCircuitBreaker breaker = HueBridgeCircuitBreaker.forBridge(bridge);
+		List<String> calls = new CopyOnWriteArrayList<>();
+
+		long start = System.currentTimeMillis();
+		assertEquals(SECONDARY, await(breaker.execute(bridge, vertx, address -> {
+			calls.add(address);
+			return PRIMARY.equals(address) ? Future.failedFuture("refused") : Future.succeededFuture(address);
+		})));
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		assertEquals(List.of(PRIMARY, SECONDARY), calls);
+
+		calls.clear();
+		assertFails(breaker.execute(bridge, vertx, address -> {
+			calls.add(address);
+			return Future.<String>failedFuture("refused");
+		}));
+		assertEquals(List.of(PRIMARY, SECONDARY), calls);
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	private Future<String> execute(HueBridgeCircuitBreaker breaker, List<String> calls,
+			Function<String, Future<String>> call) {
+		return breaker.execute(bridge, vertx, address -> {
+			calls.add(address);
+			return call.apply(address);
+		});
+	}
+
+	private static void awaitCalls(List<String> calls, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (calls.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, calls.size());
+	}
+
+	private void setProperty(String key, String value) {
+		String previous = System.setProperty(key, value);
+		if (!previousProperties.containsKey(key)) {
+			previousProperties.put(key, previous);
+		}
+	}
+
+	private static void assertFails(Future<?> future) {
+		assertThrows(ExecutionException.class, () -> await(future));
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+}
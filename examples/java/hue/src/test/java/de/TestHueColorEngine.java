@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.model.light.Xy;
+import de.eq3.plugin.hue.util.HueColorEngine;
+import de.eq3.plugin.hue.util.LegacyColorConversion;
+
+/**
+ * Golden test comparing {@link HueColorEngine} with the previous
+ * {@code java.awt.Color} and {@code BigDecimal} based implementation.
+ */
+public class TestHueColorEngine {
+	/**
+	 * Hue and saturation must map to exactly the same xy coordinates for every
+	 * hue and every saturation step.
+	 */
+	@Test
+	void hueSaturationToXy() {
+		double[] xy = new double[2];
+		for (int hue = 0; hue <= 360; hue++) {
+			for (int step = 0; step <= 200; step++) {
+				double saturation = step / 200.0;
+				Xy expected = LegacyColorConversion.getXYByHueSaturation(hue, saturation);
+
+				HueColorEngine.hueSaturationToXy(hue, saturation, xy);
+
+				assertEquals(expected.getX(), xy[0], 1e-9, "x of " + hue + "/" + saturation);
+				assertEquals(expected.getY(), xy[1], 1e-9, "y of " + hue + "/" + saturation);
+			}
+		}
+	}
+
+	/**
+	 * xy coordinates must map to the same hue and saturation within one 8 bit RGB
+	 * step. Near the white point a single step moves the hue by more than one
+	 * degree, so the hue is only compared for saturated colors there.
+	 */
+	@Test
+	void xyToHueSaturation() {
+		int mismatches = 0;
+		int total = 0;
+		for (int xi = 1; xi < 800; xi += 3) {
+			for (int yi = 1; yi < 850; yi += 3) {
+				double x = xi / 1000.0;
+				double y = yi / 1000.0;
+				if (x + y > 1.0) {
+					continue;
+				}
+				double[] expected = LegacyColorConversion.getHueSaturationByXY(new Xy(x, y));
+
+				long hueSaturation = HueColorEngine.xyToHueSaturation(x, y);
+				int hue = HueColorEngine.hue(hueSaturation);
+				double saturation = HueColorEngine.saturation(hueSaturation);
+
+				int hueDistance = Math.abs((int) expected[0] - hue);
+				hueDistance = Math.min(hueDistance, 360 - hueDistance);
+				assertEquals(expected[1], saturation, 0.005 + 1e-9, "saturation of " + x + "/" + y);
+				if (expected[1] >= 0.2) {
+					assertTrue(hueDistance <= 1, "hue of " + x + "/" + y);
+				}
+				if (hueDistance != 0 || Math.abs(expected[1] - saturation) > 1e-9) {
+					mismatches++;
+				}
+				total++;
+			}
+		}
+		// only rounding ties of the last RGB step may differ
+		assertTrue(mismatches * 100 < total, mismatches + " of " + total + " differ");
+	}
+
+	/**
+	 * Packed values must keep hue and saturation apart.
+	 */
+	@Test
+	void packing() {
+		long hueSaturation = HueColorEngine.xyToHueSaturation(0.6915, 0.3083);
+
+		assertEquals(0, HueColorEngine.hue(hueSaturation));
+		assertEquals(1.0, HueColorEngine.saturation(hueSaturation));
+	}
+}
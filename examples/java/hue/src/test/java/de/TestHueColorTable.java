@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.util.HueColorEngine;
+import de.eq3.plugin.hue.util.HueColorTable;
+
+/**
+ * Golden test comparing the lookup tables of {@link HueColorTable} with the
+ * conversions of {@link HueColorEngine}.
+ */
+public class TestHueColorTable {
+	private final HueColorTable table = HueColorTable.getInstance();
+
+	/**
+	 * Every hue and saturation step must map to exactly the coordinates
+	 * calculated by the engine.
+	 */
+	@Test
+	void hueSaturationToXy() {
+		double[] expected = new double[2];
+		double[] xy = new double[2];
+		for (int hue = 0; hue <= 360; hue++) {
+			for (int step = 0; step <= 200; step++) {
+				double saturation = step / 200.0;
+				HueColorEngine.hueSaturationToXy(hue, saturation, expected);
+
+				table.hueSaturationToXy(hue, saturation, xy);
+
+				assertEquals(expected[0], xy[0], "x of " + hue + "/" + saturation);
+				assertEquals(expected[1], xy[1], "y of " + hue + "/" + saturation);
+			}
+		}
+	}
+
+	/**
+	 * Values between the saturation steps and outside the table must be converted
+	 * by the engine.
+	 */
+	@Test
+	void hueSaturationToXyOutsideTable() {
+		double[] expected = new double[2];
+		double[] xy = new double[2];
+		int[] hues = { -1, 120, 361 };
+		double[] saturations = { 0.4321, 0.0025, 1.5 };
+		for (int hue : hues) {
+			for (double saturation : saturations) {
+				HueColorEngine.hueSaturationToXy(hue, saturation, expected);
+
+				table.hueSaturationToXy(hue, saturation, xy);
+
+				assertEquals(expected[0], xy[0], "x of " + hue + "/" + saturation);
+				assertEquals(expected[1], xy[1], "y of " + hue + "/" + saturation);
+			}
+		}
+	}
+
+	/**
+	 * Coordinates must map to the same hue and saturation as calculated by the
+	 * engine, apart from rare rounding ties inside a grid cell.
+	 */
+	@Test
+	void xyToHueSaturation() {
+		int mismatches = 0;
+		int total = 0;
+		for (int xi = 1; xi < 8000; xi += 7) {
+			for (int yi = 1; yi < 9000; yi += 7) {
+				double x = xi / 10_000.0;
+				double y = yi / 10_000.0;
+				if (x + y > 1.0) {
+					continue;
+				}
+				if (table.xyToHueSaturation(x, y) != HueColorEngine.xyToHueSaturation(x, y)) {
+					mismatches++;
+				}
+				total++;
+			}
+		}
+		assertTrue(mismatches * 1000 < total, mismatches + " of " + total + " differ");
+	}
+
+	/**
+	 * The coordinates of every hue and saturation step must map back to the same
+	 * hue and saturation as calculated by the engine.
+	 */
+	@Test
+	void xyToHueSaturationOfSteps() {
+		double[] xy = new double[2];
+		for (int hue = 0; hue < 360; hue++) {
+			for (int step = 0; step <= 200; step++) {
+				HueColorEngine.hueSaturationToXy(hue, step / 200.0, xy);
+				long expected = HueColorEngine.xyToHueSaturation(xy[0], xy[1]);
+
+				long hueSaturation = table.xyToHueSaturation(xy[0], xy[1]);
+
+				assertEquals(HueColorEngine.hue(expected), HueColorEngine.hue(hueSaturation),
+						"hue of " + xy[0] + "/" + xy[1]);
+				assertEquals(HueColorEngine.saturation(expected), HueColorEngine.saturation(hueSaturation),
+						"saturation of " + xy[0] + "/" + xy[1]);
+			}
+		}
+	}
+
+	/**
+	 * Coordinates outside the grid must be converted by the engine.
+	 */
+	@Test
+	void xyToHueSaturationOutsideGrid() {
+		double[][] coordinates = { { 0.85, 0.1 }, { 0.3, 0.95 }, { -0.01, 0.3 } };
+		for (double[] xy : coordinates) {
+			assertEquals(HueColorEngine.xyToHueSaturation(xy[0], xy[1]), table.xyToHueSaturation(xy[0], xy[1]),
+					xy[0] + "/" + xy[1]);
+		}
+	}
+}
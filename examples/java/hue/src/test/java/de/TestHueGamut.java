@@ -0,0 +1,142 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.model.light.Gamut;
+import de.eq3.plugin.hue.model.light.Xy;
+import de.eq3.plugin.hue.util.HueGamut;
+
+/**
+ * Test class for clipping colors to the gamut triangle of a light.
+ */
+public class TestHueGamut {
+	private static final double[][] GAMUT_C = { { 0.6915, 0.3083 }, { 0.17, 0.7 }, { 0.1532, 0.0475 } };
+
+	/**
+	 * Coordinates inside the triangle and on its corners must not be changed.
+	 */
+	@Test
+	void keepsContainedColors() {
+		double[][] coordinates = { GAMUT_C[0], GAMUT_C[1], GAMUT_C[2], { 0.3127, 0.329 }, { 0.5, 0.4 } };
+		for (double[] coordinate : coordinates) {
+			double[] xy = coordinate.clone();
+
+			assertTrue(HueGamut.GAMUT_C.contains(xy[0], xy[1]));
+			assertFalse(HueGamut.GAMUT_C.clip(xy));
+			assertEquals(coordinate[0], xy[0]);
+			assertEquals(coordinate[1], xy[1]);
+		}
+	}
+
+	/**
+	 * Coordinates beyond a corner must be clipped to the corner, coordinates
+	 * beyond an edge to their projection onto the edge.
+	 */
+	@Test
+	void clipsToCornersAndEdges() {
+		double[] xy = { 0.75, 0.25 };
+		assertTrue(HueGamut.GAMUT_C.clip(xy));
+		assertEquals(0.6915, xy[0]);
+		assertEquals(0.3083, xy[1]);
+
+		xy = new double[] { 0.1, 0.02 };
+		assertTrue(HueGamut.GAMUT_C.clip(xy));
+		assertEquals(0.1532, xy[0]);
+		assertEquals(0.0475, xy[1]);
+
+		// a point outside the middle of the red-green edge is moved back along the
+		// normal of the edge
+		double[] middle = { (0.675 + 0.409) / 2, (0.322 + 0.518) / 2 };
+		double normalX = 0.518 - 0.322;
+		double normalY = 0.675 - 0.409;
+		double length = Math.hypot(normalX, normalY);
+		xy = new double[] { middle[0] + 0.05 * normalX / length, middle[1] + 0.05 * normalY / length };
+		assertTrue(HueGamut.GAMUT_B.clip(xy));
+		assertEquals(middle[0], xy[0], 0.00005);
+		assertEquals(middle[1], xy[1], 0.00005);
+	}
+
+	/**
+	 * Clipped coordinates must be the closest point on the border of the
+	 * triangle, compared with a brute force search along the edges.
+	 */
+	@Test
+	void clipsToClosestBorderPoint() {
+		int clipped = 0;
+		for (int xi = 0; xi <= 80; xi += 2) {
+			for (int yi = 1; yi <= 90; yi += 2) {
+				double x = xi / 100.0;
+				double y = yi / 100.0;
+				double[] xy = { x, y };
+				if (!HueGamut.GAMUT_C.clip(xy)) {
+					continue;
+				}
+				clipped++;
+
+				double expected = closestBorderDistance(x, y);
+				double distance = Math.hypot(x - xy[0], y - xy[1]);
+				// clipped coordinates are rounded to four decimals
+				assertEquals(expected, distance, 0.0001, "distance of " + x + "/" + y);
+				assertTrue(closestBorderDistance(xy[0], xy[1]) < 0.0001, "border of " + x + "/" + y);
+			}
+		}
+		assertTrue(clipped > 0);
+	}
+
+	/**
+	 * The reported triangle must be preferred over the gamut type.
+	 */
+	@Test
+	void ofReportedGamut() {
+		Gamut reported = new Gamut(new Xy(0.1532, 0.0475), new Xy(0.17, 0.7), new Xy(0.6915, 0.3083));
+		HueGamut gamut = HueGamut.of(reported, "A");
+		double[] xy = { 0.704, 0.296 };
+		assertTrue(gamut.clip(xy));
+		assertEquals(0.6915, xy[0]);
+		assertEquals(0.3083, xy[1]);
+
+		assertSame(HueGamut.GAMUT_A, HueGamut.of(new Gamut(null, null, null), "A"));
+		assertSame(HueGamut.GAMUT_B, HueGamut.of(null, "B"));
+		assertSame(HueGamut.GAMUT_C, HueGamut.of(null, "C"));
+		assertNull(HueGamut.of(null, "other"));
+	}
+
+	private static double closestBorderDistance(double x, double y) {
+		double closest = Double.MAX_VALUE;
+		for (int vertex = 0; vertex < 3; vertex++) {
+			double[] start = GAMUT_C[vertex];
+			double[] end = GAMUT_C[(vertex + 1) % 3];
+			for (int i = 0; i <= 20_000; i++) {
+				double t = i / 20_000.0;
+				double pointX = start[0] + t * (end[0] - start[0]);
+				double pointY = start[1] + t * (end[1] - start[1]);
+				closest = Math.min(closest, Math.hypot(x - pointX, y - pointY));
+			}
+		}
+		return closest;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.discovery.mapping.HueLightGamutRegistry;
+import de.eq3.plugin.hue.model.light.Color;
+import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.util.HueColorEngine;
+import de.eq3.plugin.hue.util.HueColorTable;
+import de.eq3.plugin.hue.util.HueGamut;
+
+/**
+ * Test class for clipping colors sent to a light and mapping the reported
+ * coordinates back to the requested color.
+ */
+public class TestHueLightGamutRegistry {
+	private static final int HUE = 240;
+	private static final double SATURATION = 1.0;
+	private static final double TOLERANCE = 0.0002;
+
+	private final HueLightGamutRegistry registry = HueLightGamutRegistry.getInstance();
+
+	/**
+	 * A color outside the gamut must be clipped, and the clipped coordinates
+	 * reported by the bridge within the tolerance must map back to the requested
+	 * hue and saturation.
+	 */
+	@Test
+	void mapsClippedColorBack() {
+		String lightId = register("C");
+		double[] requested = new double[2];
+		HueColorEngine.hueSaturationToXy(HUE, SATURATION, requested);
+		double[] xy = requested.clone();
+
+		registry.applyCommand(lightId, HUE, SATURATION, xy);
+
+		assertFalse(HueGamut.GAMUT_C.contains(requested[0], requested[1]));
+		// the clipped coordinates are rounded onto the border of the gamut
+		double[] border = xy.clone();
+		HueGamut.GAMUT_C.clip(border);
+		assertEquals(xy[0], border[0], 0.0001);
+		assertEquals(xy[1], border[1], 0.0001);
+		assertNotEquals(requested[0], xy[0]);
+		long clipped = HueColorTable.getInstance().xyToHueSaturation(xy[0], xy[1]);
+		assertNotEquals(HueColorEngine.pack(HUE, SATURATION), clipped);
+
+		double[][] offsets = { { 0, 0 }, { TOLERANCE, 0 }, { -TOLERANCE, 0 }, { 0, TOLERANCE }, { 0, -TOLERANCE },
+				{ 0.0001, -0.0001 } };
+		for (double[] offset : offsets) {
+			long hueSaturation = registry.xyToHueSaturation(lightId, xy[0] + offset[0], xy[1] + offset[1]);
+			assertEquals(HUE, HueColorEngine.hue(hueSaturation), "hue with offset " + offset[0] + "/" + offset[1]);
+			assertEquals(SATURATION, HueColorEngine.saturation(hueSaturation),
+					"saturation with offset " + offset[0] + "/" + offset[1]);
+		}
+	}
+
+	/**
+	 * Coordinates differing from the last command by more than the tolerance must
+	 * be converted by the color table.
+	 */
+	@Test
+	void convertsOtherColors() {
+		String lightId = register("C");
+		double[] xy = new double[2];
+		HueColorEngine.hueSaturationToXy(HUE, SATURATION, xy);
+		registry.applyCommand(lightId, HUE, SATURATION, xy);
+
+		double[][] offsets = { { 0.0003, 0 }, { 0, -0.0003 }, { 0.01, 0.01 } };
+		for (double[] offset : offsets) {
+			double x = xy[0] + offset[0];
+			double y = xy[1] + offset[1];
+			assertEquals(HueColorTable.getInstance().xyToHueSaturation(x, y), registry.xyToHueSaturation(lightId, x, y),
+					"offset " + offset[0] + "/" + offset[1]);
+		}
+		assertEquals(HueColorTable.getInstance().xyToHueSaturation(xy[0], xy[1]),
+				registry.xyToHueSaturation(null, xy[0], xy[1]));
+	}
+
+	/**
+	 * Colors sent to lights without a known gamut must not be clipped, but are
+	 * still mapped back.
+	 */
+	@Test
+	void keepsColorsOfLightsWithoutGamut() {
+		String lightId = register("other");
+		assertNull(registry.getGamut(lightId));
+		double[] requested = new double[2];
+		HueColorEngine.hueSaturationToXy(HUE, SATURATION, requested);
+		double[] xy = requested.clone();
+
+		registry.applyCommand(lightId, HUE, SATURATION, xy);
+
+		assertEquals(requested[0], xy[0]);
+		assertEquals(requested[1], xy[1]);
+		assertEquals(HueColorEngine.pack(HUE, SATURATION), registry.xyToHueSaturation(lightId, xy[0], xy[1]));
+	}
+
+	/**
+	 * Removing a light must forget its gamut and its last command.
+	 */
+	@Test
+	void removesLight() {
+		String lightId = register("C");
+		assertSame(HueGamut.GAMUT_C, registry.getGamut(lightId));
+		double[] xy = new double[2];
+		HueColorEngine.hueSaturationToXy(HUE, SATURATION, xy);
+		registry.applyCommand(lightId, HUE, SATURATION, xy);
+
+		registry.remove(lightId);
+
+		assertNull(registry.getGamut(lightId));
+		assertEquals(HueColorTable.getInstance().xyToHueSaturation(xy[0], xy[1]),
+				registry.xyToHueSaturation(lightId, xy[0], xy[1]));
+	}
+
+	private String register(String gamutType) {
+		Color color = new Color();
+		color.setGamutType(gamutType);
+		Light light = new Light();
+		light.setId(UUID.randomUUID().toString());
+		light.setColor(color);
+		registry.register(light);
+		return light.getId();
+	}
+}
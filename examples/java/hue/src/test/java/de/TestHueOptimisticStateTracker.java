@@ -0,0 +1,182 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.domain.device.Device;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.control.optimistic.HueOptimisticStateTracker;
+import de.eq3.plugin.serialization.DeviceType;
+
+/**
+ * Test class for the features reported to the HCU before the bridge confirmed
+ * them.
+ */
+public class TestHueOptimisticStateTracker {
+	private final HueOptimisticStateTracker tracker = HueOptimisticStateTracker.getInstance();
+
+	private HueBridge bridge;
+	private String deviceId;
+	private SwitchState off;
+	private Dimming dimmedOff;
+
+	@BeforeEach
+	void setUp() {
+		// the tracker is shared, every test uses a device of its own
+		deviceId = UUID.randomUUID().toString();
+		off = new SwitchState(false);
+		dimmedOff = new Dimming(0.0);
+		bridge = new HueBridge();
+		bridge.getPluginDevices()
+				.put(deviceId, new Device(deviceId, "LCA001", "Light", "1.0", DeviceType.LIGHT,
+						new HashSet<>(Set.of(off, dimmedOff))));
+	}
+
+	/**
+	 * The requested features replace the cached ones until the bridge confirms
+	 * them.
+	 */
+	@Test
+	void reconcilesConfirmedFeatures() {
+		SwitchState on = new SwitchState(true);
+		Dimming dimming = new Dimming(0.5);
+		tracker.apply(bridge, deviceId, "request-1", Set.of(on, dimming));
+
+		assertTrue(tracker.isProvisional(deviceId));
+		assertEquals(Set.of(on, dimming), features());
+
+		tracker.reconcile(deviceId, Set.of(on));
+		assertTrue(tracker.isProvisional(deviceId), "dim level is not confirmed yet");
+
+		tracker.reconcile(deviceId, Set.of(new Dimming(0.49)));
+		assertFalse(tracker.isProvisional(deviceId));
+		// reported values are written to the cache by the state event handler
+		assertEquals(Set.of(on, dimming), features());
+		assertFalse(tracker.expire(deviceId, "request-1"));
+	}
+
+	/**
+	 * Confirmations of other devices are ignored.
+	 */
+	@Test
+	void ignoresOtherDevices() {
+		SwitchState on = new SwitchState(true);
+		tracker.apply(bridge, deviceId, "request-1", Set.of(on));
+
+		tracker.reconcile(UUID.randomUUID().toString(), Set.of(on));
+
+		assertTrue(tracker.isProvisional(deviceId));
+	}
+
+	/**
+	 * A rejected request restores the features it replaced.
+	 */
+	@Test
+	void rollsBackRejectedRequest() {
+		tracker.apply(bridge, deviceId, "request-1", Set.of(new SwitchState(true), new Dimming(0.5)));
+
+		Set<IFeature> restored = tracker.rollback(bridge, deviceId, "request-1");
+
+		assertEquals(Set.of(off, dimmedOff), restored);
+		assertEquals(Set.of(off, dimmedOff), features());
+		assertFalse(tracker.isProvisional(deviceId));
+	}
+
+	/**
+	 * Features overwritten by a later request are not rolled back with the
+	 * earlier request, the later request restores the value confirmed before
+	 * both.
+	 */
+	@Test
+	void rollsBackOnlyOwnFeatures() {
+		Dimming first = new Dimming(0.5);
+		Dimming second = new Dimming(0.7);
+		SwitchState on = new SwitchState(true);
+		tracker.apply(bridge, deviceId, "request-1", Set.of(on, first));
+		tracker.apply(bridge, deviceId, "request-2", Set.of(second));
+
+		assertEquals(Set.of(off), tracker.rollback(bridge, deviceId, "request-1"));
+		assertEquals(Set.of(off, second), features());
+		assertTrue(tracker.isProvisional(deviceId));
+
+		assertEquals(Set.of(dimmedOff), tracker.rollback(bridge, deviceId, "request-2"));
+		assertEquals(Set.of(off, dimmedOff), features());
+		assertFalse(tracker.isProvisional(deviceId));
+	}
+
+	/**
+	 * Without a cached device there is nothing to restore.
+	 */
+	@Test
+	void rollsBackUnknownDevice() {
+		String unknown = UUID.randomUUID().toString();
+		tracker.apply(bridge, unknown, "request-1", Set.of(new SwitchState(true)));
+
+		assertEquals(Set.of(), tracker.rollback(bridge, unknown, "request-1"));
+		assertFalse(tracker.isProvisional(unknown));
+	}
+
+	/**
+	 * Features not confirmed in time are dropped, the cached values are kept
+	 * until the actual state has been requested.
+	 */
+	@Test
+	void expiresUnconfirmedFeatures() {
+		SwitchState on = new SwitchState(true);
+		Dimming dimming = new Dimming(0.5);
+		tracker.apply(bridge, deviceId, "request-1", Set.of(on, dimming));
+		tracker.reconcile(deviceId, Set.of(on));
+
+		assertTrue(tracker.expire(deviceId, "request-1"));
+		assertFalse(tracker.isProvisional(deviceId));
+		assertEquals(Set.of(on, dimming), features());
+		assertFalse(tracker.expire(deviceId, "request-1"));
+		assertEquals(Set.of(), tracker.rollback(bridge, deviceId, "request-1"));
+	}
+
+	/**
+	 * Expiring an earlier request keeps the features of a later request.
+	 */
+	@Test
+	void expiresOnlyOwnFeatures() {
+		tracker.apply(bridge, deviceId, "request-1", Set.of(new Dimming(0.5)));
+		tracker.apply(bridge, deviceId, "request-2", Set.of(new Dimming(0.7)));
+
+		assertFalse(tracker.expire(deviceId, "request-1"));
+		assertTrue(tracker.isProvisional(deviceId));
+		assertTrue(tracker.expire(deviceId, "request-2"));
+		assertFalse(tracker.isProvisional(deviceId));
+	}
+
+	private Set<IFeature> features() {
+		return bridge.getPluginDevices().get(deviceId).getFeatures();
+	}
+}
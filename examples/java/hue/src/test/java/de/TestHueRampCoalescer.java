@@ -0,0 +1,294 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.domain.control.ControlRequest;
+import de.eq3.plugin.domain.features.Color;
+import de.eq3.plugin.domain.features.Dimming;
+import de.eq3.plugin.domain.features.IFeature;
+import de.eq3.plugin.domain.features.OnTime;
+import de.eq3.plugin.domain.features.SwitchState;
+import de.eq3.plugin.hue.HuePluginStarter;
+import de.eq3.plugin.hue.control.ramp.HueRampCoalescer;
+import de.eq3.plugin.serialization.PluginMessage;
+import de.eq3.plugin.serialization.PluginMessageType;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+/**
+ * Test class for collapsing ramps of control requests into native Hue
+ * transitions. The coalescer is only used on the context of a single verticle,
+ * so all calls are made on one context.
+ */
+public class TestHueRampCoalescer {
+	private static final long WINDOW = 400;
+	private static final long INTERVAL = 100;
+	private static final String DEVICE_ID = "device-1";
+
+	private Vertx vertx;
+	private Context context;
+	private HueRampCoalescer coalescer;
+	private final List<PluginMessage<ControlRequest>> dispatched = new ArrayList<>();
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		setProperty("control.ramp.window", String.valueOf(WINDOW));
+		setProperty("control.ramp.interval", String.valueOf(INTERVAL));
+		vertx = Vertx.vertx();
+		context = vertx.getOrCreateContext();
+		coalescer = new HueRampCoalescer(vertx, dispatched::add);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+	}
+
+	/**
+	 * Without an interval every request is executed right away.
+	 */
+	@Test
+	void disabledWithoutInterval() throws Exception {
+		setProperty("control.ramp.interval", "0");
+		coalescer = new HueRampCoalescer(vertx, dispatched::add);
+
+		for (int i = 1; i <= 3; i++) {
+			PluginMessage<ControlRequest> step = dimStep(i / 10.0);
+			assertFalse(offer(step));
+			assertNull(onContext(() -> coalescer.takeTransitionDuration(step.getId())));
+		}
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * The first step of a ramp and requests without a dim or color target are
+	 * executed right away, without a transition.
+	 */
+	@Test
+	void passesThroughFirstStepAndOtherRequests() throws Exception {
+		PluginMessage<ControlRequest> first = dimStep(0.1);
+		assertFalse(offer(first));
+		assertNull(onContext(() -> coalescer.takeTransitionDuration(first.getId())));
+
+		PluginMessage<ControlRequest> switchOn = request(new SwitchState(true));
+		assertFalse(offer(switchOn));
+		assertNull(onContext(() -> coalescer.takeTransitionDuration(switchOn.getId())));
+
+		// a step of another device starts a ramp of its own
+		PluginMessage<ControlRequest> otherDevice = new PluginMessage<>(UUID.randomUUID().toString(),
+				HuePluginStarter.PLUGIN_ID, PluginMessageType.CONTROL_REQUEST,
+				new ControlRequest("device-2", Set.of(new Dimming(0.5))));
+		assertFalse(offer(otherDevice));
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * Steps arriving within the interval are held back, only the latest one is
+	 * dispatched with a transition of the interval and supersedes the others.
+	 */
+	@Test
+	void coalescesSteps() throws Exception {
+		PluginMessage<ControlRequest> first = dimStep(0.1);
+		PluginMessage<ControlRequest> second = dimStep(0.2);
+		PluginMessage<ControlRequest> third = request(new Color(120, 1.0));
+		PluginMessage<ControlRequest> fourth = dimStep(0.4);
+
+		assertEquals(List.of(false, true, true, true),
+				onContext(() -> List.of(coalescer.offer(first), coalescer.offer(second), coalescer.offer(third),
+						coalescer.offer(fourth))));
+		awaitDispatched(1);
+
+		assertEquals(List.of(fourth.getId()), onContext(() -> ids(dispatched)));
+		assertEquals((int) INTERVAL, onContext(() -> coalescer.takeTransitionDuration(fourth.getId())));
+		assertEquals(List.of(third.getId(), second.getId()),
+				onContext(() -> coalescer.takeSupersededRequests(fourth.getId())));
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * A step arriving once the interval has passed is executed right away with a
+	 * transition covering the time since the previous step, at most the
+	 * interval.
+	 */
+	@Test
+	void dispatchesStepAfterInterval() throws Exception {
+		PluginMessage<ControlRequest> first = dimStep(0.1);
+		PluginMessage<ControlRequest> second = dimStep(0.2);
+
+		assertFalse(offer(first));
+		Thread.sleep(INTERVAL + 50);
+		assertFalse(offer(second));
+
+		assertEquals((int) INTERVAL, onContext(() -> coalescer.takeTransitionDuration(second.getId())));
+		assertEquals(List.of(), onContext(() -> coalescer.takeSupersededRequests(second.getId())));
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * A step arriving after the window starts a new ramp.
+	 */
+	@Test
+	void startsNewRampAfterWindow() throws Exception {
+		assertFalse(offer(dimStep(0.1)));
+		Thread.sleep(WINDOW + 50);
+
+		PluginMessage<ControlRequest> step = dimStep(0.2);
+		assertFalse(offer(step));
+		assertNull(onContext(() -> coalescer.takeTransitionDuration(step.getId())));
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * A request which is no ramp step, like switching off or an onTime,
+	 * supersedes a held step, which is then never dispatched.
+	 */
+	@Test
+	void supersedesHeldStep() throws Exception {
+		for (IFeature feature : List.of(new SwitchState(false), new OnTime(60.0))) {
+			PluginMessage<ControlRequest> first = dimStep(0.1);
+			PluginMessage<ControlRequest> held = dimStep(0.2);
+			PluginMessage<ControlRequest> other = request(feature, new Dimming(0.3));
+
+			assertEquals(List.of(false, true, false),
+					onContext(() -> List.of(coalescer.offer(first), coalescer.offer(held), coalescer.offer(other))));
+			assertEquals(List.of(held.getId()), onContext(() -> coalescer.takeSupersededRequests(other.getId())));
+			assertNull(onContext(() -> coalescer.takeTransitionDuration(other.getId())));
+		}
+		Thread.sleep(INTERVAL + 50);
+
+		assertEquals(List.of(), onContext(() -> ids(dispatched)));
+		assertNoTrackedRequests();
+	}
+
+	/**
+	 * Steps superseded by a held step are passed on to the step superseding it.
+	 */
+	@Test
+	void passesOnSupersededSteps() throws Exception {
+		PluginMessage<ControlRequest> first = dimStep(0.1);
+		PluginMessage<ControlRequest> second = dimStep(0.2);
+		PluginMessage<ControlRequest> third = dimStep(0.3);
+
+		assertEquals(List.of(false, true, true),
+				onContext(() -> List.of(coalescer.offer(first), coalescer.offer(second), coalescer.offer(third))));
+		awaitDispatched(1);
+
+		// the ramp continues after the dispatched step
+		PluginMessage<ControlRequest> fourth = dimStep(0.4);
+		PluginMessage<ControlRequest> fifth = dimStep(0.5);
+		assertEquals(List.of(true, true), onContext(() -> List.of(coalescer.offer(fourth), coalescer.offer(fifth))));
+		awaitDispatched(2);
+
+		assertEquals(List.of(third.getId(), fifth.getId()), onContext(() -> ids(dispatched)));
+		assertEquals(List.of(second.getId()), onContext(() -> coalescer.takeSupersededRequests(third.getId())));
+		assertEquals(List.of(fourth.getId()), onContext(() -> coalescer.takeSupersededRequests(fifth.getId())));
+		assertEquals((int) INTERVAL, onContext(() -> coalescer.takeTransitionDuration(third.getId())));
+		assertEquals((int) INTERVAL, onContext(() -> coalescer.takeTransitionDuration(fifth.getId())));
+		assertNoTrackedRequests();
+	}
+
+	private boolean offer(PluginMessage<ControlRequest> request) throws Exception {
+		return onContext(() -> coalescer.offer(request));
+	}
+
+	private <T> T onContext(Callable<T> callable) throws Exception {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		context.runOnContext(v -> {
+			try {
+				result.complete(callable.call());
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result.get(5, TimeUnit.SECONDS);
+	}
+
+	private void awaitDispatched(int count) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (onContext(dispatched::size) < count) {
+			assertTrue(System.currentTimeMillis() < deadline, "Held step was not dispatched");
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Asserts that no transition durations or superseded requests are left once
+	 * all dispatched requests have been answered.
+	 */
+	private void assertNoTrackedRequests() throws Exception {
+		assertEquals(Map.of(), onContext(() -> field("transitionDurations")));
+		assertEquals(Map.of(), onContext(() -> field("supersededRequests")));
+	}
+
+	private Object field(String name) throws ReflectiveOperationException {
+		Field field = HueRampCoalescer.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(coalescer);
+	}
+
+	private static List<String> ids(List<PluginMessage<ControlRequest>> requests) {
+		List<String> ids = new ArrayList<>();
+		requests.forEach(request -> ids.add(request.getId()));
+		return ids;
+	}
+
+	private static PluginMessage<ControlRequest> dimStep(double dimLevel) {
+		return request(new SwitchState(true), new Dimming(dimLevel));
+	}
+
+	private static PluginMessage<ControlRequest> request(IFeature... features) {
+		return new PluginMessage<>(UUID.randomUUID().toString(), HuePluginStarter.PLUGIN_ID,
+				PluginMessageType.CONTROL_REQUEST, new ControlRequest(DEVICE_ID, Set.of(features)));
+	}
+
+	private void setProperty(String key, String value) {
+		String previous = System.setProperty(key, value);
+		if (!previousProperties.containsKey(key)) {
+			previousProperties.put(key, previous);
+		}
+	}
+}
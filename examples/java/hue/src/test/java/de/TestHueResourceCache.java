@@ -0,0 +1,242 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.discovery.cache.HueResourceCache;
+import de.eq3.plugin.hue.discovery.mapping.HueResourceParser;
+import de.eq3.plugin.hue.model.HueResponse;
+import de.eq3.plugin.hue.model.common.Owner;
+import de.eq3.plugin.hue.model.connectivity.DeviceConnectivity;
+import de.eq3.plugin.hue.model.light.Color;
+import de.eq3.plugin.hue.model.light.ColorTemperature;
+import de.eq3.plugin.hue.model.light.Dimming;
+import de.eq3.plugin.hue.model.light.Gamut;
+import de.eq3.plugin.hue.model.light.Light;
+import de.eq3.plugin.hue.model.light.MirekSchema;
+import de.eq3.plugin.hue.model.light.On;
+import de.eq3.plugin.hue.model.light.Xy;
+
+/**
+ * Test class for the expiry, patching and invalidation of the cached bridge
+ * resources.
+ */
+public class TestHueResourceCache {
+	private static final String TTL_PROPERTY = "plugin.hue.resources.cacheTtl";
+	private static final String BRIDGE_ID = "001788fffe000000";
+	private static final String LIGHT_ID = "light-1";
+	private static final String CONNECTIVITY_ID = "connectivity-1";
+
+	private final HueResourceCache cache = HueResourceCache.getInstance();
+	private String previousTtl;
+
+	@BeforeEach
+	void setUp() {
+		previousTtl = System.setProperty(TTL_PROPERTY, "30000");
+		cache.invalidate();
+	}
+
+	@AfterEach
+	void tearDown() {
+		cache.invalidate();
+		if (previousTtl != null) {
+			System.setProperty(TTL_PROPERTY, previousTtl);
+		} else {
+			System.clearProperty(TTL_PROPERTY);
+		}
+	}
+
+	/**
+	 * Cached resources are served until the TTL has passed.
+	 */
+	@Test
+	void expiresAfterTtl() throws InterruptedException {
+		System.setProperty(TTL_PROPERTY, "100");
+		HueResponse response = response();
+		cache.put(BRIDGE_ID, response);
+
+		assertSame(response, cache.get(BRIDGE_ID).orElseThrow());
+
+		Thread.sleep(150);
+		assertTrue(cache.get(BRIDGE_ID).isEmpty());
+	}
+
+	/**
+	 * A TTL of zero disables the cache.
+	 */
+	@Test
+	void disabledWithoutTtl() {
+		System.setProperty(TTL_PROPERTY, "0");
+		cache.put(BRIDGE_ID, response());
+
+		assertTrue(cache.get(BRIDGE_ID).isEmpty());
+	}
+
+	/**
+	 * Resources of another bridge are not served.
+	 */
+	@Test
+	void missesOtherBridge() {
+		cache.put(BRIDGE_ID, response());
+
+		assertTrue(cache.get("001788fffe111111").isEmpty());
+	}
+
+	/**
+	 * The attributes of a light update replace the cached attributes, nested
+	 * attributes missing in the update are kept. Responses handed out before are
+	 * not modified.
+	 */
+	@Test
+	void patchesLight() {
+		HueResponse before = response();
+		cache.put(BRIDGE_ID, before);
+
+		Light update = new Light();
+		update.setId(LIGHT_ID);
+		update.setType(HueResourceParser.TYPE_LIGHT);
+		update.setOn(new On(true));
+		update.setDimming(new Dimming(70.0, null));
+		update.setColorTemperature(new ColorTemperature(300, null, true));
+		update.setColor(new Color(null, null, new Xy(0.2, 0.3)));
+		cache.patch(update);
+
+		HueResponse after = cache.get(BRIDGE_ID).orElseThrow();
+		assertNotSame(before, after);
+		Light light = after.getLights().iterator().next();
+		assertEquals(LIGHT_ID, light.getId());
+		assertTrue(light.getOn().getOn());
+		assertEquals(70.0, light.getDimming().getBrightness());
+		assertEquals(2.0, light.getDimming().getMinDimLevel());
+		assertEquals(300, light.getColorTemperature().getMirek());
+		assertTrue(light.getColorTemperature().getMirekValid());
+		assertEquals(new MirekSchema(500, 153), light.getColorTemperature().getMirekSchema());
+		assertEquals(new Xy(0.2, 0.3), light.getColor().getXy());
+		assertEquals("C", light.getColor().getGamutType());
+		assertEquals(gamut(), light.getColor().getGamut());
+		assertEquals(new Owner("device-1", "device"), light.getOwner());
+
+		Light unchanged = before.getLights().iterator().next();
+		assertFalse(unchanged.getOn().getOn());
+		assertEquals(20.0, unchanged.getDimming().getBrightness());
+		assertEquals(new Xy(0.5, 0.4), unchanged.getColor().getXy());
+	}
+
+	/**
+	 * Updates of unknown lights keep the cached response.
+	 */
+	@Test
+	void ignoresUnknownLight() {
+		HueResponse response = response();
+		cache.put(BRIDGE_ID, response);
+
+		Light update = new Light();
+		update.setId("light-2");
+		update.setType(HueResourceParser.TYPE_LIGHT);
+		update.setOn(new On(true));
+		cache.patch(update);
+
+		assertSame(response, cache.get(BRIDGE_ID).orElseThrow());
+	}
+
+	/**
+	 * The status of a connectivity update replaces the cached status.
+	 */
+	@Test
+	void patchesConnectivity() {
+		cache.put(BRIDGE_ID, response());
+
+		Light update = new Light();
+		update.setId(CONNECTIVITY_ID);
+		update.setType(HueResourceParser.TYPE_CONNECTIVITY);
+		update.setStatus("connectivity_issue");
+		cache.patch(update);
+
+		DeviceConnectivity connectivity = cache.get(BRIDGE_ID)
+				.orElseThrow()
+				.getDeviceConnectivities()
+				.iterator()
+				.next();
+		assertEquals("connectivity_issue", connectivity.getStatus());
+		assertEquals("00:17:88:01:00:00:00:01-0b", connectivity.getMacAddress());
+	}
+
+	/**
+	 * Device updates cannot be patched and invalidate the cache.
+	 */
+	@Test
+	void invalidatesOnDeviceUpdate() {
+		cache.put(BRIDGE_ID, response());
+		long invalidations = cache.getInvalidations();
+
+		Light update = new Light();
+		update.setId("device-1");
+		update.setType(HueResourceParser.TYPE_DEVICE);
+		cache.patch(update);
+
+		assertEquals(invalidations + 1, cache.getInvalidations());
+		assertTrue(cache.get(BRIDGE_ID).isEmpty());
+	}
+
+	/**
+	 * Deleted resources are removed from the cached resources.
+	 */
+	@Test
+	void removesDeletedResource() {
+		cache.put(BRIDGE_ID, response());
+
+		cache.remove(LIGHT_ID);
+
+		HueResponse response = cache.get(BRIDGE_ID).orElseThrow();
+		assertTrue(response.getLights().isEmpty());
+		assertEquals(1, response.getDeviceConnectivities().size());
+	}
+
+	private static HueResponse response() {
+		Light light = new Light();
+		light.setId(LIGHT_ID);
+		light.setType(HueResourceParser.TYPE_LIGHT);
+		light.setOwner(new Owner("device-1", "device"));
+		light.setOn(new On(false));
+		light.setDimming(new Dimming(20.0, 2.0));
+		light.setColorTemperature(new ColorTemperature(null, new MirekSchema(500, 153), false));
+		light.setColor(new Color(gamut(), "C", new Xy(0.5, 0.4)));
+
+		DeviceConnectivity connectivity = new DeviceConnectivity(CONNECTIVITY_ID, "00:17:88:01:00:00:00:01-0b",
+				new Owner("device-1", "device"), "connected", HueResourceParser.TYPE_CONNECTIVITY);
+
+		return new HueResponse(new HashSet<>(), new HashSet<>(Set.of(light)), new HashSet<>(Set.of(connectivity)),
+				new HashSet<>());
+	}
+
+	private static Gamut gamut() {
+		return new Gamut(new Xy(0.1532, 0.0475), new Xy(0.17, 0.7), new Xy(0.6915, 0.3083));
+	}
+}
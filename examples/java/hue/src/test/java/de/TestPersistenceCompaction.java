@@ -0,0 +1,201 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.auth.model.HueOnTimeOffCommand;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.Checkpoint;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+/**
+ * Test class for the journal compaction of the persistence while changes are
+ * written from several contexts.
+ */
+@ExtendWith(VertxExtension.class)
+public class TestPersistenceCompaction {
+	private static final int CONTEXTS = 4;
+	private static final int CHANGES = 100;
+
+	private static final Map<String, String> PROPERTIES = Map.of("plugin.hue.persist.delay", "0",
+			"plugin.hue.journal.maxEntries", "3", "plugin.hue.journal.maxBytes", "1",
+			"plugin.hue.journal.compactInterval", "5", "websocket.token", "test-token");
+
+	@TempDir
+	Path storage;
+
+	private Vertx vertx;
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		setProperty("plugin.hue.authFolder", storage.toString());
+		PROPERTIES.forEach(this::setProperty);
+		vertx = Vertx.vertx();
+		HuePersistenceHelper.getInstance().init(vertx);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		HuePersistenceHelper.getInstance().close();
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+	}
+
+	/**
+	 * Tests that no change is lost if snapshots are written while journal entries
+	 * of other contexts are appended, and that the previous snapshot can still be
+	 * completed from the journal.
+	 */
+	@Test
+	void keepsChangesWhileCompacting(VertxTestContext testContext) throws Exception {
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+		helper.saveAuthData("bridge-1", "key", "bridge.local")
+				.toCompletionStage()
+				.toCompletableFuture()
+				.join();
+
+		Checkpoint done = testContext.checkpoint(CONTEXTS);
+		for (int i = 0; i < CONTEXTS; i++) {
+			String prefix = "device-" + i + "-";
+			Context context = vertx.getOrCreateContext();
+			context.runOnContext(v -> saveChanges(testContext, context, prefix, 0).onSuccess(saved -> done.flag()));
+		}
+		assertTrue(testContext.awaitCompletion(10, TimeUnit.SECONDS));
+		if (testContext.failed()) {
+			throw new AssertionError(testContext.causeOfFailure());
+		}
+		Set<String> expected = new HashSet<>(helper.getHueBridge().orElseThrow().getIncludedDevices());
+
+		// reload from disk without writing a final snapshot
+		helper.init(vertx);
+		assertEquals(expected, helper.getHueBridge().orElseThrow().getIncludedDevices());
+
+		// the previous snapshot and the journal lead to the same state
+		Files.delete(storage.resolve("hue.auth"));
+		helper.init(vertx);
+		assertEquals(expected, helper.getHueBridge().orElseThrow().getIncludedDevices());
+	}
+
+	/**
+	 * Tests that collections handed to the persistence can be modified by the
+	 * caller while snapshots are written, without affecting the persisted state.
+	 */
+	@Test
+	void isolatesSavedCollectionsWhileCompacting(VertxTestContext testContext) throws Exception {
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+		helper.saveAuthData("bridge-1", "key", "bridge.local")
+				.toCompletionStage()
+				.toCompletableFuture()
+				.join();
+
+		Checkpoint done = testContext.checkpoint(CONTEXTS);
+		for (int i = 0; i < CONTEXTS; i++) {
+			String prefix = "device-" + i + "-";
+			Context context = vertx.getOrCreateContext();
+			context.runOnContext(v -> modifyAfterSave(testContext, prefix, new HashMap<>(), 0)
+					.onSuccess(saved -> done.flag()));
+		}
+		assertTrue(testContext.awaitCompletion(10, TimeUnit.SECONDS));
+		if (testContext.failed()) {
+			throw new AssertionError(testContext.causeOfFailure());
+		}
+		HueBridge bridge = helper.getHueBridge().orElseThrow();
+		assertThrows(UnsupportedOperationException.class, () -> bridge.getIncludedDevices().add("device"));
+		Set<String> expectedDevices = new HashSet<>(bridge.getIncludedDevices());
+		Map<String, HueOnTimeOffCommand> expectedCommands = new HashMap<>(bridge.getOnTimeOffCommands());
+
+		helper.init(vertx);
+		assertEquals(expectedDevices, helper.getHueBridge().orElseThrow().getIncludedDevices());
+		assertEquals(expectedCommands, helper.getHueBridge().orElseThrow().getOnTimeOffCommands());
+	}
+
+	private static Future<Void> modifyAfterSave(VertxTestContext testContext, String prefix,
+			Map<String, HueOnTimeOffCommand> commands, int change) {
+		if (change == CHANGES) {
+			return Future.succeededFuture();
+		}
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+		String deviceId = prefix + change;
+		commands.put(deviceId, new HueOnTimeOffCommand(deviceId, "request-" + change, change, change));
+		Future<Void> saved = helper.saveOnTimeOffCommands(commands);
+		// modified while the saved state may be encoded on the worker
+		for (int i = 0; i < 50; i++) {
+			commands.put(prefix + "unsaved-" + i, new HueOnTimeOffCommand(prefix, "unsaved", i, i));
+			commands.remove(prefix + "unsaved-" + i);
+		}
+		commands.put(prefix + "unsaved", new HueOnTimeOffCommand(prefix, "unsaved", 0, 0));
+		testContext.verify(() -> assertFalse(
+				helper.getHueBridge().orElseThrow().getOnTimeOffCommands().containsKey(prefix + "unsaved")));
+		commands.remove(prefix + "unsaved");
+
+		Future<Void> included = change % 3 == 2 ? helper.excludeDevices(Set.of(prefix + (change - 1)))
+				: helper.includeDevices(Set.of(deviceId));
+		return Future.all(saved, included)
+				.compose(all -> modifyAfterSave(testContext, prefix, commands, change + 1));
+	}
+
+	private static Future<Void> saveChanges(VertxTestContext testContext, Context context, String prefix,
+			int change) {
+		if (change == CHANGES) {
+			return Future.succeededFuture();
+		}
+		Set<String> deviceIds = new HashSet<>();
+		for (int i = 0; i <= change % 10; i++) {
+			deviceIds.add(prefix + (change + i));
+		}
+		return HuePersistenceHelper.getInstance().saveIncludedDevices(deviceIds).compose(saved -> {
+			testContext.verify(() -> assertSame(context, Vertx.currentContext()));
+			return saveChanges(testContext, context, prefix, change + 1);
+		});
+	}
+
+	private void setProperty(String key, String value) {
+		previousProperties.put(key, System.setProperty(key, value));
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.eq3.plugin.hue.auth.model.HueBridge;
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+
+/**
+ * Test class ensuring the persistence never accesses the disk from an event
+ * loop thread.
+ */
+@ExtendWith(VertxExtension.class)
+public class TestPersistenceOffEventLoop {
+	@TempDir
+	Path storage;
+
+	private Vertx vertx;
+
+	@BeforeEach
+	void setUp() {
+		System.setProperty("plugin.hue.authFolder", storage.toString());
+		System.setProperty("plugin.hue.persist.delay", "0");
+		System.setProperty("websocket.token", "test-token");
+		vertx = Vertx.vertx();
+		HuePersistenceHelper.getInstance().init(vertx);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		HuePersistenceHelper.getInstance().close();
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		System.clearProperty("plugin.hue.authFolder");
+		System.clearProperty("plugin.hue.persist.delay");
+		System.clearProperty("websocket.token");
+	}
+
+	/**
+	 * Tests that saving from an event loop writes the data on a worker thread and
+	 * keeps the write order, so the state can be restored from the journal. Disk
+	 * tasks fail unless they run on a worker thread.
+	 */
+	@Test
+	void savesFromEventLoop(VertxTestContext testContext) throws InterruptedException {
+		HuePersistenceHelper helper = HuePersistenceHelper.getInstance();
+
+		vertx.runOnContext(v -> {
+			testContext.verify(() -> assertTrue(Context.isOnEventLoopThread()));
+
+			helper.saveAuthData("bridge-1", "key", "bridge.local")
+					.compose(saved -> {
+						helper.saveIncludedDevices(Set.of("device-1"));
+						return helper.saveIncludedDevices(Set.of("device-1", "device-2"));
+					})
+					.onComplete(testContext.succeedingThenComplete());
+		});
+		assertTrue(testContext.awaitCompletion(5, TimeUnit.SECONDS));
+
+		// reload from disk, the journal entries are replayed
+		helper.init(vertx);
+		HueBridge restored = helper.getHueBridge().orElseThrow();
+
+		assertEquals("bridge-1", restored.getBridgeId());
+		assertEquals(Set.of("device-1", "device-2"), restored.getIncludedDevices());
+		assertEquals("test-token", helper.readToken());
+		assertTrue(Files.exists(storage.resolve("hue.journal")));
+	}
+
+	/**
+	 * Tests that disk access from an event loop thread is rejected.
+	 */
+	@Test
+	void rejectsDiskAccessOnEventLoop(VertxTestContext testContext) {
+		vertx.runOnContext(v -> testContext.verify(() -> {
+			assertThrows(IllegalStateException.class, () -> HuePersistenceHelper.getInstance().init(vertx));
+			testContext.completeNow();
+		}));
+	}
+}
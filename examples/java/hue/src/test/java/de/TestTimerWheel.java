@@ -0,0 +1,137 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.eq3.plugin.hue.util.TimerWheel;
+
+/**
+ * Test class for the {@link TimerWheel}, ensuring entries expire exactly at
+ * their deadline across slot wraparound, cascades and out of range deadlines.
+ */
+public class TestTimerWheel {
+	private static final long LEVEL_1 = 64;
+	private static final long LEVEL_2 = 64 * 64;
+	private static final long MAX_DELTA = (1L << 30) - 1;
+
+	/**
+	 * Tests that an entry scheduled across the end of the finest level expires at
+	 * its deadline.
+	 */
+	@Test
+	void expiresAcrossWraparound() {
+		TimerWheel<String> wheel = new TimerWheel<>(60);
+		wheel.schedule("a", 70, "payload");
+
+		assertEquals(List.of(), advance(wheel, 69));
+		assertEquals(List.of("a@70"), advance(wheel, 70));
+		assertTrue(wheel.isEmpty());
+	}
+
+	/**
+	 * Tests that entries of coarser levels are cascaded and expire at their
+	 * deadline, not at the cascade.
+	 */
+	@Test
+	void expiresCascadedEntries() {
+		TimerWheel<String> wheel = new TimerWheel<>(5);
+		wheel.schedule("level1", 5 + LEVEL_1 + 3, "payload");
+		wheel.schedule("level2", 5 + LEVEL_2 + 17, "payload");
+
+		assertEquals(List.of(), advance(wheel, 5 + LEVEL_1 + 2));
+		assertEquals(List.of("level1@" + (5 + LEVEL_1 + 3)), advance(wheel, 5 + LEVEL_1 + 3));
+		assertEquals(List.of(), advance(wheel, LEVEL_2));
+		assertEquals(List.of(), advance(wheel, 5 + LEVEL_2 + 16));
+		assertEquals(List.of("level2@" + (5 + LEVEL_2 + 17)), advance(wheel, 5 + LEVEL_2 + 17));
+	}
+
+	/**
+	 * Tests that deadlines beyond the range of the wheel are cascaded again
+	 * instead of expiring early.
+	 */
+	@Test
+	void keepsDeadlinesBeyondRange() {
+		TimerWheel<String> wheel = new TimerWheel<>(123);
+		long deadline = 123 + 3 * MAX_DELTA + 42;
+		wheel.schedule("far", deadline, "payload");
+
+		assertEquals(List.of(), advance(wheel, 123 + MAX_DELTA));
+		assertEquals(List.of(), advance(wheel, deadline - 1));
+		assertEquals(1, wheel.size());
+		assertEquals(List.of("far@" + deadline), advance(wheel, deadline));
+	}
+
+	/**
+	 * Tests that a long idle period is skipped instead of processed tick by tick.
+	 */
+	@Test
+	void skipsIdleTicks() {
+		TimerWheel<String> wheel = new TimerWheel<>(0);
+		advance(wheel, 1L << 40);
+
+		long deadline = (1L << 40) + 5 * LEVEL_2 + 1;
+		wheel.schedule("late", deadline, "payload");
+		long start = System.nanoTime();
+		assertEquals(List.of("late@" + (1L << 41)), advance(wheel, 1L << 41));
+		assertTrue(System.nanoTime() - start < 1_000_000_000L);
+	}
+
+	/**
+	 * Tests random deadlines and steps against the expected expiry ticks.
+	 */
+	@Test
+	void expiresRandomDeadlines() {
+		Random random = new Random(7);
+		TimerWheel<String> wheel = new TimerWheel<>(1000);
+		Map<String, Long> deadlines = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			long deadline = 1000 + (long) Math.pow(2, random.nextDouble() * 26);
+			deadlines.put("key" + i, deadline);
+			wheel.schedule("key" + i, deadline, "payload");
+		}
+		wheel.cancel("key0");
+		deadlines.remove("key0");
+
+		long previous = 999;
+		while (!wheel.isEmpty()) {
+			long now = previous + 1 + random.nextInt(50_000);
+			for (String expired : advance(wheel, now)) {
+				String key = expired.substring(0, expired.indexOf('@'));
+				long deadline = deadlines.remove(key);
+				assertTrue(deadline > previous && deadline <= now, key + " expired outside of its step");
+			}
+			previous = now;
+		}
+		assertTrue(deadlines.isEmpty());
+	}
+
+	private static List<String> advance(TimerWheel<String> wheel, long nowTick) {
+		List<String> expired = new ArrayList<>();
+		wheel.advance(nowTick, (key, payload) -> expired.add(key + "@" + nowTick));
+		return expired;
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.eq3.plugin.hue.security;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.eq3.plugin.hue.util.HuePersistenceHelper;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Test class for the verification of bridge certificates against the root CA
+ * and the ID of the paired bridge.
+ * <p>
+ * {@code hue-bridge-certificates.jks} contains a test root CA, the certificates
+ * of the bridges {@code ecb5fafffe0a1b2c} and {@code ecb5fafffe0a1b2d} issued
+ * by it and a self-signed certificate of {@code ecb5fafffe0a1b2c}.
+ * </p>
+ */
+public class TestHueBridgeTrustManager {
+	private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+	private static X509TrustManager caTrustManager;
+	private static X509Certificate[] bridge;
+	private static X509Certificate[] otherBridge;
+	private static X509Certificate[] untrusted;
+
+	@TempDir
+	Path storage;
+
+	private Vertx vertx;
+	private final Map<String, String> previousProperties = new HashMap<>();
+
+	@BeforeAll
+	static void loadCertificates() throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		try (InputStream inputStream = TestHueBridgeTrustManager.class.getClassLoader()
+				.getResourceAsStream("hue-bridge-certificates.jks")) {
+			keyStore.load(inputStream, "bridge".toCharArray());
+		}
+		bridge = chain(keyStore, "bridge");
+		otherBridge = chain(keyStore, "other");
+		untrusted = chain(keyStore, "untrusted");
+
+		KeyStore caStore = KeyStore.getInstance("JKS");
+		caStore.load(null, null);
+		caStore.setCertificateEntry("ca", keyStore.getCertificate("ca"));
+		TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		factory.init(caStore);
+		caTrustManager = (X509TrustManager) factory.getTrustManagers()[0];
+	}
+
+	@BeforeEach
+	void setUp() {
+		setProperty("plugin.hue.authFolder", storage.toString());
+		setProperty("plugin.hue.persist.delay", "0");
+		setProperty("websocket.token", "test-token");
+		vertx = Vertx.vertx();
+		HuePersistenceHelper.getInstance().init(vertx);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		HuePersistenceHelper.getInstance().close();
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		previousProperties.forEach((key, value) -> {
+			if (value != null) {
+				System.setProperty(key, value);
+			} else {
+				System.clearProperty(key);
+			}
+		});
+	}
+
+	/**
+	 * Only the certificate issued for the paired bridge is accepted.
+	 */
+	@Test
+	void acceptsPairedBridge() {
+		HueBridgeTrustManager trustManager = trustManager(() -> "ecb5fafffe0a1b2c");
+
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(bridge, AUTH_TYPE));
+		assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(otherBridge, AUTH_TYPE));
+	}
+
+	/**
+	 * The bridge ID is compared ignoring its case.
+	 */
+	@Test
+	void ignoresCaseOfBridgeId() {
+		HueBridgeTrustManager trustManager = trustManager(() -> "ECB5FAFFFE0A1B2C");
+
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(bridge, AUTH_TYPE));
+	}
+
+	/**
+	 * A partial bridge ID, like the six hex digits shown for a bridge, must match
+	 * the end of the common name.
+	 */
+	@Test
+	void acceptsPartialBridgeId() throws Exception {
+		pair("0A1B2C.local");
+		HueBridgeTrustManager trustManager = trustManager(HueBridgeTLS::getPairedBridgeId);
+
+		assertEquals("0A1B2C", HueBridgeTLS.getPairedBridgeId());
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(bridge, AUTH_TYPE));
+		assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(otherBridge, AUTH_TYPE));
+	}
+
+	/**
+	 * The bridge ID is taken from the address used for pairing, addresses which
+	 * do not contain a bridge ID are ignored.
+	 */
+	@Test
+	void derivesPairedBridgeId() throws Exception {
+		pair("ecb5fafffe0a1b2c-2.local");
+		assertEquals("ecb5fafffe0a1b2c", HueBridgeTLS.getPairedBridgeId());
+
+		pair("ecb5fafffe0a1b2c");
+		assertEquals("ecb5fafffe0a1b2c", HueBridgeTLS.getPairedBridgeId());
+
+		pair("0a1b2");
+		assertNull(HueBridgeTLS.getPairedBridgeId());
+
+		pair("Philips-hue.local");
+		assertNull(HueBridgeTLS.getPairedBridgeId());
+	}
+
+	/**
+	 * While no bridge is paired any certificate issued by the root CA is
+	 * accepted.
+	 */
+	@Test
+	void acceptsAnyBridgeWhileNotPaired() {
+		HueBridgeTrustManager trustManager = trustManager(HueBridgeTLS::getPairedBridgeId);
+
+		assertNull(HueBridgeTLS.getPairedBridgeId());
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(bridge, AUTH_TYPE));
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(otherBridge, AUTH_TYPE));
+		assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(untrusted, AUTH_TYPE));
+	}
+
+	/**
+	 * Certificates which are not issued by the root CA are rejected, even if they
+	 * are issued for the paired bridge.
+	 */
+	@Test
+	void rejectsUntrustedChain() {
+		HueBridgeTrustManager trustManager = trustManager(() -> "ecb5fafffe0a1b2c");
+
+		assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(untrusted, AUTH_TYPE));
+	}
+
+	/**
+	 * With {@code plugin.hue.tls.trustAll} any certificate is accepted.
+	 */
+	@Test
+	void trustsAll() {
+		HueBridgeTrustManager trustManager = new HueBridgeTrustManager(caTrustManager, () -> "ecb5fafffe0a1b2c",
+				true);
+
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(untrusted, AUTH_TYPE));
+		assertDoesNotThrow(() -> trustManager.checkServerTrusted(otherBridge, AUTH_TYPE));
+	}
+
+	/**
+	 * The plugin never accepts client certificates.
+	 */
+	@Test
+	void rejectsClients() {
+		HueBridgeTrustManager trustManager = trustManager(() -> null);
+
+		assertThrows(CertificateException.class, () -> trustManager.checkClientTrusted(bridge, AUTH_TYPE));
+	}
+
+	private static HueBridgeTrustManager trustManager(Supplier<String> expectedBridgeId) {
+		return new HueBridgeTrustManager(caTrustManager, expectedBridgeId, false);
+	}
+
+	private static void pair(String bridgeId) throws Exception {
+		HuePersistenceHelper.getInstance()
+				.saveAuthData(bridgeId, "application-key", "127.0.0.1")
+				.toCompletionStage()
+				.toCompletableFuture()
+				.get(5, TimeUnit.SECONDS);
+	}
+
+	private static X509Certificate[] chain(KeyStore keyStore, String alias) throws Exception {
+		Certificate[] certificates = keyStore.getCertificateChain(alias);
+		X509Certificate[] chain = new X509Certificate[certificates.length];
+		for (int i = 0; i < certificates.length; i++) {
+			chain[i] = (X509Certificate) certificates[i];
+		}
+		return chain;
+	}
+
+	private void setProperty(String key, String value) {
+		previousProperties.put(key, System.setProperty(key, value));
+	}
+}
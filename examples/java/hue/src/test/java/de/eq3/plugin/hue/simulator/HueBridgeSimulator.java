@@ -0,0 +1,641 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.JksOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+/**
+ * Simulated Hue bridge for tests and benchmarks without bridge hardware.
+ * <p>
+ * The simulator serves the CLIP v2 API via HTTPS with HTTP/2 and HTTP/1.1 using
+ * the self-signed certificate of {@code hue-simulator.jks}, so the plugin must
+ * run with
+ * {@code plugin.hue.tls.trustAll=true} and {@code plugin.hue.bridge.port} set
+ * to {@link #getPort()}. It simulates the given number of devices with one
+ * light and one connectivity service each:
+ * </p>
+ * <ul>
+ * <li>{@code GET /clip/v2/resource} and {@code /clip/v2/resource/<type>} return
+ * the current resources</li>
+ * <li>{@code PUT /clip/v2/resource/light/<id>} changes the light state after the
+ * configured latency, or is answered with 429 if rate limited, and echoes the
+ * change on the event stream</li>
+ * <li>{@code GET /eventstream/clip/v2} streams server-sent events, optionally
+ * with background bursts and split at random byte boundaries</li>
+ * <li>{@code POST /api} pairs immediately</li>
+ * </ul>
+ * <p>
+ * The simulator state is only modified on the context of the verticle. Methods
+ * called from other threads are executed on that context.
+ * </p>
+ */
+public class HueBridgeSimulator extends AbstractVerticle {
+	public static final String RESOURCE_PATH = "/clip/v2/resource";
+	public static final String EVENT_STREAM_PATH = "/eventstream/clip/v2";
+
+	private static final String TYPE_DEVICE = "device";
+	private static final String TYPE_LIGHT = "light";
+	private static final String TYPE_CONNECTIVITY = "zigbee_connectivity";
+	private static final String TYPE_ROOM = "room";
+	private static final String TYPE_ZONE = "zone";
+	private static final String TYPE_SCENE = "scene";
+	private static final String APPLICATION_KEY_HEADER = "hue-application-key";
+
+	private final HueBridgeSimulatorOptions options;
+	private final Random random;
+
+	private final List<JsonObject> lights = new ArrayList<>();
+	private final Map<String, JsonObject> lightsById = new HashMap<>();
+	private final List<JsonObject> connectivities = new ArrayList<>();
+	private final Map<HttpServerResponse, HttpConnection> eventStreams = new ConcurrentHashMap<>();
+	private final Map<String, JsonObject> lastPuts = new ConcurrentHashMap<>();
+
+	private final AtomicLong resourceRequests = new AtomicLong();
+	private final AtomicLong lightPuts = new AtomicLong();
+	private final AtomicLong rejectedPuts = new AtomicLong();
+	private final AtomicLong eventsSent = new AtomicLong();
+
+	private HttpServer server;
+	private Context simulatorContext;
+	private long eventSequence;
+	private long rateWindowStart;
+	private int putsInWindow;
+	private long burstTimerId = -1;
+
+	public HueBridgeSimulator(HueBridgeSimulatorOptions options) {
+		this.options = options;
+		this.random = new Random(options.getSeed());
+	}
+
+	@Override
+	public void start(Promise<Void> startPromise) {
+		this.simulatorContext = context;
+		for (int i = 0; i < options.getLights(); i++) {
+			JsonObject light = light(i);
+			lights.add(light);
+			lightsById.put(light.getString("id"), light);
+			connectivities.add(connectivity(i));
+		}
+
+		Router router = Router.router(vertx);
+		router.post("/api").handler(BodyHandler.create()).handler(this::handlePairing);
+		router.route().handler(this::authorize);
+		router.get(RESOURCE_PATH).handler(this::handleResources);
+		router.get(RESOURCE_PATH + "/:type").handler(this::handleResources);
+		router.get(RESOURCE_PATH + "/light/:id").handler(this::handleLight);
+		router.put(RESOURCE_PATH + "/light/:id").handler(BodyHandler.create()).handler(this::handleLightPut);
+		router.get(EVENT_STREAM_PATH).handler(this::handleEventStream);
+
+		HttpServerOptions serverOptions = new HttpServerOptions().setSsl(true)
+				.setUseAlpn(true)
+				.setKeyCertOptions(keyStore())
+				.setHost(options.getHost())
+				.setPort(options.getPort());
+
+		vertx.createHttpServer(serverOptions).requestHandler(router).listen().onSuccess(httpServer -> {
+			this.server = httpServer;
+			if (options.getEventInterval() > 0) {
+				burstTimerId = vertx.setPeriodic(options.getEventInterval(), timerId -> sendBurst());
+			}
+			startPromise.complete();
+		}).onFailure(startPromise::fail);
+	}
+
+	@Override
+	public void stop() {
+		vertx.cancelTimer(burstTimerId);
+		eventStreams.keySet().forEach(stream -> stream.reset());
+		eventStreams.clear();
+	}
+
+	/**
+	 * Returns the port the simulator listens on.
+	 *
+	 * @return the HTTPS port
+	 */
+	public int getPort() {
+		return server.actualPort();
+	}
+
+	public HueBridgeSimulatorOptions getOptions() {
+		return options;
+	}
+
+	public static String deviceId(int index) {
+		return id(TYPE_DEVICE, index);
+	}
+
+	public static String lightId(int index) {
+		return id(TYPE_LIGHT, index);
+	}
+
+	/**
+	 * Returns a copy of the current state of a light.
+	 *
+	 * @param index the index of the light
+	 * @return the light resource
+	 */
+	public synchronized JsonObject getLight(int index) {
+		return lights.get(index).copy();
+	}
+
+	/**
+	 * Returns the body of the last accepted PUT request of a light.
+	 *
+	 * @param index the index of the light
+	 * @return the request body or null if the light has not been changed
+	 */
+	public JsonObject getLastPut(int index) {
+		return lastPuts.get(lightId(index));
+	}
+
+	public int getOpenEventStreams() {
+		return eventStreams.size();
+	}
+
+	public long getResourceRequests() {
+		return resourceRequests.get();
+	}
+
+	public long getLightPuts() {
+		return lightPuts.get();
+	}
+
+	public long getRejectedPuts() {
+		return rejectedPuts.get();
+	}
+
+	public long getEventsSent() {
+		return eventsSent.get();
+	}
+
+	/**
+	 * Changes the state of a light as if it was controlled by another app and
+	 * sends the change on the event stream.
+	 *
+	 * @param index  the index of the light
+	 * @param change the changed light properties, e.g. {@code {"on":{"on":true}}}
+	 */
+	public void emitLightChange(int index, JsonObject change) {
+		simulatorContext.runOnContext(v -> {
+			JsonObject update = applyLightChange(lights.get(index), change);
+			sendEvents(List.of(updateEvent(new JsonArray().add(update))));
+		});
+	}
+
+	/**
+	 * Sends a connectivity change of a device on the event stream.
+	 *
+	 * @param index     the index of the device
+	 * @param connected whether the device is reachable
+	 */
+	public void emitConnectivityChange(int index, boolean connected) {
+		simulatorContext.runOnContext(v -> {
+			JsonObject connectivity = connectivities.get(index);
+			connectivity.put("status", connected ? "connected" : "connectivity_issue");
+			JsonObject update = new JsonObject().put("id", connectivity.getString("id"))
+					.put("owner", connectivity.getJsonObject("owner"))
+					.put("status", connectivity.getString("status"))
+					.put("type", TYPE_CONNECTIVITY);
+			sendEvents(List.of(updateEvent(new JsonArray().add(update))));
+		});
+	}
+
+	/**
+	 * Closes the connections of all event streams, as if the bridge was
+	 * restarted.
+	 */
+	public void closeEventStreams() {
+		simulatorContext.runOnContext(v -> eventStreams.values().forEach(HttpConnection::close));
+	}
+
+	/**
+	 * Sends a burst of random light changes on the event stream.
+	 */
+	public void emitBurst() {
+		simulatorContext.runOnContext(v -> sendBurst());
+	}
+
+	private void authorize(RoutingContext routingContext) {
+		if (!options.getApplicationKey().equals(routingContext.request().getHeader(APPLICATION_KEY_HEADER))) {
+			routingContext.response()
+					.setStatusCode(403)
+					.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+					.end(errors("unauthorized user").encode());
+			return;
+		}
+		routingContext.next();
+	}
+
+	private void handlePairing(RoutingContext routingContext) {
+		JsonObject success = new JsonObject().put("username", options.getApplicationKey())
+				.put("clientkey", "00000000000000000000000000000000");
+		routingContext.response()
+				.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+				.end(new JsonArray().add(new JsonObject().put("success", success)).encode());
+	}
+
+	private void handleResources(RoutingContext routingContext) {
+		resourceRequests.incrementAndGet();
+		String type = routingContext.pathParam("type");
+		JsonArray data = new JsonArray();
+		if (type == null) {
+			for (String resourceType : new String[] { TYPE_DEVICE, TYPE_LIGHT, TYPE_CONNECTIVITY, TYPE_ROOM,
+					TYPE_ZONE, TYPE_SCENE }) {
+				addResources(resourceType, data);
+			}
+		} else {
+			addResources(type, data);
+		}
+		respond(routingContext, 200, new JsonObject().put("errors", new JsonArray()).put("data", data));
+	}
+
+	private void handleLight(RoutingContext routingContext) {
+		resourceRequests.incrementAndGet();
+		JsonObject light = lightsById.get(routingContext.pathParam("id"));
+		if (light == null) {
+			respond(routingContext, 404, errors("Not Found"));
+			return;
+		}
+		respond(routingContext, 200,
+				new JsonObject().put("errors", new JsonArray()).put("data", new JsonArray().add(light.copy())));
+	}
+
+	private void handleLightPut(RoutingContext routingContext) {
+		long puts = lightPuts.incrementAndGet();
+		String lightId = routingContext.pathParam("id");
+		JsonObject light = lightsById.get(lightId);
+		if (light == null) {
+			respond(routingContext, 404, errors("Not Found"));
+			return;
+		}
+		if (isRateLimited(puts)) {
+			rejectedPuts.incrementAndGet();
+			respond(routingContext, 429, errors("Too many requests"));
+			return;
+		}
+		JsonObject change = routingContext.body().asJsonObject();
+		lastPuts.put(lightId, change != null ? change : new JsonObject());
+		long latency = options.getPutLatency()
+				+ (options.getPutLatencyJitter() > 0 ? (long) (random.nextDouble() * options.getPutLatencyJitter())
+						: 0);
+		Runnable apply = () -> {
+			JsonObject update = applyLightChange(light, change != null ? change : new JsonObject());
+			JsonObject reference = new JsonObject().put("rid", lightId).put("rtype", TYPE_LIGHT);
+			respond(routingContext, 200,
+					new JsonObject().put("data", new JsonArray().add(reference)).put("errors", new JsonArray()));
+			if (options.getEchoDelay() >= 0) {
+				JsonObject event = updateEvent(new JsonArray().add(update));
+				if (options.getEchoDelay() == 0) {
+					sendEvents(List.of(event));
+				} else {
+					vertx.setTimer(options.getEchoDelay(), timerId -> sendEvents(List.of(event)));
+				}
+			}
+		};
+		if (latency > 0) {
+			vertx.setTimer(latency, timerId -> apply.run());
+		} else {
+			apply.run();
+		}
+	}
+
+	private boolean isRateLimited(long puts) {
+		if (options.getTooManyRequestsEvery() > 0 && puts % options.getTooManyRequestsEvery() == 0) {
+			return true;
+		}
+		if (options.getMaxPutsPerSecond() <= 0) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (now - rateWindowStart >= 1000) {
+			rateWindowStart = now;
+			putsInWindow = 0;
+		}
+		return ++putsInWindow > options.getMaxPutsPerSecond();
+	}
+
+	private void handleEventStream(RoutingContext routingContext) {
+		HttpServerResponse response = routingContext.response();
+		response.setChunked(true)
+				.putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+				.putHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+		response.closeHandler(v -> eventStreams.remove(response));
+		response.exceptionHandler(throwable -> eventStreams.remove(response));
+		response.write(": hi\n\n");
+		eventStreams.put(response, routingContext.request().connection());
+	}
+
+	private void sendBurst() {
+		List<JsonObject> events = new ArrayList<>();
+		for (int i = 0; i < options.getBurstSize() && !lights.isEmpty(); i++) {
+			JsonArray data = new JsonArray();
+			// real bridges combine the changes of a few lights in one event
+			int changedLights = 1 + random.nextInt(Math.min(3, lights.size()));
+			for (int j = 0; j < changedLights; j++) {
+				JsonObject light = lights.get(random.nextInt(lights.size()));
+				data.add(applyLightChange(light, randomChange(light)));
+			}
+			events.add(updateEvent(data));
+		}
+		sendEvents(events);
+	}
+
+	private JsonObject randomChange(JsonObject light) {
+		int kind = random.nextInt(10);
+		if (kind == 0) {
+			return new JsonObject().put("on", new JsonObject().put("on", !light.getJsonObject("on").getBoolean("on")));
+		}
+		if (kind == 1) {
+			// non ASCII names let chunk boundaries fall within multi-byte characters
+			return new JsonObject().put("metadata",
+					new JsonObject().put("name", "K\u00fcchenlicht " + random.nextInt(100)));
+		}
+		if (kind == 2) {
+			return new JsonObject().put("color", new JsonObject().put("xy",
+					xy(round4(0.15 + random.nextDouble() * 0.5), round4(0.05 + random.nextDouble() * 0.6))));
+		}
+		if (kind == 3) {
+			return new JsonObject().put("color_temperature", new JsonObject().put("mirek", 153 + random.nextInt(347)));
+		}
+		return new JsonObject().put("dimming",
+				new JsonObject().put("brightness", Math.round(random.nextDouble() * 10000) / 100.0));
+	}
+
+	/**
+	 * Applies a light PUT body or random change to the light state.
+	 *
+	 * @return the update event data with the changed properties
+	 */
+	private synchronized JsonObject applyLightChange(JsonObject light, JsonObject change) {
+		JsonObject update = new JsonObject().put("id", light.getString("id"))
+				.put("id_v1", light.getString("id_v1"))
+				.put("owner", light.getJsonObject("owner"))
+				.put("type", TYPE_LIGHT);
+		JsonObject on = change.getJsonObject("on");
+		if (on != null && on.containsKey("on")) {
+			light.getJsonObject("on").put("on", on.getBoolean("on"));
+			update.put("on", new JsonObject().put("on", on.getBoolean("on")));
+		}
+		JsonObject dimming = change.getJsonObject("dimming");
+		if (dimming != null && dimming.containsKey("brightness")) {
+			light.getJsonObject("dimming").put("brightness", dimming.getDouble("brightness"));
+			update.put("dimming", new JsonObject().put("brightness", dimming.getDouble("brightness")));
+		}
+		JsonObject colorTemperature = change.getJsonObject("color_temperature");
+		if (colorTemperature != null && colorTemperature.containsKey("mirek")) {
+			light.getJsonObject("color_temperature")
+					.put("mirek", colorTemperature.getInteger("mirek"))
+					.put("mirek_valid", true);
+			update.put("color_temperature",
+					new JsonObject().put("mirek", colorTemperature.getInteger("mirek")).put("mirek_valid", true));
+		}
+		JsonObject color = change.getJsonObject("color");
+		if (color != null && color.getJsonObject("xy") != null) {
+			light.getJsonObject("color").put("xy", color.getJsonObject("xy").copy());
+			light.getJsonObject("color_temperature").putNull("mirek").put("mirek_valid", false);
+			update.put("color", new JsonObject().put("xy", color.getJsonObject("xy").copy()));
+			update.put("color_temperature", new JsonObject().putNull("mirek").put("mirek_valid", false));
+		}
+		JsonObject metadata = change.getJsonObject("metadata");
+		if (metadata != null && metadata.containsKey("name")) {
+			light.getJsonObject("metadata").put("name", metadata.getString("name"));
+			update.put("metadata", new JsonObject().put("name", metadata.getString("name")));
+		}
+		return update;
+	}
+
+	private JsonObject updateEvent(JsonArray data) {
+		return new JsonObject().put("creationtime", Instant.now().truncatedTo(ChronoUnit.SECONDS).toString())
+				.put("data", data)
+				.put("id", UUID.randomUUID().toString())
+				.put("type", "update");
+	}
+
+	/**
+	 * Sends each event as one message, all messages in a single write or split
+	 * into chunks at random byte boundaries.
+	 */
+	private void sendEvents(List<JsonObject> events) {
+		if (eventStreams.isEmpty()) {
+			return;
+		}
+		StringBuilder messages = new StringBuilder();
+		long epochSeconds = System.currentTimeMillis() / 1000;
+		for (JsonObject event : events) {
+			messages.append("id: ")
+					.append(epochSeconds)
+					.append(':')
+					.append(eventSequence++)
+					.append("\ndata: ")
+					.append(new JsonArray().add(event).encode())
+					.append("\n\n");
+		}
+		byte[] bytes = messages.toString().getBytes(StandardCharsets.UTF_8);
+		for (HttpServerResponse stream : eventStreams.keySet()) {
+			int offset = 0;
+			while (offset < bytes.length) {
+				int length = bytes.length - offset;
+				if (options.getMaxChunkSize() > 0) {
+					length = Math.min(length, 1 + random.nextInt(options.getMaxChunkSize()));
+				}
+				stream.write(Buffer.buffer(Arrays.copyOfRange(bytes, offset, offset + length)));
+				offset += length;
+			}
+		}
+		eventsSent.addAndGet(events.size());
+	}
+
+	private void addResources(String type, JsonArray data) {
+		int lightCount = lights.size();
+		switch (type) {
+		case TYPE_DEVICE:
+			for (int i = 0; i < lightCount; i++) {
+				data.add(device(i, lights.get(i).getJsonObject("metadata").getString("name")));
+			}
+			break;
+		case TYPE_LIGHT:
+			synchronized (this) {
+				lights.forEach(light -> data.add(light.copy()));
+			}
+			break;
+		case TYPE_CONNECTIVITY:
+			connectivities.forEach(connectivity -> data.add(connectivity.copy()));
+			break;
+		case TYPE_ROOM:
+		case TYPE_ZONE:
+			for (int i = 0; i < Math.max(1, lightCount / 4); i++) {
+				data.add(group(type, i, lightCount));
+			}
+			break;
+		case TYPE_SCENE:
+			for (int i = 0; i < options.getScenes(); i++) {
+				data.add(scene(i, lightCount));
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Returns the key store with the self-signed certificate for
+	 * {@code localhost} used by the simulators.
+	 *
+	 * @return the key store options
+	 */
+	static JksOptions keyStore() {
+		try (InputStream keyStore = HueBridgeSimulator.class.getClassLoader()
+				.getResourceAsStream("hue-simulator.jks")) {
+			return new JksOptions().setValue(Buffer.buffer(keyStore.readAllBytes())).setPassword("simulator");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void respond(RoutingContext routingContext, int statusCode, JsonObject body) {
+		routingContext.response()
+				.setStatusCode(statusCode)
+				.putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+				.end(body.encode());
+	}
+
+	private static JsonObject errors(String description) {
+		return new JsonObject().put("data", new JsonArray())
+				.put("errors", new JsonArray().add(new JsonObject().put("description", description)));
+	}
+
+	private static JsonObject light(int index) {
+		return new JsonObject().put("id", id(TYPE_LIGHT, index))
+				.put("id_v1", "/lights/" + (index + 1))
+				.put("owner", reference(TYPE_DEVICE, index))
+				.put("metadata", new JsonObject().put("name", "Light " + index).put("archetype", "sultan_bulb"))
+				.put("on", new JsonObject().put("on", index % 2 == 0))
+				.put("dimming", new JsonObject().put("brightness", (index * 7) % 100 + 0.39).put("min_dim_level", 0.2))
+				.put("color_temperature", new JsonObject().put("mirek", 153 + index % 347)
+						.put("mirek_valid", index % 3 == 0)
+						.put("mirek_schema", new JsonObject().put("mirek_minimum", 153).put("mirek_maximum", 500)))
+				.put("color", new JsonObject().put("xy", xy(0.3 + (index % 10) / 50.0, 0.3))
+						.put("gamut_type", "C")
+						.put("gamut", new JsonObject().put("red", xy(0.6915, 0.3083))
+								.put("green", xy(0.17, 0.7))
+								.put("blue", xy(0.1532, 0.0475))))
+				.put("dynamics", new JsonObject().put("status", "none").put("speed", 0.0).put("speed_valid", false))
+				.put("alert", new JsonObject().put("action_values", new JsonArray().add("breathe")))
+				.put("mode", "normal")
+				.put("type", TYPE_LIGHT);
+	}
+
+	private static JsonObject device(int index, String name) {
+		return new JsonObject().put("id", id(TYPE_DEVICE, index))
+				.put("id_v1", "/lights/" + (index + 1))
+				.put("metadata", new JsonObject().put("name", name).put("archetype", "sultan_bulb"))
+				.put("product_data", new JsonObject().put("model_id", "LCA001")
+						.put("manufacturer_name", "Signify Netherlands B.V.")
+						.put("product_name", "Hue color lamp")
+						.put("product_archetype", "sultan_bulb")
+						.put("certified", true)
+						.put("software_version", "1.104.2"))
+				.put("services", new JsonArray().add(reference(TYPE_LIGHT, index))
+						.add(reference(TYPE_CONNECTIVITY, index)))
+				.put("type", TYPE_DEVICE);
+	}
+
+	private static JsonObject connectivity(int index) {
+		return new JsonObject().put("id", id(TYPE_CONNECTIVITY, index))
+				.put("owner", reference(TYPE_DEVICE, index))
+				.put("status", "connected")
+				.put("mac_address", String.format("00:17:88:01:0c:%02x:%02x:0b", index / 256, index % 256))
+				.put("type", TYPE_CONNECTIVITY);
+	}
+
+	private static JsonObject group(String type, int index, int lightCount) {
+		JsonArray children = new JsonArray();
+		for (int i = index; i < lightCount; i += Math.max(1, lightCount / 4)) {
+			children.add(reference(TYPE_DEVICE, i));
+		}
+		return new JsonObject().put("id", id(type, index))
+				.put("metadata", new JsonObject().put("name", type + " " + index).put("archetype", "living_room"))
+				.put("children", children)
+				.put("services", new JsonArray().add(reference("grouped_light", index)))
+				.put("type", type);
+	}
+
+	private static JsonObject scene(int index, int lightCount) {
+		JsonArray actions = new JsonArray();
+		for (int i = 0; i < lightCount; i++) {
+			actions.add(new JsonObject().put("target", reference(TYPE_LIGHT, i))
+					.put("action", new JsonObject().put("on", new JsonObject().put("on", true))
+							.put("dimming", new JsonObject().put("brightness", 100.0))
+							.put("color", new JsonObject().put("xy", xy(0.4573, 0.41)))));
+		}
+		return new JsonObject().put("id", id(TYPE_SCENE, index))
+				.put("metadata", new JsonObject().put("name", "Scene " + index))
+				.put("group", reference(TYPE_ROOM, index % Math.max(1, lightCount / 4)))
+				.put("actions", actions)
+				.put("speed", 0.6031746031746031)
+				.put("auto_dynamic", false)
+				.put("status", new JsonObject().put("active", "inactive"))
+				.put("type", TYPE_SCENE);
+	}
+
+	private static JsonObject reference(String type, int index) {
+		return new JsonObject().put("rid", id(type, index)).put("rtype", type);
+	}
+
+	private static JsonObject xy(double x, double y) {
+		return new JsonObject().put("x", x).put("y", y);
+	}
+
+	private static double round4(double value) {
+		return Math.round(value * 10000) / 10000.0;
+	}
+
+	private static String id(String type, int index) {
+		return String.format("%08x-%04x-4000-8000-%012x", type.hashCode(), index, (long) index);
+	}
+}
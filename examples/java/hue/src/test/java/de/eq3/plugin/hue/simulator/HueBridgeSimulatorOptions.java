@@ -0,0 +1,223 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.simulator;
+
+/**
+ * Options of the {@link HueBridgeSimulator}. The latency, error, burst and chunk
+ * options can also be changed while the simulator is running.
+ */
+public class HueBridgeSimulatorOptions {
+	private String host = "127.0.0.1";
+	private int port;
+	private String bridgeId = "001788fffe5e1a00";
+	private String applicationKey = "simulated-application-key";
+	private int lights = 10;
+	private int scenes;
+	private volatile long putLatency;
+	private volatile long putLatencyJitter;
+	private volatile int maxPutsPerSecond;
+	private volatile int tooManyRequestsEvery;
+	private volatile long echoDelay = 50;
+	private long eventInterval;
+	private volatile int burstSize = 1;
+	private volatile int maxChunkSize;
+	private long seed = 42;
+
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Sets the address to listen on, the loopback address by default.
+	 */
+	public HueBridgeSimulatorOptions setHost(String host) {
+		this.host = host;
+		return this;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Sets the HTTPS port, by default a free port is chosen.
+	 */
+	public HueBridgeSimulatorOptions setPort(int port) {
+		this.port = port;
+		return this;
+	}
+
+	public String getBridgeId() {
+		return bridgeId;
+	}
+
+	public HueBridgeSimulatorOptions setBridgeId(String bridgeId) {
+		this.bridgeId = bridgeId;
+		return this;
+	}
+
+	public String getApplicationKey() {
+		return applicationKey;
+	}
+
+	/**
+	 * Sets the application key required in the {@code hue-application-key}
+	 * header and returned by pairing requests.
+	 */
+	public HueBridgeSimulatorOptions setApplicationKey(String applicationKey) {
+		this.applicationKey = applicationKey;
+		return this;
+	}
+
+	public int getLights() {
+		return lights;
+	}
+
+	/**
+	 * Sets the number of simulated devices, each with one light.
+	 */
+	public HueBridgeSimulatorOptions setLights(int lights) {
+		this.lights = lights;
+		return this;
+	}
+
+	public int getScenes() {
+		return scenes;
+	}
+
+	/**
+	 * Sets the number of scenes, which are only part of the full resource dump.
+	 */
+	public HueBridgeSimulatorOptions setScenes(int scenes) {
+		this.scenes = scenes;
+		return this;
+	}
+
+	public long getPutLatency() {
+		return putLatency;
+	}
+
+	/**
+	 * Sets the millis before a light PUT is answered.
+	 */
+	public HueBridgeSimulatorOptions setPutLatency(long putLatency) {
+		this.putLatency = putLatency;
+		return this;
+	}
+
+	public long getPutLatencyJitter() {
+		return putLatencyJitter;
+	}
+
+	/**
+	 * Sets the maximum random millis added to the PUT latency.
+	 */
+	public HueBridgeSimulatorOptions setPutLatencyJitter(long putLatencyJitter) {
+		this.putLatencyJitter = putLatencyJitter;
+		return this;
+	}
+
+	public int getMaxPutsPerSecond() {
+		return maxPutsPerSecond;
+	}
+
+	/**
+	 * Sets the number of light PUTs accepted per second, further PUTs are
+	 * answered with 429 like a real bridge does. Unlimited if 0.
+	 */
+	public HueBridgeSimulatorOptions setMaxPutsPerSecond(int maxPutsPerSecond) {
+		this.maxPutsPerSecond = maxPutsPerSecond;
+		return this;
+	}
+
+	public int getTooManyRequestsEvery() {
+		return tooManyRequestsEvery;
+	}
+
+	/**
+	 * Answers every n-th light PUT with 429 regardless of the rate. Disabled if
+	 * 0.
+	 */
+	public HueBridgeSimulatorOptions setTooManyRequestsEvery(int tooManyRequestsEvery) {
+		this.tooManyRequestsEvery = tooManyRequestsEvery;
+		return this;
+	}
+
+	public long getEchoDelay() {
+		return echoDelay;
+	}
+
+	/**
+	 * Sets the millis after an accepted PUT until the changed state is sent on
+	 * the event stream. No echo is sent if negative.
+	 */
+	public HueBridgeSimulatorOptions setEchoDelay(long echoDelay) {
+		this.echoDelay = echoDelay;
+		return this;
+	}
+
+	public long getEventInterval() {
+		return eventInterval;
+	}
+
+	/**
+	 * Sets the millis between bursts of background state changes on the event
+	 * stream. No background traffic if 0.
+	 */
+	public HueBridgeSimulatorOptions setEventInterval(long eventInterval) {
+		this.eventInterval = eventInterval;
+		return this;
+	}
+
+	public int getBurstSize() {
+		return burstSize;
+	}
+
+	/**
+	 * Sets the number of event stream messages sent back to back per burst.
+	 */
+	public HueBridgeSimulatorOptions setBurstSize(int burstSize) {
+		this.burstSize = burstSize;
+		return this;
+	}
+
+	public int getMaxChunkSize() {
+		return maxChunkSize;
+	}
+
+	/**
+	 * Splits the event stream into writes of 1 to the given number of bytes at
+	 * random boundaries, including within multi-byte characters. Every burst is
+	 * written at once if 0.
+	 */
+	public HueBridgeSimulatorOptions setMaxChunkSize(int maxChunkSize) {
+		this.maxChunkSize = maxChunkSize;
+		return this;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the random state changes, chunk sizes and latencies.
+	 */
+	public HueBridgeSimulatorOptions setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2014-2025 eQ-3 AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.eq3.plugin.hue.simulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Simulated HCU WebSocket server the plugin connects to, configured by
+ * {@code plugin.hue.ws.server.host} and {@code plugin.hue.ws.server.port}.
+ * <p>
+ * Connections without the expected {@code AUTHTOKEN} header are rejected.
+ * Received plugin messages are kept until they are taken by
+ * {@link #awaitMessage(Predicate, long)}, at most the last
+ * {@value #MAX_RECEIVED_MESSAGES} messages are kept.
+ * </p>
+ */
+public class HueHcuSimulator extends AbstractVerticle {
+	public static final int MAX_RECEIVED_MESSAGES = 10_000;
+
+	private final String host;
+	private final int port;
+	private final String authToken;
+
+	private final Deque<JsonObject> receivedMessages = new ArrayDeque<>();
+	private final List<PendingMessage> pendingMessages = new ArrayList<>();
+
+	private HttpServer server;
+	private volatile ServerWebSocket webSocket;
+
+	/**
+	 * @param host      the host to listen on
+	 * @param port      the port to listen on, 0 for a random port
+	 * @param authToken the token the plugin must send
+	 */
+	public HueHcuSimulator(String host, int port, String authToken) {
+		this.host = host;
+		this.port = port;
+		this.authToken = authToken;
+	}
+
+	@Override
+	public void start(Promise<Void> startPromise) {
+		HttpServerOptions serverOptions = new HttpServerOptions().setSsl(true)
+				.setKeyCertOptions(HueBridgeSimulator.keyStore())
+				.setMaxWebSocketFrameSize(1_024_000)
+				.setMaxWebSocketMessageSize(1_024_000)
+				.setHost(host)
+				.setPort(port);
+
+		vertx.createHttpServer(serverOptions).webSocketHandler(this::handleWebSocket).listen().onSuccess(httpServer -> {
+			this.server = httpServer;
+			startPromise.complete();
+		}).onFailure(startPromise::fail);
+	}
+
+	public int getPort() {
+		return server.actualPort();
+	}
+
+	public boolean isConnected() {
+		return webSocket != null;
+	}
+
+	/**
+	 * Sends a plugin message to the plugin.
+	 *
+	 * @param message the plugin message as JSON
+	 * @return a future completed once the message is written
+	 */
+	public Future<Void> send(JsonObject message) {
+		ServerWebSocket current = webSocket;
+		if (current == null) {
+			return Future.failedFuture("Plugin is not connected");
+		}
+		return current.writeTextMessage(message.encode());
+	}
+
+	/**
+	 * Returns the first received message matching the predicate, waiting for it
+	 * if it was not received yet. The message is removed from the received
+	 * messages.
+	 *
+	 * @param predicate the predicate the message must match
+	 * @param timeout   the timeout in millis
+	 * @return a future completed with the message or failed after the timeout
+	 */
+	public Future<JsonObject> awaitMessage(Predicate<JsonObject> predicate, long timeout) {
+		synchronized (this) {
+			Iterator<JsonObject> iterator = receivedMessages.iterator();
+			while (iterator.hasNext()) {
+				JsonObject message = iterator.next();
+				if (predicate.test(message)) {
+					iterator.remove();
+					return Future.succeededFuture(message);
+				}
+			}
+			PendingMessage pendingMessage = new PendingMessage(predicate, Promise.promise());
+			pendingMessages.add(pendingMessage);
+			pendingMessage.timerId = vertx.setTimer(timeout, timerId -> {
+				synchronized (this) {
+					pendingMessages.remove(pendingMessage);
+				}
+				pendingMessage.promise.tryFail("No matching message received within " + timeout + " ms");
+			});
+			return pendingMessage.promise.future();
+		}
+	}
+
+	private void handleWebSocket(ServerWebSocket serverWebSocket) {
+		if (!authToken.equals(serverWebSocket.headers().get("AUTHTOKEN"))) {
+			serverWebSocket.reject(401);
+			return;
+		}
+		this.webSocket = serverWebSocket;
+		serverWebSocket.textMessageHandler(text -> onMessage(new JsonObject(text)));
+		serverWebSocket.closeHandler(v -> {
+			if (webSocket == serverWebSocket) {
+				webSocket = null;
+			}
+		});
+	}
+
+	private void onMessage(JsonObject message) {
+		PendingMessage matched = null;
+		synchronized (this) {
+			for (PendingMessage pendingMessage : pendingMessages) {
+				if (pendingMessage.predicate.test(message)) {
+					matched = pendingMessage;
+					break;
+				}
+			}
+			if (matched == null) {
+				receivedMessages.addLast(message);
+				if (receivedMessages.size() > MAX_RECEIVED_MESSAGES) {
+					receivedMessages.removeFirst();
+				}
+				return;
+			}
+			pendingMessages.remove(matched);
+		}
+		vertx.cancelTimer(matched.timerId);
+		matched.promise.tryComplete(message);
+	}
+
+	private static class PendingMessage {
+		private final Predicate<JsonObject> predicate;
+		private final Promise<JsonObject> promise;
+		private long timerId;
+
+		private PendingMessage(Predicate<JsonObject> predicate, Promise<JsonObject> promise) {
+			this.predicate = predicate;
+			this.promise = promise;
+		}
+	}
+}